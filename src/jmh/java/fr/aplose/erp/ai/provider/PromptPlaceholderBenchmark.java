@@ -0,0 +1,51 @@
+package fr.aplose.erp.ai.provider;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt preparation of every AI call: {@link OpenAiCompatibleProvider#resolvePlaceholders} on a ticket-reply
+ * prompt (about 3 KB of ticket history) with 6 context variables, and with an empty context.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PromptPlaceholderBenchmark {
+
+    private String prompt;
+    private Map<String, Object> context;
+
+    @Setup
+    public void setup() {
+        StringBuilder history = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            history.append("Message ").append(i).append(": the export still fails after the update, see attached log.\n");
+        }
+        prompt = "Ticket {{ticketRef}} from {{customerName}} ({{priority}}), subject: {{subject}}.\n"
+                + "Conversation:\n" + history
+                + "Draft a reply in {{language}} signed by {{agentName}}.";
+        context = new LinkedHashMap<>();
+        context.put("ticketRef", "TK-2026-0042");
+        context.put("customerName", "Dupont SARL");
+        context.put("priority", "HIGH");
+        context.put("subject", "CSV export error");
+        context.put("language", "French");
+        context.put("agentName", "Marie Martin");
+    }
+
+    @Benchmark
+    public String resolve() {
+        return OpenAiCompatibleProvider.resolvePlaceholders(prompt, context);
+    }
+
+    @Benchmark
+    public String noContext() {
+        return OpenAiCompatibleProvider.resolvePlaceholders(prompt, Map.of());
+    }
+}
@@ -0,0 +1,64 @@
+package fr.aplose.erp.config;
+
+import fr.aplose.erp.config.dto.SidebarMenuSection;
+import fr.aplose.erp.modules.nocode.dto.NoCodeMenuEntry;
+import fr.aplose.erp.tenant.module.CoreModule;
+import fr.aplose.erp.tenant.service.TenantModuleSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Sidebar of every page: {@link MenuService#buildSidebarSections} from scratch versus
+ * {@link MenuService#getSidebarSections} (memoized structure, active flags copied per request),
+ * for an administrator with every module enabled and 20 no-code menu entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MenuBenchmark {
+
+    private static final String URI = "/invoices/128/payments";
+
+    private MenuService menuService;
+    private Set<String> modules;
+    private List<NoCodeMenuEntry> noCodeEntries;
+    private Set<String> authorities;
+    private TenantModuleSnapshot snapshot;
+
+    @Setup
+    public void setup() {
+        menuService = new MenuService();
+        modules = new HashSet<>();
+        authorities = new HashSet<>(Set.of("CUSTOM_ENTITY_READ", "USER_READ", "ROLE_READ", "TENANT_READ",
+                "EXTRAFIELD_ADMIN", "SUPER_ADMIN", "API_KEY_READ", "WEBHOOK_READ", "PUBLIC_FORM_READ", "AI_USE",
+                "DOLIBARR_IMPORT"));
+        long bits = 0L;
+        for (CoreModule core : CoreModule.values()) {
+            modules.add(core.getCode());
+            if (core.getPermissionRead() != null) authorities.add(core.getPermissionRead());
+            bits |= TenantModuleSnapshot.bit(core);
+        }
+        noCodeEntries = IntStream.range(0, 20)
+                .mapToObj(i -> new NoCodeMenuEntry("FARM", "obj" + i, "Object " + i, "bi-box", "/app/farm/obj" + i))
+                .toList();
+        snapshot = new TenantModuleSnapshot("t1", 1L, Set.copyOf(modules), Set.of(), noCodeEntries, bits);
+    }
+
+    @Benchmark
+    public List<SidebarMenuSection> build() {
+        return menuService.buildSidebarSections(URI, modules, noCodeEntries, authorities);
+    }
+
+    @Benchmark
+    public List<SidebarMenuSection> memoized() {
+        return menuService.getSidebarSections(URI, snapshot, authorities);
+    }
+}
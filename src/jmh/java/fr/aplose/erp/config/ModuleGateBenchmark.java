@@ -0,0 +1,82 @@
+package fr.aplose.erp.config;
+
+import fr.aplose.erp.tenant.module.CoreModule;
+import fr.aplose.erp.tenant.service.TenantModuleSnapshot;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Module gate of {@link ModuleAccessInterceptor}: legacy linear prefix scan + per-module lookup
+ * versus the path trie + snapshot bitset, over the 21 core module prefixes.
+ * The legacy variant's enabled check is a map lookup here; in production it was a database query,
+ * so this benchmark understates the gain.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleGateBenchmark {
+
+    private static final List<String> PATHS = List.of(
+            "/third-parties", "/third-parties/42/edit", "/contacts/7", "/crm/activities/new",
+            "/proposals/12/pdf", "/pipeline", "/orders/3", "/invoices/128/payments",
+            "/follow-up", "/contracts/9", "/products/categories/2", "/projects/5/tasks",
+            "/agenda/events", "/bank/1/movements", "/treasury", "/accounting/journals",
+            "/hr/employees/3", "/leave-requests/new", "/ged/17/download", "/ticketing/4",
+            "/reporting/exports/sales.xlsx", "/automation/rules/2",
+            "/dashboard", "/admin/users/1", "/profile", "/app/farm/animal", "/css/app.css");
+
+    private Map<String, String> legacyPrefixes;
+    private Map<String, Boolean> legacyModuleRows;
+    private TenantModuleSnapshot snapshot;
+
+    @Setup
+    public void setup() {
+        legacyPrefixes = new HashMap<>();
+        legacyModuleRows = new HashMap<>();
+        Set<String> enabled = new HashSet<>();
+        long bits = 0L;
+        for (CoreModule core : CoreModule.values()) {
+            legacyPrefixes.put(core.getBasePath(), core.getCode());
+            boolean on = core != CoreModule.HR;
+            legacyModuleRows.put(core.getCode(), on);
+            if (on) {
+                enabled.add(core.getCode());
+                bits |= TenantModuleSnapshot.bit(core);
+            }
+        }
+        legacyPrefixes = Map.copyOf(legacyPrefixes);
+        snapshot = new TenantModuleSnapshot("t1", 1L, enabled, Set.of(CoreModule.HR.getCode()), List.of(), bits);
+    }
+
+    @Benchmark
+    public void legacyScan(Blackhole bh) {
+        for (String path : PATHS) {
+            boolean allowed = true;
+            for (Map.Entry<String, String> e : legacyPrefixes.entrySet()) {
+                if (path.equals(e.getKey()) || path.startsWith(e.getKey() + "/")) {
+                    allowed = legacyModuleRows.getOrDefault(e.getValue(), true);
+                    break;
+                }
+            }
+            bh.consume(allowed);
+        }
+    }
+
+    @Benchmark
+    public void trieAndBitset(Blackhole bh) {
+        for (String path : PATHS) {
+            CoreModule module = ModuleAccessInterceptor.findModule(path);
+            bh.consume(module == null || snapshot.isEnabled(module));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package fr.aplose.erp.core.dashboard;
+
+import fr.aplose.erp.ErpApplication;
+import fr.aplose.erp.modules.agenda.service.AgendaEventService;
+import fr.aplose.erp.modules.commerce.service.InvoiceService;
+import fr.aplose.erp.modules.commerce.service.ProposalService;
+import fr.aplose.erp.modules.project.service.ProjectService;
+import fr.aplose.erp.modules.thirdparty.repository.ThirdPartyRepository;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboard of a tenant with 100k third parties, on the test profile (H2 in memory):
+ * the former sequential composition, which counted third parties by loading them all, versus
+ * {@link DashboardService} (counters table, concurrent widgets, per-tenant caches) with cold and warm caches.
+ * Sample time mode reports the percentiles, p99 included.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DashboardBenchmark {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    private static final int THIRD_PARTIES = 100_000;
+    private static final List<String> AUTHORITIES = List.of("INVOICE_READ", "PROPOSAL_READ", "PROJECT_READ",
+            "THIRD_PARTY_READ", "AGENDA_READ");
+
+    private ConfigurableApplicationContext context;
+    private DashboardService dashboardService;
+    private InvoiceService invoiceService;
+    private ProposalService proposalService;
+    private ProjectService projectService;
+    private ThirdPartyRepository thirdPartyRepository;
+    private AgendaEventService agendaEventService;
+
+    @Setup
+    public void setup() {
+        // Replaces the dev profile of application.yml, whose database is a file
+        System.setProperty("spring.profiles.active", "test");
+        context = new SpringApplicationBuilder(ErpApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run();
+        dashboardService = context.getBean(DashboardService.class);
+        invoiceService = context.getBean(InvoiceService.class);
+        proposalService = context.getBean(ProposalService.class);
+        projectService = context.getBean(ProjectService.class);
+        thirdPartyRepository = context.getBean(ThirdPartyRepository.class);
+        agendaEventService = context.getBean(AgendaEventService.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(THIRD_PARTIES);
+        for (int i = 0; i < THIRD_PARTIES; i++) {
+            rows.add(new Object[]{TENANT_ID, "BENCH-" + i, "Third party " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO third_parties (tenant_id, code, name, type, status) " +
+                "VALUES (?, ?, ?, 'COMPANY', 'ACTIVE')", rows);
+        context.getBean(KpiCounterService.class).recountAll();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void sequentialWithUnpagedCount(Blackhole bh) {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        try {
+            bh.consume(invoiceService.countOpen());
+            bh.consume(proposalService.countOpen());
+            bh.consume(thirdPartyRepository.findByTenantIdAndDeletedAtIsNull(TENANT_ID, Pageable.unpaged()).getTotalElements());
+            bh.consume(projectService.countActive());
+            bh.consume(invoiceService.findOverdue());
+            bh.consume(agendaEventService.findUpcoming(DashboardService.UPCOMING_DAYS));
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    @Benchmark
+    public DashboardView concurrentWidgetsColdCache() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        try {
+            dashboardService.invalidate(TENANT_ID);
+            return dashboardService.load(AUTHORITIES);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    @Benchmark
+    public DashboardView concurrentWidgetsWarmCache() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        try {
+            return dashboardService.load(AUTHORITIES);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package fr.aplose.erp.dolibarr.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Field parsing of the Dolibarr import: the {@link DolibarrImportHelper} getters applied to 100 invoice objects as
+ * decoded from the Dolibarr REST API, where ids, amounts, dates and flags mostly arrive as strings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DolibarrImportHelperBenchmark {
+
+    private List<Map<String, Object>> invoices;
+
+    @Setup
+    public void setup() {
+        invoices = IntStream.range(0, 100).mapToObj(i -> {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", String.valueOf(1000 + i));
+            m.put("ref", "FA2603-" + String.format("%04d", i));
+            m.put("socid", String.valueOf(10 + i % 30));
+            m.put("date", "2026-03-" + String.format("%02d", 1 + i % 28));
+            m.put("date_lim_reglement", "2026-04-" + String.format("%02d", 1 + i % 28) + " 00:00:00");
+            m.put("total_ht", i + "125.50000000");
+            m.put("total_tva", i + "25.10000000");
+            m.put("total_ttc", i + "150.60000000");
+            m.put("paye", i % 2 == 0 ? "1" : "0");
+            m.put("fk_statut", i % 3);
+            m.put("code_client", i % 4 == 0 ? null : "CU2603-" + i);
+            m.put("note_public", "  Imported from Dolibarr  ");
+            return m;
+        }).toList();
+    }
+
+    @Benchmark
+    public void parseInvoices(Blackhole bh) {
+        for (Map<String, Object> m : invoices) {
+            bh.consume(DolibarrImportHelper.getDolibarrId(m));
+            bh.consume(DolibarrImportHelper.getString(m, "ref"));
+            bh.consume(DolibarrImportHelper.getLong(m, "socid"));
+            bh.consume(DolibarrImportHelper.getLocalDate(m, "date"));
+            bh.consume(DolibarrImportHelper.getLocalDate(m, "date_lim_reglement"));
+            bh.consume(DolibarrImportHelper.getBigDecimal(m, "total_ht"));
+            bh.consume(DolibarrImportHelper.getBigDecimal(m, "total_tva"));
+            bh.consume(DolibarrImportHelper.getBigDecimal(m, "total_ttc"));
+            bh.consume(DolibarrImportHelper.getBoolean(m, "paye"));
+            bh.consume(DolibarrImportHelper.getInteger(m, "fk_statut"));
+            bh.consume(DolibarrImportHelper.thirdPartyCode(m));
+            bh.consume(DolibarrImportHelper.getString(m, "note_public"));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package fr.aplose.erp.mail.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * E-mail template rendering: {@link EmailTemplateService#render(String, Map)} (parse, then render) versus rendering an
+ * already compiled {@link CompiledTemplate}, as {@code render(key, locale, variables)} does for cached templates.
+ * The template is a 2 KB HTML body using 8 variables several times each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplateBenchmark {
+
+    private static final Map<String, String> VARIABLES = Map.of(
+            "customerName", "Dupont SARL", "invoiceRef", "FA2026-00042", "amount", "1 250,00 €",
+            "dueDate", "13/04/2026", "companyName", "Aplose", "contactName", "Marie Martin",
+            "link", "https://erp.example.com/invoices/42", "signature", "L'équipe comptabilité");
+
+    private EmailTemplateService service;
+    private String content;
+    private CompiledTemplate compiled;
+
+    @Setup
+    public void setup() {
+        service = new EmailTemplateService(null);
+        StringBuilder html = new StringBuilder("<html><body>");
+        while (html.length() < 2_000) {
+            for (String variable : VARIABLES.keySet()) {
+                html.append("<p>Lorem ipsum dolor sit amet, {{").append(variable).append("}} consectetur.</p>");
+            }
+        }
+        content = html.append("</body></html>").toString();
+        compiled = CompiledTemplate.parse(content);
+    }
+
+    @Benchmark
+    public String parseAndRender() {
+        return service.render(content, VARIABLES);
+    }
+
+    @Benchmark
+    public String renderCompiled() {
+        return compiled.render(VARIABLES);
+    }
+}
@@ -0,0 +1,75 @@
+package fr.aplose.erp.modules.bank.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statement reading of {@link BankStatementImportService} without the database: 50 000 transactions parsed from
+ * CSV and from CAMT.053, each hashed for the duplicate check as the import does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankStatementParserBenchmark {
+
+    private static final int LINES = 50_000;
+    private static final LocalDate START = LocalDate.of(2026, 1, 1);
+
+    private byte[] csv;
+    private byte[] camt;
+
+    @Setup
+    public void setup() {
+        StringBuilder csvText = new StringBuilder("Date;Libellé;Montant;Référence\n");
+        StringBuilder camtText = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:camt.053.001.02\"><BkToCstmrStmt><Stmt>\n")
+                .append("<Acct><Id><IBAN>FR7611111111111111111111111</IBAN></Id><Ccy>EUR</Ccy></Acct>\n");
+        for (int i = 0; i < LINES; i++) {
+            LocalDate date = START.plusDays(i / 150);
+            boolean credit = i % 3 == 0;
+            String amount = (100 + i % 9000) + "," + String.format("%02d", i % 100);
+            String reference = String.format("FA2026-%05d", i);
+            csvText.append(date.getDayOfMonth()).append('/').append(date.getMonthValue()).append('/')
+                    .append(date.getYear()).append(';')
+                    .append(credit ? "VIR SEPA CUSTOMER " : "PRLV SEPA SUPPLIER ").append(i % 5000).append(';')
+                    .append(credit ? "" : "-").append(amount).append(';').append(reference).append('\n');
+            camtText.append("<Ntry><Amt Ccy=\"EUR\">").append(amount.replace(',', '.')).append("</Amt><CdtDbtInd>")
+                    .append(credit ? "CRDT" : "DBIT").append("</CdtDbtInd><BookgDt><Dt>").append(date)
+                    .append("</Dt></BookgDt><NtryDtls><TxDtls><Refs><EndToEndId>").append(reference)
+                    .append("</EndToEndId></Refs><RltdPties><").append(credit ? "Dbtr" : "Cdtr").append("><Nm>Party ")
+                    .append(i % 5000).append("</Nm></").append(credit ? "Dbtr" : "Cdtr").append("><")
+                    .append(credit ? "DbtrAcct" : "CdtrAcct").append("><Id><IBAN>FR76300010079")
+                    .append(String.format("%014d", i % 5000)).append("</IBAN></Id></").append(credit ? "DbtrAcct" : "CdtrAcct")
+                    .append("></RltdPties><RmtInf><Ustrd>Invoice ").append(reference)
+                    .append("</Ustrd></RmtInf></TxDtls></NtryDtls></Ntry>\n");
+        }
+        camtText.append("</Stmt></BkToCstmrStmt></Document>\n");
+        csv = csvText.toString().getBytes(StandardCharsets.UTF_8);
+        camt = camtText.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long csv() throws IOException {
+        return read(csv, BankStatementParser.Format.CSV);
+    }
+
+    @Benchmark
+    public long camt053() throws IOException {
+        return read(camt, BankStatementParser.Format.CAMT053);
+    }
+
+    private static long read(byte[] statement, BankStatementParser.Format format) throws IOException {
+        long[] hashes = new long[1];
+        BankStatementParser.parse(new ByteArrayInputStream(statement), format, line ->
+                hashes[0] ^= BankStatementParser.hash(1L, line.date(), line.amount(), line.description()));
+        return hashes[0];
+    }
+}
@@ -0,0 +1,74 @@
+package fr.aplose.erp.modules.bank.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bank reconciliation run in memory: 50 000 open invoices of 5000 third parties indexed, then 50 000 bank lines
+ * matched against them, the way {@link BankReconciliationService} does between reading and writing. Half the lines
+ * quote their invoice reference, a quarter only carry the payer's IBAN (a tenth of those settling two invoices at
+ * once), the rest only an amount; the matcher consumes what it allocates, so each invocation starts afresh.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReconciliationMatcherBenchmark {
+
+    private static final int ITEMS = 50_000;
+    private static final int PARTIES = 5_000;
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    private List<ReconciliationMatcher.OpenItem> items;
+    private List<ReconciliationMatcher.Party> parties;
+    private List<ReconciliationMatcher.BankLine> lines;
+
+    @Setup
+    public void setup() {
+        items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(new ReconciliationMatcher.OpenItem(i, i % PARTIES, String.format("FA2026-%05d", i), "EUR",
+                    BigDecimal.valueOf(1_000 + (i * 7919L) % 900_000, 2), TODAY.minusDays(i % 90)));
+        }
+        parties = new ArrayList<>(PARTIES);
+        for (int p = 0; p < PARTIES; p++) {
+            parties.add(new ReconciliationMatcher.Party(p, "Customer " + p, iban(p)));
+        }
+        lines = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            ReconciliationMatcher.OpenItem item = items.get(i);
+            BigDecimal amount = item.remaining();
+            String text;
+            String counterpartyIban = null;
+            switch (i % 4) {
+                case 0, 1 -> text = "VIR SEPA " + item.reference();
+                case 2 -> {
+                    text = "VIREMENT RECU";
+                    counterpartyIban = iban((int) item.thirdPartyId());
+                    if (i % 40 == 2 && i + PARTIES < ITEMS) amount = amount.add(items.get(i + PARTIES).remaining());
+                }
+                default -> text = "VIR INST " + i;
+            }
+            lines.add(new ReconciliationMatcher.BankLine(i, TODAY, amount, "EUR", text, null, counterpartyIban));
+        }
+    }
+
+    @Benchmark
+    public int reconcile() {
+        ReconciliationMatcher matcher = new ReconciliationMatcher();
+        items.forEach(matcher::addItem);
+        parties.forEach(matcher::addParty);
+        return matcher.match(lines).size();
+    }
+
+    private static String iban(int party) {
+        return String.format("FR76300010079%014d", party);
+    }
+}
@@ -0,0 +1,61 @@
+package fr.aplose.erp.modules.commerce.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Invoice#recalculate()} (and {@link InvoiceLine#recalculate()} for each line), run on every invoice save,
+ * for invoices of 10 to 1000 lines with mixed quantities, discounts and VAT rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoiceRecalculateBenchmark {
+
+    private static final BigDecimal[] VAT_RATES = {new BigDecimal("0.2000"), new BigDecimal("0.1000"),
+            new BigDecimal("0.0550"), BigDecimal.ZERO};
+
+    @Param({"10", "100", "1000"})
+    private int lines;
+
+    private Invoice invoice;
+    private InvoiceLine line;
+
+    @Setup
+    public void setup() {
+        invoice = new Invoice();
+        List<InvoiceLine> invoiceLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            InvoiceLine l = new InvoiceLine();
+            l.setInvoice(invoice);
+            l.setSortOrder((short) i);
+            l.setDescription("Line " + i);
+            l.setQuantity(new BigDecimal(1 + i % 7).add(new BigDecimal("0.25").multiply(BigDecimal.valueOf(i % 3))));
+            l.setUnitPrice(new BigDecimal("19.99").add(BigDecimal.valueOf(i)));
+            l.setDiscountPct(i % 5 == 0 ? new BigDecimal("0.1000") : BigDecimal.ZERO);
+            l.setVatRate(VAT_RATES[i % VAT_RATES.length]);
+            invoiceLines.add(l);
+        }
+        invoice.setLines(invoiceLines);
+        line = invoiceLines.get(lines - 1);
+    }
+
+    @Benchmark
+    public BigDecimal invoice() {
+        invoice.recalculate();
+        return invoice.getTotalAmount();
+    }
+
+    @Benchmark
+    public BigDecimal singleLine() {
+        line.recalculate();
+        return line.getLineTotal();
+    }
+}
@@ -0,0 +1,65 @@
+package fr.aplose.erp.modules.reporting.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV writing of the reporting exports: {@link ReportingExportService#csvEscape} over 1000 invoice rows written
+ * the way the exports do, to a buffered writer that discards its output. A tenth of the third-party names need
+ * quoting (comma or quote).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvExportBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    private String[][] rows;
+
+    @Setup
+    public void setup() {
+        rows = new String[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            String name = switch (i % 10) {
+                case 0 -> "Dupont, Martin & Fils";
+                case 5 -> "Le \"Petit\" Atelier";
+                default -> "Customer " + i;
+            };
+            rows[i] = new String[]{"FA2026-" + String.format("%05d", i), name, "2026-03-14", "2026-04-13",
+                    i + "250.0000", (i % 3 == 0 ? "0.0000" : i + "25.5000"), i % 4 == 0 ? "PAID" : "VALIDATED"};
+        }
+    }
+
+    @Benchmark
+    public int escape() {
+        int length = 0;
+        for (String[] row : rows) {
+            for (String cell : row) length += ReportingExportService.csvEscape(cell).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        try (Writer w = new BufferedWriter(Writer.nullWriter())) {
+            w.write("Reference,Third party,Date issued,Date due,Total,Remaining,Status\n");
+            for (String[] row : rows) {
+                w.write(ReportingExportService.csvEscape(row[0]) + "," +
+                        ReportingExportService.csvEscape(row[1]) + "," +
+                        ReportingExportService.csvEscape(row[2]) + "," +
+                        ReportingExportService.csvEscape(row[3]) + "," +
+                        ReportingExportService.csvEscape(row[4]) + "," +
+                        ReportingExportService.csvEscape(row[5]) + "," +
+                        ReportingExportService.csvEscape(row[6]) + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package fr.aplose.erp.modules.webhook.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature of every webhook delivery: {@link WebhookSender#hmacHex} (HMAC-SHA256, hex encoded) on payloads of
+ * 256 bytes to 64 KB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookSignatureBenchmark {
+
+    private static final String SECRET = "whsec_3f9a6c1e0b7d4e2a8c5f1b9d7e3a6c0f";
+
+    @Param({"256", "4096", "65536"})
+    private int payloadBytes;
+
+    private String body;
+
+    @Setup
+    public void setup() {
+        StringBuilder json = new StringBuilder("{\"event\":\"INVOICE.VALIDATED\",\"lines\":[");
+        while (json.length() < payloadBytes - 2) {
+            json.append("{\"description\":\"Consulting\",\"quantity\":1,\"unitPrice\":100},");
+        }
+        json.setLength(payloadBytes - 2);
+        body = json.append("]}").toString();
+    }
+
+    @Benchmark
+    public String sign() {
+        return WebhookSender.hmacHex(SECRET, body);
+    }
+}
@@ -5,6 +5,8 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Getter
 @Setter
 @Component
@@ -15,6 +17,14 @@ public class AiProperties {
     private String apiKey = "";
     private String baseUrl = "https://api.openai.com";
     private String model = "gpt-4o-mini";
+    private Duration connectTimeout = Duration.ofSeconds(15);
+    /** Maximum time to wait for a completion. */
+    private Duration readTimeout = Duration.ofSeconds(60);
+    /** Identical completions (same tenant, endpoint, model and prompts) are answered from cache for this long; 0 disables the cache. */
+    private Duration responseCacheTtl = Duration.ofMinutes(10);
+    private long responseCacheMaxEntries = 2_000;
+    /** Tenant AI configurations are re-read from the database after this delay (saving one refreshes it at once). */
+    private Duration configCacheTtl = Duration.ofMinutes(5);
 
     /** Configured when enabled and base URL set. API key optional (e.g. Ollama). */
     public boolean isConfigured() {
@@ -3,6 +3,8 @@ package fr.aplose.erp.ai.provider;
 import fr.aplose.erp.ai.config.EffectiveAiConfig;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Generic interface for calling an LLM (OpenAI, Azure OpenAI, Ollama, or compatible).
@@ -20,6 +22,21 @@ public interface AiProvider {
      */
     String completeWithConfig(EffectiveAiConfig config, String systemPrompt, String userMessage, Map<String, Object> context);
 
+    /**
+     * Streaming variant of {@link #completeWithConfig}: fragments of the response are passed to {@code onToken}
+     * as the model produces them, from a background thread. The returned future completes with the whole text
+     * (null on failure); cancelling it aborts the request.
+     * The default implementation passes the blocking completion as a single fragment.
+     */
+    default CompletableFuture<String> streamWithConfig(EffectiveAiConfig config, String systemPrompt, String userMessage,
+                                                       Map<String, Object> context, Consumer<String> onToken) {
+        return CompletableFuture.supplyAsync(() -> {
+            String text = completeWithConfig(config, systemPrompt, userMessage, context);
+            if (text != null) onToken.accept(text);
+            return text;
+        }, task -> Thread.ofVirtual().start(task));
+    }
+
     /**
      * Legacy: uses global AiProperties. Prefer completeWithConfig for tenant-aware calls.
      */
@@ -2,82 +2,238 @@ package fr.aplose.erp.ai.provider;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import fr.aplose.erp.ai.config.AiProperties;
 import fr.aplose.erp.ai.config.EffectiveAiConfig;
-import lombok.RequiredArgsConstructor;
+import fr.aplose.erp.tenant.context.TenantContext;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Calls an OpenAI-compatible chat completions API (OpenAI, Azure OpenAI, or Ollama).
  * Ollama: base_url e.g. http://localhost:11434, no api_key. Azure: full deployment URL.
+ * <p>
+ * Requests go through a single shared {@link HttpClient} (pooled connections). Responses are cached per tenant,
+ * keyed by a hash of the endpoint, model and resolved prompts, and concurrent identical requests share the call
+ * in flight, so the same prompt opened by several users costs one round trip.
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class OpenAiCompatibleProvider implements AiProvider {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    private static final int CONNECT_TIMEOUT_MS = 15_000;
-    private static final int READ_TIMEOUT_MS = 60_000;
     private static final String DEFAULT_MODEL = "gpt-4o-mini";
 
     private final AiProperties properties;
+    private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    /** Completed and in-flight completions; a failed or empty completion is removed, so it is retried next time. */
+    private final AsyncCache<CompletionKey, String> completions;
+
+    public OpenAiCompatibleProvider(AiProperties properties) {
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .executor(httpExecutor)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        Duration ttl = properties.getResponseCacheTtl();
+        this.completions = Caffeine.newBuilder()
+                .maximumSize(properties.getResponseCacheMaxEntries())
+                // Without a TTL entries are still used to share in-flight calls, then expire at once
+                .expireAfterWrite(ttl != null && ttl.isPositive() ? ttl : Duration.ofNanos(1))
+                .buildAsync();
+    }
 
     @Override
     public String completeWithConfig(EffectiveAiConfig config, String systemPrompt, String userMessage, Map<String, Object> context) {
         if (config == null || !config.isConfigured()) return null;
-        String resolvedUser = resolvePlaceholders(userMessage, context);
-        String url = buildUrl(config.getBaseUrl());
-        List<Map<String, String>> messages = new ArrayList<>();
-        if (systemPrompt != null && !systemPrompt.isBlank()) {
-            messages.add(Map.of("role", "system", "content", resolvePlaceholders(systemPrompt, context)));
+        ChatRequest chat = chatRequest(config, systemPrompt, userMessage, context);
+        CompletableFuture<String> completion = completions.get(chat.key(TenantContext.getCurrentTenantId()), (k, executor) -> send(chat));
+        try {
+            return completion.get(properties.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            log.warn("AI completion timed out after {}", properties.getReadTimeout());
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("AI completion failed: {}", e.getCause().getMessage());
+            return null;
         }
-        messages.add(Map.of("role", "user", "content", resolvedUser));
+    }
+
+    /**
+     * Streams the response ({@code stream: true}, server-sent events of {@code choices[0].delta.content}) on a
+     * virtual thread. A response already cached or in flight for the same prompt is passed as a single fragment
+     * instead; a streamed response is cached once complete. A stream that ends before {@code [DONE]} or a
+     * {@code finish_reason} (connection dropped, server restarted) completes with null, so partial text is never cached.
+     */
+    @Override
+    public CompletableFuture<String> streamWithConfig(EffectiveAiConfig config, String systemPrompt, String userMessage,
+                                                      Map<String, Object> context, Consumer<String> onToken) {
+        if (config == null || !config.isConfigured()) return CompletableFuture.completedFuture(null);
+        ChatRequest chat = chatRequest(config, systemPrompt, userMessage, context);
+        CompletionKey key = chat.key(TenantContext.getCurrentTenantId());
+        CompletableFuture<String> known = completions.getIfPresent(key);
+        if (known != null) {
+            return known.handle((text, e) -> {
+                if (text != null) onToken.accept(text);
+                return text;
+            });
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        httpExecutor.execute(() -> stream(chat, onToken, result));
+        result.thenAccept(text -> {
+            if (text != null) completions.put(key, CompletableFuture.completedFuture(text));
+        });
+        return result;
+    }
+
+    @Override
+    public String complete(String systemPrompt, String userMessage, Map<String, Object> context) {
+        if (!properties.isConfigured()) return null;
+        return completeWithConfig(properties.toEffectiveConfig(), systemPrompt, userMessage, context);
+    }
 
+    private ChatRequest chatRequest(EffectiveAiConfig config, String systemPrompt, String userMessage, Map<String, Object> context) {
         String modelName = config.getModel() != null && !config.getModel().isBlank() ? config.getModel() : DEFAULT_MODEL;
+        String resolvedSystem = systemPrompt != null && !systemPrompt.isBlank() ? resolvePlaceholders(systemPrompt, context) : null;
+        return new ChatRequest(buildUrl(config.getBaseUrl()), config.getApiKey(), modelName, resolvedSystem,
+                resolvePlaceholders(userMessage, context));
+    }
+
+    private CompletableFuture<String> send(ChatRequest chat) {
+        try {
+            return httpClient.sendAsync(httpRequest(chat, false), HttpResponse.BodyHandlers.ofString())
+                    .thenApply(OpenAiCompatibleProvider::content);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void stream(ChatRequest chat, Consumer<String> onToken, CompletableFuture<String> result) {
+        if (result.isDone()) return;
+        try {
+            HttpResponse<InputStream> response = httpClient.send(httpRequest(chat, true), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                // Closing the body aborts a blocked read, so cancelling the result stops the request at once
+                result.whenComplete((text, e) -> closeQuietly(body));
+                if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                    log.warn("AI API returned {}: {}", response.statusCode(),
+                            new String(body.readNBytes(2_000), StandardCharsets.UTF_8));
+                    result.complete(null);
+                    return;
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+                StringBuilder text = new StringBuilder();
+                boolean finished = false;
+                String line;
+                while (!result.isDone() && (line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) continue;
+                    String data = line.substring(5).trim();
+                    if (data.equals("[DONE]")) {
+                        finished = true;
+                        break;
+                    }
+                    JsonNode choice = OBJECT_MAPPER.readTree(data).path("choices").path(0);
+                    String token = choice.path("delta").path("content").asText("");
+                    if (!token.isEmpty()) {
+                        text.append(token);
+                        onToken.accept(token);
+                    }
+                    if (!choice.path("finish_reason").asText("").isEmpty()) finished = true;
+                }
+                if (!finished && !result.isDone()) {
+                    log.warn("AI stream ended before the response was complete ({} chars received)", text.length());
+                }
+                result.complete(finished && !text.isEmpty() ? text.toString() : null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.complete(null);
+        } catch (Exception e) {
+            if (!result.isDone()) log.warn("AI streaming failed: {}", e.getMessage());
+            result.complete(null);
+        }
+    }
+
+    private HttpRequest httpRequest(ChatRequest chat, boolean stream) throws IOException {
+        List<Map<String, String>> messages = new ArrayList<>();
+        if (chat.systemPrompt() != null) {
+            messages.add(Map.of("role", "system", "content", chat.systemPrompt()));
+        }
+        messages.add(Map.of("role", "user", "content", chat.userMessage()));
         Map<String, Object> body = Map.of(
-                "model", modelName,
+                "model", chat.model(),
                 "messages", messages,
                 "max_tokens", 1024,
-                "temperature", 0.3
+                "temperature", 0.3,
+                "stream", stream
         );
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(chat.url()))
+                .timeout(properties.getReadTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body), StandardCharsets.UTF_8));
+        if (stream) {
+            request.header("Accept", "text/event-stream");
+        }
+        if (chat.apiKey() != null && !chat.apiKey().isBlank()) {
+            request.header("Authorization", "Bearer " + chat.apiKey().trim());
+        }
+        return request.build();
+    }
 
+    private static void closeQuietly(InputStream in) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            if (config.getApiKey() != null && !config.getApiKey().isBlank()) {
-                headers.setBearerAuth(config.getApiKey().trim());
-            }
-            HttpEntity<String> entity = new HttpEntity<>(OBJECT_MAPPER.writeValueAsString(body), headers);
-            RestTemplate rest = createRestTemplate();
-            ResponseEntity<String> response = rest.exchange(url, HttpMethod.POST, entity, String.class);
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.warn("AI API returned {}: {}", response.getStatusCode(), response.getBody());
-                return null;
-            }
-            JsonNode root = OBJECT_MAPPER.readTree(response.getBody());
-            JsonNode choices = root.path("choices");
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String content(HttpResponse<String> response) {
+        if (response.statusCode() < 200 || response.statusCode() >= 300 || response.body() == null) {
+            log.warn("AI API returned {}: {}", response.statusCode(), response.body());
+            return null;
+        }
+        try {
+            JsonNode choices = OBJECT_MAPPER.readTree(response.body()).path("choices");
             if (choices.isEmpty()) return null;
             return choices.get(0).path("message").path("content").asText(null);
         } catch (Exception e) {
-            log.warn("AI completion failed: {}", e.getMessage());
+            log.warn("AI API returned an unreadable response: {}", e.getMessage());
             return null;
         }
     }
 
-    @Override
-    public String complete(String systemPrompt, String userMessage, Map<String, Object> context) {
-        if (!properties.isConfigured()) return null;
-        return completeWithConfig(properties.toEffectiveConfig(), systemPrompt, userMessage, context);
-    }
-
     private static String buildUrl(String base) {
         if (base == null || base.isBlank()) return null;
         String b = base.trim();
@@ -86,7 +242,7 @@ public class OpenAiCompatibleProvider implements AiProvider {
         return b + "/v1/chat/completions";
     }
 
-    private static String resolvePlaceholders(String template, Map<String, Object> context) {
+    static String resolvePlaceholders(String template, Map<String, Object> context) {
         if (template == null) return "";
         if (context == null || context.isEmpty()) return template;
         String out = template;
@@ -98,13 +254,32 @@ public class OpenAiCompatibleProvider implements AiProvider {
         return out;
     }
 
-    private static RestTemplate createRestTemplate() {
-        RestTemplate rest = new RestTemplate();
-        org.springframework.http.client.SimpleClientHttpRequestFactory f =
-                new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        f.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        f.setReadTimeout(READ_TIMEOUT_MS);
-        rest.setRequestFactory(f);
-        return rest;
+    /** SHA-256 of the request parts, so that long prompts are not kept as cache keys. */
+    private static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                if (part != null) digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
+
+    @PreDestroy
+    void shutdown() {
+        httpExecutor.shutdownNow();
+    }
+
+    /** Request with its prompts resolved. */
+    private record ChatRequest(String url, String apiKey, String model, String systemPrompt, String userMessage) {
+
+        CompletionKey key(String tenantId) {
+            return new CompletionKey(tenantId, hash(url, apiKey, model, systemPrompt, userMessage));
+        }
+    }
+
+    private record CompletionKey(String tenantId, String requestHash) {}
 }
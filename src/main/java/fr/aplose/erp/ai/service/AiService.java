@@ -1,23 +1,26 @@
 package fr.aplose.erp.ai.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import fr.aplose.erp.ai.config.AiProperties;
 import fr.aplose.erp.ai.config.EffectiveAiConfig;
 import fr.aplose.erp.ai.entity.TenantAiConfig;
 import fr.aplose.erp.ai.provider.AiProvider;
 import fr.aplose.erp.ai.repository.TenantAiConfigRepository;
+import fr.aplose.erp.core.transaction.AfterCommit;
 import fr.aplose.erp.tenant.context.TenantContext;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * High-level AI service: prompts paramétrables, config tenant (Ollama) ou globale.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AiService {
 
@@ -26,15 +29,26 @@ public class AiService {
     private final AiProperties properties;
     private final AiProvider provider;
     private final TenantAiConfigRepository tenantAiConfigRepository;
+    /** Tenant overrides by tenant id (empty when the tenant has none or an incomplete one). */
+    private final Cache<String, Optional<EffectiveAiConfig>> tenantConfigs;
+
+    public AiService(AiProperties properties, AiProvider provider, TenantAiConfigRepository tenantAiConfigRepository) {
+        this.properties = properties;
+        this.provider = provider;
+        this.tenantAiConfigRepository = tenantAiConfigRepository;
+        this.tenantConfigs = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(properties.getConfigCacheTtl())
+                .build();
+    }
 
     /** Resolve config: tenant override (e.g. Ollama URL) then global app.ai. */
     public EffectiveAiConfig getEffectiveConfig(String tenantId) {
         if (tenantId != null && !tenantId.isBlank()) {
-            Optional<TenantAiConfig> tenant = tenantAiConfigRepository.findByTenantId(tenantId);
-            if (tenant.isPresent()) {
-                EffectiveAiConfig c = tenant.get().toEffectiveConfig();
-                if (c.isConfigured()) return c;
-            }
+            Optional<EffectiveAiConfig> tenant = tenantConfigs.get(tenantId, id -> tenantAiConfigRepository.findByTenantId(id)
+                    .map(TenantAiConfig::toEffectiveConfig)
+                    .filter(EffectiveAiConfig::isConfigured));
+            if (tenant.isPresent()) return tenant.get();
         }
         return properties.isConfigured() ? properties.toEffectiveConfig() : null;
     }
@@ -60,12 +74,26 @@ public class AiService {
     public String suggestLineDescription(String shortDescription, String productNameOrNull) {
         EffectiveAiConfig config = getEffectiveConfig(TenantContext.getCurrentTenantId());
         if (config == null || !config.isConfigured()) return null;
+        String result = provider.completeWithConfig(config, SYSTEM_PROMPT_LINE, lineDescriptionPrompt(shortDescription, productNameOrNull), Map.of());
+        return result != null ? result.trim() : null;
+    }
+
+    /**
+     * Streaming variant of {@link #suggestLineDescription}: fragments are passed to {@code onToken} as they arrive.
+     * Returns null when AI is not configured; cancelling the future aborts the completion.
+     */
+    public CompletableFuture<String> streamLineDescription(String shortDescription, String productNameOrNull, Consumer<String> onToken) {
+        EffectiveAiConfig config = getEffectiveConfig(TenantContext.getCurrentTenantId());
+        if (config == null || !config.isConfigured()) return null;
+        return provider.streamWithConfig(config, SYSTEM_PROMPT_LINE, lineDescriptionPrompt(shortDescription, productNameOrNull), Map.of(), onToken);
+    }
+
+    private static String lineDescriptionPrompt(String shortDescription, String productNameOrNull) {
         String user = "Propose un libellé de ligne pour un devis ou une facture, court et professionnel, à partir de la description suivante : « " + (shortDescription != null ? shortDescription : "") + " ».";
         if (productNameOrNull != null && !productNameOrNull.isBlank()) {
             user += " Produit ou service concerné : " + productNameOrNull + ".";
         }
-        String result = provider.completeWithConfig(config, SYSTEM_PROMPT_LINE, user, Map.of());
-        return result != null ? result.trim() : null;
+        return user;
     }
 
     private static final String SYSTEM_PROMPT_TICKET = "Tu es un assistant support. À partir du sujet, de la description et des commentaires d'un ticket, propose une courte réponse professionnelle et courtoise pour le client. Réponds uniquement par le texte de la réponse, sans préambule. Langue: français.";
@@ -74,12 +102,22 @@ public class AiService {
     public String suggestTicketReply(String subject, String description, String commentsText) {
         EffectiveAiConfig config = getEffectiveConfig(TenantContext.getCurrentTenantId());
         if (config == null || !config.isConfigured()) return null;
-        String context = "Sujet: " + (subject != null ? subject : "") + "\nDescription: " + (description != null ? description : "") + "\nCommentaires: " + (commentsText != null ? commentsText : "");
-        String user = "Propose une réponse courte pour ce ticket:\n" + context;
-        String result = provider.completeWithConfig(config, SYSTEM_PROMPT_TICKET, user, Map.of());
+        String result = provider.completeWithConfig(config, SYSTEM_PROMPT_TICKET, ticketReplyPrompt(subject, description, commentsText), Map.of());
         return result != null ? result.trim() : null;
     }
 
+    /** Streaming variant of {@link #suggestTicketReply}, see {@link #streamLineDescription}. */
+    public CompletableFuture<String> streamTicketReply(String subject, String description, String commentsText, Consumer<String> onToken) {
+        EffectiveAiConfig config = getEffectiveConfig(TenantContext.getCurrentTenantId());
+        if (config == null || !config.isConfigured()) return null;
+        return provider.streamWithConfig(config, SYSTEM_PROMPT_TICKET, ticketReplyPrompt(subject, description, commentsText), Map.of(), onToken);
+    }
+
+    private static String ticketReplyPrompt(String subject, String description, String commentsText) {
+        String context = "Sujet: " + (subject != null ? subject : "") + "\nDescription: " + (description != null ? description : "") + "\nCommentaires: " + (commentsText != null ? commentsText : "");
+        return "Propose une réponse courte pour ce ticket:\n" + context;
+    }
+
     private static final String SYSTEM_PROMPT_SCORE = "Tu es un assistant commercial. Donne une estimation de la probabilité de conversion (de 0 à 100%) pour ce devis, avec une phrase courte justifiant. Format de réponse: uniquement un nombre entier (0-100) suivi d'un espace puis d'une courte phrase. Exemple: 65 Le client est engagé et le montant est cohérent. Langue: français.";
 
     /** Score de probabilité de conversion pour un devis (contexte: référence, titre, montant, statut, client). */
@@ -112,6 +150,8 @@ public class AiService {
         c.setBaseUrl(baseUrl != null ? baseUrl.trim() : "");
         c.setApiKey(apiKey != null && !apiKey.isBlank() ? apiKey.trim() : null);
         c.setModel(model != null && !model.isBlank() ? model.trim() : null);
-        return tenantAiConfigRepository.save(c);
+        TenantAiConfig saved = tenantAiConfigRepository.save(c);
+        AfterCommit.run(() -> tenantConfigs.invalidate(tenantId));
+        return saved;
     }
 }
@@ -1,5 +1,6 @@
 package fr.aplose.erp.ai.web;
 
+import fr.aplose.erp.ai.config.AiProperties;
 import fr.aplose.erp.ai.service.AiService;
 import fr.aplose.erp.modules.commerce.repository.InvoiceRepository;
 import fr.aplose.erp.modules.commerce.repository.ProposalRepository;
@@ -8,11 +9,19 @@ import fr.aplose.erp.modules.ticketing.entity.Ticket;
 import fr.aplose.erp.modules.ticketing.service.TicketService;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -23,11 +32,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AiController {
 
+    private static final long STREAM_TIMEOUT_MARGIN_MS = 5_000;
+
     private final AiService aiService;
     private final TicketService ticketService;
     private final ProposalRepository proposalRepository;
     private final ThirdPartyRepository thirdPartyRepository;
     private final InvoiceRepository invoiceRepository;
+    private final AiProperties aiProperties;
 
     @GetMapping("/status")
     @PreAuthorize("isAuthenticated()")
@@ -51,6 +63,18 @@ public class AiController {
         return ResponseEntity.ok(Map.of("available", true, "suggestion", suggestion != null ? suggestion : ""));
     }
 
+    /**
+     * Streaming variant of /suggest-line, as server-sent events: {@code token} events carry {@code {"text": "..."}}
+     * fragments as the model produces them, then a {@code done} event carries {@code {"available", "suggestion"}}.
+     */
+    @PostMapping(value = "/suggest-line/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('AI_USE')")
+    public SseEmitter streamSuggestLine(@RequestBody Map<String, String> body) {
+        String description = body != null ? body.get("description") : null;
+        String productName = body != null ? body.get("productName") : null;
+        return relay(onToken -> aiService.streamLineDescription(description, productName, onToken));
+    }
+
     /**
      * Suggests a reply to a ticket. POST body: { "ticketId": 123 }
      */
@@ -72,6 +96,24 @@ public class AiController {
         return ResponseEntity.ok(Map.of("available", true, "suggestion", suggestion != null ? suggestion : ""));
     }
 
+    /**
+     * Streaming variant of /suggest-ticket-reply, same events as /suggest-line/stream.
+     */
+    @PostMapping(value = "/suggest-ticket-reply/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('AI_USE') and hasAuthority('TICKETING_UPDATE')")
+    public ResponseEntity<SseEmitter> streamSuggestTicketReply(@RequestBody Map<String, Object> body) {
+        Long ticketId = body != null && body.get("ticketId") != null ? ((Number) body.get("ticketId")).longValue() : null;
+        if (ticketId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        Ticket ticket = ticketService.findById(ticketId);
+        String commentsText = ticket.getComments().stream()
+                .map(c -> c.getContent() != null ? c.getContent() : "")
+                .collect(Collectors.joining("\n"));
+        return ResponseEntity.ok(relay(onToken ->
+                aiService.streamTicketReply(ticket.getSubject(), ticket.getDescription(), commentsText, onToken)));
+    }
+
     /**
      * Suggests conversion score for a proposal. POST body: { "proposalId": 456 }
      */
@@ -123,4 +165,45 @@ public class AiController {
         String suggestion = aiService.suggestNextActionForThirdParty(ctx.toString());
         return ResponseEntity.ok(Map.of("available", true, "suggestion", suggestion != null ? suggestion : ""));
     }
+
+    /**
+     * Relays a streamed completion to the browser. The request thread is released at once: fragments are sent
+     * from the provider's virtual thread, and the completion is cancelled when the browser disconnects
+     * (failed write, connection error or timeout).
+     */
+    private SseEmitter relay(Function<Consumer<String>, CompletableFuture<String>> completion) {
+        SseEmitter emitter = new SseEmitter(aiProperties.getReadTimeout().toMillis() + STREAM_TIMEOUT_MARGIN_MS);
+        CompletableFuture<String> future = completion.apply(token -> {
+            try {
+                emitter.send(SseEmitter.event().name("token").data(Map.of("text", token), MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // Thrown into the provider, which aborts the request
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (future == null) {
+            sendDone(emitter, false, null);
+            return emitter;
+        }
+        emitter.onTimeout(() -> future.cancel(true));
+        emitter.onError(e -> future.cancel(true));
+        emitter.onCompletion(() -> future.cancel(true));
+        future.whenComplete((text, e) -> {
+            if (!future.isCancelled()) sendDone(emitter, true, text);
+        });
+        return emitter;
+    }
+
+    private static void sendDone(SseEmitter emitter, boolean available, String suggestion) {
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("available", available);
+            data.put("suggestion", suggestion != null ? suggestion.trim() : (available ? "" : null));
+            emitter.send(SseEmitter.event().name("done").data(data, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // Browser already gone
+            emitter.completeWithError(e);
+        }
+    }
 }
@@ -36,14 +36,14 @@ public class InvoiceApiController {
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String status,
             @PageableDefault(size = 20) Pageable pageable) {
-        return invoiceService.findAll(q, type, status, pageable).map(this::toResponse);
+        return invoiceService.findAllWithLines(q, type, status, pageable).map(this::toResponse);
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get invoice by ID")
     public ResponseEntity<InvoiceResponseDto> get(@PathVariable Long id) {
         try {
-            return ResponseEntity.ok(toResponse(invoiceService.findById(id)));
+            return ResponseEntity.ok(toResponse(invoiceService.findByIdWithLines(id)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
@@ -79,7 +79,7 @@ public class InvoiceApiController {
     public ResponseEntity<InvoiceResponseDto> validate(@PathVariable Long id, @AuthenticationPrincipal ErpUserDetails user) {
         try {
             invoiceService.validate(id, user.getUserId());
-            return ResponseEntity.ok(toResponse(invoiceService.findById(id)));
+            return ResponseEntity.ok(toResponse(invoiceService.findByIdWithLines(id)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         } catch (IllegalStateException e) {
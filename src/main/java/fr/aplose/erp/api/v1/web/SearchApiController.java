@@ -0,0 +1,40 @@
+package fr.aplose.erp.api.v1.web;
+
+import fr.aplose.erp.core.search.SearchDocumentType;
+import fr.aplose.erp.core.search.SearchHit;
+import fr.aplose.erp.core.search.SearchIndexService;
+import fr.aplose.erp.core.search.SearchProperties;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/search")
+@RequiredArgsConstructor
+@Tag(name = "Search", description = "Global full-text search")
+public class SearchApiController {
+
+    private final SearchIndexService searchIndexService;
+    private final SearchProperties searchProperties;
+
+    @GetMapping
+    @Operation(summary = "Search third parties, contacts, invoices, proposals, products and tickets, best matches first")
+    public List<SearchHit> search(@RequestParam String q,
+                                  @RequestParam(defaultValue = "20") int limit,
+                                  Authentication authentication) {
+        String tenantId = TenantContext.getCurrentTenantId();
+        if (tenantId == null) return List.of();
+        List<String> authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return searchIndexService.search(tenantId, q, SearchDocumentType.visibleWith(authorities),
+                Math.min(Math.max(limit, 1), searchProperties.getMaxResults()));
+    }
+}
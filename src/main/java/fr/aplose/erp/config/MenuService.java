@@ -1,10 +1,13 @@
 package fr.aplose.erp.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import fr.aplose.erp.config.dto.SidebarMenuEntry;
 import fr.aplose.erp.config.dto.SidebarMenuSection;
 import fr.aplose.erp.modules.nocode.dto.NoCodeMenuEntry;
 import fr.aplose.erp.tenant.module.CoreModule;
 import fr.aplose.erp.tenant.module.MenuGroup;
+import fr.aplose.erp.tenant.service.TenantModuleSnapshot;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -18,6 +21,11 @@ import java.util.Set;
 @Service
 public class MenuService {
 
+    /** Sidebar structure per (module snapshot version, authority set); only the active flags differ between requests. */
+    private final Cache<SidebarKey, List<SidebarMenuSection>> sidebarTemplates = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
     /** Admin/Settings entries: path, labelKey, icon, permission (no moduleCode). */
     private static final List<SettingsEntryDef> SETTINGS_ENTRIES = List.of(
             new SettingsEntryDef("/admin/users", "nav.users", "bi-people", "USER_READ"),
@@ -35,6 +43,36 @@ public class MenuService {
             new SettingsEntryDef("/admin/dolibarr-import", "dolibarr.import.title", "bi-cloud-download", "DOLIBARR_IMPORT")
     );
 
+    /**
+     * Returns the sidebar for a tenant module snapshot, memoized per snapshot version and authority set.
+     * The memoized structure is never exposed: entries are copied with their active flag set for the request URI.
+     */
+    public List<SidebarMenuSection> getSidebarSections(String requestURI, TenantModuleSnapshot snapshot, Set<String> userAuthorities) {
+        if (snapshot == null) {
+            return buildSidebarSections(requestURI, Set.of(), List.of(), userAuthorities);
+        }
+        Set<String> authorities = userAuthorities != null ? Set.copyOf(userAuthorities) : Set.of();
+        List<SidebarMenuSection> template = sidebarTemplates.get(new SidebarKey(snapshot.version(), authorities),
+                k -> buildSidebarSections(null, snapshot.enabledModuleCodes(), snapshot.noCodeMenuEntries(), authorities));
+        return withActiveFlags(template, requestURI != null ? requestURI : "");
+    }
+
+    private static List<SidebarMenuSection> withActiveFlags(List<SidebarMenuSection> template, String uri) {
+        List<SidebarMenuSection> sections = new ArrayList<>(template.size());
+        for (SidebarMenuSection t : template) {
+            List<SidebarMenuEntry> entries = new ArrayList<>(t.getEntries().size());
+            boolean expanded = false;
+            for (SidebarMenuEntry e : t.getEntries()) {
+                boolean active = uri.startsWith(e.getPath());
+                expanded |= active;
+                entries.add(new SidebarMenuEntry(e.getPath(), e.getLabelKey(), e.getLabel(), e.getIcon(),
+                        e.getPermission(), e.getModuleCode(), active));
+            }
+            sections.add(new SidebarMenuSection(t.getId(), t.getLabelKey(), entries, expanded));
+        }
+        return sections;
+    }
+
     /**
      * Builds the list of sidebar sections in menu group order.
      * Only includes entries the user is allowed to see (permission check done here so sec:authorize is not needed in the template).
@@ -122,4 +160,6 @@ public class MenuService {
     }
 
     private record SettingsEntryDef(String path, String labelKey, String icon, String permission) {}
+
+    private record SidebarKey(long snapshotVersion, Set<String> authorities) {}
 }
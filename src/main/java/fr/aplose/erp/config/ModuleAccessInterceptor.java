@@ -1,6 +1,7 @@
 package fr.aplose.erp.config;
 
 import fr.aplose.erp.tenant.context.TenantContext;
+import fr.aplose.erp.tenant.module.CoreModule;
 import fr.aplose.erp.tenant.service.TenantModuleService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -8,41 +9,41 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Interceptor that blocks access to module URLs when the module is disabled for the current tenant.
+ * The owning module is found through a path-segment trie of every {@link CoreModule#getBasePath()},
+ * and its state is read from the tenant's cached module snapshot (no query per request).
  */
 @Component
 @RequiredArgsConstructor
 public class ModuleAccessInterceptor implements HandlerInterceptor {
 
-    private static final Map<String, String> PATH_PREFIX_TO_MODULE = Map.ofEntries(
-            Map.entry("/third-parties", "CRM_THIRD_PARTY"),
-            Map.entry("/contacts", "CRM_CONTACT"),
-            Map.entry("/crm/activities", "CRM_ACTIVITY"),
-            Map.entry("/proposals", "COMMERCE_PROPOSAL"),
-            Map.entry("/pipeline", "PIPELINE"),
-            Map.entry("/orders", "COMMERCE_ORDER"),
-            Map.entry("/invoices", "COMMERCE_INVOICE"),
-            Map.entry("/follow-up", "FOLLOW_UP"),
-            Map.entry("/contracts", "BUSINESS_CONTRACT"),
-            Map.entry("/products", "CATALOG_PRODUCT"),
-            Map.entry("/projects", "PROJECT"),
-            Map.entry("/agenda", "AGENDA"),
-            Map.entry("/bank", "BANK"),
-            Map.entry("/treasury", "TREASURY"),
-            Map.entry("/accounting", "ACCOUNTING"),
-            Map.entry("/hr", "HR"),
-            Map.entry("/leave-requests", "LEAVE_REQUEST"),
-            Map.entry("/ged", "GED"),
-            Map.entry("/ticketing", "TICKETING"),
-            Map.entry("/reporting", "REPORTING"),
-            Map.entry("/automation", "AUTOMATION")
-    );
+    private static final PathPrefixTrie<CoreModule> MODULE_BY_PATH = buildTrie();
 
     private final TenantModuleService tenantModuleService;
 
+    /**
+     * Path patterns the interceptor must be registered on (base path and everything below it, for every core module).
+     */
+    public static List<String> pathPatterns() {
+        List<String> patterns = new ArrayList<>();
+        for (CoreModule core : CoreModule.values()) {
+            patterns.add(core.getBasePath());
+            patterns.add(core.getBasePath() + "/**");
+        }
+        return patterns;
+    }
+
+    /** Core module owning the given context-relative path, or null. */
+    static CoreModule findModule(String path) {
+        return MODULE_BY_PATH.find(path);
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         String tenantId = TenantContext.getCurrentTenantId();
@@ -54,17 +55,20 @@ public class ModuleAccessInterceptor implements HandlerInterceptor {
         if (contextPath != null && path.startsWith(contextPath)) {
             path = path.substring(contextPath.length());
         }
-        if (!path.startsWith("/")) path = "/" + path;
 
-        for (Map.Entry<String, String> e : PATH_PREFIX_TO_MODULE.entrySet()) {
-            if (path.equals(e.getKey()) || path.startsWith(e.getKey() + "/")) {
-                if (!tenantModuleService.isModuleEnabled(tenantId, e.getValue())) {
-                    response.sendRedirect(request.getContextPath() + "/dashboard?moduleDisabled=1");
-                    return false;
-                }
-                break;
-            }
+        CoreModule module = findModule(path);
+        if (module != null && !tenantModuleService.getSnapshot(tenantId).isEnabled(module)) {
+            response.sendRedirect(request.getContextPath() + "/dashboard?moduleDisabled=1");
+            return false;
         }
         return true;
     }
+
+    private static PathPrefixTrie<CoreModule> buildTrie() {
+        Map<String, CoreModule> prefixes = new HashMap<>();
+        for (CoreModule core : CoreModule.values()) {
+            prefixes.put(core.getBasePath(), core);
+        }
+        return PathPrefixTrie.of(prefixes);
+    }
 }
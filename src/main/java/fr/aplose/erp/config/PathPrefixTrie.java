@@ -0,0 +1,66 @@
+package fr.aplose.erp.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable path-segment trie mapping URL prefixes (e.g. "/crm/activities") to a value.
+ * A lookup walks at most one node per path segment and returns the value of the longest matching prefix,
+ * so its cost does not depend on the number of registered prefixes.
+ * Matching is segment-based: "/bank" matches "/bank" and "/bank/1" but not "/banking".
+ */
+public final class PathPrefixTrie<T> {
+
+    private final Node<T> root;
+
+    private PathPrefixTrie(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds a trie from prefix -> value entries. Prefixes must start with "/".
+     */
+    public static <T> PathPrefixTrie<T> of(Map<String, T> prefixes) {
+        Node<T> root = new Node<>();
+        for (Map.Entry<String, T> e : prefixes.entrySet()) {
+            String prefix = e.getKey();
+            if (prefix == null || !prefix.startsWith("/")) {
+                throw new IllegalArgumentException("Path prefix must start with '/': " + prefix);
+            }
+            Node<T> node = root;
+            for (String segment : prefix.substring(1).split("/")) {
+                if (segment.isEmpty()) continue;
+                node = node.children.computeIfAbsent(segment, s -> new Node<>());
+            }
+            node.value = e.getValue();
+        }
+        return new PathPrefixTrie<>(root);
+    }
+
+    /**
+     * Returns the value of the longest registered prefix of the path, or null if none matches.
+     */
+    public T find(String path) {
+        if (path == null) return null;
+        Node<T> node = root;
+        T match = root.value;
+        int len = path.length();
+        int start = path.startsWith("/") ? 1 : 0;
+        while (start <= len) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = len;
+            if (end > start) {
+                node = node.children.get(path.substring(start, end));
+                if (node == null) break;
+                if (node.value != null) match = node.value;
+            }
+            start = end + 1;
+        }
+        return match;
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private T value;
+    }
+}
@@ -63,6 +63,8 @@ public class SecurityConfig {
                     "/h2-console/**",
                     "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html"
                 ).permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasAnyAuthority("SUPER_ADMIN", "ROLE_SUPER_ADMIN")
                 .requestMatchers("/admin/**").hasAnyAuthority("SUPER_ADMIN", "TENANT_ADMIN", "ROLE_SUPER_ADMIN", "ROLE_TENANT_ADMIN")
                 .anyRequest().authenticated()
             )
@@ -3,6 +3,7 @@ package fr.aplose.erp.config;
 import fr.aplose.erp.modules.nocode.dto.NoCodeMenuEntry;
 import fr.aplose.erp.tenant.context.TenantContext;
 import fr.aplose.erp.tenant.service.TenantModuleService;
+import fr.aplose.erp.tenant.service.TenantModuleSnapshot;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
@@ -18,6 +19,7 @@ import java.util.stream.Collectors;
 
 /**
  * Adds request URI, enabled modules, no-code menu entries and sidebar menu sections to the model for Thymeleaf templates.
+ * Module state comes from the tenant's cached {@link TenantModuleSnapshot}; the sidebar is memoized by {@link MenuService}.
  */
 @ControllerAdvice
 @RequiredArgsConstructor
@@ -32,17 +34,19 @@ public class ThymeleafRequestAdvice {
         model.addAttribute("requestURI", requestURI);
 
         String tenantId = TenantContext.getCurrentTenantId();
+        TenantModuleSnapshot snapshot = null;
         Set<String> enabledModules = Set.of();
         List<NoCodeMenuEntry> noCodeMenuEntries = List.of();
         if (tenantId != null && !tenantId.isBlank()) {
-            enabledModules = tenantModuleService.getEnabledModuleCodes(tenantId);
-            noCodeMenuEntries = tenantModuleService.getNoCodeMenuEntries(tenantId);
+            snapshot = tenantModuleService.getSnapshot(tenantId);
+            enabledModules = snapshot.enabledModuleCodes();
+            noCodeMenuEntries = snapshot.noCodeMenuEntries();
         }
         model.addAttribute("enabledModules", enabledModules);
         model.addAttribute("noCodeMenuEntries", noCodeMenuEntries);
 
         Set<String> userAuthorities = getCurrentUserAuthorities();
-        model.addAttribute("sidebarMenuSections", menuService.buildSidebarSections(requestURI, enabledModules, noCodeMenuEntries, userAuthorities));
+        model.addAttribute("sidebarMenuSections", menuService.getSidebarSections(requestURI, snapshot, userAuthorities));
     }
 
     private Set<String> getCurrentUserAuthorities() {
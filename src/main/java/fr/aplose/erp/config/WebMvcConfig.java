@@ -1,5 +1,6 @@
 package fr.aplose.erp.config;
 
+import fr.aplose.erp.core.metrics.QueryMetricsInterceptor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.LocaleResolver;
@@ -13,9 +14,11 @@ import java.util.Locale;
 public class WebMvcConfig implements WebMvcConfigurer {
 
     private final ModuleAccessInterceptor moduleAccessInterceptor;
+    private final QueryMetricsInterceptor queryMetricsInterceptor;
 
-    public WebMvcConfig(ModuleAccessInterceptor moduleAccessInterceptor) {
+    public WebMvcConfig(ModuleAccessInterceptor moduleAccessInterceptor, QueryMetricsInterceptor queryMetricsInterceptor) {
         this.moduleAccessInterceptor = moduleAccessInterceptor;
+        this.queryMetricsInterceptor = queryMetricsInterceptor;
     }
 
     @Bean
@@ -27,15 +30,9 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // First, so that it also counts the queries of the other interceptors
+        registry.addInterceptor(queryMetricsInterceptor);
         registry.addInterceptor(moduleAccessInterceptor)
-                .addPathPatterns("/third-parties", "/third-parties/**",
-                        "/contacts", "/contacts/**",
-                        "/proposals", "/proposals/**",
-                        "/orders", "/orders/**",
-                        "/invoices", "/invoices/**",
-                        "/products", "/products/**",
-                        "/currencies", "/currencies/**",
-                        "/projects", "/projects/**",
-                        "/agenda", "/agenda/**");
+                .addPathPatterns(ModuleAccessInterceptor.pathPatterns());
     }
 }
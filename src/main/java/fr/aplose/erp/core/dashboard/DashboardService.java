@@ -0,0 +1,124 @@
+package fr.aplose.erp.core.dashboard;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.modules.agenda.service.AgendaEventService;
+import fr.aplose.erp.modules.commerce.service.InvoiceService;
+import fr.aplose.erp.tenant.context.TenantContext;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Computes the dashboard widgets concurrently, one virtual thread per widget. Each widget is cached per tenant
+ * for a few seconds, so that a burst of dashboard views costs one computation; a widget that fails or takes
+ * too long is shown empty instead of failing the page.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardService {
+
+    static final int OVERDUE_INVOICES = 10;
+    static final int UPCOMING_DAYS = 7;
+    private static final long WIDGET_TIMEOUT_SECONDS = 5;
+
+    private final KpiCounterService kpiCounterService;
+    private final InvoiceService invoiceService;
+    private final AgendaEventService agendaEventService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Cache<String, Map<String, Long>> kpiCache = widgetCache(Duration.ofSeconds(10));
+    private final Cache<String, List<DashboardView.OverdueInvoice>> overdueCache = widgetCache(Duration.ofSeconds(30));
+    private final Cache<String, List<DashboardView.UpcomingEvent>> upcomingCache = widgetCache(Duration.ofSeconds(30));
+
+    /** Widgets of the current tenant that the given authorities allow (KPI cards are filtered by the template). */
+    public DashboardView load(Collection<String> authorities) {
+        String tenantId = TenantContext.getCurrentTenantId();
+        Future<Map<String, Long>> kpi = submit(tenantId, () -> kpiCache.get(tenantId, this::loadKpi));
+        Future<List<DashboardView.OverdueInvoice>> overdue = authorities.contains("INVOICE_READ")
+                ? submit(tenantId, () -> overdueCache.get(tenantId, t -> loadOverdueInvoices()))
+                : CompletableFuture.completedFuture(List.of());
+        Future<List<DashboardView.UpcomingEvent>> upcoming = authorities.contains("AGENDA_READ")
+                ? submit(tenantId, () -> upcomingCache.get(tenantId, t -> loadUpcomingEvents()))
+                : CompletableFuture.completedFuture(List.of());
+        return new DashboardView(await("kpi", kpi, Map.of()), await("overdueInvoices", overdue, List.of()),
+                await("upcomingEvents", upcoming, List.of()));
+    }
+
+    /** Drops the cached widgets of a tenant. */
+    public void invalidate(String tenantId) {
+        kpiCache.invalidate(tenantId);
+        overdueCache.invalidate(tenantId);
+        upcomingCache.invalidate(tenantId);
+    }
+
+    private Map<String, Long> loadKpi(String tenantId) {
+        Map<String, Long> kpi = new LinkedHashMap<>();
+        kpiCounterService.counters(tenantId).forEach((counter, value) -> kpi.put(counter.getKey(), value));
+        return kpi;
+    }
+
+    private List<DashboardView.OverdueInvoice> loadOverdueInvoices() {
+        return invoiceService.findOverdue(OVERDUE_INVOICES).stream()
+                .map(i -> new DashboardView.OverdueInvoice(i.getId(), i.getReference(), i.getAmountRemaining()))
+                .toList();
+    }
+
+    private List<DashboardView.UpcomingEvent> loadUpcomingEvents() {
+        return agendaEventService.findUpcoming(UPCOMING_DAYS).stream()
+                .map(e -> new DashboardView.UpcomingEvent(e.getId(), e.getTitle(), e.getStartDatetime()))
+                .toList();
+    }
+
+    private <T> Future<T> submit(String tenantId, Supplier<T> widget) {
+        return executor.submit(() -> {
+            TenantContext.setCurrentTenantId(tenantId);
+            try {
+                return widget.get();
+            } finally {
+                TenantContext.clear();
+            }
+        });
+    }
+
+    private static <T> T await(String widget, Future<T> future, T fallback) {
+        try {
+            return future.get(WIDGET_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (ExecutionException | TimeoutException e) {
+            future.cancel(true);
+            log.warn("Dashboard widget {} unavailable: {}", widget, e.getCause() != null ? e.getCause().getMessage() : e.toString());
+            return fallback;
+        }
+    }
+
+    private static <V> Cache<String, V> widgetCache(Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
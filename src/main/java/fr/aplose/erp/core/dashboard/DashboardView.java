@@ -0,0 +1,18 @@
+package fr.aplose.erp.core.dashboard;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Widgets of the dashboard. Widgets the user may not see are empty.
+ *
+ * @param kpi counters by {@link KpiCounter#getKey()}
+ */
+public record DashboardView(Map<String, Long> kpi, List<OverdueInvoice> overdueInvoices, List<UpcomingEvent> upcomingEvents) {
+
+    public record OverdueInvoice(Long id, String reference, BigDecimal amountRemaining) {}
+
+    public record UpcomingEvent(Long id, String title, LocalDateTime startDatetime) {}
+}
@@ -0,0 +1,68 @@
+package fr.aplose.erp.core.dashboard;
+
+import fr.aplose.erp.modules.commerce.entity.Invoice;
+import fr.aplose.erp.modules.commerce.entity.Proposal;
+import fr.aplose.erp.modules.project.entity.Project;
+import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Dashboard counters. An entity counts when its {@code property} satisfies {@code counts};
+ * {@code countSql} recounts a tenant's rows from scratch and must agree with it.
+ */
+public enum KpiCounter {
+
+    OPEN_INVOICES("openInvoices", Invoice.class, "status",
+            Set.of("DRAFT", "VALIDATED", "SENT", "PARTIALLY_PAID")::contains,
+            "SELECT COUNT(*) FROM invoices WHERE tenant_id = ? AND status IN ('DRAFT', 'VALIDATED', 'SENT', 'PARTIALLY_PAID')"),
+
+    OPEN_PROPOSALS("openProposals", Proposal.class, "status",
+            Set.of("DRAFT", "SENT")::contains,
+            "SELECT COUNT(*) FROM proposals WHERE tenant_id = ? AND status IN ('DRAFT', 'SENT')"),
+
+    THIRD_PARTIES("thirdParties", ThirdParty.class, "deletedAt",
+            Objects::isNull,
+            "SELECT COUNT(*) FROM third_parties WHERE tenant_id = ? AND deleted_at IS NULL"),
+
+    ACTIVE_PROJECTS("activeProjects", Project.class, "status",
+            Set.of("PLANNING", "ACTIVE")::contains,
+            "SELECT COUNT(*) FROM projects WHERE tenant_id = ? AND status IN ('PLANNING', 'ACTIVE')");
+
+    private final String key;
+    private final Class<?> entityClass;
+    private final String property;
+    private final Predicate<Object> counts;
+    private final String countSql;
+
+    KpiCounter(String key, Class<?> entityClass, String property, Predicate<Object> counts, String countSql) {
+        this.key = key;
+        this.entityClass = entityClass;
+        this.property = property;
+        this.counts = counts;
+        this.countSql = countSql;
+    }
+
+    /** Name of the counter in the dashboard model ({@code kpi.<key>}). */
+    public String getKey() {
+        return key;
+    }
+
+    Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    String getProperty() {
+        return property;
+    }
+
+    boolean counts(Object propertyValue) {
+        return counts.test(propertyValue);
+    }
+
+    String getCountSql() {
+        return countSql;
+    }
+}
@@ -0,0 +1,83 @@
+package fr.aplose.erp.core.dashboard;
+
+import fr.aplose.erp.core.entity.BaseEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate listener keeping {@link KpiCounter}s in line with every JPA write of the counted entities,
+ * whichever service or import makes it. Hibernate events (unlike JPA callbacks) carry the previous state,
+ * so an update only touches a counter when the entity enters or leaves it.
+ */
+@Component
+@RequiredArgsConstructor
+class KpiCounterListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final KpiCounterService counterService;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getEventListenerRegistry();
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getEntity(), event.getPersister(), null, event.getState());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        // Without the loaded state (e.g. update of a detached instance), the change is left to the nightly recount
+        if (event.getOldState() != null) {
+            apply(event.getEntity(), event.getPersister(), event.getOldState(), event.getState());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        apply(event.getEntity(), event.getPersister(), event.getDeletedState(), null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void apply(Object entity, EntityPersister persister, Object[] before, Object[] after) {
+        if (!(entity instanceof BaseEntity e) || e.getTenantId() == null) return;
+        for (KpiCounter counter : KpiCounter.values()) {
+            if (!counter.getEntityClass().isInstance(entity)) continue;
+            int index = propertyIndex(persister, counter.getProperty());
+            if (index < 0) continue;
+            int delta = (after != null && counter.counts(after[index]) ? 1 : 0)
+                    - (before != null && counter.counts(before[index]) ? 1 : 0);
+            if (delta != 0) {
+                counterService.adjust(e.getTenantId(), counter, delta);
+            }
+        }
+    }
+
+    private static int propertyIndex(EntityPersister persister, String property) {
+        String[] names = persister.getPropertyNames();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(property)) return i;
+        }
+        return -1;
+    }
+}
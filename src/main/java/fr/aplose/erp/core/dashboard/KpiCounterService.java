@@ -0,0 +1,100 @@
+package fr.aplose.erp.core.dashboard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Dashboard counters stored per tenant in {@code kpi_counters}, adjusted by {@link KpiCounterListener}
+ * in the transaction that changes the counted entities. A missing counter is computed on first read;
+ * all counters are recomputed nightly, which absorbs changes made with plain SQL.
+ * <p>
+ * A counter is spread over {@value #SHARDS} rows: a change updates one of them at random and a read sums them,
+ * so that transactions creating documents of the same tenant concurrently do not wait on one row lock until commit.
+ */
+@Service
+@Slf4j
+public class KpiCounterService {
+
+    static final int SHARDS = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public KpiCounterService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public Map<KpiCounter, Long> counters(String tenantId) {
+        Map<KpiCounter, Long> values = new EnumMap<>(KpiCounter.class);
+        jdbcTemplate.query("SELECT counter_code, SUM(counter_value) FROM kpi_counters WHERE tenant_id = ? " +
+                "GROUP BY counter_code", rs -> {
+            try {
+                values.put(KpiCounter.valueOf(rs.getString(1)), rs.getLong(2));
+            } catch (IllegalArgumentException ignored) {
+                // counter no longer defined
+            }
+        }, tenantId);
+        for (KpiCounter counter : KpiCounter.values()) {
+            if (!values.containsKey(counter)) {
+                values.put(counter, recount(tenantId, counter));
+            }
+        }
+        return values;
+    }
+
+    /** Applies a change; a counter not computed yet is left alone (it will be counted on first read). */
+    void adjust(String tenantId, KpiCounter counter, int delta) {
+        jdbcTemplate.update("UPDATE kpi_counters SET counter_value = counter_value + ?, updated_at = CURRENT_TIMESTAMP " +
+                "WHERE tenant_id = ? AND counter_code = ? AND shard = ?", delta, tenantId, counter.name(),
+                ThreadLocalRandom.current().nextInt(SHARDS));
+    }
+
+    /**
+     * Recomputes a counter from its entities. The shard rows stay locked from before the count until the new
+     * value commits, so a change adjusting the counter either committed before the count (and is counted) or
+     * waits and applies its delta to the new value.
+     */
+    public long recount(String tenantId, KpiCounter counter) {
+        Long value = transactionTemplate.execute(status -> {
+            List<Object[]> shards = new ArrayList<>(SHARDS);
+            for (int shard = 0; shard < SHARDS; shard++) {
+                shards.add(new Object[]{tenantId, counter.name(), shard});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO kpi_counters (tenant_id, counter_code, shard) VALUES (?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE counter_value = counter_value", shards);
+            jdbcTemplate.queryForList("SELECT shard FROM kpi_counters WHERE tenant_id = ? AND counter_code = ? " +
+                    "ORDER BY shard FOR UPDATE", Integer.class, tenantId, counter.name());
+            Long count = jdbcTemplate.queryForObject(counter.getCountSql(), Long.class, tenantId);
+            long total = count != null ? count : 0;
+            // The whole count goes to shard 0, the other shards restart from zero
+            jdbcTemplate.update("UPDATE kpi_counters SET counter_value = CASE WHEN shard = 0 THEN ? ELSE 0 END, " +
+                    "updated_at = CURRENT_TIMESTAMP WHERE tenant_id = ? AND counter_code = ?", total, tenantId, counter.name());
+            return total;
+        });
+        return value != null ? value : 0;
+    }
+
+    @Scheduled(cron = "${app.dashboard.recount-cron:0 30 3 * * *}")
+    public void recountAll() {
+        for (String tenantId : jdbcTemplate.queryForList("SELECT id FROM tenants", String.class)) {
+            try {
+                for (KpiCounter counter : KpiCounter.values()) {
+                    recount(tenantId, counter);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not recount KPI counters of tenant {}: {}", tenantId, e.getMessage());
+            }
+        }
+    }
+}
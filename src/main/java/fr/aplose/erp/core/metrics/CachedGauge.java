@@ -0,0 +1,51 @@
+package fr.aplose.erp.core.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Gauge backed by a query (e.g. a queue depth {@code COUNT(*)}) run at most once per refresh interval, however
+ * often the registry is scraped. When the query fails the last value is kept.
+ */
+public final class CachedGauge {
+
+    private final LongSupplier query;
+    private final long refreshNanos;
+    private volatile long value;
+    private volatile long refreshedAt;
+    private volatile boolean loaded;
+
+    private CachedGauge(LongSupplier query, Duration refresh) {
+        this.query = query;
+        this.refreshNanos = refresh.toNanos();
+    }
+
+    public static CachedGauge register(MeterRegistry registry, String name, String description, Duration refresh,
+                                       LongSupplier query) {
+        CachedGauge gauge = new CachedGauge(query, refresh);
+        Gauge.builder(name, gauge, CachedGauge::value)
+                .description(description)
+                .register(registry);
+        return gauge;
+    }
+
+    double value() {
+        if (!loaded || System.nanoTime() - refreshedAt >= refreshNanos) {
+            synchronized (this) {
+                if (!loaded || System.nanoTime() - refreshedAt >= refreshNanos) {
+                    try {
+                        value = query.getAsLong();
+                    } catch (RuntimeException e) {
+                        // keep the last value; the next scrape after the interval tries again
+                    }
+                    refreshedAt = System.nanoTime();
+                    loaded = true;
+                }
+            }
+        }
+        return value;
+    }
+}
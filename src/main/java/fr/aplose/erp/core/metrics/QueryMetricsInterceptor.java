@@ -0,0 +1,78 @@
+package fr.aplose.erp.core.metrics;
+
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.Map;
+
+/**
+ * Collects the Hibernate activity of each controller call ({@link RequestQueryStats}) and records it as
+ * {@code request.queries} and {@code request.entities} summaries and a {@code request.query.time} timer,
+ * tagged by tenant and handler. When enabled (dev), statements repeated beyond the threshold within one request
+ * are logged as likely N+1 loads.
+ * For asynchronous requests (SSE) only the work done before the handler returned is counted.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QueryMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    private static final int MAX_LOGGED_SQL = 300;
+
+    private final QueryMetricsProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Error and async dispatches belong to a request already counted
+        if (properties.isEnabled() && handler instanceof HandlerMethod method
+                && request.getDispatcherType() == DispatcherType.REQUEST && RequestQueryStats.current() == null) {
+            RequestQueryStats stats = RequestQueryStats.begin(method.getBeanType().getSimpleName() + "#" + method.getMethod().getName());
+            request.setAttribute(RequestQueryStats.REQUEST_ATTRIBUTE, stats);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        record(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        record(request);
+    }
+
+    private void record(HttpServletRequest request) {
+        RequestQueryStats stats = RequestQueryStats.current();
+        if (stats == null || stats != request.getAttribute(RequestQueryStats.REQUEST_ATTRIBUTE)) return;
+        RequestQueryStats.end();
+        String tenantId = TenantContext.getCurrentTenantId();
+        Tags tags = Tags.of("tenant", tenantId != null ? tenantId : "none", "handler", stats.getHandler());
+        DistributionSummary.builder("request.queries").description("Statements prepared by Hibernate per request")
+                .tags(tags).register(meterRegistry).record(stats.getQueries());
+        DistributionSummary.builder("request.entities").description("Entities loaded by Hibernate per request")
+                .tags(tags).register(meterRegistry).record(stats.getEntitiesLoaded());
+        Timer.builder("request.query.time").description("Time spent executing Hibernate statements per request")
+                .tags(tags).register(meterRegistry).record(stats.getExecutionTime());
+
+        if (properties.isWarnRepeatedStatements()) {
+            for (Map.Entry<String, Integer> repeated : stats.repeatedStatements(properties.getRepeatedStatementThreshold()).entrySet()) {
+                String sql = repeated.getKey();
+                log.warn("Possible N+1 in {}: statement prepared {} times in one request: {}", stats.getHandler(), repeated.getValue(),
+                        sql.length() > MAX_LOGGED_SQL ? sql.substring(0, MAX_LOGGED_SQL) + "..." : sql);
+            }
+        }
+    }
+}
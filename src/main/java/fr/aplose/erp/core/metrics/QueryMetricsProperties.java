@@ -0,0 +1,21 @@
+package fr.aplose.erp.core.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.query-metrics")
+public class QueryMetricsProperties {
+
+    /** Record per-request query count, query time and loaded entities as metrics, tagged by tenant and handler. */
+    private boolean enabled = true;
+
+    /** Log a warning when a request prepares the same statement shape more than the threshold (likely N+1). */
+    private boolean warnRepeatedStatements = false;
+
+    private int repeatedStatementThreshold = 10;
+}
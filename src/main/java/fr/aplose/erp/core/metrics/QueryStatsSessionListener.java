@@ -0,0 +1,30 @@
+package fr.aplose.erp.core.metrics;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Times statement and batch executions into the current request's {@link RequestQueryStats}.
+ * Instantiated by Hibernate for every session ({@code hibernate.session.events.auto}).
+ */
+public class QueryStatsSessionListener implements SessionEventListener {
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        RequestQueryStats.executionStarted();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestQueryStats.executionEnded();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        RequestQueryStats.executionStarted();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestQueryStats.executionEnded();
+    }
+}
@@ -0,0 +1,15 @@
+package fr.aplose.erp.core.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every statement Hibernate prepares into the current request's {@link RequestQueryStats}.
+ */
+class QueryStatsStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestQueryStats.statementPrepared(sql);
+        return sql;
+    }
+}
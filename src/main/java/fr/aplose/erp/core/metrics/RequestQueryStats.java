@@ -0,0 +1,113 @@
+package fr.aplose.erp.core.metrics;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Hibernate activity of the web request being handled on the current thread: statements prepared, time spent
+ * executing them and entities loaded, plus how many times each statement shape (SQL with IN lists collapsed)
+ * was prepared, to spot N+1 loops. Fed by {@link QueryStatsStatementInspector}, {@link QueryStatsSessionListener}
+ * and {@link EntityLoadCountingListener}; started and recorded by {@link QueryMetricsInterceptor}.
+ * Plain JDBC (JdbcTemplate) is not counted.
+ */
+public final class RequestQueryStats {
+
+    /** Request attribute holding the statistics of the request, once handled (e.g. for tests). */
+    public static final String REQUEST_ATTRIBUTE = RequestQueryStats.class.getName();
+
+    private static final ThreadLocal<RequestQueryStats> CURRENT = new ThreadLocal<>();
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    /** Bound on distinct shapes tracked per request (a long import request would otherwise keep every statement). */
+    private static final int MAX_SHAPES = 1_000;
+
+    private final String handler;
+    private final Map<String, Integer> shapes = new HashMap<>();
+    private int queries;
+    private long executionNanos;
+    private long executionStart;
+    private int entitiesLoaded;
+
+    private RequestQueryStats(String handler) {
+        this.handler = handler;
+    }
+
+    static RequestQueryStats begin(String handler) {
+        RequestQueryStats stats = new RequestQueryStats(handler);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static RequestQueryStats current() {
+        return CURRENT.get();
+    }
+
+    /** Stops collecting on this thread and returns what was collected, or null if nothing was started. */
+    static RequestQueryStats end() {
+        RequestQueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    static void statementPrepared(String sql) {
+        RequestQueryStats stats = CURRENT.get();
+        if (stats == null || sql == null) return;
+        stats.queries++;
+        String shape = shape(sql);
+        if (stats.shapes.size() < MAX_SHAPES || stats.shapes.containsKey(shape)) {
+            stats.shapes.merge(shape, 1, Integer::sum);
+        }
+    }
+
+    static void executionStarted() {
+        RequestQueryStats stats = CURRENT.get();
+        if (stats != null) stats.executionStart = System.nanoTime();
+    }
+
+    static void executionEnded() {
+        RequestQueryStats stats = CURRENT.get();
+        if (stats != null && stats.executionStart != 0) {
+            stats.executionNanos += System.nanoTime() - stats.executionStart;
+            stats.executionStart = 0;
+        }
+    }
+
+    static void entityLoaded() {
+        RequestQueryStats stats = CURRENT.get();
+        if (stats != null) stats.entitiesLoaded++;
+    }
+
+    static String shape(String sql) {
+        return IN_LIST.matcher(WHITESPACE.matcher(sql.trim()).replaceAll(" ")).replaceAll("(?)");
+    }
+
+    /** Controller and method handling the request, e.g. {@code InvoiceApiController#list}. */
+    public String getHandler() {
+        return handler;
+    }
+
+    public int getQueries() {
+        return queries;
+    }
+
+    public Duration getExecutionTime() {
+        return Duration.ofNanos(executionNanos);
+    }
+
+    public int getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    /** Statement shapes prepared more than {@code threshold} times, most repeated first. */
+    public Map<String, Integer> repeatedStatements(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        shapes.entrySet().stream()
+                .filter(e -> e.getValue() > threshold)
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(e -> repeated.put(e.getKey(), e.getValue()));
+        return repeated;
+    }
+}
@@ -0,0 +1,13 @@
+package fr.aplose.erp.core.search;
+
+/** What the index stores for one entity: {@code title} and {@code subtitle} are shown in results, {@code body} is only searched. */
+public record SearchDocument(SearchDocumentType type, long id, String title, String subtitle, String body) {
+
+    public String key() {
+        return key(type, id);
+    }
+
+    static String key(SearchDocumentType type, long id) {
+        return type.name() + ":" + id;
+    }
+}
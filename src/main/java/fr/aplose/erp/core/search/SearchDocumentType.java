@@ -0,0 +1,110 @@
+package fr.aplose.erp.core.search;
+
+import fr.aplose.erp.modules.catalog.entity.Product;
+import fr.aplose.erp.modules.commerce.entity.Invoice;
+import fr.aplose.erp.modules.commerce.entity.Proposal;
+import fr.aplose.erp.modules.contact.entity.Contact;
+import fr.aplose.erp.modules.ged.entity.GedDocument;
+import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
+import fr.aplose.erp.modules.ticketing.entity.Ticket;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Entities of the global search. Each one is read with a single SQL query returning
+ * {@code id, title, subtitle, body} (aliased on table {@code t}), so that the index can be rebuilt without Hibernate.
+ */
+public enum SearchDocumentType {
+
+    THIRD_PARTY(ThirdParty.class, "THIRD_PARTY_READ", "nav.thirdparties", "bi-building", "/third-parties/",
+            "SELECT t.id, t.name AS title, t.code AS subtitle, " +
+            "CONCAT_WS(' ', t.code, t.email, t.phone, t.city, t.tax_id, t.notes) AS body " +
+            "FROM third_parties t", "t.deleted_at IS NULL"),
+
+    CONTACT(Contact.class, "CONTACT_READ", "nav.contacts", "bi-person-lines-fill", "/contacts/",
+            "SELECT t.id, CONCAT_WS(' ', t.first_name, t.last_name) AS title, t.email AS subtitle, " +
+            "CONCAT_WS(' ', t.email, t.phone, t.mobile, t.job_title, t.department, t.city, t.notes) AS body " +
+            "FROM contacts t", "t.deleted_at IS NULL"),
+
+    INVOICE(Invoice.class, "INVOICE_READ", "nav.invoices", "bi-receipt", "/invoices/",
+            "SELECT t.id, t.reference AS title, tp.name AS subtitle, CONCAT_WS(' ', tp.name, t.notes) AS body " +
+            "FROM invoices t LEFT JOIN third_parties tp ON tp.id = t.third_party_id", null),
+
+    PROPOSAL(Proposal.class, "PROPOSAL_READ", "nav.proposals", "bi-file-earmark-text", "/proposals/",
+            "SELECT t.id, t.reference AS title, CONCAT_WS(' - ', tp.name, t.title) AS subtitle, " +
+            "CONCAT_WS(' ', t.title, tp.name, t.notes) AS body " +
+            "FROM proposals t LEFT JOIN third_parties tp ON tp.id = t.third_party_id", null),
+
+    PRODUCT(Product.class, "PRODUCT_READ", "nav.products", "bi-box-seam", "/products/",
+            "SELECT t.id, t.name AS title, t.code AS subtitle, " +
+            "CONCAT_WS(' ', t.code, t.barcode, t.description, t.notes) AS body " +
+            "FROM products t", "t.deleted_at IS NULL"),
+
+    TICKET(Ticket.class, "TICKETING_READ", "nav.group.ticketing", "bi-life-preserver", "/ticketing/",
+            "SELECT t.id, t.subject AS title, t.reference AS subtitle, CONCAT_WS(' ', t.reference, t.description) AS body " +
+            "FROM tickets t", null),
+
+    // Body is the text extracted from the file, once GedTextExtractionService has read it
+    GED_DOCUMENT(GedDocument.class, "GED_READ", "nav.group.ged", "bi-folder2-open", "/ged/",
+            "SELECT t.id, t.file_name AS title, t.entity_type AS subtitle, CONCAT_WS(' ', t.file_name, x.content) AS body " +
+            "FROM ged_documents t LEFT JOIN ged_texts x ON x.tenant_id = t.tenant_id AND x.content_hash = t.content_hash", null);
+
+    private final Class<?> entityClass;
+    private final String authority;
+    private final String labelKey;
+    private final String icon;
+    private final String urlPrefix;
+    private final String select;
+    private final String liveCondition;
+
+    SearchDocumentType(Class<?> entityClass, String authority, String labelKey, String icon, String urlPrefix,
+                       String select, String liveCondition) {
+        this.entityClass = entityClass;
+        this.authority = authority;
+        this.labelKey = labelKey;
+        this.icon = icon;
+        this.urlPrefix = urlPrefix;
+        this.select = select;
+        this.liveCondition = liveCondition;
+    }
+
+    public static SearchDocumentType of(Class<?> entityClass) {
+        for (SearchDocumentType type : values()) {
+            if (type.entityClass.isAssignableFrom(entityClass)) return type;
+        }
+        return null;
+    }
+
+    /** Types whose hits a user with these authorities may see. */
+    public static Set<SearchDocumentType> visibleWith(Collection<String> authorities) {
+        EnumSet<SearchDocumentType> types = EnumSet.noneOf(SearchDocumentType.class);
+        for (SearchDocumentType type : values()) {
+            if (authorities.contains(type.authority)) types.add(type);
+        }
+        return types;
+    }
+
+    /** Authority needed to see hits of this type. */
+    public String getAuthority() {
+        return authority;
+    }
+
+    public String getLabelKey() {
+        return labelKey;
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+
+    public String url(long id) {
+        return urlPrefix + id;
+    }
+
+    /** Query for the tenant's documents matching {@code extraCondition} (ids not returned are deleted or soft-deleted). */
+    String sql(String extraCondition) {
+        return select + " WHERE t.tenant_id = ? AND " + extraCondition + (liveCondition != null ? " AND " + liveCondition : "");
+    }
+}
@@ -0,0 +1,4 @@
+package fr.aplose.erp.core.search;
+
+public record SearchHit(SearchDocumentType type, long id, String title, String subtitle, String url, float score) {
+}
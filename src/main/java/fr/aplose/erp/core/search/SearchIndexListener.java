@@ -0,0 +1,36 @@
+package fr.aplose.erp.core.search;
+
+import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.transaction.AfterCommit;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener of the searchable entities ({@link SearchDocumentType}): queues the written entity for indexing
+ * once the transaction commits, so rolled-back writes are never indexed.
+ * Rows written with plain JDBC are only picked up by a rebuild.
+ */
+@Component
+public class SearchIndexListener {
+
+    private final ObjectProvider<SearchIndexer> indexer;
+
+    public SearchIndexListener(ObjectProvider<SearchIndexer> indexer) {
+        this.indexer = indexer;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void changed(Object entity) {
+        if (!(entity instanceof BaseEntity e) || e.getId() == null) return;
+        SearchDocumentType type = SearchDocumentType.of(entity.getClass());
+        if (type == null) return;
+        String tenantId = e.getTenantId();
+        Long id = e.getId();
+        AfterCommit.run(() -> indexer.getObject().enqueue(tenantId, type, id));
+    }
+}
@@ -0,0 +1,289 @@
+package fr.aplose.erp.core.search;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Embedded Lucene index of the global search, one index directory per tenant (so a tenant's queries never
+ * read another tenant's postings, and a tenant can be rebuilt or dropped on its own).
+ * Writers stay open; searches go through a near-real-time {@link SearcherManager} refreshed after each update.
+ * <p>
+ * A rebuild rewrites the tenant's documents in place, so searches keep their results while it runs: every document
+ * is stamped with the tenant's current generation, a rebuild starts a new one, and the documents it did not rewrite
+ * (entities deleted meanwhile) are dropped when it ends. Writes and generation changes of a tenant hold its index
+ * lock, so a document is never stamped with a generation that ended before it was written.
+ */
+@Service
+@Slf4j
+public class SearchIndexService {
+
+    private static final String F_KEY = "key";
+    private static final String F_TYPE = "type";
+    private static final String F_ID = "id";
+    private static final String F_TITLE = "title";
+    private static final String F_SUBTITLE = "subtitle";
+    private static final String F_ALL = "all";
+    private static final String F_GENERATION = "generation";
+    /** Commit user data marking an index as fully built; an interrupted rebuild leaves it unset. */
+    private static final String BUILT_AT = "builtAt";
+    /** Types the index was built with: indexes built before a type was added are rebuilt at startup. */
+    private static final String TYPES = "types";
+    private static final String TYPE_NAMES = Arrays.stream(SearchDocumentType.values()).map(Enum::name).collect(Collectors.joining(","));
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    private static final int MAX_QUERY_TERMS = 8;
+
+    private final Path root;
+    private final Analyzer analyzer = new SearchAnalyzer();
+    private final Map<String, TenantIndex> indexes = new ConcurrentHashMap<>();
+    /** Generation stamped on the documents written to each tenant's index, renewed by every rebuild. */
+    private final Map<String, String> generations = new ConcurrentHashMap<>();
+    private final AtomicLong lastGeneration = new AtomicLong(System.currentTimeMillis());
+
+    public SearchIndexService(SearchProperties properties) {
+        this.root = Paths.get(properties.getIndexDir()).toAbsolutePath();
+    }
+
+    /** Whether the tenant's index was completely built at least once, with the current document types. */
+    public boolean isBuilt(String tenantId) {
+        boolean built = false;
+        boolean sameTypes = false;
+        for (Map.Entry<String, String> entry : index(tenantId).writer().getLiveCommitData()) {
+            if (BUILT_AT.equals(entry.getKey())) built = true;
+            if (TYPES.equals(entry.getKey())) sameTypes = TYPE_NAMES.equals(entry.getValue());
+        }
+        return built && sameTypes;
+    }
+
+    /** Adds or replaces documents and removes deleted ones, then commits and makes the changes searchable. */
+    public void update(String tenantId, Collection<SearchDocument> documents, Collection<String> deletedKeys) {
+        TenantIndex index = index(tenantId);
+        synchronized (index) {
+            String generation = generations.getOrDefault(tenantId, "0");
+            try {
+                for (SearchDocument document : documents) {
+                    index.writer().updateDocument(new Term(F_KEY, document.key()), toLucene(document, generation));
+                }
+                for (String key : deletedKeys) {
+                    index.writer().deleteDocuments(new Term(F_KEY, key));
+                }
+                index.writer().commit();
+                index.searchers().maybeRefresh();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not update search index of tenant " + tenantId, e);
+            }
+        }
+    }
+
+    /**
+     * Starts a rebuild: documents written from now on belong to a new generation. The current documents stay
+     * searchable, but the index is no longer marked as built until {@link #markBuilt(String)}.
+     */
+    void startRebuild(String tenantId) {
+        TenantIndex index = index(tenantId);
+        synchronized (index) {
+            generations.put(tenantId, String.valueOf(lastGeneration.incrementAndGet()));
+            try {
+                index.writer().setLiveCommitData(Map.<String, String>of().entrySet());
+                index.writer().commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start rebuilding search index of tenant " + tenantId, e);
+            }
+        }
+    }
+
+    /** Ends a rebuild: drops the documents of earlier generations, commits and marks the index as built. */
+    void markBuilt(String tenantId) {
+        TenantIndex index = index(tenantId);
+        BooleanQuery stale = new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(F_GENERATION, generations.getOrDefault(tenantId, "0"))), BooleanClause.Occur.MUST_NOT)
+                .build();
+        try {
+            index.writer().deleteDocuments(stale);
+            index.writer().setLiveCommitData(Map.of(BUILT_AT, String.valueOf(System.currentTimeMillis()),
+                    TYPES, TYPE_NAMES).entrySet());
+            index.writer().commit();
+            index.searchers().maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not commit search index of tenant " + tenantId, e);
+        }
+    }
+
+    /**
+     * Ranked hits of the tenant matching every word of {@code text}, as a whole word or a prefix
+     * (matches in the title rank first). Only hits of the given types are returned.
+     */
+    public List<SearchHit> search(String tenantId, String text, Set<SearchDocumentType> types, int limit) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty() || types.isEmpty() || limit <= 0) return List.of();
+        TenantIndex index = index(tenantId);
+        try {
+            IndexSearcher searcher = index.searchers().acquire();
+            try {
+                TopDocs top = searcher.search(query(terms, types), limit);
+                StoredFields stored = searcher.storedFields();
+                List<SearchHit> hits = new ArrayList<>(top.scoreDocs.length);
+                for (ScoreDoc scoreDoc : top.scoreDocs) {
+                    Document doc = stored.document(scoreDoc.doc);
+                    SearchDocumentType type = SearchDocumentType.valueOf(doc.get(F_TYPE));
+                    long id = doc.getField(F_ID).numericValue().longValue();
+                    hits.add(new SearchHit(type, id, doc.get(F_TITLE), doc.get(F_SUBTITLE), type.url(id), scoreDoc.score));
+                }
+                return hits;
+            } finally {
+                index.searchers().release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not search index of tenant " + tenantId, e);
+        }
+    }
+
+    private static Query query(List<String> terms, Set<SearchDocumentType> types) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            BooleanQuery.Builder word = new BooleanQuery.Builder();
+            word.add(new BoostQuery(new TermQuery(new Term(F_TITLE, term)), 4f), BooleanClause.Occur.SHOULD);
+            word.add(new TermQuery(new Term(F_ALL, term)), BooleanClause.Occur.SHOULD);
+            if (term.length() > 1) {
+                word.add(new BoostQuery(new PrefixQuery(new Term(F_TITLE, term)), 2f), BooleanClause.Occur.SHOULD);
+                word.add(new PrefixQuery(new Term(F_ALL, term)), BooleanClause.Occur.SHOULD);
+            }
+            query.add(word.build(), BooleanClause.Occur.MUST);
+        }
+        if (types.size() < SearchDocumentType.values().length) {
+            List<BytesRef> typeTerms = types.stream().map(t -> new BytesRef(t.name())).toList();
+            query.add(new TermInSetQuery(F_TYPE, typeTerms), BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) return terms;
+        try (TokenStream stream = analyzer.tokenStream(F_ALL, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken() && terms.size() < MAX_QUERY_TERMS) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static Document toLucene(SearchDocument document, String generation) {
+        Document doc = new Document();
+        doc.add(new StringField(F_KEY, document.key(), Field.Store.NO));
+        doc.add(new StringField(F_GENERATION, generation, Field.Store.NO));
+        doc.add(new StringField(F_TYPE, document.type().name(), Field.Store.YES));
+        doc.add(new StoredField(F_ID, document.id()));
+        doc.add(new TextField(F_TITLE, nullToEmpty(document.title()), Field.Store.YES));
+        if (document.subtitle() != null) {
+            doc.add(new StoredField(F_SUBTITLE, document.subtitle()));
+        }
+        doc.add(new TextField(F_ALL, String.join(" ", nullToEmpty(document.title()), nullToEmpty(document.subtitle()),
+                nullToEmpty(document.body())), Field.Store.NO));
+        return doc;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    private TenantIndex index(String tenantId) {
+        if (tenantId == null || !TENANT_ID.matcher(tenantId).matches()) {
+            throw new IllegalArgumentException("Invalid tenant id for search index: " + tenantId);
+        }
+        return indexes.computeIfAbsent(tenantId, this::open);
+    }
+
+    private TenantIndex open(String tenantId) {
+        try {
+            FSDirectory directory = FSDirectory.open(root.resolve(tenantId));
+            IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+            return new TenantIndex(directory, writer, new SearcherManager(writer, null));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open search index of tenant " + tenantId, e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        indexes.forEach((tenantId, index) -> {
+            try {
+                index.searchers().close();
+                index.writer().close();
+                index.directory().close();
+            } catch (IOException e) {
+                log.warn("Could not close search index of tenant {}: {}", tenantId, e.getMessage());
+            }
+        });
+        indexes.clear();
+    }
+
+    private record TenantIndex(FSDirectory directory, IndexWriter writer, SearcherManager searchers) {}
+
+    /** Words split on Unicode boundaries, lower-cased and accent-folded ("Société" matches "societe"). */
+    private static final class SearchAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new StandardTokenizer();
+            return new TokenStreamComponents(source, new ASCIIFoldingFilter(new LowerCaseFilter(source)));
+        }
+
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package fr.aplose.erp.core.search;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the search index in line with the database. Entity writes enqueue their (tenant, type, id) after commit;
+ * the queue is drained every second, re-reading the changed rows in bulk, so a burst of writes on the same
+ * entity is indexed once and request threads never touch Lucene.
+ * Full rebuilds run one at a time on a background thread, for tenants never indexed at startup or on demand.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndexer {
+
+    private static final int IN_CHUNK = 500;
+
+    private final SearchIndexService indexService;
+    private final SearchProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Set<PendingChange> pending = ConcurrentHashMap.newKeySet();
+    private final Set<String> rebuilding = ConcurrentHashMap.newKeySet();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("search-rebuild").daemon().factory());
+
+    /** Schedules (re)indexing of an entity; called after the transaction that wrote it has committed. */
+    public void enqueue(String tenantId, SearchDocumentType type, Long id) {
+        if (tenantId != null && id != null) {
+            pending.add(new PendingChange(tenantId, type, id));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+        Map<String, Map<SearchDocumentType, List<Long>>> byTenant = new LinkedHashMap<>();
+        for (PendingChange change : List.copyOf(pending)) {
+            pending.remove(change);
+            byTenant.computeIfAbsent(change.tenantId(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(change.type(), k -> new ArrayList<>())
+                    .add(change.id());
+        }
+        byTenant.forEach((tenantId, changes) -> {
+            try {
+                List<SearchDocument> documents = new ArrayList<>();
+                List<String> deleted = new ArrayList<>();
+                changes.forEach((type, ids) -> {
+                    for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+                        List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+                        List<SearchDocument> found = load(tenantId, type, chunk);
+                        Set<Long> foundIds = new HashSet<>();
+                        found.forEach(d -> foundIds.add(d.id()));
+                        documents.addAll(found);
+                        chunk.stream().filter(id -> !foundIds.contains(id)).forEach(id -> deleted.add(SearchDocument.key(type, id)));
+                    }
+                });
+                indexService.update(tenantId, documents, deleted);
+            } catch (RuntimeException e) {
+                log.warn("Could not index {} change(s) of tenant {}, will retry: {}",
+                        changes.values().stream().mapToInt(List::size).sum(), tenantId, e.getMessage());
+                changes.forEach((type, ids) -> ids.forEach(id -> pending.add(new PendingChange(tenantId, type, id))));
+            }
+        });
+    }
+
+    /** Starts a full rebuild of the tenant's index in the background; false if one is already queued or running. */
+    public boolean rebuildAsync(String tenantId) {
+        if (!rebuilding.add(tenantId)) return false;
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild(tenantId);
+            } catch (RuntimeException e) {
+                log.warn("Search index rebuild of tenant {} failed: {}", tenantId, e.getMessage());
+            } finally {
+                rebuilding.remove(tenantId);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRebuilding(String tenantId) {
+        return rebuilding.contains(tenantId);
+    }
+
+    /**
+     * Re-reads every searchable entity of the tenant by id ranges and rewrites its index in place; documents of
+     * entities that no longer exist are dropped at the end, so searches are never empty or partial meanwhile.
+     */
+    public synchronized void rebuild(String tenantId) {
+        long start = System.currentTimeMillis();
+        int batchSize = properties.getRebuildBatchSize();
+        indexService.startRebuild(tenantId);
+        int count = 0;
+        for (SearchDocumentType type : SearchDocumentType.values()) {
+            long lastId = 0;
+            while (true) {
+                List<SearchDocument> batch = jdbcTemplate.query(
+                        type.sql("t.id > ?") + " ORDER BY t.id LIMIT " + batchSize,
+                        (rs, i) -> document(type, rs.getLong("id"), rs.getString("title"), rs.getString("subtitle"), rs.getString("body")),
+                        tenantId, lastId);
+                if (batch.isEmpty()) break;
+                indexService.update(tenantId, batch, List.of());
+                count += batch.size();
+                lastId = batch.getLast().id();
+                if (batch.size() < batchSize) break;
+            }
+        }
+        indexService.markBuilt(tenantId);
+        log.info("Rebuilt search index of tenant {}: {} document(s) in {} ms", tenantId, count, System.currentTimeMillis() - start);
+    }
+
+    /** Builds the index of tenants that do not have a complete one yet (first start, interrupted rebuild). */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexMissingTenants() {
+        for (String tenantId : jdbcTemplate.queryForList("SELECT id FROM tenants", String.class)) {
+            try {
+                if (!indexService.isBuilt(tenantId)) {
+                    rebuildAsync(tenantId);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not open search index of tenant {}: {}", tenantId, e.getMessage());
+            }
+        }
+    }
+
+    private List<SearchDocument> load(String tenantId, SearchDocumentType type, List<Long> ids) {
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(tenantId);
+        args.addAll(ids);
+        return jdbcTemplate.query(type.sql("t.id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")"),
+                (rs, i) -> document(type, rs.getLong("id"), rs.getString("title"), rs.getString("subtitle"), rs.getString("body")),
+                args.toArray());
+    }
+
+    private static SearchDocument document(SearchDocumentType type, long id, String title, String subtitle, String body) {
+        return new SearchDocument(type, id, title, subtitle, body);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private record PendingChange(String tenantId, SearchDocumentType type, Long id) {}
+}
@@ -0,0 +1,25 @@
+package fr.aplose.erp.core.search;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.search")
+public class SearchProperties {
+
+    /** Root directory of the search index; each tenant has its own Lucene index in a sub-directory. */
+    private String indexDir = "data/search-index";
+
+    /** Interval at which queued entity changes are written to the index. */
+    private long flushIntervalMs = 1000;
+
+    /** Documents read per query when rebuilding a tenant's index. */
+    private int rebuildBatchSize = 1000;
+
+    /** Maximum number of hits returned by a global search. */
+    private int maxResults = 50;
+}
@@ -0,0 +1,27 @@
+package fr.aplose.erp.core.sequence;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Numbered document types. The code is the {@code module} column of {@code number_sequences};
+ * the table and default prefix are used to seed a tenant's sequence above its existing references.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum DocumentType {
+
+    INVOICE_SALES("INVOICE_SALES", "invoices", "INV-"),
+    INVOICE_PURCHASE("INVOICE_PURCHASE", "invoices", "BIL-"),
+    SALES_ORDER("SALES_ORDER", "sales_orders", "SO-"),
+    PROPOSAL("PROPOSAL", "proposals", "PRO-"),
+    TICKET("TICKET", "tickets", "TCK-");
+
+    private final String code;
+    private final String table;
+    private final String defaultPrefix;
+
+    public static DocumentType forInvoice(String invoiceType) {
+        return "SALES".equals(invoiceType) ? INVOICE_SALES : INVOICE_PURCHASE;
+    }
+}
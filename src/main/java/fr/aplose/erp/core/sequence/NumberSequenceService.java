@@ -0,0 +1,213 @@
+package fr.aplose.erp.core.sequence;
+
+import fr.aplose.erp.tenant.context.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out document references (invoices, orders, proposals, tickets) from the {@code number_sequences} table.
+ * Numbers are reserved in blocks: the tenant's sequence row is locked ({@code SELECT ... FOR UPDATE}), advanced by
+ * the block size and committed in its own short transaction, then the block is served from memory.
+ * References are therefore never duplicated, across threads or instances, but numbers of a block that is not
+ * used up before a restart are skipped.
+ * <p>
+ * Blocks are reserved in a {@code REQUIRES_NEW} transaction on the primary pool. The caller's transaction usually
+ * holds a connection already, so a reservation borrows a second one for a few milliseconds: the pool needs that
+ * headroom above the number of threads that can create documents at once.
+ * <p>
+ * Gap-free sequences ({@link NumberingProperties.Format#isGapFree()}, e.g. invoices) are not served from blocks:
+ * each number is taken in the caller's transaction, so a rollback gives it back, and the row stays locked until
+ * that transaction ends. Documents of such a type are therefore numbered one transaction at a time per tenant.
+ * <p>
+ * Sequences whose format includes the year have one row per year ({@code seq_year}) and restart at 1 every year;
+ * the others keep a single row with {@code seq_year} 0. The format (prefix, year, padding) is read from the
+ * tenant's row, created on first use from {@link NumberingProperties} (or from the previous year's row) and seeded
+ * above the highest existing reference so that numbering continues where it left off. The row is created with an
+ * upsert before it is locked: locking a missing row would take gap locks, and two instances inserting the first row
+ * of a year under gap locks deadlock each other.
+ */
+@Slf4j
+@Service
+public class NumberSequenceService {
+
+    /** The row of this year, or the year-less row; both only exist after a format change, the yearly one wins. */
+    private static final String SELECT_FOR_UPDATE_SQL =
+            "SELECT seq_year, prefix, year_in_seq, padding, last_number FROM number_sequences " +
+            "WHERE tenant_id = ? AND module = ? AND seq_year IN (0, ?) ORDER BY seq_year DESC FOR UPDATE";
+    private static final String EXISTS_SQL =
+            "SELECT COUNT(*) FROM number_sequences WHERE tenant_id = ? AND module = ? AND seq_year IN (0, ?)";
+    private static final String SELECT_LATEST_SQL =
+            "SELECT seq_year, prefix, year_in_seq, padding, last_number FROM number_sequences " +
+            "WHERE tenant_id = ? AND module = ? ORDER BY seq_year DESC LIMIT 1";
+    private static final String INSERT_SQL =
+            "INSERT INTO number_sequences (tenant_id, module, seq_year, prefix, year_in_seq, last_number, padding) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE last_number = last_number";
+    private static final String UPDATE_SQL =
+            "UPDATE number_sequences SET last_number = ? WHERE tenant_id = ? AND module = ? AND seq_year = ?";
+
+    private static final RowMapper<SequenceRow> ROW_MAPPER = (rs, i) ->
+            new SequenceRow(rs.getInt(1), rs.getString(2), rs.getBoolean(3), rs.getInt(4), rs.getLong(5));
+
+    private final NumberingProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final TransactionTemplate callerTransaction;
+
+    private final Map<SequenceKey, SequenceState> states = new ConcurrentHashMap<>();
+
+    public NumberSequenceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 NumberingProperties properties) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.callerTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /** Next reference of the given type for the current tenant. */
+    public String next(DocumentType type) {
+        return next(TenantContext.getCurrentTenantId(), type);
+    }
+
+    public String next(String tenantId, DocumentType type) {
+        if (tenantId == null) throw new IllegalStateException("No tenant for document numbering");
+        int year = Year.now().getValue();
+        if (properties.formatFor(type).isGapFree()) {
+            Block block = callerTransaction.execute(status -> doReserveBlock(tenantId, type, year, 1));
+            return block.format(block.first());
+        }
+        SequenceState state = states.computeIfAbsent(new SequenceKey(tenantId, type, year), k -> new SequenceState());
+        synchronized (state) {
+            if (state.block == null || state.next > state.block.last()) {
+                state.block = reserveBlock(tenantId, type, year, properties.blockSizeFor(type));
+                state.next = state.block.first();
+            }
+            return state.block.format(state.next++);
+        }
+    }
+
+    /**
+     * {@code count} consecutive references for bulk creation (e.g. a billing run): the rest of the current block,
+     * then one reservation of the missing numbers, instead of a round trip per block.
+     */
+    public List<String> next(String tenantId, DocumentType type, int count) {
+        if (tenantId == null) throw new IllegalStateException("No tenant for document numbering");
+        List<String> references = new ArrayList<>(count);
+        int year = Year.now().getValue();
+        if (properties.formatFor(type).isGapFree()) {
+            Block block = callerTransaction.execute(status -> doReserveBlock(tenantId, type, year, count));
+            for (long n = block.first(); n <= block.last(); n++) references.add(block.format(n));
+            return references;
+        }
+        SequenceState state = states.computeIfAbsent(new SequenceKey(tenantId, type, year), k -> new SequenceState());
+        synchronized (state) {
+            while (references.size() < count) {
+                if (state.block == null || state.next > state.block.last()) {
+                    state.block = reserveBlock(tenantId, type, year, Math.max(count - references.size(), properties.blockSizeFor(type)));
+                    state.next = state.block.first();
+                }
+                references.add(state.block.format(state.next++));
+            }
+        }
+        return references;
+    }
+
+    /** Drops the in-memory blocks (e.g. after a tenant's sequence format was changed); their remaining numbers are skipped. */
+    public void evict(String tenantId) {
+        states.keySet().removeIf(k -> k.tenantId().equals(tenantId));
+    }
+
+    private Block reserveBlock(String tenantId, DocumentType type, int year, int size) {
+        return newTransaction.execute(status -> doReserveBlock(tenantId, type, year, size));
+    }
+
+    private Block doReserveBlock(String tenantId, DocumentType type, int year, int size) {
+        Integer existing = jdbcTemplate.queryForObject(EXISTS_SQL, Integer.class, tenantId, type.getCode(), year);
+        if (existing == null || existing == 0) createRow(tenantId, type, year);
+        SequenceRow row = jdbcTemplate.query(SELECT_FOR_UPDATE_SQL, ROW_MAPPER, tenantId, type.getCode(), year).get(0);
+        long first = row.lastNumber() + 1;
+        long last = row.lastNumber() + size;
+        jdbcTemplate.update(UPDATE_SQL, last, tenantId, type.getCode(), row.seqYear());
+        log.debug("Reserved {} numbers {}..{} for tenant {}", type, first, last, tenantId);
+        return new Block(row.prefix() != null ? row.prefix() : "", row.yearInSeq(), row.seqYear(), row.padding(), first, last);
+    }
+
+    /**
+     * Creates the sequence row of this year: a new year of a yearly sequence keeps the format of the previous one,
+     * a new sequence takes the configured format. The upsert leaves a row created concurrently by another instance
+     * as it is.
+     */
+    private void createRow(String tenantId, DocumentType type, int year) {
+        List<SequenceRow> previous = jdbcTemplate.query(SELECT_LATEST_SQL, ROW_MAPPER, tenantId, type.getCode());
+        String prefix;
+        boolean yearInSeq;
+        int padding;
+        if (previous.isEmpty()) {
+            NumberingProperties.Format format = properties.formatFor(type);
+            prefix = format.getPrefix() != null ? format.getPrefix() : type.getDefaultPrefix();
+            yearInSeq = format.isYearInSeq();
+            padding = format.getPadding();
+        } else {
+            // The year-less row would have been found: this is an earlier year of a yearly sequence
+            SequenceRow last = previous.get(0);
+            prefix = last.prefix() != null ? last.prefix() : "";
+            yearInSeq = last.yearInSeq();
+            padding = last.padding();
+        }
+        int seqYear = yearInSeq ? year : 0;
+        long seed = findHighestExistingNumber(tenantId, type, yearInSeq ? prefix + year + "-" : prefix);
+        jdbcTemplate.update(INSERT_SQL, tenantId, type.getCode(), seqYear, prefix, yearInSeq, seed, padding);
+        log.info("Created {} sequence {} for tenant {} starting after {}", type, seqYear, tenantId, seed);
+    }
+
+    /** Highest trailing number among the tenant's existing references with this prefix (one-off scan per sequence and year). */
+    private long findHighestExistingNumber(String tenantId, DocumentType type, String prefix) {
+        long[] max = {0L};
+        jdbcTemplate.query("SELECT reference FROM " + type.getTable() + " WHERE tenant_id = ? AND reference LIKE ?",
+                rs -> {
+                    max[0] = Math.max(max[0], trailingNumber(rs.getString(1)));
+                },
+                tenantId, prefix + "%");
+        return max[0];
+    }
+
+    static long trailingNumber(String reference) {
+        if (reference == null) return 0L;
+        int end = reference.length();
+        int start = end;
+        while (start > 0 && Character.isDigit(reference.charAt(start - 1))) start--;
+        if (start == end || end - start > 18) return 0L;
+        return Long.parseLong(reference, start, end, 10);
+    }
+
+    private record SequenceKey(String tenantId, DocumentType type, int year) {}
+
+    private record SequenceRow(int seqYear, String prefix, boolean yearInSeq, int padding, long lastNumber) {}
+
+    private record Block(String prefix, boolean yearInSeq, int year, int padding, long first, long last) {
+
+        String format(long number) {
+            String digits = Long.toString(number);
+            StringBuilder sb = new StringBuilder(prefix);
+            if (yearInSeq) sb.append(year).append('-');
+            for (int i = digits.length(); i < padding; i++) sb.append('0');
+            return sb.append(digits).toString();
+        }
+    }
+
+    private static final class SequenceState {
+        private Block block;
+        private long next;
+    }
+}
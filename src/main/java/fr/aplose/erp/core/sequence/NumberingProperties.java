@@ -0,0 +1,46 @@
+package fr.aplose.erp.core.sequence;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.numbering")
+public class NumberingProperties {
+
+    /** Numbers reserved per database round trip; unused numbers of a block are skipped on restart. */
+    private int blockSize = 20;
+    /** Per document type overrides. Format settings only apply when a tenant's sequence row is created. */
+    private Map<DocumentType, Format> formats = new EnumMap<>(DocumentType.class);
+
+    public Format formatFor(DocumentType type) {
+        return formats.getOrDefault(type, new Format());
+    }
+
+    public int blockSizeFor(DocumentType type) {
+        Integer size = formatFor(type).getBlockSize();
+        return size != null && size > 0 ? size : blockSize;
+    }
+
+    @Getter
+    @Setter
+    public static class Format {
+        /** Defaults to the document type's prefix. */
+        private String prefix;
+        private int padding = 5;
+        /** Inserts the current year after the prefix (e.g. INV-2026-00042); numbering then restarts every year. */
+        private boolean yearInSeq = false;
+        private Integer blockSize;
+        /**
+         * Takes each number in the caller's transaction instead of from a block, so that a rollback returns it:
+         * no number is ever skipped, at the cost of numbering one transaction at a time per tenant.
+         */
+        private boolean gapFree = false;
+    }
+}
@@ -0,0 +1,56 @@
+package fr.aplose.erp.core.web;
+
+import fr.aplose.erp.core.search.SearchDocumentType;
+import fr.aplose.erp.core.search.SearchIndexService;
+import fr.aplose.erp.core.search.SearchIndexer;
+import fr.aplose.erp.core.search.SearchProperties;
+import fr.aplose.erp.tenant.context.TenantContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.util.List;
+
+/** Global search across third parties, contacts, invoices, proposals, products and tickets. */
+@Controller
+@RequiredArgsConstructor
+public class SearchController {
+
+    private final SearchIndexService searchIndexService;
+    private final SearchIndexer searchIndexer;
+    private final SearchProperties searchProperties;
+    private final MessageSource messageSource;
+
+    @GetMapping("/search")
+    public String search(@RequestParam(defaultValue = "") String q, Authentication authentication, Model model) {
+        String tenantId = TenantContext.getCurrentTenantId();
+        model.addAttribute("q", q);
+        model.addAttribute("hits", tenantId == null || q.isBlank() ? List.of()
+                : searchIndexService.search(tenantId, q, SearchDocumentType.visibleWith(authorities(authentication)),
+                        searchProperties.getMaxResults()));
+        return "modules/search";
+    }
+
+    @PostMapping("/search/rebuild")
+    @PreAuthorize("hasAuthority('TENANT_UPDATE')")
+    public String rebuild(RedirectAttributes ra) {
+        boolean started = searchIndexer.rebuildAsync(TenantContext.getCurrentTenantId());
+        ra.addFlashAttribute("successMessage", messageSource.getMessage(
+                started ? "search.rebuild.started" : "search.rebuild.running", null, LocaleContextHolder.getLocale()));
+        return "redirect:/search";
+    }
+
+    private static List<String> authorities(Authentication authentication) {
+        if (authentication == null) return List.of();
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+}
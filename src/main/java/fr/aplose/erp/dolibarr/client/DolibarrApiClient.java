@@ -1,24 +1,20 @@
 package fr.aplose.erp.dolibarr.client;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Client for Dolibarr REST API (GET with DOLAPIKEY header).
+ * Client for Dolibarr REST API (GET with DOLAPIKEY header). Stateless: every call names its {@link DolibarrConnection}.
  */
 public interface DolibarrApiClient {
 
-    /**
-     * Configure client for a run (base URL and API key). Call before testConnection or getList/getOne.
-     */
-    void configure(String baseUrl, String apiKey);
-
     /**
      * Test connection: GET a resource with limit=1 to validate URL and API key.
      *
      * @return true if response is 2xx
      */
-    boolean testConnection();
+    boolean testConnection(DolibarrConnection connection);
 
     /**
      * GET list from Dolibarr API. Handles pagination by requesting with limit/sortfield.
@@ -27,7 +23,20 @@ public interface DolibarrApiClient {
      * @param queryParams optional (limit, sortfield, sortorder, sqlfilters...)
      * @return list of objects (parsed from JSON array); empty list on error or empty response
      */
-    List<Map<String, Object>> getList(String resource, Map<String, String> queryParams);
+    List<Map<String, Object>> getList(DolibarrConnection connection, String resource, Map<String, String> queryParams);
+
+    /**
+     * GET one page of a list: adds {@code limit}, {@code page} (0-based) and an ascending sort order to the query.
+     *
+     * @return the page's objects; empty when there are no more pages
+     */
+    default List<Map<String, Object>> getPage(DolibarrConnection connection, String resource, Map<String, String> queryParams, int page, int limit) {
+        Map<String, String> params = new LinkedHashMap<>(queryParams != null ? queryParams : Map.of());
+        params.put("limit", String.valueOf(limit));
+        params.put("page", String.valueOf(page));
+        params.putIfAbsent("sortorder", "ASC");
+        return getList(connection, resource, params);
+    }
 
     /**
      * GET single object by id: /resource/{id}
@@ -36,10 +45,5 @@ public interface DolibarrApiClient {
      * @param id       Dolibarr id
      * @return map of attributes or null if not found/error
      */
-    Map<String, Object> getOne(String resource, long id);
-
-    /**
-     * Base URL (normalized, no trailing slash).
-     */
-    String getBaseUrl();
+    Map<String, Object> getOne(DolibarrConnection connection, String resource, long id);
 }
@@ -8,6 +8,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
@@ -25,8 +26,6 @@ public class DolibarrApiClientImpl implements DolibarrApiClient {
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
-    private String baseUrl;
-    private String apiKey;
 
     public DolibarrApiClientImpl() {
         this.objectMapper = new ObjectMapper();
@@ -42,33 +41,13 @@ public class DolibarrApiClientImpl implements DolibarrApiClient {
         return f;
     }
 
-    /**
-     * Configure client for a run (base URL and API key). Call before testConnection or getList/getOne.
-     */
-    public void configure(String baseUrl, String apiKey) {
-        this.baseUrl = normalizeBaseUrl(baseUrl);
-        this.apiKey = apiKey != null ? apiKey.trim() : "";
-    }
-
-    private static String normalizeBaseUrl(String url) {
-        if (url == null || url.isBlank()) return "";
-        String u = url.trim();
-        if (u.endsWith("/")) u = u.substring(0, u.length() - 1);
-        return u;
-    }
-
-    @Override
-    public String getBaseUrl() {
-        return baseUrl != null ? baseUrl : "";
-    }
-
     @Override
-    public boolean testConnection() {
-        if (baseUrl == null || baseUrl.isBlank() || apiKey == null || apiKey.isBlank()) {
+    public boolean testConnection(DolibarrConnection connection) {
+        if (!connection.isComplete()) {
             return false;
         }
         try {
-            List<Map<String, Object>> list = getList("thirdparties", Map.of("limit", "1", "sortfield", "t.rowid"));
+            List<Map<String, Object>> list = getList(connection, "thirdparties", Map.of("limit", "1", "sortfield", "t.rowid"));
             return list != null;
         } catch (Exception e) {
             return false;
@@ -76,9 +55,9 @@ public class DolibarrApiClientImpl implements DolibarrApiClient {
     }
 
     @Override
-    public List<Map<String, Object>> getList(String resource, Map<String, String> queryParams) {
-        if (baseUrl == null || baseUrl.isBlank()) return Collections.emptyList();
-        String url = baseUrl + API_PATH + resource;
+    public List<Map<String, Object>> getList(DolibarrConnection connection, String resource, Map<String, String> queryParams) {
+        if (connection.baseUrl().isEmpty()) return Collections.emptyList();
+        String url = connection.baseUrl() + API_PATH + resource;
         if (queryParams != null && !queryParams.isEmpty()) {
             String q = queryParams.entrySet().stream()
                     .map(e -> e.getKey() + "=" + java.net.URLEncoder.encode(e.getValue() != null ? e.getValue() : "", java.nio.charset.StandardCharsets.UTF_8))
@@ -86,7 +65,7 @@ public class DolibarrApiClientImpl implements DolibarrApiClient {
             url = url + "?" + q;
         }
         HttpHeaders headers = new HttpHeaders();
-        headers.set("DOLAPIKEY", apiKey != null ? apiKey : "");
+        headers.set("DOLAPIKEY", connection.apiKey());
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Void> entity = new HttpEntity<>(headers);
         try {
@@ -106,6 +85,11 @@ public class DolibarrApiClientImpl implements DolibarrApiClient {
                 return List.of(map);
             }
             return Collections.emptyList();
+        } catch (HttpClientErrorException.NotFound e) {
+            // Dolibarr answers 404 with a JSON error for an empty list, including a page past the last one;
+            // any other 404 means a wrong URL
+            if (isDolibarrError(e.getResponseBodyAsString())) return Collections.emptyList();
+            throw new DolibarrApiException("Dolibarr API call failed: " + e.getMessage(), e);
         } catch (RestClientException e) {
             throw new DolibarrApiException("Dolibarr API call failed: " + e.getMessage(), e);
         } catch (Exception e) {
@@ -113,12 +97,21 @@ public class DolibarrApiClientImpl implements DolibarrApiClient {
         }
     }
 
+    private boolean isDolibarrError(String body) {
+        if (body == null || body.isBlank()) return false;
+        try {
+            return objectMapper.readTree(body).has("error");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     @Override
-    public Map<String, Object> getOne(String resource, long id) {
-        if (baseUrl == null || baseUrl.isBlank()) return null;
-        String url = baseUrl + API_PATH + resource + "/" + id;
+    public Map<String, Object> getOne(DolibarrConnection connection, String resource, long id) {
+        if (connection.baseUrl().isEmpty()) return null;
+        String url = connection.baseUrl() + API_PATH + resource + "/" + id;
         HttpHeaders headers = new HttpHeaders();
-        headers.set("DOLAPIKEY", apiKey != null ? apiKey : "");
+        headers.set("DOLAPIKEY", connection.apiKey());
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Void> entity = new HttpEntity<>(headers);
         try {
@@ -0,0 +1,31 @@
+package fr.aplose.erp.dolibarr.client;
+
+/**
+ * Where and how to reach a Dolibarr instance: base URL (normalized, no trailing slash) and API key.
+ * Given to every {@link DolibarrApiClient} call, so concurrent imports and connection tests never share settings.
+ */
+public record DolibarrConnection(String baseUrl, String apiKey) {
+
+    public DolibarrConnection {
+        baseUrl = normalizeBaseUrl(baseUrl);
+        apiKey = apiKey != null ? apiKey.trim() : "";
+    }
+
+    /** True when both the base URL and the API key are set. */
+    public boolean isComplete() {
+        return !baseUrl.isEmpty() && !apiKey.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        // Keeps the API key out of logs
+        return "DolibarrConnection[baseUrl=" + baseUrl + "]";
+    }
+
+    private static String normalizeBaseUrl(String url) {
+        if (url == null || url.isBlank()) return "";
+        String u = url.trim();
+        if (u.endsWith("/")) u = u.substring(0, u.length() - 1);
+        return u;
+    }
+}
@@ -0,0 +1,81 @@
+package fr.aplose.erp.dolibarr.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Walks a Dolibarr list page by page ({@code limit}/{@code page}) starting at a given page.
+ * The next page is fetched on the executor while the caller processes the current one.
+ * A page shorter than the page size is the last one.
+ */
+public class DolibarrPageCursor implements AutoCloseable {
+
+    private final DolibarrApiClient client;
+    private final DolibarrConnection connection;
+    private final String resource;
+    private final Map<String, String> queryParams;
+    private final int pageSize;
+    private final Executor executor;
+
+    private int nextPage;
+    private boolean exhausted;
+    private CompletableFuture<List<Map<String, Object>>> prefetch;
+
+    public DolibarrPageCursor(DolibarrApiClient client, DolibarrConnection connection, String resource, Map<String, String> queryParams,
+                              int pageSize, int startPage, Executor executor) {
+        this.client = client;
+        this.connection = connection;
+        this.resource = resource;
+        this.queryParams = queryParams;
+        this.pageSize = pageSize;
+        this.nextPage = startPage;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the next page, or null when the list is exhausted
+     * @throws DolibarrApiException if the page could not be fetched
+     */
+    public Page next() {
+        if (exhausted) return null;
+        List<Map<String, Object>> rows = prefetch != null ? await(prefetch) : fetch(nextPage);
+        prefetch = null;
+        int number = nextPage++;
+        if (rows.isEmpty()) {
+            exhausted = true;
+            return null;
+        }
+        if (rows.size() < pageSize) {
+            exhausted = true;
+        } else {
+            int page = nextPage;
+            prefetch = CompletableFuture.supplyAsync(() -> fetch(page), executor);
+        }
+        return new Page(number, rows);
+    }
+
+    @Override
+    public void close() {
+        if (prefetch != null) prefetch.cancel(true);
+    }
+
+    private List<Map<String, Object>> fetch(int page) {
+        List<Map<String, Object>> rows = client.getPage(connection, resource, queryParams, page, pageSize);
+        return rows != null ? rows : List.of();
+    }
+
+    private static List<Map<String, Object>> await(CompletableFuture<List<Map<String, Object>>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /** One page of a list; {@code number} is 0-based. */
+    public record Page(int number, List<Map<String, Object>> rows) {}
+}
@@ -0,0 +1,16 @@
+package fr.aplose.erp.dolibarr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.dolibarr-import")
+public class DolibarrImportProperties {
+
+    /** Objects requested per Dolibarr API call; each page is imported and committed in one transaction. */
+    private int pageSize = 500;
+}
@@ -0,0 +1,92 @@
+package fr.aplose.erp.dolibarr.service;
+
+import fr.aplose.erp.dolibarr.entity.DolibarrImportLog;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The writes of one page of a step, committed in one transaction. Imported objects themselves go through JPA
+ * (their generated ids feed the mappings); mappings, staging rows, log lines and plain inserts are buffered here
+ * and sent as JDBC batches when the page is flushed by {@link DolibarrPageImporter}.
+ */
+public class DolibarrChunk {
+
+    private final DolibarrImportContext context;
+    private final String step;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<String, Map<Long, Long>> newMappings = new HashMap<>();
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<DolibarrImportContext.Key, Map<String, Long>> newKeys = new EnumMap<>(DolibarrImportContext.Key.class);
+    @Getter(AccessLevel.PACKAGE)
+    private final List<Object[]> mappingRows = new ArrayList<>();
+    @Getter(AccessLevel.PACKAGE)
+    private final List<Object[]> stagingRows = new ArrayList<>();
+    @Getter(AccessLevel.PACKAGE)
+    private final List<DolibarrImportLog> logs = new ArrayList<>();
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<String, List<Object[]>> inserts = new LinkedHashMap<>();
+
+    DolibarrChunk(DolibarrImportContext context, String step) {
+        this.context = context;
+        this.step = step;
+    }
+
+    public String getTenantId() {
+        return context.getTenantId();
+    }
+
+    public long getRunId() {
+        return context.getRunId();
+    }
+
+    /** AploseERP id imported for a Dolibarr object, including objects imported earlier in this chunk. */
+    public Long mappedId(String dolibarrEntity, Long dolibarrId) {
+        if (dolibarrId == null) return null;
+        Long id = newMappings.getOrDefault(dolibarrEntity, Map.of()).get(dolibarrId);
+        return id != null ? id : context.mappedId(dolibarrEntity, dolibarrId);
+    }
+
+    /** Id of the tenant's row with this code/reference, including rows created earlier in this chunk. */
+    public Long existingId(DolibarrImportContext.Key key, String value) {
+        Long id = newKeys.getOrDefault(key, Map.of()).get(value);
+        return id != null ? id : context.existingId(key, value);
+    }
+
+    public void map(String dolibarrEntity, long dolibarrId, String aploseEntity, long aploseId) {
+        newMappings.computeIfAbsent(dolibarrEntity, k -> new HashMap<>()).put(dolibarrId, aploseId);
+        mappingRows.add(new Object[]{context.getTenantId(), context.getRunId(), dolibarrEntity, dolibarrId, aploseEntity, aploseId});
+    }
+
+    public void addKey(DolibarrImportContext.Key key, String value, long id) {
+        newKeys.computeIfAbsent(key, k -> new HashMap<>()).put(value, id);
+    }
+
+    public void stage(String resource, long externalId, String payloadJson) {
+        stagingRows.add(new Object[]{context.getRunId(), resource, externalId, payloadJson});
+    }
+
+    /** Buffers a row for a JDBC batch of the given INSERT statement. */
+    public void insert(String sql, Object... args) {
+        inserts.computeIfAbsent(sql, k -> new ArrayList<>()).add(args);
+    }
+
+    public void info(String message) {
+        logs.add(DolibarrImportLogService.entry(context.getRunId(), step, DolibarrImportLog.LEVEL_INFO, null, message));
+    }
+
+    public void warn(String externalId, String message) {
+        logs.add(DolibarrImportLogService.entry(context.getRunId(), step, DolibarrImportLog.LEVEL_WARN, externalId, message));
+    }
+
+    public void skip(String externalId, String message) {
+        logs.add(DolibarrImportLogService.entry(context.getRunId(), step, DolibarrImportLog.LEVEL_SKIP, externalId, message));
+    }
+}
@@ -2,13 +2,12 @@ package fr.aplose.erp.dolibarr.service;
 
 import fr.aplose.erp.dictionary.DictionaryType;
 import fr.aplose.erp.dictionary.service.DictionaryService;
-import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
-import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Imports Dolibarr dictionaries (countries, currencies, etc.) into AploseERP dictionary_items.
@@ -18,7 +17,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class DolibarrDictionaryImporter {
 
-    private final DolibarrApiClient client;
+    private final DolibarrPageImporter pageImporter;
     private final DolibarrImportLogService logService;
     private final DictionaryService dictionaryService;
 
@@ -34,33 +33,27 @@ public class DolibarrDictionaryImporter {
             Map.entry("payment_vat", DictionaryType.PAYMENT_METHOD)
     );
 
-    public void importDictionaries(Long runId) {
-        String tenantId = TenantContext.getCurrentTenantId();
-        if (tenantId == null) return;
-
-        for (Map.Entry<String, String> entry : RESOURCE_TO_TYPE.entrySet()) {
-            String resource = entry.getKey();
-            String dictType = entry.getValue();
-            try {
-                List<Map<String, Object>> list = client.getList(resource, Map.of("limit", "5000", "sortfield", "rowid"));
-                if (list == null || list.isEmpty()) continue;
+    /** Dolibarr API resources to import, each one independent of the others. */
+    public static Set<String> resources() {
+        return RESOURCE_TO_TYPE.keySet();
+    }
 
-                int count = 0;
-                for (Map<String, Object> item : list) {
-                    try {
-                        String code = toCode(item, resource);
-                        String label = toLabel(item, resource);
-                        if (code == null || code.isBlank()) continue;
-                        dictionaryService.createOrUpdateForTenant(tenantId, dictType, code, label, count, true);
-                        count++;
-                    } catch (Exception e) {
-                        logService.logWarn(runId, "DICTIONARIES", String.valueOf(DolibarrImportHelper.getDolibarrId(item)), e.getMessage());
-                    }
-                }
-                logService.logInfo(runId, "DICTIONARIES", "Imported " + count + " items for " + dictType + " from " + resource);
-            } catch (Exception e) {
-                logService.logWarn(runId, "DICTIONARIES", resource, "Could not load " + resource + ": " + e.getMessage());
+    public void importDictionary(DolibarrImportContext ctx, String resource) {
+        String dictType = RESOURCE_TO_TYPE.get(resource);
+        AtomicInteger count = new AtomicInteger();
+        try {
+            pageImporter.importPages(ctx, "DICTIONARIES", resource, Map.of("sortfield", "rowid"), (item, chunk) -> {
+                String code = toCode(item, resource);
+                String label = toLabel(item, resource);
+                if (code == null || code.isBlank()) return;
+                dictionaryService.createOrUpdateForTenant(ctx.getTenantId(), dictType, code, label, count.get(), true);
+                count.incrementAndGet();
+            });
+            if (count.get() > 0) {
+                logService.logInfo(ctx.getRunId(), "DICTIONARIES", "Imported " + count.get() + " items for " + dictType + " from " + resource);
             }
+        } catch (Exception e) {
+            logService.logWarn(ctx.getRunId(), "DICTIONARIES", resource, "Could not load " + resource + ": " + e.getMessage());
         }
     }
 
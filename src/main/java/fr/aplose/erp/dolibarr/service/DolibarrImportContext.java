@@ -0,0 +1,95 @@
+package fr.aplose.erp.dolibarr.service;
+
+import fr.aplose.erp.dolibarr.client.DolibarrConnection;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * State shared by the steps of one import run. Dolibarr id to AploseERP id mappings (all runs of the tenant,
+ * latest wins) and existing codes/references are loaded once per entity into memory, so rows are resolved
+ * without a query each. Steps run in parallel and read these maps concurrently; a {@link DolibarrChunk}
+ * adds its entries only after its transaction committed.
+ */
+public class DolibarrImportContext {
+
+    @Getter
+    private final long runId;
+    @Getter
+    private final String tenantId;
+    /** Dolibarr instance the run reads from. */
+    @Getter
+    private final DolibarrConnection connection;
+    /** Used for parallel steps and page prefetching. */
+    @Getter
+    private final ExecutorService executor;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Map<Long, Long>> mappings = new ConcurrentHashMap<>();
+    private final Map<Key, Map<String, Long>> keys = new ConcurrentHashMap<>();
+
+    public DolibarrImportContext(long runId, String tenantId, DolibarrConnection connection, ExecutorService executor,
+                                 JdbcTemplate jdbcTemplate) {
+        this.runId = runId;
+        this.tenantId = tenantId;
+        this.connection = connection;
+        this.executor = executor;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** AploseERP id imported for a Dolibarr object, or null. */
+    public Long mappedId(String dolibarrEntity, long dolibarrId) {
+        return mappingsOf(dolibarrEntity).get(dolibarrId);
+    }
+
+    /** Id of the tenant's existing row with this code/reference, or null. */
+    public Long existingId(Key key, String value) {
+        return keysOf(key).get(value);
+    }
+
+    void publish(DolibarrChunk chunk) {
+        chunk.getNewMappings().forEach((entity, ids) -> mappingsOf(entity).putAll(ids));
+        chunk.getNewKeys().forEach((key, values) -> keysOf(key).putAll(values));
+    }
+
+    private Map<Long, Long> mappingsOf(String dolibarrEntity) {
+        return mappings.computeIfAbsent(dolibarrEntity, entity -> {
+            Map<Long, Long> ids = new ConcurrentHashMap<>();
+            jdbcTemplate.query("SELECT dolibarr_id, aplose_id FROM dolibarr_import_mapping " +
+                            "WHERE tenant_id = ? AND dolibarr_entity = ? ORDER BY id",
+                    rs -> {
+                        ids.put(rs.getLong(1), rs.getLong(2));
+                    },
+                    tenantId, entity);
+            return ids;
+        });
+    }
+
+    private Map<String, Long> keysOf(Key key) {
+        return keys.computeIfAbsent(key, k -> {
+            Map<String, Long> ids = new ConcurrentHashMap<>();
+            jdbcTemplate.query(k.sql, rs -> {
+                String value = rs.getString(1);
+                if (value != null) ids.putIfAbsent(value, rs.getLong(2));
+            }, tenantId);
+            return ids;
+        });
+    }
+
+    /** Unique codes/references checked before creating a row. */
+    @RequiredArgsConstructor
+    public enum Key {
+        THIRD_PARTY_CODE("SELECT code, id FROM third_parties WHERE tenant_id = ? AND deleted_at IS NULL"),
+        PRODUCT_CODE("SELECT code, id FROM products WHERE tenant_id = ? AND deleted_at IS NULL"),
+        CATEGORY_CODE("SELECT code, id FROM product_categories WHERE tenant_id = ?"),
+        PROPOSAL_REF("SELECT reference, id FROM proposals WHERE tenant_id = ?"),
+        ORDER_REF("SELECT reference, id FROM sales_orders WHERE tenant_id = ?"),
+        INVOICE_REF("SELECT reference, id FROM invoices WHERE tenant_id = ?");
+
+        private final String sql;
+    }
+}
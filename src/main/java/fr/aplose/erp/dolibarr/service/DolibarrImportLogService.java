@@ -7,15 +7,19 @@ import fr.aplose.erp.dolibarr.entity.DolibarrImportRun;
 import fr.aplose.erp.dolibarr.repository.DolibarrImportLogRepository;
 import fr.aplose.erp.dolibarr.repository.DolibarrImportRunRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class DolibarrImportLogService {
 
     private final DolibarrImportRunRepository runRepository;
     private final DolibarrImportLogRepository logRepository;
+    private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Transactional
@@ -38,16 +42,21 @@ public class DolibarrImportLogService {
         });
     }
 
+    /** Marks an interrupted or partial run as running again before it is resumed. */
+    @Transactional
+    public void reopenRun(Long runId) {
+        runRepository.findById(runId).ifPresent(run -> {
+            run.setStatus(DolibarrImportRun.STATUS_RUNNING);
+            run.setFinishedAt(null);
+            runRepository.save(run);
+        });
+    }
+
     @Transactional
     public void log(Long importRunId, String step, String level, String externalId, String entityType, Long entityId, String message, Object detail) {
-        DolibarrImportLog logEntry = new DolibarrImportLog();
-        logEntry.setImportRunId(importRunId);
-        logEntry.setStep(step);
-        logEntry.setLevel(level);
-        logEntry.setExternalId(externalId);
+        DolibarrImportLog logEntry = entry(importRunId, step, level, externalId, message);
         logEntry.setEntityType(entityType);
         logEntry.setEntityId(entityId);
-        logEntry.setMessage(message != null ? (message.length() > 1000 ? message.substring(0, 1000) : message) : "");
         if (detail != null) {
             try {
                 logEntry.setDetailJson(objectMapper.writeValueAsString(detail));
@@ -56,6 +65,26 @@ public class DolibarrImportLogService {
         logRepository.save(logEntry);
     }
 
+    /** Inserts log entries in one JDBC batch, in the caller's transaction. */
+    @Transactional
+    public void saveAll(List<DolibarrImportLog> entries) {
+        if (entries.isEmpty()) return;
+        jdbcTemplate.batchUpdate("INSERT INTO dolibarr_import_log (import_run_id, step, level, external_id, " +
+                        "entity_type, entity_id, message, detail_json) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                entries.stream().map(e -> new Object[]{e.getImportRunId(), e.getStep(), e.getLevel(), e.getExternalId(),
+                        e.getEntityType(), e.getEntityId(), e.getMessage(), e.getDetailJson()}).toList());
+    }
+
+    static DolibarrImportLog entry(Long importRunId, String step, String level, String externalId, String message) {
+        DolibarrImportLog logEntry = new DolibarrImportLog();
+        logEntry.setImportRunId(importRunId);
+        logEntry.setStep(step);
+        logEntry.setLevel(level);
+        logEntry.setExternalId(externalId);
+        logEntry.setMessage(message != null ? (message.length() > 1000 ? message.substring(0, 1000) : message) : "");
+        return logEntry;
+    }
+
     public void logInfo(Long runId, String step, String message) {
         log(runId, step, DolibarrImportLog.LEVEL_INFO, null, null, null, message, null);
     }
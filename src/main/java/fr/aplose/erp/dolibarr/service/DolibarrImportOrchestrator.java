@@ -1,20 +1,37 @@
 package fr.aplose.erp.dolibarr.service;
 
-import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
+import fr.aplose.erp.dolibarr.client.DolibarrConnection;
 import fr.aplose.erp.dolibarr.entity.DolibarrImportRun;
 import fr.aplose.erp.dolibarr.repository.DolibarrImportRunRepository;
+import fr.aplose.erp.modules.reporting.service.InvoiceFactService;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs a Dolibarr import. Steps that do not depend on each other run in parallel, in phases:
+ * dictionaries, third parties, products and staging resources first, then contacts (linked to third parties),
+ * then proposals, invoices and orders, then payments (linked to invoices).
+ * Every page is committed on its own with the step's checkpoint, so a failed or interrupted run can be resumed.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DolibarrImportOrchestrator {
 
-    private final DolibarrApiClient dolibarrApiClient;
     private final DolibarrImportLogService importLogService;
     private final DolibarrImportRunRepository runRepository;
     private final DolibarrDictionaryImporter dictionaryImporter;
@@ -26,42 +43,84 @@ public class DolibarrImportOrchestrator {
     private final DolibarrPaymentImporter paymentImporter;
     private final DolibarrOrderImporter orderImporter;
     private final DolibarrStagingImporter stagingImporter;
+    private final InvoiceFactService invoiceFactService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Set<Long> activeRuns = ConcurrentHashMap.newKeySet();
 
     /**
      * Run full import for the given tenant. Caller must pass baseUrl and apiKey (from form or saved config).
      * TenantContext is set to tenantId for the duration of the import.
      */
-    @Transactional
     public DolibarrImportRun runImport(String tenantId, String baseUrl, String apiKey, Long configId, Long createdBy) {
         if (tenantId == null || tenantId.isBlank()) {
             throw new IllegalArgumentException("tenantId is required");
         }
-        String previousTenant = TenantContext.getCurrentTenantId();
-        try {
-            TenantContext.setCurrentTenantId(tenantId);
-            dolibarrApiClient.configure(baseUrl, apiKey);
+        DolibarrConnection connection = new DolibarrConnection(baseUrl, apiKey);
+        DolibarrImportRun run = importLogService.createRun(tenantId, baseUrl, configId, createdBy);
+        importLogService.logInfo(run.getId(), "START", "Import started from " + baseUrl);
+        return execute(tenantId, run.getId(), connection);
+    }
+
+    /**
+     * Resumes a run that failed, finished partially or was interrupted (e.g. by a restart): steps already completed
+     * are skipped and the others continue after their last committed page. The API key is not stored and must be given again.
+     */
+    public DolibarrImportRun resumeImport(String tenantId, Long runId, String baseUrl, String apiKey) {
+        DolibarrImportRun run = runRepository.findById(runId)
+                .filter(r -> r.getTenantId().equals(tenantId))
+                .orElseThrow(() -> new IllegalArgumentException("Import run not found: " + runId));
+        if (!isResumable(run)) {
+            throw new IllegalStateException("Import run " + runId + " cannot be resumed");
+        }
+        DolibarrConnection connection = new DolibarrConnection(baseUrl, apiKey);
+        importLogService.reopenRun(runId);
+        importLogService.logInfo(runId, "RESUME", "Import resumed from " + baseUrl);
+        return execute(tenantId, runId, connection);
+    }
 
-            DolibarrImportRun run = importLogService.createRun(tenantId, baseUrl, configId, createdBy);
-            long runId = run.getId();
+    /** A run can be resumed unless it succeeded or is being executed by this instance. */
+    public boolean isResumable(DolibarrImportRun run) {
+        return !DolibarrImportRun.STATUS_SUCCESS.equals(run.getStatus()) && !activeRuns.contains(run.getId());
+    }
 
-            importLogService.logInfo(runId, "START", "Import started from " + baseUrl);
+    private DolibarrImportRun execute(String tenantId, long runId, DolibarrConnection connection) {
+        if (!activeRuns.add(runId)) {
+            throw new IllegalStateException("Import run " + runId + " is already running");
+        }
+        String previousTenant = TenantContext.getCurrentTenantId();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            TenantContext.setCurrentTenantId(tenantId);
+            DolibarrImportContext ctx = new DolibarrImportContext(runId, tenantId, connection, executor, jdbcTemplate);
 
-            runStep(runId, "DICTIONARIES", () -> dictionaryImporter.importDictionaries(runId));
-            runStep(runId, "THIRD_PARTIES", () -> thirdPartyImporter.importThirdParties(runId));
-            runStep(runId, "CONTACTS", () -> contactImporter.importContacts(runId));
-            runStep(runId, "PRODUCTS", () -> productImporter.importProducts(runId));
-            runStep(runId, "PROPOSALS", () -> proposalImporter.importProposals(runId));
-            runStep(runId, "INVOICES", () -> invoiceImporter.importInvoices(runId));
-            runStep(runId, "PAYMENTS", () -> paymentImporter.importPayments(runId));
-            runStep(runId, "ORDERS", () -> orderImporter.importOrders(runId));
-            runStep(runId, "STAGING_TODO", () -> stagingImporter.importStaging(runId));
+            Map<String, Consumer<DolibarrImportContext>> phase1 = new LinkedHashMap<>();
+            phase1.put("DICTIONARIES", c -> DolibarrDictionaryImporter.resources().forEach(r -> dictionaryImporter.importDictionary(c, r)));
+            phase1.put("THIRD_PARTIES", thirdPartyImporter::importThirdParties);
+            phase1.put("PRODUCTS", productImporter::importProducts);
+            for (String resource : DolibarrStagingImporter.STAGING_RESOURCES) {
+                phase1.put("STAGING_TODO:" + resource, c -> stagingImporter.importStaging(c, resource));
+            }
+            boolean ok = runPhase(ctx, phase1);
+            ok &= runPhase(ctx, Map.of("CONTACTS", contactImporter::importContacts));
+            Map<String, Consumer<DolibarrImportContext>> phase3 = new LinkedHashMap<>();
+            phase3.put("PROPOSALS", proposalImporter::importProposals);
+            phase3.put("INVOICES", invoiceImporter::importInvoices);
+            phase3.put("ORDERS", orderImporter::importOrders);
+            ok &= runPhase(ctx, phase3);
+            ok &= runPhase(ctx, Map.of("PAYMENTS", paymentImporter::importPayments));
+            // Imported invoices and payments bypass InvoiceService, so recompute the report facts once
+            ok &= runStep(runId, "REPORT_FACTS", () -> invoiceFactService.rebuild(tenantId));
 
-            String status = DolibarrImportRun.STATUS_SUCCESS;
+            String status = ok ? DolibarrImportRun.STATUS_SUCCESS : DolibarrImportRun.STATUS_PARTIAL;
             importLogService.finishRun(runId, status);
             importLogService.logInfo(runId, "END", "Import finished with status " + status);
 
             return runRepository.findById(runId).orElseThrow();
+        } catch (RuntimeException e) {
+            importLogService.finishRun(runId, DolibarrImportRun.STATUS_FAILED);
+            throw e;
         } finally {
+            activeRuns.remove(runId);
             if (previousTenant != null) {
                 TenantContext.setCurrentTenantId(previousTenant);
             } else {
@@ -70,12 +129,40 @@ public class DolibarrImportOrchestrator {
         }
     }
 
-    private void runStep(Long runId, String stepName, Runnable step) {
+    /** Runs the steps of a phase in parallel and waits for all of them; false if any step failed. */
+    private boolean runPhase(DolibarrImportContext ctx, Map<String, Consumer<DolibarrImportContext>> steps) {
+        List<Future<Boolean>> results = steps.entrySet().stream()
+                .map(step -> ctx.getExecutor().submit(() -> {
+                    TenantContext.setCurrentTenantId(ctx.getTenantId());
+                    try {
+                        return runStep(ctx.getRunId(), step.getKey(), () -> step.getValue().accept(ctx));
+                    } finally {
+                        TenantContext.clear();
+                    }
+                }))
+                .toList();
+        boolean ok = true;
+        for (Future<Boolean> result : results) {
+            try {
+                ok &= result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Dolibarr import interrupted", e);
+            } catch (ExecutionException e) {
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private boolean runStep(Long runId, String stepName, Runnable step) {
         try {
             step.run();
+            return true;
         } catch (Exception e) {
             log.warn("Dolibarr import step {} failed: {}", stepName, e.getMessage());
             importLogService.logError(runId, stepName, null, e.getMessage(), null);
+            return false;
         }
     }
 }
@@ -0,0 +1,160 @@
+package fr.aplose.erp.dolibarr.service;
+
+import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
+import fr.aplose.erp.dolibarr.client.DolibarrPageCursor;
+import fr.aplose.erp.dolibarr.config.DolibarrImportProperties;
+import fr.aplose.erp.dolibarr.entity.DolibarrImportLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports a Dolibarr list page by page. Each page is imported in its own transaction together with its
+ * buffered writes and the step's checkpoint (next page to import), so a run interrupted at any point resumes
+ * from its last committed page. If a page fails, it is retried one row per transaction so that only the
+ * failing rows are lost.
+ */
+@Slf4j
+@Service
+public class DolibarrPageImporter {
+
+    private static final String SELECT_CHECKPOINT_SQL =
+            "SELECT next_page, completed FROM dolibarr_import_checkpoint WHERE import_run_id = ? AND step = ?";
+    private static final String UPSERT_CHECKPOINT_SQL =
+            "INSERT INTO dolibarr_import_checkpoint (import_run_id, step, next_page, completed) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE next_page = ?, completed = ?, updated_at = CURRENT_TIMESTAMP";
+    private static final String INSERT_MAPPING_SQL =
+            "INSERT INTO dolibarr_import_mapping (tenant_id, import_run_id, dolibarr_entity, dolibarr_id, aplose_entity, aplose_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_STAGING_SQL =
+            "INSERT INTO dolibarr_import_staging (import_run_id, entity_dolibarr, external_id, payload_json) VALUES (?, ?, ?, ?)";
+
+    private final DolibarrApiClient client;
+    private final DolibarrImportLogService logService;
+    private final DolibarrImportProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public DolibarrPageImporter(DolibarrApiClient client, DolibarrImportLogService logService,
+                                DolibarrImportProperties properties, JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager) {
+        this.client = client;
+        this.logService = logService;
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Imports all remaining pages of a resource for a step, skipping pages committed by an earlier attempt of the run.
+     *
+     * @return number of rows read in this attempt
+     */
+    public int importPages(DolibarrImportContext ctx, String step, String resource, Map<String, String> queryParams,
+                           RowHandler handler) {
+        String checkpoint = step + ":" + resource;
+        List<Object[]> saved = jdbcTemplate.query(SELECT_CHECKPOINT_SQL,
+                (rs, i) -> new Object[]{rs.getInt(1), rs.getBoolean(2)}, ctx.getRunId(), checkpoint);
+        if (!saved.isEmpty() && (Boolean) saved.get(0)[1]) return 0;
+        int startPage = saved.isEmpty() ? 0 : (Integer) saved.get(0)[0];
+        if (startPage > 0) {
+            log.info("Dolibarr import run {}: resuming {} at page {}", ctx.getRunId(), checkpoint, startPage);
+        }
+
+        int rows = 0;
+        int nextPage = startPage;
+        try (DolibarrPageCursor cursor = new DolibarrPageCursor(client, ctx.getConnection(), resource, queryParams,
+                properties.getPageSize(), startPage, ctx.getExecutor())) {
+            for (DolibarrPageCursor.Page page = cursor.next(); page != null; page = cursor.next()) {
+                importPage(ctx, step, checkpoint, page, handler);
+                rows += page.rows().size();
+                nextPage = page.number() + 1;
+            }
+        }
+        saveCheckpoint(ctx.getRunId(), checkpoint, nextPage, true);
+        return rows;
+    }
+
+    private void importPage(DolibarrImportContext ctx, String step, String checkpoint,
+                            DolibarrPageCursor.Page page, RowHandler handler) {
+        try {
+            DolibarrChunk chunk = transactionTemplate.execute(status -> {
+                DolibarrChunk c = new DolibarrChunk(ctx, step);
+                for (Map<String, Object> row : page.rows()) {
+                    handle(handler, row, c);
+                }
+                flush(c);
+                saveCheckpoint(ctx.getRunId(), checkpoint, page.number() + 1, false);
+                return c;
+            });
+            ctx.publish(chunk);
+        } catch (RuntimeException e) {
+            log.warn("Dolibarr import run {}: page {} of {} failed ({}), retrying row by row",
+                    ctx.getRunId(), page.number(), checkpoint, e.getMessage());
+            importRowByRow(ctx, step, checkpoint, page, handler);
+        }
+    }
+
+    private void importRowByRow(DolibarrImportContext ctx, String step, String checkpoint,
+                                DolibarrPageCursor.Page page, RowHandler handler) {
+        List<DolibarrImportLog> errors = new ArrayList<>();
+        for (Map<String, Object> row : page.rows()) {
+            try {
+                DolibarrChunk chunk = transactionTemplate.execute(status -> {
+                    DolibarrChunk c = new DolibarrChunk(ctx, step);
+                    handle(handler, row, c);
+                    flush(c);
+                    return c;
+                });
+                ctx.publish(chunk);
+            } catch (RuntimeException e) {
+                Long externalId = DolibarrImportHelper.getDolibarrId(row);
+                errors.add(DolibarrImportLogService.entry(ctx.getRunId(), step, DolibarrImportLog.LEVEL_ERROR,
+                        externalId != null ? String.valueOf(externalId) : null,
+                        NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            logService.saveAll(errors);
+            saveCheckpoint(ctx.getRunId(), checkpoint, page.number() + 1, false);
+        });
+    }
+
+    private static void handle(RowHandler handler, Map<String, Object> row, DolibarrChunk chunk) {
+        try {
+            handler.importRow(row, chunk);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void flush(DolibarrChunk chunk) {
+        if (!chunk.getMappingRows().isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_MAPPING_SQL, chunk.getMappingRows());
+        }
+        if (!chunk.getStagingRows().isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_STAGING_SQL, chunk.getStagingRows());
+        }
+        chunk.getInserts().forEach(jdbcTemplate::batchUpdate);
+        logService.saveAll(chunk.getLogs());
+    }
+
+    private void saveCheckpoint(long runId, String checkpoint, int nextPage, boolean completed) {
+        jdbcTemplate.update(UPSERT_CHECKPOINT_SQL, runId, checkpoint, nextPage, completed, nextPage, completed);
+    }
+
+    /** Imports one Dolibarr object into the chunk; throwing rolls back the chunk's transaction. */
+    @FunctionalInterface
+    public interface RowHandler {
+        void importRow(Map<String, Object> row, DolibarrChunk chunk) throws Exception;
+    }
+}
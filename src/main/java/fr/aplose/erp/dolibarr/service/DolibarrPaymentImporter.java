@@ -1,66 +1,46 @@
 package fr.aplose.erp.dolibarr.service;
 
-import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
-import fr.aplose.erp.dolibarr.repository.DolibarrImportMappingRepository;
-import fr.aplose.erp.modules.commerce.entity.Invoice;
-import fr.aplose.erp.modules.commerce.entity.Payment;
-import fr.aplose.erp.modules.commerce.repository.InvoiceRepository;
-import fr.aplose.erp.modules.commerce.repository.PaymentRepository;
-import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class DolibarrPaymentImporter {
 
-    private final DolibarrApiClient client;
-    private final DolibarrImportLogService logService;
-    private final PaymentRepository paymentRepository;
-    private final InvoiceRepository invoiceRepository;
-    private final DolibarrImportMappingRepository mappingRepository;
+    private static final String INSERT_PAYMENT_SQL =
+            "INSERT INTO payments (tenant_id, invoice_id, amount, currency_code, payment_date, payment_method, reference, notes) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-    public void importPayments(Long runId) {
-        String tenantId = TenantContext.getCurrentTenantId();
-        if (tenantId == null) return;
+    private final DolibarrPageImporter pageImporter;
+    private final DolibarrImportLogService logService;
 
+    public void importPayments(DolibarrImportContext ctx) {
         try {
-            List<Map<String, Object>> list = client.getList("payments", Map.of("limit", "5000", "sortfield", "rowid"));
-            if (list == null) return;
-
-            for (Map<String, Object> m : list) {
-                Long doliId = DolibarrImportHelper.getDolibarrId(m);
-                if (doliId == null) continue;
-                try {
-                    Long fkFacture = DolibarrImportHelper.getLong(m, "fk_facture");
-                    if (fkFacture == null) continue;
-                    Optional<Long> invId = mappingRepository.findAploseId(tenantId, runId, "invoices", fkFacture);
-                    if (invId.isEmpty()) continue;
-                    Invoice inv = invoiceRepository.findByIdAndTenantId(invId.get(), tenantId).orElse(null);
-                    if (inv == null) continue;
-
-                    Payment pay = new Payment();
-                    pay.setTenantId(tenantId);
-                    pay.setInvoice(inv);
-                    pay.setAmount(DolibarrImportHelper.getBigDecimal(m, "amount") != null ? DolibarrImportHelper.getBigDecimal(m, "amount") : BigDecimal.ZERO);
-                    pay.setCurrencyCode(DolibarrImportHelper.getString(m, "currency_code") != null ? DolibarrImportHelper.getString(m, "currency_code") : "EUR");
-                    pay.setPaymentDate(DolibarrImportHelper.getLocalDate(m, "datep") != null ? DolibarrImportHelper.getLocalDate(m, "datep") : LocalDate.now());
-                    pay.setPaymentMethod(DolibarrImportHelper.getString(m, "payment_method") != null ? DolibarrImportHelper.getString(m, "payment_method") : "BANK");
-                    pay.setReference(DolibarrImportHelper.getString(m, "num_payment"));
-                    pay.setNotes(DolibarrImportHelper.getString(m, "note"));
-                    paymentRepository.save(pay);
-                } catch (Exception e) {
-                    logService.logError(runId, "PAYMENTS", String.valueOf(doliId), e.getMessage(), null);
-                }
-            }
+            pageImporter.importPages(ctx, "PAYMENTS", "payments", Map.of("sortfield", "rowid"), this::importPayment);
         } catch (Exception e) {
-            logService.logWarn(runId, "PAYMENTS", null, "Payments import skipped: " + e.getMessage());
+            logService.logWarn(ctx.getRunId(), "PAYMENTS", null, "Payments import skipped: " + e.getMessage());
         }
     }
+
+    private void importPayment(Map<String, Object> m, DolibarrChunk chunk) {
+        if (DolibarrImportHelper.getDolibarrId(m) == null) return;
+        Long invoiceId = chunk.mappedId("invoices", DolibarrImportHelper.getLong(m, "fk_facture"));
+        if (invoiceId == null) return;
+
+        BigDecimal amount = DolibarrImportHelper.getBigDecimal(m, "amount");
+        LocalDate paymentDate = DolibarrImportHelper.getLocalDate(m, "datep");
+        String currencyCode = DolibarrImportHelper.getString(m, "currency_code");
+        String method = DolibarrImportHelper.getString(m, "payment_method");
+        chunk.insert(INSERT_PAYMENT_SQL, chunk.getTenantId(), invoiceId,
+                amount != null ? amount : BigDecimal.ZERO,
+                currencyCode != null ? currencyCode : "EUR",
+                paymentDate != null ? paymentDate : LocalDate.now(),
+                method != null ? method : "BANK",
+                DolibarrImportHelper.getString(m, "num_payment"),
+                DolibarrImportHelper.getString(m, "note"));
+    }
 }
@@ -1,125 +1,98 @@
 package fr.aplose.erp.dolibarr.service;
 
-import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
-import fr.aplose.erp.dolibarr.entity.DolibarrImportMapping;
-import fr.aplose.erp.dolibarr.repository.DolibarrImportMappingRepository;
 import fr.aplose.erp.modules.catalog.entity.Product;
 import fr.aplose.erp.modules.catalog.entity.ProductCategory;
 import fr.aplose.erp.modules.catalog.repository.ProductCategoryRepository;
 import fr.aplose.erp.modules.catalog.repository.ProductRepository;
-import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class DolibarrProductImporter {
 
-    private final DolibarrApiClient client;
+    private final DolibarrPageImporter pageImporter;
     private final DolibarrImportLogService logService;
     private final ProductRepository productRepository;
     private final ProductCategoryRepository categoryRepository;
-    private final DolibarrImportMappingRepository mappingRepository;
-
-    public void importProducts(Long runId) {
-        String tenantId = TenantContext.getCurrentTenantId();
-        if (tenantId == null) return;
 
+    public void importProducts(DolibarrImportContext ctx) {
         try {
-            List<Map<String, Object>> catList = client.getList("categories", Map.of("limit", "1000", "sortfield", "rowid"));
-            if (catList != null && !catList.isEmpty()) {
-                for (Map<String, Object> m : catList) {
-                    Long doliId = DolibarrImportHelper.getDolibarrId(m);
-                    if (doliId == null) continue;
-                    String code = DolibarrImportHelper.getString(m, "code");
-                    if (code == null || code.isBlank()) code = "CAT-" + doliId;
-                    if (categoryRepository.findByCodeAndTenantId(code, tenantId).isPresent()) continue;
-                    ProductCategory cat = new ProductCategory();
-                    cat.setCode(code);
-                    cat.setName(DolibarrImportHelper.getString(m, "label") != null ? DolibarrImportHelper.getString(m, "label") : code);
-                    cat.setDescription(DolibarrImportHelper.getString(m, "description"));
-                    ProductCategory saved = categoryRepository.save(cat);
-                    DolibarrImportMapping mapping = new DolibarrImportMapping();
-                    mapping.setTenantId(tenantId);
-                    mapping.setImportRunId(runId);
-                    mapping.setDolibarrEntity("categories");
-                    mapping.setDolibarrId(doliId);
-                    mapping.setAploseEntity("PRODUCT_CATEGORY");
-                    mapping.setAploseId(saved.getId());
-                    mappingRepository.save(mapping);
-                }
-            }
+            pageImporter.importPages(ctx, "PRODUCTS", "categories", Map.of("sortfield", "rowid"), this::importCategory);
         } catch (Exception e) {
-            logService.logWarn(runId, "PRODUCTS", "categories", "Could not load categories: " + e.getMessage());
+            logService.logWarn(ctx.getRunId(), "PRODUCTS", "categories", "Could not load categories: " + e.getMessage());
         }
+        pageImporter.importPages(ctx, "PRODUCTS", "products", Map.of("sortfield", "rowid"), this::importProduct);
+    }
 
-        List<Map<String, Object>> list = client.getList("products", Map.of("limit", "10000", "sortfield", "rowid"));
-        if (list == null) return;
-
-        for (Map<String, Object> m : list) {
-            Long doliId = DolibarrImportHelper.getDolibarrId(m);
-            if (doliId == null) continue;
-
-            try {
-                String code = DolibarrImportHelper.getString(m, "ref");
-                if (code == null || code.isBlank()) code = "PRD-" + doliId;
-                if (productRepository.findByCodeAndTenantIdAndDeletedAtIsNull(code, tenantId).isPresent()) {
-                    logService.logSkip(runId, "PRODUCTS", String.valueOf(doliId), "Code exists: " + code);
-                    continue;
-                }
+    private void importCategory(Map<String, Object> m, DolibarrChunk chunk) {
+        Long doliId = DolibarrImportHelper.getDolibarrId(m);
+        if (doliId == null) return;
+        String code = DolibarrImportHelper.getString(m, "code");
+        if (code == null || code.isBlank()) code = "CAT-" + doliId;
+        Long existingId = chunk.existingId(DolibarrImportContext.Key.CATEGORY_CODE, code);
+        if (existingId != null) {
+            chunk.map("categories", doliId, "PRODUCT_CATEGORY", existingId);
+            return;
+        }
+        ProductCategory cat = new ProductCategory();
+        cat.setCode(code);
+        cat.setName(DolibarrImportHelper.getString(m, "label") != null ? DolibarrImportHelper.getString(m, "label") : code);
+        cat.setDescription(DolibarrImportHelper.getString(m, "description"));
+        ProductCategory saved = categoryRepository.save(cat);
+        chunk.addKey(DolibarrImportContext.Key.CATEGORY_CODE, code, saved.getId());
+        chunk.map("categories", doliId, "PRODUCT_CATEGORY", saved.getId());
+    }
 
-                String name = DolibarrImportHelper.getString(m, "label");
-                if (name == null) name = DolibarrImportHelper.getString(m, "name");
-                if (name == null || name.isBlank()) name = code;
+    private void importProduct(Map<String, Object> m, DolibarrChunk chunk) {
+        Long doliId = DolibarrImportHelper.getDolibarrId(m);
+        if (doliId == null) return;
 
-                Product p = new Product();
-                p.setCode(code);
-                p.setName(name);
-                p.setDescription(DolibarrImportHelper.getString(m, "description"));
-                String type = DolibarrImportHelper.getString(m, "type");
-                if (type != null && (type.equals("0") || type.equals("1"))) p.setType("PRODUCT");
-                else if (type != null && type.equals("1")) p.setType("SERVICE");
-                else p.setType("PRODUCT");
-                p.setUnitOfMeasure(DolibarrImportHelper.getString(m, "unit"));
-                BigDecimal price = DolibarrImportHelper.getBigDecimal(m, "price");
-                p.setSalePrice(price != null ? price : BigDecimal.ZERO);
-                BigDecimal priceBuy = DolibarrImportHelper.getBigDecimal(m, "price_buy");
-                p.setPurchasePrice(priceBuy != null ? priceBuy : BigDecimal.ZERO);
-                p.setCurrencyCode(DolibarrImportHelper.getString(m, "currency_code") != null ? DolibarrImportHelper.getString(m, "currency_code") : "EUR");
-                BigDecimal tva = DolibarrImportHelper.getBigDecimal(m, "tva_tx");
-                p.setVatRate(tva != null ? tva : BigDecimal.ZERO);
-                p.setSellable(DolibarrImportHelper.getBoolean(m, "tosell"));
-                p.setPurchasable(DolibarrImportHelper.getBoolean(m, "tobuy"));
-                p.setBarcode(DolibarrImportHelper.getString(m, "barcode"));
-                p.setNotes(DolibarrImportHelper.getString(m, "note"));
-                p.setActive(true);
+        String code = DolibarrImportHelper.getString(m, "ref");
+        if (code == null || code.isBlank()) code = "PRD-" + doliId;
+        Long existingId = chunk.existingId(DolibarrImportContext.Key.PRODUCT_CODE, code);
+        if (existingId != null) {
+            chunk.map("products", doliId, "PRODUCT", existingId);
+            chunk.skip(String.valueOf(doliId), "Code exists: " + code);
+            return;
+        }
 
-                Long fkCat = DolibarrImportHelper.getLong(m, "fk_cat");
-                if (fkCat != null) {
-                    Optional<Long> aploseCatId = mappingRepository.findAploseId(tenantId, runId, "categories", fkCat);
-                    aploseCatId.flatMap(categoryRepository::findById)
-                            .filter(c -> tenantId.equals(c.getTenantId()))
-                            .ifPresent(p::setCategory);
-                }
+        String name = DolibarrImportHelper.getString(m, "label");
+        if (name == null) name = DolibarrImportHelper.getString(m, "name");
+        if (name == null || name.isBlank()) name = code;
 
-                Product saved = productRepository.save(p);
+        Product p = new Product();
+        p.setCode(code);
+        p.setName(name);
+        p.setDescription(DolibarrImportHelper.getString(m, "description"));
+        String type = DolibarrImportHelper.getString(m, "type");
+        if (type != null && (type.equals("0") || type.equals("1"))) p.setType("PRODUCT");
+        else if (type != null && type.equals("1")) p.setType("SERVICE");
+        else p.setType("PRODUCT");
+        p.setUnitOfMeasure(DolibarrImportHelper.getString(m, "unit"));
+        BigDecimal price = DolibarrImportHelper.getBigDecimal(m, "price");
+        p.setSalePrice(price != null ? price : BigDecimal.ZERO);
+        BigDecimal priceBuy = DolibarrImportHelper.getBigDecimal(m, "price_buy");
+        p.setPurchasePrice(priceBuy != null ? priceBuy : BigDecimal.ZERO);
+        p.setCurrencyCode(DolibarrImportHelper.getString(m, "currency_code") != null ? DolibarrImportHelper.getString(m, "currency_code") : "EUR");
+        BigDecimal tva = DolibarrImportHelper.getBigDecimal(m, "tva_tx");
+        p.setVatRate(tva != null ? tva : BigDecimal.ZERO);
+        p.setSellable(DolibarrImportHelper.getBoolean(m, "tosell"));
+        p.setPurchasable(DolibarrImportHelper.getBoolean(m, "tobuy"));
+        p.setBarcode(DolibarrImportHelper.getString(m, "barcode"));
+        p.setNotes(DolibarrImportHelper.getString(m, "note"));
+        p.setActive(true);
 
-                DolibarrImportMapping mapping = new DolibarrImportMapping();
-                mapping.setTenantId(tenantId);
-                mapping.setImportRunId(runId);
-                mapping.setDolibarrEntity("products");
-                mapping.setDolibarrId(doliId);
-                mapping.setAploseEntity("PRODUCT");
-                mapping.setAploseId(saved.getId());
-                mappingRepository.save(mapping);
-            } catch (Exception e) {
-                logService.logError(runId, "PRODUCTS", String.valueOf(doliId), e.getMessage(), null);
-            }
+        Long categoryId = chunk.mappedId("categories", DolibarrImportHelper.getLong(m, "fk_cat"));
+        if (categoryId != null) {
+            p.setCategory(categoryRepository.getReferenceById(categoryId));
         }
+
+        Product saved = productRepository.save(p);
+        chunk.addKey(DolibarrImportContext.Key.PRODUCT_CODE, code, saved.getId());
+        chunk.map("products", doliId, "PRODUCT", saved.getId());
     }
 }
@@ -1,6 +1,7 @@
 package fr.aplose.erp.dolibarr.web;
 
 import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
+import fr.aplose.erp.dolibarr.client.DolibarrConnection;
 import fr.aplose.erp.dolibarr.entity.DolibarrImportLog;
 import fr.aplose.erp.dolibarr.entity.DolibarrImportRun;
 import fr.aplose.erp.dolibarr.repository.DolibarrImportLogRepository;
@@ -40,14 +41,14 @@ public class DolibarrImportController {
         List<DolibarrImportRun> runs = runRepository.findByTenantIdOrderByStartedAtDesc(tenantId, PageRequest.of(0, 10));
         model.addAttribute("runs", runs);
         model.addAttribute("lastRun", runs.isEmpty() ? null : runs.get(0));
+        model.addAttribute("resumableRunIds", runs.stream().filter(orchestrator::isResumable).map(DolibarrImportRun::getId).toList());
         model.addAttribute("pageTitle", "Import Dolibarr");
         return "modules/admin/dolibarr-import";
     }
 
     @PostMapping("/test")
     public String testConnection(@RequestParam String baseUrl, @RequestParam String apiKey, RedirectAttributes ra) {
-        dolibarrApiClient.configure(baseUrl, apiKey);
-        boolean ok = dolibarrApiClient.testConnection();
+        boolean ok = dolibarrApiClient.testConnection(new DolibarrConnection(baseUrl, apiKey));
         if (ok) {
             ra.addFlashAttribute("successMessage", "Connexion réussie.");
         } else {
@@ -77,6 +78,21 @@ public class DolibarrImportController {
         return "redirect:/admin/dolibarr-import";
     }
 
+    @PostMapping("/runs/{runId}/resume")
+    public String resumeImport(
+            @PathVariable Long runId,
+            @RequestParam String baseUrl,
+            @RequestParam String apiKey,
+            RedirectAttributes ra) {
+        try {
+            DolibarrImportRun run = orchestrator.resumeImport(TenantContext.getCurrentTenantId(), runId, baseUrl, apiKey);
+            ra.addFlashAttribute("successMessage", "Import repris et terminé. Statut: " + run.getStatus());
+        } catch (Exception e) {
+            ra.addFlashAttribute("errorMessage", "Erreur lors de la reprise de l'import: " + e.getMessage());
+        }
+        return "redirect:/admin/dolibarr-import";
+    }
+
     @GetMapping("/runs/{runId}/logs")
     public String logs(@PathVariable Long runId, Model model) {
         String tenantId = TenantContext.getCurrentTenantId();
@@ -0,0 +1,28 @@
+package fr.aplose.erp.mail.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.mail")
+public class MailProperties {
+
+    private String from = "noreply@aplose-erp.local";
+    /** Messages sent over one SMTP connection. */
+    private int batchSize = 50;
+    /** Attempts before a message is moved to the dead-letter state. */
+    private int maxAttempts = 6;
+    /** Delay before the first retry; doubled on every further failure. */
+    private Duration initialBackoff = Duration.ofMinutes(1);
+    private Duration maxBackoff = Duration.ofHours(2);
+    /** A claimed message not sent within this delay is requeued (dispatcher crash). */
+    private Duration claimTimeout = Duration.ofMinutes(5);
+    /** Sent messages are deleted after this delay; dead-lettered ones are kept for inspection. */
+    private Duration sentRetention = Duration.ofDays(30);
+}
@@ -0,0 +1,49 @@
+package fr.aplose.erp.mail.repository;
+
+import fr.aplose.erp.mail.entity.MailOutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutboxMessage, Long> {
+
+    @Query("SELECT m.id FROM MailOutboxMessage m WHERE m.status = 'PENDING' AND m.nextAttemptAt <= :now ORDER BY m.nextAttemptAt")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /** Claims due rows for this dispatcher run; rows already claimed by another instance are skipped. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutboxMessage m SET m.status = 'IN_PROGRESS', m.claimToken = :token, m.lockedUntil = :lockedUntil, " +
+           "m.version = m.version + 1 " +
+           "WHERE m.id IN :ids AND m.status = 'PENDING'")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    List<MailOutboxMessage> findByClaimToken(String claimToken);
+
+    /** Requeues rows whose dispatcher died mid-send. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutboxMessage m SET m.status = 'PENDING', m.claimToken = NULL, m.lockedUntil = NULL, " +
+           "m.version = m.version + 1 " +
+           "WHERE m.status = 'IN_PROGRESS' AND m.lockedUntil < :now")
+    int releaseExpiredClaims(@Param("now") LocalDateTime now);
+
+    long countByStatus(String status);
+
+    @Query("SELECT m.id FROM MailOutboxMessage m WHERE m.status = 'SENT' AND m.sentAt < :before ORDER BY m.id")
+    List<Long> findSentBefore(@Param("before") LocalDateTime before, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MailOutboxMessage m WHERE m.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
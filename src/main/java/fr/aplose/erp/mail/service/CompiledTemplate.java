@@ -0,0 +1,73 @@
+package fr.aplose.erp.mail.service;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template text split once into literal segments and {@code {{variable}}} names, so that rendering is a
+ * single append pass whatever the number of variables. Unknown variables are kept as written.
+ * <p>
+ * In HTML bodies values are escaped, except those of variables named {@code ...Html} which carry ready-made markup.
+ */
+final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final String RAW_HTML_SUFFIX = "Html";
+
+    /** literals[i] precedes variables[i]; the last literal has no variable after it. */
+    private final List<String> literals;
+    private final List<String> variables;
+    private final int literalLength;
+
+    private CompiledTemplate(List<String> literals, List<String> variables) {
+        this.literals = literals;
+        this.variables = variables;
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    static CompiledTemplate parse(String content) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        String text = content != null ? content : "";
+        int from = 0;
+        while (true) {
+            int open = text.indexOf(OPEN, from);
+            int close = open < 0 ? -1 : text.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                literals.add(text.substring(from));
+                return new CompiledTemplate(List.copyOf(literals), List.copyOf(variables));
+            }
+            literals.add(text.substring(from, open));
+            variables.add(text.substring(open + OPEN.length(), close));
+            from = close + CLOSE.length();
+        }
+    }
+
+    String render(Map<String, String> values) {
+        return render(values, false);
+    }
+
+    String renderHtml(Map<String, String> values) {
+        return render(values, true);
+    }
+
+    private String render(Map<String, String> values, boolean html) {
+        StringBuilder out = new StringBuilder(literalLength + 16 * variables.size());
+        for (int i = 0; i < variables.size(); i++) {
+            out.append(literals.get(i));
+            String name = variables.get(i);
+            if (values.containsKey(name)) {
+                String value = values.get(name);
+                if (value == null) continue;
+                out.append(html && !name.endsWith(RAW_HTML_SUFFIX) ? HtmlUtils.htmlEscape(value) : value);
+            } else {
+                out.append(OPEN).append(name).append(CLOSE);
+            }
+        }
+        return out.append(literals.getLast()).toString();
+    }
+}
@@ -1,5 +1,8 @@
 package fr.aplose.erp.mail.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.core.transaction.AfterCommit;
 import fr.aplose.erp.mail.entity.EmailTemplate;
 import fr.aplose.erp.mail.repository.EmailTemplateRepository;
 import lombok.RequiredArgsConstructor;
@@ -16,17 +19,39 @@ public class EmailTemplateService {
 
     private final EmailTemplateRepository emailTemplateRepository;
 
+    /** Templates parsed per (key, locale), empty when there is no such template; cleared when a template is saved. */
+    private final Cache<TemplateId, Optional<CompiledEmail>> compiledTemplates = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
+    private record TemplateId(String key, String locale) {}
+
+    private record CompiledEmail(CompiledTemplate subject, CompiledTemplate bodyHtml, CompiledTemplate bodyText) {}
+
+    public record RenderedEmail(String templateKey, String subject, String bodyHtml, String bodyText) {}
+
     public Optional<EmailTemplate> findByKeyAndLocale(String key, String locale) {
         return emailTemplateRepository.findByTemplateKeyAndLocale(key, locale != null ? locale : "fr");
     }
 
+    /**
+     * Renders the template with the given key and locale (French when absent), if it exists. Values are HTML-escaped
+     * in the HTML body, except variables named {@code ...Html}.
+     */
+    public Optional<RenderedEmail> render(String key, String locale, Map<String, String> variables) {
+        TemplateId id = new TemplateId(key, locale != null ? locale : "fr");
+        return compiledTemplates.get(id, k -> findByKeyAndLocale(k.key(), k.locale()).map(t -> new CompiledEmail(
+                        CompiledTemplate.parse(t.getSubject()),
+                        t.getBodyHtml() != null ? CompiledTemplate.parse(t.getBodyHtml()) : null,
+                        t.getBodyText() != null ? CompiledTemplate.parse(t.getBodyText()) : null)))
+                .map(c -> new RenderedEmail(key, c.subject().render(variables),
+                        c.bodyHtml() != null ? c.bodyHtml().renderHtml(variables) : null,
+                        c.bodyText() != null ? c.bodyText().render(variables) : null));
+    }
+
     public String render(String content, Map<String, String> variables) {
         if (content == null) return "";
-        String result = content;
-        for (Map.Entry<String, String> e : variables.entrySet()) {
-            result = result.replace("{{" + e.getKey() + "}}", e.getValue() != null ? e.getValue() : "");
-        }
-        return result;
+        return CompiledTemplate.parse(content).render(variables);
     }
 
     @Transactional(readOnly = true)
@@ -36,7 +61,9 @@ public class EmailTemplateService {
 
     @Transactional
     public EmailTemplate save(EmailTemplate template) {
-        return emailTemplateRepository.save(template);
+        EmailTemplate saved = emailTemplateRepository.save(template);
+        AfterCommit.run(compiledTemplates::invalidateAll);
+        return saved;
     }
 
     public Optional<EmailTemplate> findById(Long id) {
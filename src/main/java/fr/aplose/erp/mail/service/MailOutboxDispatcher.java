@@ -0,0 +1,212 @@
+package fr.aplose.erp.mail.service;
+
+import fr.aplose.erp.core.metrics.CachedGauge;
+import fr.aplose.erp.mail.config.MailProperties;
+import fr.aplose.erp.mail.entity.MailOutboxMessage;
+import fr.aplose.erp.mail.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drains the mail outbox: claims due messages batch by batch and sends each batch over a single SMTP connection
+ * ({@link JavaMailSender#send(MimeMessage...)}), rescheduling failed messages with exponential backoff until they
+ * are dead-lettered. Claims use a token so several application instances can poll the same table. Sent messages
+ * are purged after the retention period.
+ */
+@Slf4j
+@Component
+public class MailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final int PURGE_PAGE_SIZE = 1_000;
+    private static final Duration DEPTH_REFRESH = Duration.ofSeconds(30);
+
+    private final MailOutboxRepository outboxRepository;
+    private final MailProperties properties;
+    private final JavaMailSender mailSender;
+
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+
+    public MailOutboxDispatcher(MailOutboxRepository outboxRepository, MailProperties properties,
+                                @Autowired(required = false) JavaMailSender mailSender, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.properties = properties;
+        this.mailSender = mailSender;
+        CachedGauge.register(meterRegistry, "mail.outbox.depth", "E-mails waiting to be sent", DEPTH_REFRESH,
+                () -> outboxRepository.countByStatus(MailOutboxMessage.STATUS_PENDING));
+        this.sentCounter = Counter.builder("mail.outbox.messages").tag("result", "sent").register(meterRegistry);
+        this.retriedCounter = Counter.builder("mail.outbox.messages").tag("result", "retry").register(meterRegistry);
+        this.deadCounter = Counter.builder("mail.outbox.messages").tag("result", "dead").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.poll-interval-ms:2000}")
+    public void dispatch() {
+        if (mailSender == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        int released = outboxRepository.releaseExpiredClaims(now);
+        if (released > 0) {
+            log.warn("Requeued {} e-mails with an expired claim", released);
+        }
+        int batchSize = Math.max(1, properties.getBatchSize());
+        while (sendBatch(now, batchSize) == batchSize) {
+            // full batch: more messages are probably due
+        }
+    }
+
+    /** Sends one batch of due messages; returns the number of messages claimed, or 0 when none could be sent. */
+    private int sendBatch(LocalDateTime now, int batchSize) {
+        List<Long> dueIds = outboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) return 0;
+        String token = UUID.randomUUID().toString();
+        if (outboxRepository.claim(dueIds, token, LocalDateTime.now().plus(properties.getClaimTimeout())) == 0) return 0;
+        List<MailOutboxMessage> batch = outboxRepository.findByClaimToken(token);
+
+        Map<MimeMessage, MailOutboxMessage> messages = new IdentityHashMap<>();
+        for (MailOutboxMessage message : batch) {
+            try {
+                messages.put(toMimeMessage(message), message);
+            } catch (MessagingException | IllegalArgumentException e) {
+                message.setAttempts(message.getAttempts() + 1);
+                markDead(message, e.getMessage()); // malformed address: retrying cannot help
+            }
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        if (!messages.isEmpty()) {
+            try {
+                mailSender.send(messages.keySet().toArray(MimeMessage[]::new));
+            } catch (MailSendException e) {
+                failures = e.getFailedMessages();
+                if (failures.isEmpty()) failures = allFailed(messages, e);
+            } catch (MailException e) {
+                failures = allFailed(messages, e);
+            }
+        }
+
+        for (Map.Entry<MimeMessage, MailOutboxMessage> entry : messages.entrySet()) {
+            MailOutboxMessage message = entry.getValue();
+            message.setAttempts(message.getAttempts() + 1);
+            message.setClaimToken(null);
+            message.setLockedUntil(null);
+            Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                message.setStatus(MailOutboxMessage.STATUS_SENT);
+                message.setSentAt(LocalDateTime.now());
+                message.setLastError(null);
+                sentCounter.increment();
+            } else if (message.getAttempts() >= properties.getMaxAttempts()) {
+                markDead(message, failure.getMessage());
+            } else {
+                message.setStatus(MailOutboxMessage.STATUS_PENDING);
+                message.setLastError(truncate(failure.getMessage()));
+                message.setNextAttemptAt(LocalDateTime.now().plus(backoff(message.getAttempts())));
+                retriedCounter.increment();
+            }
+        }
+        saveOutcomes(batch);
+        // Nothing went through (server down?): leave the other due messages for the next run
+        return !messages.isEmpty() && failures.size() >= messages.size() ? 0 : batch.size();
+    }
+
+    /** Deletes sent messages older than the retention period, page by page so no statement locks the whole table. */
+    @Scheduled(cron = "${app.mail.purge-cron:0 50 * * * *}")
+    public void purgeSent() {
+        LocalDateTime before = LocalDateTime.now().minus(properties.getSentRetention());
+        int purged = 0;
+        List<Long> ids;
+        do {
+            ids = outboxRepository.findSentBefore(before, PageRequest.of(0, PURGE_PAGE_SIZE));
+            if (!ids.isEmpty()) purged += outboxRepository.deleteByIdIn(ids);
+        } while (ids.size() == PURGE_PAGE_SIZE);
+        if (purged > 0) {
+            log.info("Purged {} sent e-mails older than {}", purged, properties.getSentRetention());
+        }
+    }
+
+    /**
+     * Records the outcome of the batch in one transaction; when a message's claim was lost meanwhile (requeued
+     * after its claim expired), saves them one by one so only that message's outcome is dropped.
+     */
+    private void saveOutcomes(List<MailOutboxMessage> batch) {
+        try {
+            outboxRepository.saveAll(batch);
+        } catch (OptimisticLockingFailureException e) {
+            for (MailOutboxMessage message : batch) {
+                try {
+                    outboxRepository.save(message);
+                } catch (OptimisticLockingFailureException lost) {
+                    log.warn("E-mail {} outcome ({}) dropped: its claim expired and it was requeued",
+                            message.getId(), message.getStatus());
+                }
+            }
+        }
+    }
+
+    private MimeMessage toMimeMessage(MailOutboxMessage message) throws MessagingException {
+        MimeMessage mime = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mime, true, "UTF-8");
+        helper.setFrom(properties.getFrom());
+        helper.setTo(message.getRecipient());
+        helper.setSubject(message.getSubject());
+        if (message.getBodyHtml() != null) {
+            helper.setText(message.getBodyText() != null ? message.getBodyText() : message.getBodyHtml(), message.getBodyHtml());
+        } else {
+            helper.setText(message.getBodyText() != null ? message.getBodyText() : "");
+        }
+        return mime;
+    }
+
+    private static Map<Object, Exception> allFailed(Map<MimeMessage, MailOutboxMessage> messages, Exception e) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        messages.keySet().forEach(m -> failures.put(m, e));
+        return failures;
+    }
+
+    private void markDead(MailOutboxMessage message, String error) {
+        message.setStatus(MailOutboxMessage.STATUS_DEAD);
+        message.setLastError(truncate(error));
+        message.setClaimToken(null);
+        message.setLockedUntil(null);
+        deadCounter.increment();
+        log.warn("E-mail {} to {} dead after {} attempt(s): {}",
+                message.getId(), message.getRecipient(), message.getAttempts(), error);
+    }
+
+    /** initialBackoff * 2^(attempts-1), capped, with up to 20% jitter so retries of one outage spread out. */
+    Duration backoff(int attempts) {
+        long baseMs = properties.getInitialBackoff().toMillis();
+        long maxMs = properties.getMaxBackoff().toMillis();
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        long delayMs = Math.min(baseMs << shift, maxMs);
+        if (delayMs < 0) delayMs = maxMs;
+        long jitter = (long) (delayMs * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delayMs + jitter);
+    }
+
+    private static String truncate(String s) {
+        if (s == null) return null;
+        return s.length() > MAX_ERROR_LENGTH ? s.substring(0, MAX_ERROR_LENGTH) : s;
+    }
+}
@@ -1,31 +1,47 @@
 package fr.aplose.erp.mail.service;
 
-import fr.aplose.erp.mail.entity.EmailTemplate;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+/**
+ * Queues e-mails in the mail outbox, in the caller's transaction: nothing is sent if it rolls back, and the caller
+ * never waits for SMTP. {@link MailOutboxDispatcher} sends them. Without a configured mail server, e-mails are dropped.
+ * <p>
+ * Queuing a single e-mail never fails the caller: it is a plain JDBC insert, not a transactional repository call,
+ * so a failure is only logged and does not mark the caller's transaction rollback-only (MariaDB undoes the failed
+ * statement alone). {@link #sendTemplates} is the exception: its e-mails are part of the bulk job's outcome, so a
+ * failure propagates.
+ */
 @Service
 @Slf4j
 public class MailService {
 
+    private static final String INSERT_OUTBOX_SQL =
+            "INSERT INTO mail_outbox (tenant_id, recipient, subject, body_text, body_html, template_key) VALUES (?, ?, ?, ?, ?, ?)";
+
     private final JavaMailSender mailSender;
     private final EmailTemplateService emailTemplateService;
+    private final JdbcTemplate jdbcTemplate;
 
-    public MailService(EmailTemplateService emailTemplateService,
+    public MailService(EmailTemplateService emailTemplateService, JdbcTemplate jdbcTemplate,
                        @org.springframework.beans.factory.annotation.Autowired(required = false) JavaMailSender mailSender) {
         this.emailTemplateService = emailTemplateService;
+        this.jdbcTemplate = jdbcTemplate;
         this.mailSender = mailSender;
     }
 
-    @Value("${app.mail.from: noreply@aplose-erp.local}")
-    private String fromAddress;
+    /** A templated e-mail queued by {@link #sendTemplates}. */
+    public record TemplatedMail(String to, String templateKey, Map<String, String> variables) {}
 
     @Value("${app.base-url:http://localhost:8080}")
     private String baseUrl;
@@ -37,7 +53,7 @@ public class MailService {
                 "companyName", companyName != null ? companyName : "",
                 "loginUrl", loginUrl
         );
-        emailTemplateService.findByKeyAndLocale("welcome", "fr").ifPresent(t -> sendTemplate(toEmail, t, vars));
+        sendTemplate(toEmail, "welcome", "fr", vars);
     }
 
     public void sendOnboarding(String toEmail, String userName) {
@@ -46,7 +62,7 @@ public class MailService {
                 "userName", userName != null ? userName : "",
                 "loginUrl", loginUrl
         );
-        emailTemplateService.findByKeyAndLocale("onboarding", "fr").ifPresent(t -> sendTemplate(toEmail, t, vars));
+        sendTemplate(toEmail, "onboarding", "fr", vars);
     }
 
     /**
@@ -62,7 +78,7 @@ public class MailService {
                 "dateEnd", dateEnd != null ? dateEnd : "",
                 "requestUrl", requestUrl != null ? requestUrl : ""
         );
-        emailTemplateService.findByKeyAndLocale("leave.request.submitted", "fr").ifPresent(t -> sendTemplate(validatorEmail, t, vars));
+        sendTemplate(validatorEmail, "leave.request.submitted", "fr", vars);
     }
 
     /**
@@ -74,58 +90,67 @@ public class MailService {
                 "responseComment", responseComment != null ? responseComment : "",
                 "requestUrl", requestUrl != null ? requestUrl : ""
         );
-        emailTemplateService.findByKeyAndLocale("leave.request.denied", "fr").ifPresent(t -> sendTemplate(requesterEmail, t, vars));
+        sendTemplate(requesterEmail, "leave.request.denied", "fr", vars);
     }
 
-    public String getBaseUrl() {
-        return baseUrl;
+    /**
+     * Queues the template with the given key, in the given locale (French when absent).
+     * @return false when no such template exists
+     */
+    public boolean sendTemplate(String to, String templateKey, String locale, Map<String, String> variables) {
+        Optional<EmailTemplateService.RenderedEmail> mail = emailTemplateService.render(templateKey, locale, variables);
+        mail.ifPresent(m -> enqueue(to, m.subject(), m.bodyText(), m.bodyHtml(), m.templateKey()));
+        return mail.isPresent();
     }
 
     /**
-     * Sends a simple text email (e.g. for public form submission notification).
+     * Queues the e-mails of a bulk job with one batched insert, for the given tenant, in the caller's transaction.
+     * Each template is rendered in the given locale, or in French when it has no such translation.
+     * @return the number of e-mails queued: those whose template exists, none without a configured mail server
+     * @throws org.springframework.dao.DataAccessException when the e-mails cannot be queued
      */
-    public void sendSimple(String to, String subject, String bodyText) {
+    @Transactional
+    public int sendTemplates(String tenantId, String locale, List<TemplatedMail> mails) {
         if (mailSender == null) {
-            log.debug("Mail sender not configured, skipping email to {}", to);
-            return;
+            log.debug("Mail sender not configured, skipping {} email(s)", mails.size());
+            return 0;
         }
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(fromAddress);
-            helper.setTo(to);
-            helper.setSubject(subject != null ? subject : "");
-            helper.setText(bodyText != null ? bodyText : "", false);
-            mailSender.send(message);
-            log.debug("Sent email to {}", to);
-        } catch (MessagingException e) {
-            log.warn("Failed to send email to {}: {}", to, e.getMessage());
+        List<Object[]> rows = new ArrayList<>(mails.size());
+        for (TemplatedMail mail : mails) {
+            emailTemplateService.render(mail.templateKey(), locale, mail.variables())
+                    .or(() -> emailTemplateService.render(mail.templateKey(), "fr", mail.variables()))
+                    .ifPresent(m -> rows.add(new Object[]{tenantId, mail.to(), m.subject(), m.bodyText(), m.bodyHtml(), m.templateKey()}));
         }
+        if (!rows.isEmpty()) jdbcTemplate.batchUpdate(INSERT_OUTBOX_SQL, rows);
+        return rows.size();
+    }
+
+    /** Whether e-mails are actually sent: false when no mail server is configured. */
+    public boolean isEnabled() {
+        return mailSender != null;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Queues a simple text email (e.g. for public form submission notification).
+     */
+    public void sendSimple(String to, String subject, String bodyText) {
+        enqueue(to, subject, bodyText != null ? bodyText : "", null, null);
     }
 
-    private void sendTemplate(String to, EmailTemplate template, Map<String, String> variables) {
+    private void enqueue(String to, String subject, String bodyText, String bodyHtml, String templateKey) {
         if (mailSender == null) {
             log.debug("Mail sender not configured, skipping email to {}", to);
             return;
         }
-        String subject = emailTemplateService.render(template.getSubject(), variables);
-        String bodyHtml = template.getBodyHtml() != null ? emailTemplateService.render(template.getBodyHtml(), variables) : null;
-        String bodyText = template.getBodyText() != null ? emailTemplateService.render(template.getBodyText(), variables) : null;
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(fromAddress);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            if (bodyHtml != null) {
-                helper.setText(bodyText != null ? bodyText : bodyHtml, bodyHtml);
-            } else {
-                helper.setText(bodyText != null ? bodyText : "");
-            }
-            mailSender.send(message);
-            log.debug("Sent email to {} with template {}", to, template.getTemplateKey());
-        } catch (MessagingException e) {
-            log.warn("Failed to send email to {}: {}", to, e.getMessage());
+            jdbcTemplate.update(INSERT_OUTBOX_SQL, TenantContext.getCurrentTenantId(), to, subject != null ? subject : "",
+                    bodyText, bodyHtml, templateKey);
+        } catch (RuntimeException e) {
+            log.warn("Failed to queue email to {}: {}", to, e.getMessage());
         }
     }
 }
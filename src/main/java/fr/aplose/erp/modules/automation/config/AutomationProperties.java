@@ -0,0 +1,24 @@
+package fr.aplose.erp.modules.automation.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.automation")
+public class AutomationProperties {
+
+    /** Threads running rule actions. */
+    private int workers = 4;
+    /** Actions waiting for a worker; further actions are rejected (and counted) rather than queued without bound. */
+    private int queueCapacity = 1000;
+    /** Default time an action may run before it is interrupted; a rule can set {@code timeoutSeconds} in its params. */
+    private Duration actionTimeout = Duration.ofSeconds(30);
+    /** Compiled rules are reloaded after this delay, which bounds how long a rule changed on another instance is stale. */
+    private Duration ruleCacheTtl = Duration.ofMinutes(1);
+}
@@ -0,0 +1,162 @@
+package fr.aplose.erp.modules.automation.service;
+
+import fr.aplose.erp.mail.service.EmailTemplateService;
+import fr.aplose.erp.mail.service.MailService;
+import fr.aplose.erp.modules.automation.config.AutomationProperties;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs rule actions on a bounded pool, off the transaction that triggered them. An action running longer than
+ * its rule's timeout is interrupted. Each rule gets an {@code automation.rule.executions} timer (count and latency
+ * histogram, tagged by outcome: success, failure, timeout) and an {@code automation.rule.rejected} counter.
+ */
+@Slf4j
+@Component
+public class AutomationActionExecutor {
+
+    private final MailService mailService;
+    private final EmailTemplateService emailTemplateService;
+    private final MeterRegistry meterRegistry;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "automation-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AutomationActionExecutor(MailService mailService, EmailTemplateService emailTemplateService,
+                                    AutomationProperties properties, MeterRegistry meterRegistry) {
+        this.mailService = mailService;
+        this.emailTemplateService = emailTemplateService;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threads = new AtomicInteger();
+        int size = Math.max(1, properties.getWorkers());
+        this.workers = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), r -> {
+                    Thread t = new Thread(r, "automation-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    void submit(String tenantId, CompiledRule rule, Map<String, Object> context) {
+        try {
+            workers.execute(() -> run(tenantId, rule, context));
+        } catch (RejectedExecutionException e) {
+            log.warn("Automation rule {} skipped: action queue full", rule.id());
+            Counter.builder("automation.rule.rejected").tag("rule", String.valueOf(rule.id()))
+                    .register(meterRegistry).increment();
+        }
+    }
+
+    private void run(String tenantId, CompiledRule rule, Map<String, Object> context) {
+        Thread worker = Thread.currentThread();
+        Execution execution = new Execution();
+        ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+            // Under the lock so that the worker cannot be interrupted once it has moved on to another action
+            synchronized (execution) {
+                if (!execution.finished) {
+                    execution.timedOut = true;
+                    worker.interrupt();
+                }
+            }
+        }, rule.timeout().toMillis(), TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        String outcome = "success";
+        TenantContext.setCurrentTenantId(tenantId);
+        try {
+            execute(rule, context);
+        } catch (Exception e) {
+            outcome = "failure";
+            log.warn("Automation rule {} failed: {}", rule.id(), e.getMessage());
+        } finally {
+            timeout.cancel(false);
+            synchronized (execution) {
+                execution.finished = true;
+                if (execution.timedOut) outcome = "timeout";
+            }
+            Thread.interrupted();
+            TenantContext.clear();
+        }
+        if ("timeout".equals(outcome)) {
+            log.warn("Automation rule {} interrupted after {}", rule.id(), rule.timeout());
+        }
+        executionTimer(rule.id(), outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void execute(CompiledRule rule, Map<String, Object> context) {
+        switch (rule.actionType()) {
+            case "LOG" -> log.info("Automation rule [{}] triggered: context={}", rule.name(), context);
+            case "SEND_EMAIL" -> sendEmail(rule, context);
+            default -> log.debug("Automation rule [{}]: unknown action type {}", rule.name(), rule.actionType());
+        }
+    }
+
+    /**
+     * Params: {@code to} (required), then either {@code template} (key of an email template, with optional
+     * {@code locale}) or {@code subject} and {@code body}. Context values are available as {@code {{name}}}.
+     */
+    private void sendEmail(CompiledRule rule, Map<String, Object> context) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        context.forEach((k, v) -> variables.put(k, v != null ? v.toString() : ""));
+        variables.put("ruleName", rule.name() != null ? rule.name() : "");
+        String to = emailTemplateService.render(rule.param("to"), variables).trim();
+        if (to.isEmpty()) {
+            throw new IllegalArgumentException("SEND_EMAIL requires a 'to' parameter resolving to an address");
+        }
+        String template = rule.param("template");
+        if (template != null && !template.isBlank()) {
+            if (!mailService.sendTemplate(to, template, rule.param("locale"), variables)) {
+                throw new IllegalArgumentException("Email template not found: " + template);
+            }
+        } else {
+            mailService.sendSimple(to, emailTemplateService.render(rule.param("subject"), variables),
+                    emailTemplateService.render(rule.param("body"), variables));
+        }
+    }
+
+    /** Drops the meters of a deleted rule. */
+    void removeMeters(Long ruleId) {
+        String rule = String.valueOf(ruleId);
+        meterRegistry.find("automation.rule.executions").tag("rule", rule).meters().forEach(meterRegistry::remove);
+        meterRegistry.find("automation.rule.rejected").tag("rule", rule).meters().forEach(meterRegistry::remove);
+    }
+
+    private Timer executionTimer(Long ruleId, String outcome) {
+        return Timer.builder("automation.rule.executions")
+                .tag("rule", String.valueOf(ruleId))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static final class Execution {
+        boolean finished;
+        boolean timedOut;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+        watchdog.shutdownNow();
+    }
+}
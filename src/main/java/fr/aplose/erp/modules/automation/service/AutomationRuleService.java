@@ -1,23 +1,49 @@
 package fr.aplose.erp.modules.automation.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.core.transaction.AfterCommit;
+import fr.aplose.erp.modules.automation.config.AutomationProperties;
 import fr.aplose.erp.modules.automation.entity.AutomationRule;
 import fr.aplose.erp.modules.automation.repository.AutomationRuleRepository;
 import fr.aplose.erp.tenant.context.TenantContext;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AutomationRuleService {
 
     private final AutomationRuleRepository repository;
+    private final AutomationActionExecutor actionExecutor;
+    private final AutomationProperties properties;
+
+    /**
+     * Enabled rules compiled per trigger; evicted after commit of every rule change of the tenant, and reloaded
+     * after the TTL so that changes made on another instance are picked up.
+     */
+    private final Cache<TriggerKey, List<CompiledRule>> compiledRules;
+    /** Bumped by every eviction: rules compiled from a state an eviction replaced are not kept, see {@link #rulesFor}. */
+    private final AtomicLong version = new AtomicLong();
+
+    public AutomationRuleService(AutomationRuleRepository repository, AutomationActionExecutor actionExecutor,
+                                 AutomationProperties properties) {
+        this.repository = repository;
+        this.actionExecutor = actionExecutor;
+        this.properties = properties;
+        this.compiledRules = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(properties.getRuleCacheTtl())
+                .build();
+    }
+
+    private record TriggerKey(String tenantId, String triggerEntity, String triggerEvent) {}
 
     @Transactional(readOnly = true)
     public List<AutomationRule> findAll() {
@@ -36,74 +62,63 @@ public class AutomationRuleService {
         if (rule.getTenantId() == null || rule.getTenantId().isBlank()) {
             rule.setTenantId(TenantContext.getCurrentTenantId());
         }
-        return repository.save(rule);
+        AutomationRule saved = repository.save(rule);
+        evict(saved.getTenantId());
+        return saved;
     }
 
     @Transactional
     public void deleteById(Long id) {
         AutomationRule rule = findById(id);
         repository.delete(rule);
+        evict(rule.getTenantId());
+        AfterCommit.run(() -> actionExecutor.removeMeters(id));
     }
 
     /**
      * Run all enabled rules matching the trigger. Context should contain at least:
      * status, amount (BigDecimal), thirdPartyId (Long), entityId (Long) depending on trigger entity.
+     * Conditions are evaluated now; the actions of matching rules run asynchronously once the current transaction
+     * commits, and not at all if it rolls back.
      */
-    @Transactional(readOnly = true)
     public void runRules(String triggerEntity, String triggerEvent, Map<String, Object> context) {
         String tenantId = TenantContext.getCurrentTenantId();
-        List<AutomationRule> rules = repository.findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(
-                tenantId, triggerEntity, triggerEvent);
-        for (AutomationRule rule : rules) {
-            if (matchesConditions(rule, context)) {
-                try {
-                    executeAction(rule, context);
-                } catch (Exception e) {
-                    log.warn("Automation rule {} failed: {}", rule.getId(), e.getMessage());
-                }
-            }
-        }
+        List<CompiledRule> matching = rulesFor(new TriggerKey(tenantId, triggerEntity, triggerEvent))
+                .stream()
+                .filter(rule -> rule.condition().test(context))
+                .toList();
+        if (matching.isEmpty()) return;
+        Map<String, Object> snapshot = new HashMap<>(context);
+        snapshot.put("triggerEntity", triggerEntity);
+        snapshot.put("triggerEvent", triggerEvent);
+        AfterCommit.run(() -> matching.forEach(rule -> actionExecutor.submit(tenantId, rule, snapshot)));
     }
 
-    private boolean matchesConditions(AutomationRule rule, Map<String, Object> context) {
-        if (rule.getConditionStatus() != null && !rule.getConditionStatus().isBlank()) {
-            Object status = context.get("status");
-            if (status == null || !rule.getConditionStatus().equals(status.toString())) {
-                return false;
-            }
-        }
-        if (rule.getConditionAmountMin() != null) {
-            Object amount = context.get("amount");
-            if (amount == null || !(amount instanceof BigDecimal) ||
-                    ((BigDecimal) amount).compareTo(rule.getConditionAmountMin()) < 0) {
-                return false;
-            }
-        }
-        if (rule.getConditionAmountMax() != null) {
-            Object amount = context.get("amount");
-            if (amount == null || !(amount instanceof BigDecimal) ||
-                    ((BigDecimal) amount).compareTo(rule.getConditionAmountMax()) > 0) {
-                return false;
-            }
-        }
-        if (rule.getConditionThirdPartyId() != null) {
-            Object tpId = context.get("thirdPartyId");
-            if (tpId == null || !rule.getConditionThirdPartyId().equals(tpId instanceof Long ? (Long) tpId : Long.valueOf(tpId.toString()))) {
-                return false;
-            }
+    /**
+     * Cached rules of the trigger. When an eviction ran while they were compiled, they may come from the rules it
+     * replaced: they are used for this call only, as if it had run just before the change committed.
+     */
+    private List<CompiledRule> rulesFor(TriggerKey key) {
+        long loadedVersion = version.get();
+        List<CompiledRule> rules = compiledRules.get(key, this::compile);
+        if (version.get() != loadedVersion) {
+            compiledRules.invalidate(key);
         }
-        return true;
+        return rules;
     }
 
-    private void executeAction(AutomationRule rule, Map<String, Object> context) {
-        switch (rule.getActionType() != null ? rule.getActionType().toUpperCase() : "") {
-            case "LOG" -> log.info("Automation rule [{}] triggered: entity={}, event={}, context={}",
-                    rule.getName(), rule.getTriggerEntity(), rule.getTriggerEvent(), context);
-            case "SEND_EMAIL" -> {
-                // Placeholder: in a full implementation, resolve template from actionParams and call MailService
-                log.info("Automation rule [{}]: SEND_EMAIL would be sent (params={})", rule.getName(), rule.getActionParams());
-            }
-            default -> log.debug("Automation rule [{}]: unknown action type {}", rule.getName(), rule.getActionType());
-        }
+    private List<CompiledRule> compile(TriggerKey key) {
+        return repository.findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(
+                        key.tenantId(), key.triggerEntity(), key.triggerEvent())
+                .stream()
+                .map(rule -> CompiledRule.compile(rule, properties.getActionTimeout()))
+                .toList();
+    }
+
+    private void evict(String tenantId) {
+        AfterCommit.run(() -> {
+            version.incrementAndGet();
+            compiledRules.asMap().keySet().removeIf(key -> key.tenantId().equals(tenantId));
+        });
     }
 }
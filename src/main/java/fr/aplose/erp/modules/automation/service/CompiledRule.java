@@ -0,0 +1,62 @@
+package fr.aplose.erp.modules.automation.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.aplose.erp.modules.automation.entity.AutomationRule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An enabled rule ready to be evaluated: its conditions folded into one predicate over the trigger context
+ * (only the conditions the rule sets) and its action parameters parsed once.
+ */
+@Slf4j
+record CompiledRule(Long id, String name, Predicate<Map<String, Object>> condition, String actionType,
+                    Map<String, Object> params, Duration timeout) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    static CompiledRule compile(AutomationRule rule, Duration defaultTimeout) {
+        Predicate<Map<String, Object>> condition = context -> true;
+        if (rule.getConditionStatus() != null && !rule.getConditionStatus().isBlank()) {
+            String status = rule.getConditionStatus();
+            condition = condition.and(context -> context.get("status") != null && status.equals(context.get("status").toString()));
+        }
+        if (rule.getConditionAmountMin() != null) {
+            BigDecimal min = rule.getConditionAmountMin();
+            condition = condition.and(context -> context.get("amount") instanceof BigDecimal amount && amount.compareTo(min) >= 0);
+        }
+        if (rule.getConditionAmountMax() != null) {
+            BigDecimal max = rule.getConditionAmountMax();
+            condition = condition.and(context -> context.get("amount") instanceof BigDecimal amount && amount.compareTo(max) <= 0);
+        }
+        if (rule.getConditionThirdPartyId() != null) {
+            String thirdPartyId = rule.getConditionThirdPartyId().toString();
+            condition = condition.and(context -> context.get("thirdPartyId") != null && thirdPartyId.equals(context.get("thirdPartyId").toString()));
+        }
+        Map<String, Object> params = parseParams(rule);
+        Duration timeout = params.get("timeoutSeconds") instanceof Number seconds && seconds.longValue() > 0
+                ? Duration.ofSeconds(seconds.longValue()) : defaultTimeout;
+        String actionType = rule.getActionType() != null ? rule.getActionType().toUpperCase() : "";
+        return new CompiledRule(rule.getId(), rule.getName(), condition, actionType, params, timeout);
+    }
+
+    String param(String key) {
+        Object value = params.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Map<String, Object> parseParams(AutomationRule rule) {
+        if (rule.getActionParams() == null || rule.getActionParams().isBlank()) return Map.of();
+        try {
+            return OBJECT_MAPPER.readValue(rule.getActionParams(), new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            log.warn("Automation rule {}: action params are not a JSON object ({}), ignored", rule.getId(), e.getMessage());
+            return Map.of();
+        }
+    }
+}
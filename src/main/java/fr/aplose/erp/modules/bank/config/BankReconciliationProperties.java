@@ -0,0 +1,18 @@
+package fr.aplose.erp.modules.bank.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.bank-reconciliation")
+public class BankReconciliationProperties {
+
+    /** Matches applied without review: at least this confidence (0..1). */
+    private double minConfidence = 0.85;
+    /** Bank movements reconciled per transaction. */
+    private int chunkSize = 500;
+}
@@ -44,6 +44,23 @@ public class BankMovement {
     @Column(name = "reference", length = 100)
     private String reference;
 
+    @Column(name = "counterparty_name")
+    private String counterpartyName;
+
+    @Column(name = "counterparty_iban", length = 34)
+    private String counterpartyIban;
+
+    /** Duplicate check of statement imports, see BankStatementParser#hash. */
+    @Column(name = "import_hash")
+    private Long importHash;
+
+    /** Set once the movement is matched to invoices (see BankReconciliationService). */
+    @Column(name = "reconciled_at")
+    private LocalDateTime reconciledAt;
+
+    @Column(name = "match_confidence", precision = 4, scale = 3)
+    private BigDecimal matchConfidence;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "payment_id")
     private Payment payment;
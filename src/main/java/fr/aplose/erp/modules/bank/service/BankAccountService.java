@@ -20,6 +20,7 @@ public class BankAccountService {
 
     private final BankAccountRepository accountRepository;
     private final BankMovementRepository movementRepository;
+    private final BankBalanceService balanceService;
 
     @Transactional(readOnly = true)
     public List<BankAccount> findAllActiveAccounts() {
@@ -65,14 +66,16 @@ public class BankAccountService {
         movement.setTenantId(TenantContext.getCurrentTenantId());
         movement.setCreatedById(currentUserId);
         findAccountById(movement.getAccount().getId()); // ensure account belongs to tenant
-        return movementRepository.save(movement);
+        movement.setImportHash(BankStatementParser.hash(movement.getAccount().getId(), movement.getMovementDate(),
+                movement.getAmount(), movement.getDescription()));
+        BankMovement saved = movementRepository.saveAndFlush(movement);
+        balanceService.refresh(saved.getTenantId(), saved.getAccount().getId(), saved.getMovementDate());
+        return saved;
     }
 
     @Transactional(readOnly = true)
     public BigDecimal getAccountBalance(Long accountId) {
-        String tid = TenantContext.getCurrentTenantId();
         findAccountById(accountId);
-        BigDecimal sum = movementRepository.sumAmountByTenantIdAndAccountId(tid, accountId);
-        return sum != null ? sum : BigDecimal.ZERO;
+        return balanceService.getCurrentBalance(TenantContext.getCurrentTenantId(), accountId);
     }
 }
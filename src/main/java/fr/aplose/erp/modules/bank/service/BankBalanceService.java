@@ -0,0 +1,67 @@
+package fr.aplose.erp.modules.bank.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Materialized running balances of the bank accounts, one bank_daily_balances row per account and day with
+ * movements. Reading a balance is a single primary key lookup; every write of movements refreshes the rows from
+ * the earliest date it touched, in the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class BankBalanceService {
+
+    private static final String BALANCE_SQL =
+            "SELECT closing_balance FROM bank_daily_balances WHERE tenant_id = ? AND account_id = ? " +
+            "ORDER BY balance_date DESC LIMIT 1";
+    private static final String OPENING_SQL =
+            "SELECT closing_balance FROM bank_daily_balances WHERE account_id = ? AND balance_date < ? " +
+            "ORDER BY balance_date DESC LIMIT 1";
+    private static final String DAILY_TOTALS_SQL =
+            "SELECT movement_date, SUM(amount) FROM bank_movements WHERE account_id = ? AND movement_date >= ? " +
+            "GROUP BY movement_date ORDER BY movement_date";
+    private static final String INSERT_SQL =
+            "INSERT INTO bank_daily_balances (tenant_id, account_id, balance_date, movements_total, closing_balance) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Closing balance of the account's latest day with movements. */
+    @Transactional(readOnly = true)
+    public BigDecimal getCurrentBalance(String tenantId, Long accountId) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(BALANCE_SQL, BigDecimal.class, tenantId, accountId);
+        return balance.isEmpty() ? BigDecimal.ZERO : balance.get(0);
+    }
+
+    /**
+     * Recomputes the account's daily balances from {@code from} onwards, after movements dated {@code from} or later
+     * were written. The account row is locked so that concurrent writes refresh one after the other.
+     */
+    @Transactional
+    public void refresh(String tenantId, Long accountId, LocalDate from) {
+        jdbcTemplate.queryForList("SELECT id FROM bank_accounts WHERE id = ? FOR UPDATE", Long.class, accountId);
+        List<BigDecimal> opening = jdbcTemplate.queryForList(OPENING_SQL, BigDecimal.class, accountId, Date.valueOf(from));
+        BigDecimal balance = opening.isEmpty() ? BigDecimal.ZERO : opening.get(0);
+        jdbcTemplate.update("DELETE FROM bank_daily_balances WHERE account_id = ? AND balance_date >= ?", accountId, Date.valueOf(from));
+
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(DAILY_TOTALS_SQL, rs -> {
+            BigDecimal total = rs.getBigDecimal(2);
+            rows.add(new Object[]{tenantId, accountId, rs.getDate(1), total, null});
+        }, accountId, Date.valueOf(from));
+        for (Object[] row : rows) {
+            balance = balance.add((BigDecimal) row[3]);
+            row[4] = balance;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+}
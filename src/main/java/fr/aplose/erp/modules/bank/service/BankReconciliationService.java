@@ -0,0 +1,328 @@
+package fr.aplose.erp.modules.bank.service;
+
+import fr.aplose.erp.core.dashboard.KpiCounter;
+import fr.aplose.erp.core.dashboard.KpiCounterService;
+import fr.aplose.erp.core.search.SearchDocumentType;
+import fr.aplose.erp.core.search.SearchIndexer;
+import fr.aplose.erp.modules.bank.config.BankReconciliationProperties;
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.Allocation;
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.BankLine;
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.Match;
+import fr.aplose.erp.modules.reporting.service.InvoiceFactService;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reconciles the bank movements of a tenant with its open invoices. The open invoices, their third parties and the
+ * movements still to reconcile are read once into a {@link ReconciliationMatcher}, which proposes matches with a
+ * confidence score; matches at or above the requested confidence are then applied in chunks of movements, each in
+ * its own transaction: one payment per settled invoice (method {@code BANK}, linked to the movement), the invoices'
+ * paid and remaining amounts and status, and the movement marked as reconciled, all written with batches.
+ * <p>
+ * Invoices and movements are re-read under lock when a chunk is applied: a match whose movement was reconciled
+ * meanwhile, or whose invoice no longer has enough left to pay, is skipped and the movement stays to reconcile.
+ * Payments are written with plain JDBC, so the invoice facts, the open-invoice counter and search indexing are
+ * fed explicitly.
+ */
+@Slf4j
+@Service
+public class BankReconciliationService {
+
+    private static final String OPEN_STATUSES = "('VALIDATED', 'SENT', 'PARTIALLY_PAID')";
+    private static final String OPEN_ITEMS_SQL =
+            "SELECT id, third_party_id, reference, type, currency_code, amount_remaining, date_due FROM invoices " +
+            "WHERE tenant_id = ? AND status IN " + OPEN_STATUSES + " AND amount_remaining > 0 ORDER BY date_due, id";
+    private static final String PARTIES_SQL =
+            "SELECT t.id, t.name, t.iban FROM third_parties t WHERE t.tenant_id = ? AND EXISTS (SELECT 1 FROM invoices i " +
+            "WHERE i.third_party_id = t.id AND i.status IN " + OPEN_STATUSES + " AND i.amount_remaining > 0)";
+    private static final String LINES_SQL =
+            "SELECT id, movement_date, amount, currency_code, description, reference, counterparty_name, counterparty_iban " +
+            "FROM bank_movements WHERE tenant_id = ? AND reconciled_at IS NULL AND payment_id IS NULL AND invoice_id IS NULL";
+    private static final String LOCK_LINES_SQL =
+            "SELECT id FROM bank_movements WHERE tenant_id = ? AND reconciled_at IS NULL AND id IN (%s) FOR UPDATE";
+    private static final String LOCK_INVOICES_SQL =
+            "SELECT id, type, status, currency_code, date_issued, date_due, total_amount, amount_paid, amount_remaining " +
+            "FROM invoices WHERE tenant_id = ? AND id IN (%s) FOR UPDATE";
+    private static final String INSERT_PAYMENT_SQL =
+            "INSERT INTO payments (tenant_id, invoice_id, amount, currency_code, payment_date, payment_method, reference, " +
+            "bank_movement_id, created_by) VALUES (?, ?, ?, ?, ?, 'BANK', ?, ?, ?)";
+    private static final String UPDATE_INVOICE_SQL =
+            "UPDATE invoices SET amount_paid = ?, amount_remaining = ?, status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    private static final String UPDATE_LINE_SQL =
+            "UPDATE bank_movements SET reconciled_at = ?, match_confidence = ?, invoice_id = ? WHERE id = ?";
+    private static final String LINK_PAYMENTS_SQL =
+            "UPDATE bank_movements SET payment_id = (SELECT MIN(p.id) FROM payments p WHERE p.bank_movement_id = bank_movements.id) " +
+            "WHERE tenant_id = ? AND id IN (%s)";
+
+    private static final int MAX_PAYMENT_REFERENCE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InvoiceFactService invoiceFactService;
+    private final KpiCounterService kpiCounterService;
+    private final SearchIndexer searchIndexer;
+    private final BankReconciliationProperties properties;
+    private final Timer runTimer;
+    private final Counter linesMatched;
+
+    public BankReconciliationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     InvoiceFactService invoiceFactService, KpiCounterService kpiCounterService,
+                                     SearchIndexer searchIndexer, BankReconciliationProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.invoiceFactService = invoiceFactService;
+        this.kpiCounterService = kpiCounterService;
+        this.searchIndexer = searchIndexer;
+        this.properties = properties;
+        this.runTimer = Timer.builder("bank.reconciliation.time")
+                .description("Duration of bank reconciliation runs, reading to writing")
+                .register(meterRegistry);
+        this.linesMatched = Counter.builder("bank.reconciliation.lines")
+                .description("Bank movements reconciled with invoices")
+                .register(meterRegistry);
+    }
+
+    /** Proposed matches of the current tenant's movements (of one account, or all when null), nothing written. */
+    public ReconciliationRun preview(Long accountId) {
+        return run(TenantContext.getCurrentTenantId(), accountId, null, null);
+    }
+
+    /** Applies the matches scoring at least {@code minConfidence}; the others stay to reconcile. */
+    public ReconciliationRun reconcile(Long accountId, double minConfidence, Long userId) {
+        return run(TenantContext.getCurrentTenantId(), accountId, minConfidence, userId);
+    }
+
+    public double getDefaultMinConfidence() {
+        return properties.getMinConfidence();
+    }
+
+    private ReconciliationRun run(String tenantId, Long accountId, Double minConfidence, Long userId) {
+        long start = System.nanoTime();
+        ReconciliationMatcher matcher = new ReconciliationMatcher();
+        jdbcTemplate.query(OPEN_ITEMS_SQL, rs -> {
+            BigDecimal remaining = rs.getBigDecimal("amount_remaining");
+            matcher.addItem(new ReconciliationMatcher.OpenItem(rs.getLong("id"), rs.getLong("third_party_id"),
+                    rs.getString("reference"), rs.getString("currency_code"),
+                    "PURCHASE".equals(rs.getString("type")) ? remaining.negate() : remaining,
+                    rs.getObject("date_due", LocalDate.class)));
+        }, tenantId);
+        jdbcTemplate.query(PARTIES_SQL, rs -> {
+            matcher.addParty(new ReconciliationMatcher.Party(rs.getLong(1), rs.getString(2), rs.getString(3)));
+        }, tenantId);
+        int openItems = matcher.getOpenItems();
+
+        List<BankLine> lines = new ArrayList<>();
+        String linesSql = LINES_SQL + (accountId != null ? " AND account_id = ?" : "") + " ORDER BY movement_date, id";
+        jdbcTemplate.query(linesSql, rs -> {
+            String description = rs.getString("description");
+            String reference = rs.getString("reference");
+            String text = description == null ? reference : reference == null ? description : description + " " + reference;
+            lines.add(new BankLine(rs.getLong("id"), rs.getObject("movement_date", LocalDate.class), rs.getBigDecimal("amount"),
+                    rs.getString("currency_code"), text, rs.getString("counterparty_name"), rs.getString("counterparty_iban")));
+        }, accountId != null ? new Object[]{tenantId, accountId} : new Object[]{tenantId});
+        long indexed = System.nanoTime();
+
+        List<Match> matches = matcher.match(lines);
+        long matched = System.nanoTime();
+
+        int applied = 0;
+        int payments = 0;
+        int skipped = 0;
+        if (minConfidence != null) {
+            List<Match> accepted = matches.stream().filter(m -> m.confidence() >= minConfidence).toList();
+            int chunkSize = Math.max(1, properties.getChunkSize());
+            for (int from = 0; from < accepted.size(); from += chunkSize) {
+                ChunkResult chunk = applyChunk(tenantId, accepted.subList(from, Math.min(from + chunkSize, accepted.size())), userId);
+                applied += chunk.applied();
+                payments += chunk.payments();
+                skipped += chunk.skipped();
+            }
+            if (payments > 0) kpiCounterService.recount(tenantId, KpiCounter.OPEN_INVOICES);
+            linesMatched.increment(applied);
+        }
+        long end = System.nanoTime();
+        runTimer.record(Duration.ofNanos(end - start));
+
+        ReconciliationRun run = new ReconciliationRun(lines.size(), openItems, matches, applied, payments, skipped,
+                Duration.ofNanos(indexed - start), Duration.ofNanos(matched - indexed), Duration.ofNanos(end - matched));
+        if (!lines.isEmpty()) {
+            log.info("Bank reconciliation of tenant {}: {} line(s) against {} open invoice(s), {} matched, {} applied with {} payment(s), " +
+                            "{} skipped; read {} ms, match {} ms, apply {} ms ({} lines/s)", tenantId, run.lines(), openItems,
+                    matches.size(), applied, payments, skipped, run.reading().toMillis(), run.matching().toMillis(),
+                    run.applying().toMillis(), Math.round(run.linesPerSecond()));
+        }
+        return run;
+    }
+
+    private ChunkResult applyChunk(String tenantId, List<Match> chunk, Long userId) {
+        Set<Long> touched = new LinkedHashSet<>();
+        ChunkResult result = transactionTemplate.execute(status -> {
+            List<Long> lineIds = chunk.stream().map(m -> m.line().id()).toList();
+            Set<Long> openLines = new HashSet<>(jdbcTemplate.queryForList(String.format(LOCK_LINES_SQL, placeholders(lineIds.size())),
+                    Long.class, params(tenantId, lineIds)));
+            List<Long> invoiceIds = chunk.stream().flatMap(m -> m.allocations().stream()).map(Allocation::invoiceId).distinct().toList();
+            Map<Long, InvoiceState> invoices = new HashMap<>();
+            jdbcTemplate.query(String.format(LOCK_INVOICES_SQL, placeholders(invoiceIds.size())), rs -> {
+                InvoiceState state = new InvoiceState(rs.getLong("id"), rs.getString("type"), rs.getString("currency_code"),
+                        rs.getObject("date_issued", LocalDate.class), rs.getObject("date_due", LocalDate.class),
+                        rs.getBigDecimal("total_amount"));
+                state.status = rs.getString("status");
+                state.paid = rs.getBigDecimal("amount_paid");
+                state.remaining = rs.getBigDecimal("amount_remaining");
+                invoices.put(state.id, state);
+            }, params(tenantId, invoiceIds));
+
+            Map<Long, InvoiceFactService.Contribution> before = new LinkedHashMap<>();
+            List<Object[]> paymentRows = new ArrayList<>();
+            List<Object[]> lineRows = new ArrayList<>();
+            List<Long> reconciledLines = new ArrayList<>();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            int skipped = 0;
+            for (Match match : chunk) {
+                if (!openLines.contains(match.line().id()) || !fits(match, invoices)) {
+                    skipped++;
+                    continue;
+                }
+                BankLine line = match.line();
+                for (Allocation allocation : match.allocations()) {
+                    InvoiceState invoice = invoices.get(allocation.invoiceId());
+                    before.computeIfAbsent(invoice.id, id -> invoice.contribution());
+                    BigDecimal amount = allocation.amount().abs();
+                    invoice.pay(amount);
+                    paymentRows.add(new Object[]{tenantId, invoice.id, amount, invoice.currency, Date.valueOf(line.date()),
+                            truncate(line.text()), line.id(), userId});
+                }
+                Long invoiceId = match.allocations().size() == 1 ? match.allocations().get(0).invoiceId() : null;
+                lineRows.add(new Object[]{now, BigDecimal.valueOf(match.confidence()).setScale(3, RoundingMode.HALF_UP),
+                        invoiceId, line.id()});
+                reconciledLines.add(line.id());
+            }
+            if (reconciledLines.isEmpty()) return new ChunkResult(0, 0, skipped);
+
+            jdbcTemplate.batchUpdate(INSERT_PAYMENT_SQL, paymentRows);
+            List<Object[]> invoiceRows = new ArrayList<>(before.size());
+            List<InvoiceFactService.Contribution> after = new ArrayList<>(before.size());
+            for (Long id : before.keySet()) {
+                InvoiceState invoice = invoices.get(id);
+                invoiceRows.add(new Object[]{invoice.paid, invoice.remaining, invoice.status, id});
+                after.add(invoice.contribution());
+            }
+            jdbcTemplate.batchUpdate(UPDATE_INVOICE_SQL, invoiceRows);
+            jdbcTemplate.batchUpdate(UPDATE_LINE_SQL, lineRows);
+            jdbcTemplate.update(String.format(LINK_PAYMENTS_SQL, placeholders(reconciledLines.size())), params(tenantId, reconciledLines));
+            invoiceFactService.recordChanges(tenantId, new ArrayList<>(before.values()), after);
+            touched.addAll(before.keySet());
+            return new ChunkResult(reconciledLines.size(), paymentRows.size(), skipped);
+        });
+        touched.forEach(id -> searchIndexer.enqueue(tenantId, SearchDocumentType.INVOICE, id));
+        return result;
+    }
+
+    /** Whether every invoice of the match is still open with enough left to pay, allowing for earlier matches. */
+    private static boolean fits(Match match, Map<Long, InvoiceState> invoices) {
+        Map<Long, BigDecimal> needed = new HashMap<>();
+        for (Allocation allocation : match.allocations()) {
+            needed.merge(allocation.invoiceId(), allocation.amount().abs(), BigDecimal::add);
+        }
+        for (Map.Entry<Long, BigDecimal> entry : needed.entrySet()) {
+            InvoiceState invoice = invoices.get(entry.getKey());
+            if (invoice == null || !invoice.isOpen() || invoice.remaining.compareTo(entry.getValue()) < 0) return false;
+        }
+        return true;
+    }
+
+    private static String truncate(String text) {
+        if (text == null) return null;
+        return text.length() > MAX_PAYMENT_REFERENCE ? text.substring(0, MAX_PAYMENT_REFERENCE) : text;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static Object[] params(String tenantId, List<Long> in) {
+        List<Object> params = new ArrayList<>(in.size() + 1);
+        params.add(tenantId);
+        params.addAll(in);
+        return params.toArray();
+    }
+
+    /**
+     * Outcome of a run: bank lines read, open invoices, proposed matches and, when applied, what was written.
+     * Skipped matches changed under the run and stay to reconcile.
+     */
+    public record ReconciliationRun(int lines, int openItems, List<Match> matches, int applied, int payments, int skipped,
+                                    Duration reading, Duration matching, Duration applying) {
+
+        /** Bank lines processed per second over the whole run. */
+        public double linesPerSecond() {
+            long nanos = reading.plus(matching).plus(applying).toNanos();
+            return nanos > 0 ? lines * 1_000_000_000d / nanos : 0;
+        }
+    }
+
+    private record ChunkResult(int applied, int payments, int skipped) {}
+
+    /** An invoice locked by a chunk, with the amounts updated as its payments are added. */
+    private static final class InvoiceState {
+
+        private final long id;
+        private final String type;
+        private final String currency;
+        private final LocalDate dateIssued;
+        private final LocalDate dateDue;
+        private final BigDecimal total;
+        private String status;
+        private BigDecimal paid;
+        private BigDecimal remaining;
+
+        private InvoiceState(long id, String type, String currency, LocalDate dateIssued, LocalDate dateDue, BigDecimal total) {
+            this.id = id;
+            this.type = type;
+            this.currency = currency;
+            this.dateIssued = dateIssued;
+            this.dateDue = dateDue;
+            this.total = total;
+        }
+
+        boolean isOpen() {
+            return "VALIDATED".equals(status) || "SENT".equals(status) || "PARTIALLY_PAID".equals(status);
+        }
+
+        /** Same rule as InvoiceService#addPayment. */
+        void pay(BigDecimal amount) {
+            paid = paid.add(amount);
+            remaining = remaining.subtract(amount);
+            status = remaining.signum() <= 0 ? "PAID" : "PARTIALLY_PAID";
+        }
+
+        InvoiceFactService.Contribution contribution() {
+            return InvoiceFactService.contributionOf(type, status, currency, dateIssued, dateDue, total, remaining);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package fr.aplose.erp.modules.bank.service;
+
+import fr.aplose.erp.modules.bank.entity.BankAccount;
+import fr.aplose.erp.modules.bank.service.BankStatementParser.Format;
+import fr.aplose.erp.modules.bank.service.BankStatementParser.StatementLine;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports a bank statement into an account. The statement is streamed through {@link BankStatementParser} and its
+ * new lines inserted with JDBC batches; the account's daily balances are refreshed once, from the earliest date
+ * imported. The whole import is one transaction: a malformed line rejects the file.
+ * <p>
+ * Lines already recorded are skipped: the hashes of the account's movements ({@link BankStatementParser#hash}) are
+ * loaded into a probe map counting each hash, and a statement line is a duplicate while its hash still has
+ * recorded occurrences left. Re-importing a statement, or one overlapping an earlier one, thus adds nothing, while
+ * two identical payments on the same day are both kept.
+ */
+@Slf4j
+@Service
+public class BankStatementImportService {
+
+    private static final String HASHES_SQL =
+            "SELECT import_hash, movement_date, amount, description FROM bank_movements WHERE tenant_id = ? AND account_id = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO bank_movements (tenant_id, account_id, movement_date, amount, currency_code, description, reference, " +
+            "counterparty_name, counterparty_iban, import_hash, created_by) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BATCH_SIZE = 1_000;
+    private static final int MAX_DESCRIPTION = 500;
+    private static final int MAX_REFERENCE = 100;
+    private static final int MAX_COUNTERPARTY_NAME = 255;
+    private static final int MAX_IBAN = 34;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BankAccountService bankAccountService;
+    private final BankBalanceService balanceService;
+    private final Timer importTimer;
+
+    public BankStatementImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                      BankAccountService bankAccountService, BankBalanceService balanceService,
+                                      MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bankAccountService = bankAccountService;
+        this.balanceService = balanceService;
+        this.importTimer = Timer.builder("bank.statement.import.time")
+                .description("Duration of bank statement imports")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Imports the statement into the current tenant's account, detecting its format when {@code format} is null.
+     *
+     * @throws IllegalArgumentException when the statement is malformed, for another account or in another currency
+     *                                  than the account
+     */
+    public ImportResult importStatement(Long accountId, InputStream in, Format format, Long userId) throws IOException {
+        String tenantId = TenantContext.getCurrentTenantId();
+        BankAccount account = bankAccountService.findAccountById(accountId); // ensure account belongs to tenant
+        long start = System.nanoTime();
+        ImportResult result;
+        try {
+            result = transactionTemplate.execute(status -> {
+                try {
+                    return importLines(tenantId, account, in, format, userId, start);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        importTimer.record(result.duration());
+        log.info("Bank statement imported into account {} of tenant {}: {} line(s), {} imported, {} duplicate(s) in {} ms ({} lines/s)",
+                accountId, tenantId, result.lines(), result.imported(), result.duplicates(), result.duration().toMillis(),
+                Math.round(result.linesPerSecond()));
+        return result;
+    }
+
+    private ImportResult importLines(String tenantId, BankAccount account, InputStream in, Format format, Long userId,
+                                     long start) throws IOException {
+        Long accountId = account.getId();
+        // Imports of one account run one after the other, each seeing the lines of the previous one
+        jdbcTemplate.queryForList("SELECT id FROM bank_accounts WHERE id = ? FOR UPDATE", Long.class, accountId);
+        Map<Long, Integer> recorded = new HashMap<>();
+        jdbcTemplate.query(HASHES_SQL, rs -> {
+            long hash = rs.getLong("import_hash");
+            if (rs.wasNull()) {
+                hash = BankStatementParser.hash(accountId, rs.getObject("movement_date", LocalDate.class),
+                        rs.getBigDecimal("amount"), rs.getString("description"));
+            }
+            recorded.merge(hash, 1, Integer::sum);
+        }, tenantId, accountId);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int[] counts = new int[3]; // lines, imported, duplicates
+        LocalDate[] earliest = new LocalDate[1];
+        BankStatementParser.parse(in, format, account.getIban(), line -> {
+            counts[0]++;
+            String currency = line.currency() != null ? line.currency().toUpperCase(Locale.ROOT) : account.getCurrencyCode();
+            if (!currency.equals(account.getCurrencyCode())) {
+                throw new IllegalArgumentException("currency " + currency + " differs from the account currency "
+                        + account.getCurrencyCode());
+            }
+            String description = truncate(line.description(), MAX_DESCRIPTION);
+            long hash = BankStatementParser.hash(accountId, line.date(), line.amount(), description);
+            Integer left = recorded.get(hash);
+            if (left != null) {
+                if (left == 1) recorded.remove(hash);
+                else recorded.put(hash, left - 1);
+                counts[2]++;
+                return;
+            }
+            batch.add(row(tenantId, accountId, line, currency, description, hash, userId));
+            counts[1]++;
+            if (earliest[0] == null || line.date().isBefore(earliest[0])) earliest[0] = line.date();
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        if (earliest[0] != null) balanceService.refresh(tenantId, accountId, earliest[0]);
+        return new ImportResult(counts[0], counts[1], counts[2], Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static Object[] row(String tenantId, Long accountId, StatementLine line, String currency, String description,
+                                long hash, Long userId) {
+        return new Object[]{tenantId, accountId, Date.valueOf(line.date()), line.amount(), currency, description,
+                truncate(line.reference(), MAX_REFERENCE), truncate(line.counterpartyName(), MAX_COUNTERPARTY_NAME),
+                truncate(line.counterpartyIban(), MAX_IBAN), hash, userId};
+    }
+
+    private static String truncate(String text, int max) {
+        if (text == null) return null;
+        return text.length() > max ? text.substring(0, max) : text;
+    }
+
+    /**
+     * Outcome of an import: statement lines read, movements created and duplicates skipped.
+     */
+    public record ImportResult(int lines, int imported, int duplicates, Duration duration) {
+
+        public double linesPerSecond() {
+            long nanos = duration.toNanos();
+            return nanos > 0 ? lines * 1_000_000_000d / nanos : 0;
+        }
+    }
+}
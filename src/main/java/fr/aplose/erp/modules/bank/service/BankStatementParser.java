@@ -0,0 +1,595 @@
+package fr.aplose.erp.modules.bank.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming reader of bank statements: CSV and OFX line by line, CAMT.053 with a StAX parser. Each transaction is
+ * handed to the consumer as soon as it is read, so a statement is never held in memory. Malformed content is
+ * reported as an {@link IllegalArgumentException} giving the line.
+ */
+public final class BankStatementParser {
+
+    public enum Format { CSV, OFX, CAMT053 }
+
+    /** A statement transaction; {@code currency} is null when the statement does not give it. */
+    public record StatementLine(LocalDate date, BigDecimal amount, String currency, String description, String reference,
+                                String counterpartyName, String counterpartyIban) {}
+
+    /** Bytes looked at to detect the format and the OFX character set. */
+    private static final int HEAD_SIZE = 1024;
+    private static final Pattern OFX_TAG = Pattern.compile("<(/?)([A-Za-z0-9.]+)>([^<]*)");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final DateTimeFormatter DAY_FIRST = DateTimeFormatter.ofPattern("d/M/yyyy");
+    private static final DateTimeFormatter DAY_FIRST_SHORT = DateTimeFormatter.ofPattern("d/M/yy");
+    private static final DateTimeFormatter DAY_FIRST_DOTS = DateTimeFormatter.ofPattern("d.M.yyyy");
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    private BankStatementParser() {
+    }
+
+    /** Reads the statement, detecting its format when {@code format} is null. */
+    public static void parse(InputStream in, Format format, Consumer<StatementLine> sink) throws IOException {
+        parse(in, format, null, sink);
+    }
+
+    /**
+     * Reads the statement of the account with the given IBAN (not checked when null): a statement naming another
+     * account (CAMT.053) is rejected.
+     */
+    public static void parse(InputStream in, Format format, String accountIban, Consumer<StatementLine> sink)
+            throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        String head = head(buffered);
+        switch (format != null ? format : detect(head)) {
+            case CSV -> parseCsv(csvLines(buffered), sink);
+            case OFX -> parseOfx(new BufferedReader(new InputStreamReader(buffered, ofxCharset(head))), sink);
+            case CAMT053 -> parseCamt053(buffered, compactIban(accountIban), sink);
+        }
+    }
+
+    public static Format detect(String head) {
+        String start = head.stripLeading().toUpperCase(Locale.ROOT);
+        if (start.startsWith("OFXHEADER") || start.contains("<OFX>")) return Format.OFX;
+        if (start.startsWith("<?XML") || start.startsWith("<DOCUMENT")) {
+            if (start.contains("<OFX>")) return Format.OFX;
+            return Format.CAMT053;
+        }
+        return Format.CSV;
+    }
+
+    /**
+     * Duplicate key of a movement: the first 64 bits of a SHA-256 of its account, date, amount and label (case and
+     * spacing ignored). Identical lines on the same day get the same hash; imports count them rather than drop them.
+     */
+    public static long hash(Long accountId, LocalDate date, BigDecimal amount, String label) {
+        String key = accountId + "|" + date + "|" + amount.stripTrailingZeros().toPlainString() + "|" +
+                (label == null ? "" : SPACES.matcher(label.strip()).replaceAll(" ").toUpperCase(Locale.ROOT));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String head(BufferedInputStream in) throws IOException {
+        in.mark(HEAD_SIZE);
+        byte[] head = in.readNBytes(HEAD_SIZE);
+        in.reset();
+        String text = new String(head, StandardCharsets.ISO_8859_1);
+        // UTF-8 byte order mark
+        return text.startsWith("\u00EF\u00BB\u00BF") ? text.substring(3) : text;
+    }
+
+    // ---- CSV ----
+
+    /** Source of the lines of a CSV statement. */
+    private interface LineReader {
+        String readLine() throws IOException;
+    }
+
+    /**
+     * CSV exports carry no charset: a byte order mark is honoured, otherwise lines are read as UTF-8 until one is
+     * not valid UTF-8, from which on the file is read as windows-1252 (the usual encoding of French bank exports).
+     */
+    private static LineReader csvLines(BufferedInputStream in) throws IOException {
+        in.mark(3);
+        byte[] bom = in.readNBytes(3);
+        in.reset();
+        if (bom.length >= 3 && (bom[0] & 0xFF) == 0xEF && (bom[1] & 0xFF) == 0xBB && (bom[2] & 0xFF) == 0xBF) {
+            in.skipNBytes(3);
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))::readLine;
+        }
+        if (bom.length >= 2 && (bom[0] & 0xFF) == 0xFF && (bom[1] & 0xFF) == 0xFE) {
+            in.skipNBytes(2);
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_16LE))::readLine;
+        }
+        if (bom.length >= 2 && (bom[0] & 0xFF) == 0xFE && (bom[1] & 0xFF) == 0xFF) {
+            in.skipNBytes(2);
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_16BE))::readLine;
+        }
+        return new Utf8OrWindows1252Lines(in);
+    }
+
+    /** Reads byte lines (ended by LF or CRLF) and decodes them strictly as UTF-8, then as windows-1252 once one fails. */
+    private static final class Utf8OrWindows1252Lines implements LineReader {
+
+        private final InputStream in;
+        private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private boolean windows1252;
+
+        Utf8OrWindows1252Lines(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            line.reset();
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                line.write(b);
+            }
+            if (b < 0 && line.size() == 0) return null;
+            byte[] bytes = line.toByteArray();
+            int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+            if (!windows1252) {
+                try {
+                    return utf8.decode(ByteBuffer.wrap(bytes, 0, length)).toString();
+                } catch (CharacterCodingException e) {
+                    windows1252 = true;
+                }
+            }
+            return new String(bytes, 0, length, WINDOWS_1252);
+        }
+    }
+
+    /**
+     * A header line then one transaction per line, separated by ';', ',' or tabs (whichever the header uses most).
+     * Columns are recognized by name, in English or French: date, amount or debit and credit, label, reference,
+     * counterparty, IBAN, currency. Amounts may use a decimal comma and spaces between thousands.
+     */
+    private static void parseCsv(LineReader reader, Consumer<StatementLine> sink) throws IOException {
+        String header = reader.readLine();
+        if (header == null) return;
+        if (header.startsWith("\uFEFF")) header = header.substring(1);
+        char separator = separator(header);
+        CsvColumns columns = CsvColumns.of(splitCsv(header, separator));
+
+        int lineNo = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            List<String> cells = splitCsv(line, separator);
+            try {
+                BigDecimal amount;
+                if (columns.amount >= 0) {
+                    String value = cell(cells, columns.amount);
+                    amount = value != null ? parseAmount(value) : null;
+                } else {
+                    String debit = cell(cells, columns.debit);
+                    String credit = cell(cells, columns.credit);
+                    amount = debit != null ? parseAmount(debit).abs().negate()
+                            : credit != null ? parseAmount(credit).abs() : null;
+                }
+                String date = cell(cells, columns.date);
+                if (date == null || amount == null) throw new IllegalArgumentException("date and amount are required");
+                sink.accept(new StatementLine(parseDate(date), amount, cell(cells, columns.currency),
+                        cell(cells, columns.label), cell(cells, columns.reference), cell(cells, columns.counterparty),
+                        compactIban(cell(cells, columns.iban))));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Line " + lineNo + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private record CsvColumns(int date, int amount, int debit, int credit, int label, int reference, int counterparty,
+                              int iban, int currency) {
+
+        static CsvColumns of(List<String> header) {
+            int date = -1, amount = -1, debit = -1, credit = -1, label = -1, reference = -1, counterparty = -1,
+                    iban = -1, currency = -1;
+            boolean valueDate = false;
+            for (int i = 0; i < header.size(); i++) {
+                String name = DIACRITICS.matcher(Normalizer.normalize(header.get(i), Normalizer.Form.NFD))
+                        .replaceAll("").toLowerCase(Locale.ROOT).strip();
+                if (name.contains("date")) {
+                    // Booking date rather than value date
+                    boolean value = name.contains("val");
+                    if (date < 0 || (valueDate && !value)) {
+                        date = i;
+                        valueDate = value;
+                    }
+                } else if (name.contains("amount") || name.contains("montant")) {
+                    if (amount < 0) amount = i;
+                } else if (name.contains("debit")) {
+                    debit = i;
+                } else if (name.contains("credit")) {
+                    credit = i;
+                } else if (name.contains("iban")) {
+                    iban = i;
+                } else if (name.contains("currency") || name.contains("devise")) {
+                    currency = i;
+                } else if (name.contains("ref")) {
+                    if (reference < 0) reference = i;
+                } else if (name.contains("label") || name.contains("libelle") || name.contains("description")
+                        || name.contains("wording") || name.contains("detail")) {
+                    if (label < 0) label = i;
+                } else if (name.contains("counterpart") || name.contains("contrepartie") || name.contains("beneficiar")
+                        || name.contains("payee") || name.equals("name") || name.equals("nom") || name.contains("tiers")) {
+                    if (counterparty < 0) counterparty = i;
+                }
+            }
+            if (date < 0) throw new IllegalArgumentException("CSV header has no date column");
+            if (amount < 0 && (debit < 0 || credit < 0)) {
+                throw new IllegalArgumentException("CSV header has no amount column (nor debit and credit columns)");
+            }
+            return new CsvColumns(date, amount, debit, credit, label, reference, counterparty, iban, currency);
+        }
+    }
+
+    private static char separator(String header) {
+        char best = ';';
+        long bestCount = -1;
+        for (char c : new char[]{';', ',', '\t'}) {
+            long count = header.chars().filter(ch -> ch == c).count();
+            if (count > bestCount) {
+                best = c;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /** Splits a line on the separator; quoted cells may contain it, "" is a quote. */
+    static List<String> splitCsv(String line, char separator) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static String cell(List<String> cells, int index) {
+        if (index < 0 || index >= cells.size()) return null;
+        String value = cells.get(index).strip();
+        return value.isEmpty() ? null : value;
+    }
+
+    /** ISO dates (a time may follow), day first with '/' or '.', or yyyyMMdd as in OFX. */
+    static LocalDate parseDate(String value) {
+        String date = value.strip();
+        int space = date.indexOf(' ');
+        if (space > 0) date = date.substring(0, space);
+        if (date.length() >= 10 && date.charAt(4) == '-') return LocalDate.parse(date.substring(0, 10));
+        if (date.indexOf('/') > 0) {
+            return LocalDate.parse(date, date.length() - date.lastIndexOf('/') == 5 ? DAY_FIRST : DAY_FIRST_SHORT);
+        }
+        if (date.indexOf('.') > 0) return LocalDate.parse(date, DAY_FIRST_DOTS);
+        if (date.length() >= 8 && date.chars().limit(8).allMatch(Character::isDigit)) {
+            return LocalDate.parse(date.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE);
+        }
+        throw new IllegalArgumentException("invalid date '" + value + "'");
+    }
+
+    /** "1 234,56", "-1,234.56", "+12.5", "1.234,56 €". */
+    static BigDecimal parseAmount(String value) {
+        StringBuilder digits = new StringBuilder(value.length());
+        int lastComma = -1;
+        int lastDot = -1;
+        for (char c : value.toCharArray()) {
+            if (Character.isDigit(c) || c == '-') {
+                digits.append(c);
+            } else if (c == ',') {
+                lastComma = digits.length();
+                digits.append(c);
+            } else if (c == '.') {
+                lastDot = digits.length();
+                digits.append(c);
+            }
+        }
+        char decimal = lastComma > lastDot ? ',' : '.';
+        if (decimal == ',' && lastDot < 0 && digits.length() - lastComma - 1 == 3 && digits.indexOf(",") != lastComma) {
+            decimal = '.'; // 1,234,567
+        }
+        StringBuilder normalized = new StringBuilder(digits.length());
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c == decimal) normalized.append('.');
+            else if (c != ',' && c != '.') normalized.append(c);
+        }
+        try {
+            return new BigDecimal(normalized.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid amount '" + value + "'");
+        }
+    }
+
+    // ---- OFX ----
+
+    /**
+     * OFX 1 (SGML, leaf elements not closed) and OFX 2 (XML), read tag by tag: one STMTTRN aggregate per
+     * transaction. The payee NAME is the counterparty, the label is the name followed by the MEMO.
+     */
+    private static void parseOfx(BufferedReader reader, Consumer<StatementLine> sink) throws IOException {
+        String currency = null;
+        OfxTransaction transaction = null;
+        int lineNo = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            Matcher m = OFX_TAG.matcher(line);
+            while (m.find()) {
+                String tag = m.group(2).toUpperCase(Locale.ROOT);
+                boolean closing = !m.group(1).isEmpty();
+                String value = m.group(3).strip();
+                if (tag.equals("STMTTRN")) {
+                    if (!closing) {
+                        transaction = new OfxTransaction();
+                    } else if (transaction != null) {
+                        try {
+                            sink.accept(transaction.toLine(currency));
+                        } catch (IllegalArgumentException | DateTimeParseException e) {
+                            throw new IllegalArgumentException("Line " + lineNo + ": " + e.getMessage(), e);
+                        }
+                        transaction = null;
+                    }
+                } else if (!closing && !value.isEmpty()) {
+                    value = unescapeXml(value);
+                    if (tag.equals("CURDEF")) currency = value;
+                    else if (transaction != null) transaction.set(tag, value);
+                }
+            }
+        }
+    }
+
+    private static final class OfxTransaction {
+        private String date;
+        private String amount;
+        private String name;
+        private String memo;
+        private String reference;
+
+        void set(String tag, String value) {
+            switch (tag) {
+                case "DTPOSTED" -> date = value;
+                case "TRNAMT" -> amount = value;
+                case "NAME", "PAYEE" -> name = value;
+                case "MEMO" -> memo = value;
+                case "REFNUM", "CHECKNUM" -> reference = value;
+                default -> { }
+            }
+        }
+
+        StatementLine toLine(String statementCurrency) {
+            if (date == null || amount == null) throw new IllegalArgumentException("STMTTRN without DTPOSTED or TRNAMT");
+            String label = name == null ? memo : memo == null || memo.equals(name) ? name : name + " " + memo;
+            // TRNAMT is in the statement currency (CURDEF), also for foreign currency transactions
+            return new StatementLine(parseDate(date), parseAmount(amount), statementCurrency, label, reference, name, null);
+        }
+    }
+
+    private static Charset ofxCharset(String head) {
+        String upper = head.toUpperCase(Locale.ROOT);
+        if (upper.contains("CHARSET:1252")) return WINDOWS_1252;
+        if (upper.contains("CHARSET:ISO-8859-1") || upper.contains("CHARSET:8859-1")) return StandardCharsets.ISO_8859_1;
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String unescapeXml(String value) {
+        if (value.indexOf('&') < 0) return value;
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'")
+                .replace("&amp;", "&");
+    }
+
+    // ---- CAMT.053 ----
+
+    /**
+     * ISO 20022 bank-to-customer statements, any version: one movement per Ntry, signed by CdtDbtInd. The
+     * counterparty is the debtor of a credit and the creditor of a debit; the label joins the unstructured
+     * remittance information, or falls back to AddtlNtryInf. Only booked entries are read: pending or informational
+     * ones (Sts other than BOOK) are skipped. Each Stmt's account IBAN must be {@code accountIban} when both are
+     * known. DTDs and external entities are refused.
+     */
+    private static void parseCamt053(InputStream in, String accountIban, Consumer<StatementLine> sink) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in);
+            List<String> path = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            String accountCurrency = null;
+            CamtEntry entry = null;
+            int entryDepth = -1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    path.add(name);
+                    text.setLength(0);
+                    if (name.equals("Ntry") && entry == null) {
+                        entry = new CamtEntry();
+                        entryDepth = path.size();
+                    } else if (entry != null && name.equals("Amt") && path.size() == entryDepth + 1) {
+                        entry.currency = reader.getAttributeValue(null, "Ccy");
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String value = text.toString().strip();
+                    text.setLength(0);
+                    if (entry == null) {
+                        if (endsWith(path, "Stmt", "Acct", "Ccy")) accountCurrency = value;
+                        if (endsWith(path, "Stmt", "Acct", "Id", "IBAN") && accountIban != null
+                                && !accountIban.equals(compactIban(value))) {
+                            throw new IllegalArgumentException("the statement is for account " + compactIban(value)
+                                    + ", not " + accountIban);
+                        }
+                    } else if (path.size() == entryDepth) {
+                        try {
+                            if (entry.isBooked()) sink.accept(entry.toLine(accountCurrency));
+                        } catch (IllegalArgumentException | DateTimeParseException e) {
+                            throw new IllegalArgumentException("Line " + reader.getLocation().getLineNumber() + ": "
+                                    + e.getMessage(), e);
+                        }
+                        entry = null;
+                    } else if (!value.isEmpty()) {
+                        entry.set(path.subList(entryDepth, path.size()), value);
+                    }
+                    path.removeLast();
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Invalid CAMT.053 statement: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // nothing held but the stream, closed by the caller
+                }
+            }
+        }
+    }
+
+    private static boolean endsWith(List<String> path, String... names) {
+        if (path.size() < names.length) return false;
+        for (int i = 0; i < names.length; i++) {
+            if (!path.get(path.size() - names.length + i).equals(names[i])) return false;
+        }
+        return true;
+    }
+
+    private static final class CamtEntry {
+        private String amount;
+        private String currency;
+        private String indicator;
+        private String status;
+        private String bookingDate;
+        private String valueDate;
+        private String reference;
+        private String entryReference;
+        private final StringBuilder remittance = new StringBuilder();
+        private String additionalInfo;
+        private String debtorName;
+        private String debtorIban;
+        private String creditorName;
+        private String creditorIban;
+
+        /** {@code path} starts below Ntry. */
+        void set(List<String> path, String value) {
+            String leaf = path.getLast();
+            if (path.size() == 1) {
+                switch (leaf) {
+                    case "Amt" -> amount = value;
+                    case "CdtDbtInd" -> indicator = value;
+                    case "Sts" -> status = value; // camt.053.001.02 to .07
+                    case "AcctSvcrRef" -> entryReference = value;
+                    case "AddtlNtryInf" -> additionalInfo = value;
+                    default -> { }
+                }
+            } else if (path.size() == 2 && endsWith(path, "Sts", "Cd")) {
+                status = value; // camt.053.001.08 onwards
+            } else if (endsWith(path, "BookgDt", "Dt") || endsWith(path, "BookgDt", "DtTm")) {
+                bookingDate = value;
+            } else if (endsWith(path, "ValDt", "Dt") || endsWith(path, "ValDt", "DtTm")) {
+                valueDate = value;
+            } else if (leaf.equals("Ustrd") && path.contains("RmtInf")) {
+                if (!remittance.isEmpty()) remittance.append(' ');
+                remittance.append(value);
+            } else if (leaf.equals("Ref") && path.contains("CdtrRefInf")) {
+                reference = value;
+            } else if (leaf.equals("EndToEndId") && path.contains("Refs")) {
+                if (reference == null && !value.equalsIgnoreCase("NOTPROVIDED")) reference = value;
+            } else if (path.contains("RltdPties")) {
+                if (leaf.equals("Nm") && (endsWith(path, "Dbtr", "Nm") || endsWith(path, "Dbtr", "Pty", "Nm"))) {
+                    if (debtorName == null) debtorName = value;
+                } else if (leaf.equals("Nm") && (endsWith(path, "Cdtr", "Nm") || endsWith(path, "Cdtr", "Pty", "Nm"))) {
+                    if (creditorName == null) creditorName = value;
+                } else if (leaf.equals("IBAN") && path.contains("DbtrAcct")) {
+                    if (debtorIban == null) debtorIban = value;
+                } else if (leaf.equals("IBAN") && path.contains("CdtrAcct")) {
+                    if (creditorIban == null) creditorIban = value;
+                }
+            }
+        }
+
+        /** Entries without a status are taken as booked. */
+        boolean isBooked() {
+            return status == null || status.equals("BOOK");
+        }
+
+        StatementLine toLine(String accountCurrency) {
+            String date = bookingDate != null ? bookingDate : valueDate;
+            if (amount == null || date == null) throw new IllegalArgumentException("Ntry without Amt or BookgDt");
+            boolean debit = "DBIT".equals(indicator);
+            BigDecimal signed = new BigDecimal(amount).abs();
+            if (debit) signed = signed.negate();
+            String label = !remittance.isEmpty() ? remittance.toString() : additionalInfo;
+            return new StatementLine(LocalDate.parse(date.substring(0, 10)), signed,
+                    currency != null ? currency : accountCurrency, label,
+                    reference != null ? reference : entryReference,
+                    debit ? creditorName : debtorName, compactIban(debit ? creditorIban : debtorIban));
+        }
+    }
+
+    private static String compactIban(String iban) {
+        if (iban == null) return null;
+        String compact = SPACES.matcher(iban).replaceAll("").toUpperCase(Locale.ROOT);
+        return compact.isEmpty() ? null : compact;
+    }
+}
@@ -0,0 +1,355 @@
+package fr.aplose.erp.modules.bank.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory matcher of bank lines against the open invoices of one tenant. Open items are indexed by currency and
+ * remaining amount (in cents, positive for receivables and negative for payables, like the bank amounts), by
+ * normalized reference and by third party; third parties are indexed by IBAN and by name.
+ * <p>
+ * Lines are matched in three passes: first those quoting invoice references, then the others by counterparty
+ * (IBAN, then name), and only then the rest by amount alone. A line may settle several invoices (a customer paying a
+ * batch) or part of one. Each match consumes the remaining amounts it allocates, so an invoice is never matched
+ * beyond what is left to pay. Not thread-safe: one instance per run.
+ */
+public final class ReconciliationMatcher {
+
+    /** Reference quoted and amounts equal: one invoice, or several settled together. */
+    public static final double REFERENCE_EXACT = 0.99;
+    public static final double REFERENCE_SPLIT = 0.95;
+    /** Reference quoted, amount lower than the remaining amount. */
+    public static final double REFERENCE_PARTIAL = 0.8;
+    /** Reference quoted, amounts do not add up. */
+    public static final double REFERENCE_MISMATCH = 0.6;
+    public static final double IBAN_EXACT = 0.9;
+    public static final double NAME_EXACT = 0.85;
+    /** Amount alone, a single candidate. */
+    public static final double AMOUNT_UNIQUE = 0.6;
+    public static final double AMOUNT_AMBIGUOUS = 0.4;
+
+    /** A counterparty's invoices tried as subsets when looking for a batch payment. */
+    private static final int MAX_SUBSET_ITEMS = 10;
+    private static final int MAX_NAME_WORDS = 3;
+    private static final Pattern TOKEN = Pattern.compile("[A-Z0-9]+(?:[-/_.][A-Z0-9]+)*");
+    private static final Pattern WORD = Pattern.compile("[A-Z0-9]+");
+    private static final Pattern IBAN = Pattern.compile("[A-Z]{2}[0-9]{2}[A-Z0-9]{11,30}");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Set<String> NAME_NOISE = Set.of("SARL", "SAS", "SASU", "SA", "EURL", "SCI", "SNC", "SCOP",
+            "LTD", "LIMITED", "GMBH", "INC", "LLC", "SRL", "BV", "AG", "CIE", "ET", "LA", "LE", "LES", "DE", "DU",
+            "DES", "THE", "AND");
+
+    /** An unpaid invoice; {@code remaining} is negative for supplier invoices. */
+    public record OpenItem(long invoiceId, long thirdPartyId, String reference, String currency, BigDecimal remaining,
+                           LocalDate dateDue) {}
+
+    public record Party(long id, String name, String iban) {}
+
+    /** A bank movement to reconcile; {@code text} is its description and reference. */
+    public record BankLine(long id, LocalDate date, BigDecimal amount, String currency, String text,
+                           String counterpartyName, String counterpartyIban) {}
+
+    /** Part of a bank line settling one invoice, with the invoice's sign (negative for supplier invoices). */
+    public record Allocation(long invoiceId, String reference, BigDecimal amount) {}
+
+    public enum Basis { REFERENCE, IBAN, NAME, AMOUNT }
+
+    public record Match(BankLine line, List<Allocation> allocations, double confidence, Basis basis) {}
+
+    private final Map<AmountKey, LinkedHashSet<Item>> byAmount = new HashMap<>();
+    private final Map<String, List<Item>> byReference = new HashMap<>();
+    private final Map<Long, List<Item>> byThirdParty = new HashMap<>();
+    private final Map<String, Long> partiesByIban = new HashMap<>();
+    private final Map<String, List<Long>> partiesByName = new HashMap<>();
+    private int openItems;
+
+    /** Adds an open item; items should be added oldest due date first, the order in which they are settled. */
+    public void addItem(OpenItem openItem) {
+        if (openItem.remaining().signum() == 0) return;
+        Item item = new Item(openItem);
+        byAmount.computeIfAbsent(item.key(), k -> new LinkedHashSet<>()).add(item);
+        String reference = referenceKey(openItem.reference());
+        if (!reference.isEmpty()) byReference.computeIfAbsent(reference, k -> new ArrayList<>(1)).add(item);
+        byThirdParty.computeIfAbsent(openItem.thirdPartyId(), k -> new ArrayList<>()).add(item);
+        openItems++;
+    }
+
+    public void addParty(Party party) {
+        if (party.iban() != null && !party.iban().isBlank()) {
+            partiesByIban.put(normalize(party.iban()).replace(" ", ""), party.id());
+        }
+        String name = nameKey(party.name());
+        if (!name.isEmpty() && (name.indexOf(' ') > 0 || name.length() >= 4)) {
+            partiesByName.computeIfAbsent(name, k -> new ArrayList<>(1)).add(party.id());
+        }
+    }
+
+    public int getOpenItems() {
+        return openItems;
+    }
+
+    /**
+     * Matches the lines against the open items; lines without a plausible match are left out. Each pass runs over
+     * all the lines left by the previous one, so a weak match never takes an invoice a stronger one would settle.
+     */
+    public List<Match> match(List<BankLine> lines) {
+        List<Match> matches = new ArrayList<>();
+        List<BankLine> unreferenced = new ArrayList<>();
+        for (BankLine line : lines) {
+            Candidate candidate = byReference(line);
+            if (candidate != null) matches.add(consume(line, candidate));
+            else unreferenced.add(line);
+        }
+        List<BankLine> unknown = new ArrayList<>();
+        for (BankLine line : unreferenced) {
+            Candidate candidate = byCounterparty(line);
+            if (candidate != null) matches.add(consume(line, candidate));
+            else unknown.add(line);
+        }
+        for (BankLine line : unknown) {
+            Candidate candidate = byAmount(line);
+            if (candidate != null) matches.add(consume(line, candidate));
+        }
+        return matches;
+    }
+
+    private Candidate byReference(BankLine line) {
+        if (line.text() == null || line.amount().signum() == 0) return null;
+        Set<Item> quoted = new LinkedHashSet<>();
+        Matcher m = TOKEN.matcher(normalize(line.text()));
+        while (m.find()) {
+            List<Item> items = byReference.get(referenceKey(m.group()));
+            if (items == null) continue;
+            for (Item item : items) {
+                if (item.isOpen() && item.fits(line)) quoted.add(item);
+            }
+        }
+        if (quoted.isEmpty()) return null;
+
+        long open = quoted.stream().mapToLong(Item::cents).sum();
+        long target = cents(line.amount().abs());
+        if (open == target) {
+            return settle(quoted, quoted.size() == 1 ? REFERENCE_EXACT : REFERENCE_SPLIT, Basis.REFERENCE);
+        }
+        if (open < target) {
+            // Overpaid: settle what is due, the rest of the line stays unallocated
+            return settle(quoted, REFERENCE_MISMATCH, Basis.REFERENCE);
+        }
+        return allocateOldestFirst(line, quoted, quoted.size() == 1 ? REFERENCE_PARTIAL : REFERENCE_MISMATCH);
+    }
+
+    private Candidate byCounterparty(BankLine line) {
+        Long byIban = findIban(line);
+        if (byIban != null) {
+            Candidate candidate = fromPartyItems(line, List.of(byIban), IBAN_EXACT, Basis.IBAN);
+            if (candidate != null) return candidate;
+        }
+        Collection<Long> named = findNames(line.counterpartyName() != null ? line.counterpartyName() : line.text());
+        if (named.isEmpty()) return null;
+        return fromPartyItems(line, named, named.size() == 1 ? NAME_EXACT : NAME_EXACT - 0.15, Basis.NAME);
+    }
+
+    /** A single invoice of that amount, the oldest invoices adding up to it, or any small subset adding up to it. */
+    private Candidate fromPartyItems(BankLine line, Collection<Long> parties, double confidence, Basis basis) {
+        List<Item> candidates = new ArrayList<>();
+        for (Long party : parties) {
+            for (Item item : byThirdParty.getOrDefault(party, List.of())) {
+                if (item.isOpen() && item.fits(line)) candidates.add(item);
+            }
+        }
+        if (candidates.isEmpty()) return null;
+        long target = cents(line.amount().abs());
+
+        List<Item> exact = candidates.stream().filter(i -> i.cents() == target).toList();
+        if (!exact.isEmpty()) {
+            return settle(List.of(exact.get(0)), exact.size() == 1 ? confidence : confidence - 0.15, basis);
+        }
+        long sum = 0;
+        for (int n = 0; n < candidates.size() && sum < target; n++) {
+            sum += candidates.get(n).cents();
+            if (sum == target) return settle(candidates.subList(0, n + 1), confidence - 0.05, basis);
+        }
+        List<Item> subset = subsetSum(candidates.subList(0, Math.min(candidates.size(), MAX_SUBSET_ITEMS)), target);
+        return subset != null ? settle(subset, confidence - 0.1, basis) : null;
+    }
+
+    private Candidate byAmount(BankLine line) {
+        if (line.amount().signum() == 0) return null;
+        LinkedHashSet<Item> items = byAmount.get(new AmountKey(line.currency(), cents(line.amount())));
+        if (items == null || items.isEmpty()) return null;
+        Item oldest = items.iterator().next();
+        return settle(List.of(oldest), items.size() == 1 ? AMOUNT_UNIQUE : AMOUNT_AMBIGUOUS, Basis.AMOUNT);
+    }
+
+    /** Settles the items in full. */
+    private static Candidate settle(Collection<Item> items, double confidence, Basis basis) {
+        List<Item> settled = List.copyOf(items);
+        return new Candidate(settled, settled.stream().map(i -> i.remaining).toList(), confidence, basis);
+    }
+
+    /** Spreads the line over the items, oldest first, the last one possibly in part. */
+    private static Candidate allocateOldestFirst(BankLine line, Collection<Item> items, double confidence) {
+        BigDecimal left = line.amount().abs();
+        List<Item> settled = new ArrayList<>();
+        List<BigDecimal> amounts = new ArrayList<>();
+        for (Item item : items) {
+            if (left.signum() <= 0) break;
+            BigDecimal amount = item.remaining.abs().min(left);
+            left = left.subtract(amount);
+            settled.add(item);
+            amounts.add(item.remaining.signum() < 0 ? amount.negate() : amount);
+        }
+        return new Candidate(settled, amounts, confidence, Basis.REFERENCE);
+    }
+
+    /** Takes the allocated amounts off the items and re-indexes them by what remains. */
+    private Match consume(BankLine line, Candidate candidate) {
+        List<Allocation> allocations = new ArrayList<>(candidate.items().size());
+        for (int i = 0; i < candidate.items().size(); i++) {
+            Item item = candidate.items().get(i);
+            BigDecimal amount = candidate.amounts().get(i);
+            allocations.add(new Allocation(item.openItem.invoiceId(), item.openItem.reference(), amount));
+            LinkedHashSet<Item> bucket = byAmount.get(item.key());
+            if (bucket != null) bucket.remove(item);
+            item.remaining = item.remaining.subtract(amount);
+            if (item.isOpen()) {
+                byAmount.computeIfAbsent(item.key(), k -> new LinkedHashSet<>()).add(item);
+            } else {
+                openItems--;
+            }
+        }
+        return new Match(line, allocations, candidate.confidence(), candidate.basis());
+    }
+
+    private Long findIban(BankLine line) {
+        if (line.counterpartyIban() != null && !line.counterpartyIban().isBlank()) {
+            return partiesByIban.get(normalize(line.counterpartyIban()).replace(" ", ""));
+        }
+        if (line.text() == null || partiesByIban.isEmpty()) return null;
+        Matcher m = IBAN.matcher(normalize(line.text()).replace(" ", ""));
+        while (m.find()) {
+            String candidate = m.group();
+            for (int length = Math.min(34, candidate.length()); length >= 15; length--) {
+                Long party = partiesByIban.get(candidate.substring(0, length));
+                if (party != null) return party;
+            }
+        }
+        return null;
+    }
+
+    /** Third parties whose name appears as 1 to 3 consecutive words of the text. */
+    private Collection<Long> findNames(String text) {
+        if (text == null || partiesByName.isEmpty()) return List.of();
+        List<String> words = new ArrayList<>();
+        Matcher m = WORD.matcher(normalize(text));
+        while (m.find()) {
+            if (!NAME_NOISE.contains(m.group())) words.add(m.group());
+        }
+        Set<Long> found = new LinkedHashSet<>();
+        for (int start = 0; start < words.size(); start++) {
+            StringBuilder key = new StringBuilder();
+            for (int n = 0; n < MAX_NAME_WORDS && start + n < words.size(); n++) {
+                if (n > 0) key.append(' ');
+                key.append(words.get(start + n));
+                List<Long> parties = partiesByName.get(key.toString());
+                if (parties != null) found.addAll(parties);
+            }
+        }
+        return found;
+    }
+
+    /** First subset (Gray code order) of the items whose amounts add up to the target, or null. */
+    private static List<Item> subsetSum(List<Item> items, long target) {
+        int n = items.size();
+        long sum = 0;
+        int mask = 0;
+        for (int i = 1; i < (1 << n); i++) {
+            int bit = Integer.numberOfTrailingZeros(i);
+            mask ^= 1 << bit;
+            sum += (mask & (1 << bit)) != 0 ? items.get(bit).cents() : -items.get(bit).cents();
+            if (sum == target) {
+                List<Item> subset = new ArrayList<>(Integer.bitCount(mask));
+                for (int b = 0; b < n; b++) {
+                    if ((mask & (1 << b)) != 0) subset.add(items.get(b));
+                }
+                return subset;
+            }
+        }
+        return null;
+    }
+
+    static String normalize(String text) {
+        return DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toUpperCase(Locale.ROOT);
+    }
+
+    static String referenceKey(String reference) {
+        if (reference == null) return "";
+        StringBuilder key = new StringBuilder(reference.length());
+        for (char c : normalize(reference).toCharArray()) {
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) key.append(c);
+        }
+        return key.toString();
+    }
+
+    static String nameKey(String name) {
+        if (name == null) return "";
+        StringBuilder key = new StringBuilder();
+        Matcher m = WORD.matcher(normalize(name));
+        int words = 0;
+        while (m.find() && words < MAX_NAME_WORDS) {
+            if (NAME_NOISE.contains(m.group())) continue;
+            if (words++ > 0) key.append(' ');
+            key.append(m.group());
+        }
+        return key.toString();
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private record AmountKey(String currency, long cents) {}
+
+    private record Candidate(List<Item> items, List<BigDecimal> amounts, double confidence, Basis basis) {}
+
+    /** Open item with what is left to pay, updated as lines are matched. */
+    private static final class Item {
+
+        private final OpenItem openItem;
+        private BigDecimal remaining;
+
+        private Item(OpenItem openItem) {
+            this.openItem = openItem;
+            this.remaining = openItem.remaining();
+        }
+
+        long cents() {
+            return ReconciliationMatcher.cents(remaining.abs());
+        }
+
+        AmountKey key() {
+            return new AmountKey(openItem.currency(), ReconciliationMatcher.cents(remaining));
+        }
+
+        boolean isOpen() {
+            return ReconciliationMatcher.cents(remaining) != 0;
+        }
+
+        /** Same currency and same direction (money in for a customer invoice, out for a supplier invoice). */
+        boolean fits(BankLine line) {
+            return openItem.currency().equals(line.currency()) && remaining.signum() == line.amount().signum();
+        }
+    }
+}
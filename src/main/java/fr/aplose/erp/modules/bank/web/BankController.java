@@ -3,6 +3,9 @@ package fr.aplose.erp.modules.bank.web;
 import fr.aplose.erp.modules.bank.entity.BankAccount;
 import fr.aplose.erp.modules.bank.entity.BankMovement;
 import fr.aplose.erp.modules.bank.service.BankAccountService;
+import fr.aplose.erp.modules.bank.service.BankReconciliationService;
+import fr.aplose.erp.modules.bank.service.BankStatementImportService;
+import fr.aplose.erp.modules.bank.service.BankStatementParser;
 import fr.aplose.erp.modules.catalog.repository.CurrencyRepository;
 import fr.aplose.erp.security.service.ErpUserDetails;
 import lombok.RequiredArgsConstructor;
@@ -14,9 +17,12 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -27,7 +33,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BankController {
 
+    /** Proposed matches listed on the reconciliation page. */
+    private static final int MAX_LISTED_MATCHES = 200;
+
     private final BankAccountService bankAccountService;
+    private final BankReconciliationService reconciliationService;
+    private final BankStatementImportService statementImportService;
     private final CurrencyRepository currencyRepository;
 
     @GetMapping
@@ -66,13 +77,36 @@ public class BankController {
         BankAccount account = bankAccountService.findAccountById(id);
         var pageable = PageRequest.of(page, 25, Sort.by(Sort.Direction.DESC, "movementDate"));
         var movements = bankAccountService.findMovementsByAccount(id, pageable);
-        java.math.BigDecimal balance = bankAccountService.getAccountBalance(id);
+        BigDecimal balance = bankAccountService.getAccountBalance(id);
         model.addAttribute("account", account);
         model.addAttribute("movements", movements);
         model.addAttribute("balance", balance);
+        model.addAttribute("statementFormats", BankStatementParser.Format.values());
         return "modules/bank/account-detail";
     }
 
+    @PostMapping("/accounts/{id}/import")
+    @PreAuthorize("hasAuthority('BANK_CREATE')")
+    public String importStatement(@PathVariable Long id,
+                                  @RequestParam("file") MultipartFile file,
+                                  @RequestParam(required = false) BankStatementParser.Format format,
+                                  @AuthenticationPrincipal ErpUserDetails user,
+                                  RedirectAttributes redirectAttributes) {
+        if (file.isEmpty()) {
+            redirectAttributes.addFlashAttribute("error", "Please select a statement file.");
+            return "redirect:/bank/accounts/" + id;
+        }
+        try (InputStream in = file.getInputStream()) {
+            var result = statementImportService.importStatement(id, in, format, user.getUserId());
+            redirectAttributes.addFlashAttribute("message", String.format(
+                    "%d line(s) read, %d movement(s) imported, %d duplicate(s) skipped.",
+                    result.lines(), result.imported(), result.duplicates()));
+        } catch (IllegalArgumentException | IOException e) {
+            redirectAttributes.addFlashAttribute("error", "Import failed: " + e.getMessage());
+        }
+        return "redirect:/bank/accounts/" + id;
+    }
+
     @GetMapping("/accounts/{id}/edit")
     @PreAuthorize("hasAuthority('BANK_UPDATE')")
     public String editAccountForm(@PathVariable Long id, Model model) {
@@ -152,4 +186,34 @@ public class BankController {
         redirectAttributes.addFlashAttribute("message", "Movement recorded.");
         return "redirect:/bank/movements";
     }
+
+    /** Proposals show open invoices: invoice readers only. */
+    @GetMapping("/reconciliation")
+    @PreAuthorize("hasAuthority('INVOICE_READ')")
+    public String reconciliation(@RequestParam(required = false) Long accountId, Model model) {
+        if (accountId != null) bankAccountService.findAccountById(accountId); // ensure account belongs to tenant
+        var run = reconciliationService.preview(accountId);
+        model.addAttribute("accounts", bankAccountService.findAllAccounts());
+        model.addAttribute("accountId", accountId);
+        model.addAttribute("run", run);
+        model.addAttribute("matches", run.matches().subList(0, Math.min(run.matches().size(), MAX_LISTED_MATCHES)));
+        model.addAttribute("minConfidence", reconciliationService.getDefaultMinConfidence());
+        return "modules/bank/reconciliation";
+    }
+
+    /** Creates payments and settles invoices, like recording the payments by hand. */
+    @PostMapping("/reconciliation")
+    @PreAuthorize("hasAuthority('BANK_UPDATE') and hasAuthority('PAYMENT_CREATE')")
+    public String reconcile(@RequestParam(required = false) Long accountId,
+                            @RequestParam(required = false) Double minConfidence,
+                            @AuthenticationPrincipal ErpUserDetails user,
+                            RedirectAttributes redirectAttributes) {
+        if (accountId != null) bankAccountService.findAccountById(accountId);
+        double threshold = minConfidence != null ? Math.clamp(minConfidence, 0, 1) : reconciliationService.getDefaultMinConfidence();
+        var run = reconciliationService.reconcile(accountId, threshold, user.getUserId());
+        redirectAttributes.addFlashAttribute("message", String.format(
+                "%d movement(s) reconciled, %d payment(s) created, %d movement(s) left to review (%d lines/s).",
+                run.applied(), run.payments(), run.lines() - run.applied(), Math.round(run.linesPerSecond())));
+        return accountId != null ? "redirect:/bank/reconciliation?accountId=" + accountId : "redirect:/bank/reconciliation";
+    }
 }
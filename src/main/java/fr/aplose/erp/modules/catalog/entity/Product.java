@@ -1,6 +1,7 @@
 package fr.aplose.erp.modules.catalog.entity;
 
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "products")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
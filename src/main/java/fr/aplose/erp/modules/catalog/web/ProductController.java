@@ -5,7 +5,7 @@ import fr.aplose.erp.modules.catalog.service.ProductService;
 import fr.aplose.erp.modules.catalog.web.dto.ProductDto;
 import fr.aplose.erp.dictionary.DictionaryType;
 import fr.aplose.erp.dictionary.service.DictionaryService;
-import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+import fr.aplose.erp.modules.extrafield.service.ExtraFieldDefinitionView;
 import fr.aplose.erp.modules.extrafield.service.ExtraFieldService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -37,21 +37,21 @@ public class ProductController {
     private static final String ENTITY_TYPE_PRODUCT = "PRODUCT";
 
     private void addExtraFieldModelAttributes(Model model, Long entityId) {
-        List<ExtraFieldDefinition> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PRODUCT);
+        List<ExtraFieldDefinitionView> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PRODUCT);
         model.addAttribute("extraFieldDefinitions", definitions);
         Map<String, String> values = entityId != null ? extraFieldService.getValues(ENTITY_TYPE_PRODUCT, entityId) : new LinkedHashMap<>();
         model.addAttribute("extraFieldValues", values);
     }
 
     private Map<String, String> getExtraFieldValuesFromRequest(HttpServletRequest request) {
-        List<ExtraFieldDefinition> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PRODUCT);
+        List<ExtraFieldDefinitionView> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PRODUCT);
         Map<String, String> map = new LinkedHashMap<>();
-        for (ExtraFieldDefinition def : defs) {
-            if (!def.isVisibleOnForm()) continue;
-            String paramName = "extraField_" + def.getFieldCode();
+        for (ExtraFieldDefinitionView def : defs) {
+            if (!def.visibleOnForm()) continue;
+            String paramName = "extraField_" + def.fieldCode();
             String value = request.getParameter(paramName);
-            if ("BOOLEAN".equals(def.getFieldType())) map.put(def.getFieldCode(), "true".equals(value) ? "true" : "false");
-            else map.put(def.getFieldCode(), value != null ? value : "");
+            if ("BOOLEAN".equals(def.fieldType())) map.put(def.fieldCode(), "true".equals(value) ? "true" : "false");
+            else map.put(def.fieldCode(), value != null ? value : "");
         }
         return map;
     }
@@ -79,8 +79,8 @@ public class ProductController {
     @GetMapping("/{id}")
     public String detail(@PathVariable Long id, Model model) {
         model.addAttribute("product", service.findById(id));
-        List<ExtraFieldDefinition> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PRODUCT).stream()
-                .filter(ExtraFieldDefinition::isVisibleOnDetail).toList();
+        List<ExtraFieldDefinitionView> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PRODUCT).stream()
+                .filter(ExtraFieldDefinitionView::visibleOnDetail).toList();
         model.addAttribute("extraFieldDefinitionsDetail", detailDefs);
         model.addAttribute("extraFieldValues", extraFieldService.getValues(ENTITY_TYPE_PRODUCT, id));
         return "modules/catalog/product-detail";
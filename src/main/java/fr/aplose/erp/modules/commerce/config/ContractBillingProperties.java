@@ -0,0 +1,20 @@
+package fr.aplose.erp.modules.commerce.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.contract-billing")
+public class ContractBillingProperties {
+
+    /** Contracts invoiced per transaction (always of a single tenant). */
+    private int chunkSize = 500;
+    /** Chunks invoiced in parallel; each holds a database connection. */
+    private int workers = 4;
+    /** Due date of the generated invoices, in days after their issue date. */
+    private int paymentTermsDays = 30;
+}
@@ -0,0 +1,18 @@
+package fr.aplose.erp.modules.commerce.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.dunning")
+public class DunningProperties {
+
+    /** Overdue invoices read per query and reminded per transaction. */
+    private int pageSize = 500;
+    /** Tenants reminded in parallel; each holds a database connection while it runs. */
+    private int workers = 4;
+}
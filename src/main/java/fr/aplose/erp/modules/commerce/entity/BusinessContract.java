@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
@@ -56,4 +57,26 @@ public class BusinessContract extends BaseEntity {
 
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
+
+    /** {@link ContractBillingFrequency} code; null when the contract is not invoiced automatically. */
+    @Column(name = "billing_frequency", length = 20)
+    private String billingFrequency;
+
+    @Column(name = "billing_amount", precision = 19, scale = 4)
+    private BigDecimal billingAmount;
+
+    @Column(name = "billing_vat_rate", precision = 6, scale = 4, nullable = false)
+    private BigDecimal billingVatRate = BigDecimal.ZERO;
+
+    /** Invoice line description; defaults to the contract type and period. */
+    @Column(name = "billing_label", length = 500)
+    private String billingLabel;
+
+    /** Invoice currency; the tenant's default currency when null. */
+    @Column(name = "currency_code", length = 3)
+    private String currencyCode;
+
+    /** Start of the next period to invoice, maintained by the billing run; null when nothing is left to invoice. */
+    @Column(name = "next_billing_date")
+    private LocalDate nextBillingDate;
 }
@@ -0,0 +1,50 @@
+package fr.aplose.erp.modules.commerce.entity;
+
+import java.time.LocalDate;
+
+/**
+ * Invoicing frequency of a {@link BusinessContract} ({@code billing_frequency}). Periods are anchored on the
+ * contract start date: a monthly contract started on January 31 is billed on February 28 (29), March 31, and so on.
+ */
+public enum ContractBillingFrequency {
+
+    MONTHLY(1),
+    QUARTERLY(3),
+    SEMIANNUAL(6),
+    YEARLY(12);
+
+    private final int months;
+
+    ContractBillingFrequency(int months) {
+        this.months = months;
+    }
+
+    public int getMonths() {
+        return months;
+    }
+
+    /** Null for a blank or unknown code (contract not invoiced automatically). */
+    public static ContractBillingFrequency fromCode(String code) {
+        if (code == null || code.isBlank()) return null;
+        try {
+            return valueOf(code);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** First period start strictly after {@code date}. */
+    public LocalDate periodStartAfter(LocalDate anchor, LocalDate date) {
+        long n = Math.max(0, (date.getYear() - anchor.getYear()) * 12L + date.getMonthValue() - anchor.getMonthValue()) / months;
+        LocalDate start = anchor.plusMonths(n * months);
+        while (!start.isAfter(date)) {
+            start = anchor.plusMonths(++n * months);
+        }
+        return start;
+    }
+
+    /** First period start on or after {@code date}. */
+    public LocalDate periodStartFrom(LocalDate anchor, LocalDate date) {
+        return date.isAfter(anchor) ? periodStartAfter(anchor, date.minusDays(1)) : anchor;
+    }
+}
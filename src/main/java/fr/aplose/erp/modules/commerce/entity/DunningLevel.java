@@ -0,0 +1,30 @@
+package fr.aplose.erp.modules.commerce.entity;
+
+import fr.aplose.erp.core.entity.BaseEntity;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Reminder level of a tenant: the e-mail sent to a customer once one of its invoices is {@code daysAfterDue}
+ * days overdue. Levels are numbered from 1 and their delays increase with the level.
+ */
+@Entity
+@Table(name = "dunning_levels")
+@Getter
+@Setter
+@NoArgsConstructor
+public class DunningLevel extends BaseEntity {
+
+    public static final String DEFAULT_TEMPLATE_KEY = "invoice.reminder";
+
+    @Column(name = "level_no", nullable = false)
+    private short levelNo;
+
+    @Column(name = "days_after_due", nullable = false)
+    private int daysAfterDue;
+
+    @Column(name = "template_key", length = 50, nullable = false)
+    private String templateKey = DEFAULT_TEMPLATE_KEY;
+}
@@ -2,12 +2,14 @@ package fr.aplose.erp.modules.commerce.entity;
 
 import fr.aplose.erp.core.businessobject.BusinessObject;
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import fr.aplose.erp.modules.contact.entity.Contact;
 import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -17,6 +19,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "invoices")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -97,8 +100,20 @@ public class Invoice extends BaseEntity implements BusinessObject {
     @Column(name = "last_reminder_at")
     private LocalDateTime lastReminderAt;
 
+    /** Highest reminder level sent for this invoice, 0 when none (see DunningService). */
+    @Column(name = "reminder_level", nullable = false)
+    private short reminderLevel;
+
+    /** Contract this invoice bills, with the start of the billed period (see ContractBillingService). */
+    @Column(name = "contract_id")
+    private Long contractId;
+
+    @Column(name = "billing_period_start")
+    private LocalDate billingPeriodStart;
+
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("sortOrder ASC")
+    @BatchSize(size = 50)
     private List<InvoiceLine> lines = new ArrayList<>();
 
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL)
@@ -48,6 +48,10 @@ public class Payment {
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
 
+    /** Bank movement this payment was reconciled from, if any. */
+    @Column(name = "bank_movement_id")
+    private Long bankMovementId;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -1,6 +1,7 @@
 package fr.aplose.erp.modules.commerce.entity;
 
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import fr.aplose.erp.modules.contact.entity.Contact;
 import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
 import fr.aplose.erp.security.entity.User;
@@ -17,6 +18,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "proposals")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,18 @@
+package fr.aplose.erp.modules.commerce.repository;
+
+import fr.aplose.erp.modules.commerce.entity.DunningLevel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface DunningLevelRepository extends JpaRepository<DunningLevel, Long> {
+
+    List<DunningLevel> findByTenantIdOrderByLevelNoAsc(String tenantId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM DunningLevel d WHERE d.tenantId = :tid")
+    void deleteByTenantId(@Param("tid") String tenantId);
+}
@@ -1,10 +1,13 @@
 package fr.aplose.erp.modules.commerce.repository;
 
 import fr.aplose.erp.modules.commerce.entity.Invoice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -13,6 +16,7 @@ import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
@@ -39,8 +43,19 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     @Query("SELECT i FROM Invoice i WHERE i.tenantId = :tid AND i.dateDue < :today AND i.amountRemaining > 0 AND i.status NOT IN ('PAID','CANCELLED') ORDER BY i.dateDue ASC")
     List<Invoice> findOverdue(@Param("tid") String tenantId, @Param("today") LocalDate today);
 
-    @Query("SELECT COALESCE(MAX(CAST(SUBSTRING(i.reference, 5) AS int)), 0) FROM Invoice i WHERE i.tenantId = :tid AND i.reference LIKE :prefix")
-    int findMaxReferenceNumber(@Param("tid") String tenantId, @Param("prefix") String prefix);
+    /** Most overdue invoices first, limited to the page (dashboard widget). */
+    @Query("SELECT i FROM Invoice i WHERE i.tenantId = :tid AND i.dateDue < :today AND i.amountRemaining > 0 AND i.status NOT IN ('PAID','CANCELLED') ORDER BY i.dateDue ASC")
+    List<Invoice> findOverdue(@Param("tid") String tenantId, @Param("today") LocalDate today, Pageable pageable);
+
+    /** Page of overdue invoices with their third party (follow-up list). */
+    @Query(value = "SELECT i FROM Invoice i LEFT JOIN FETCH i.thirdParty WHERE i.tenantId = :tid AND i.dateDue < :today AND i.amountRemaining > 0 AND i.status NOT IN ('PAID','CANCELLED') ORDER BY i.dateDue ASC, i.id ASC",
+            countQuery = "SELECT COUNT(i) FROM Invoice i WHERE i.tenantId = :tid AND i.dateDue < :today AND i.amountRemaining > 0 AND i.status NOT IN ('PAID','CANCELLED')")
+    Page<Invoice> findOverduePage(@Param("tid") String tenantId, @Param("today") LocalDate today, Pageable pageable);
+
+    /** Cursor over overdue invoices for exports; must be consumed inside a transaction and closed. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT i FROM Invoice i LEFT JOIN FETCH i.thirdParty WHERE i.tenantId = :tid AND i.dateDue < :today AND i.amountRemaining > 0 AND i.status NOT IN ('PAID','CANCELLED') ORDER BY i.dateDue ASC")
+    Stream<Invoice> streamOverdue(@Param("tid") String tenantId, @Param("today") LocalDate today);
 
     @Query("SELECT COALESCE(SUM(i.totalAmount), 0) FROM Invoice i WHERE i.tenantId = :tid AND i.type = :type AND i.status IN ('VALIDATED','PARTIALLY_PAID','PAID') AND i.dateIssued BETWEEN :from AND :to")
     BigDecimal sumTotalAmountByTenantAndTypeAndDateRange(@Param("tid") String tenantId, @Param("type") String type, @Param("from") LocalDate from, @Param("to") LocalDate to);
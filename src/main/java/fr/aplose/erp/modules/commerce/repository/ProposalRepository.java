@@ -37,9 +37,6 @@ public interface ProposalRepository extends JpaRepository<Proposal, Long> {
 
     long countByTenantIdAndStatusIn(String tenantId, java.util.Collection<String> statuses);
 
-    @Query("SELECT COALESCE(MAX(CAST(SUBSTRING(p.reference, 5) AS int)), 0) FROM Proposal p WHERE p.tenantId = :tid AND p.reference LIKE 'PRO-%'")
-    int findMaxReferenceNumber(@Param("tid") String tenantId);
-
     @Query("SELECT p FROM Proposal p WHERE p.tenantId = :tid AND p.status = 'SENT' " +
            "AND (p.dateValidUntil < :today OR (p.dateValidUntil IS NULL AND p.dateIssued < :limitDate)) " +
            "ORDER BY p.dateIssued ASC")
@@ -25,7 +25,4 @@ public interface SalesOrderRepository extends JpaRepository<SalesOrder, Long> {
            "AND (LOWER(o.reference) LIKE LOWER(CONCAT('%',:q,'%')) " +
            "OR LOWER(o.thirdParty.name) LIKE LOWER(CONCAT('%',:q,'%')))")
     Page<SalesOrder> search(@Param("tid") String tenantId, @Param("q") String q, Pageable pageable);
-
-    @Query("SELECT COALESCE(MAX(CAST(SUBSTRING(o.reference, 4) AS int)), 0) FROM SalesOrder o WHERE o.tenantId = :tid AND o.reference LIKE 'SO-%'")
-    int findMaxReferenceNumber(@Param("tid") String tenantId);
 }
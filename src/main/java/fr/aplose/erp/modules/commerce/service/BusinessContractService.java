@@ -7,6 +7,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,8 +34,11 @@ public class BusinessContractService {
         return repository.findByIdAndTenantId(id, TenantContext.getCurrentTenantId());
     }
 
+    /** Saves the contract and (re)schedules its recurring invoicing, see {@link ContractBillingService}. */
     @Transactional
     public BusinessContract save(BusinessContract contract) {
+        if (contract.getBillingVatRate() == null) contract.setBillingVatRate(BigDecimal.ZERO);
+        contract.setNextBillingDate(ContractBillingService.nextBillingDate(contract, LocalDate.now()));
         return repository.save(contract);
     }
 
@@ -0,0 +1,375 @@
+package fr.aplose.erp.modules.commerce.service;
+
+import fr.aplose.erp.core.dashboard.KpiCounter;
+import fr.aplose.erp.core.dashboard.KpiCounterService;
+import fr.aplose.erp.core.search.SearchDocumentType;
+import fr.aplose.erp.core.search.SearchIndexer;
+import fr.aplose.erp.core.sequence.DocumentType;
+import fr.aplose.erp.core.sequence.NumberSequenceService;
+import fr.aplose.erp.modules.commerce.config.ContractBillingProperties;
+import fr.aplose.erp.modules.commerce.entity.BusinessContract;
+import fr.aplose.erp.modules.commerce.entity.ContractBillingFrequency;
+import fr.aplose.erp.modules.webhook.service.WebhookService;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Recurring invoicing of business contracts. A billing run reads the contracts whose {@code next_billing_date} is
+ * due ({@code idx_bc_next_billing}), cuts them into chunks of a single tenant and invoices the chunks in parallel,
+ * each in its own transaction: the contracts are re-read under lock, one draft invoice per due period is written
+ * with batched inserts and {@code next_billing_date} is moved past the invoiced periods.
+ * <p>
+ * A period is invoiced at most once: periods that already have an invoice are skipped, and
+ * {@code uq_invoices_contract_period} rejects a concurrent duplicate, so overlapping runs or a run retried after a
+ * failure never bill twice. A failed chunk is rolled back and its contracts stay due for the next run.
+ * <p>
+ * Invoices are written with plain JDBC, so search indexing, the open-invoice counter and the
+ * {@code INVOICE.CREATED} webhooks (queued once per chunk) are fed explicitly.
+ */
+@Slf4j
+@Service
+public class ContractBillingService {
+
+    private static final String DUE_CONTRACTS_SQL =
+            "SELECT tenant_id, id FROM business_contracts WHERE next_billing_date <= ? AND status = 'ACTIVE' " +
+            "ORDER BY tenant_id, id";
+    private static final String LOCK_CONTRACTS_SQL =
+            "SELECT id, third_party_id, contact_id, contract_type, reference, start_date, end_date, billing_frequency, " +
+            "billing_amount, billing_vat_rate, billing_label, currency_code, next_billing_date " +
+            "FROM business_contracts WHERE tenant_id = ? AND status = 'ACTIVE' AND next_billing_date <= ? AND id IN (%s) " +
+            "FOR UPDATE";
+    private static final String INVOICED_PERIODS_SQL =
+            "SELECT contract_id, billing_period_start FROM invoices " +
+            "WHERE tenant_id = ? AND billing_period_start >= ? AND contract_id IN (%s)";
+    private static final String INSERT_INVOICE_SQL =
+            "INSERT INTO invoices (tenant_id, reference, type, third_party_id, contact_id, status, date_issued, date_due, " +
+            "currency_code, subtotal, vat_amount, total_amount, amount_remaining, contract_id, billing_period_start) " +
+            "VALUES (?, ?, 'SALES', ?, ?, 'DRAFT', ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INVOICE_IDS_SQL =
+            "SELECT id, reference FROM invoices WHERE tenant_id = ? AND reference IN (%s)";
+    private static final String INSERT_LINE_SQL =
+            "INSERT INTO invoice_lines (tenant_id, invoice_id, sort_order, description, quantity, unit_price, discount_pct, " +
+            "vat_rate, line_total) VALUES (?, ?, 0, ?, 1, ?, 0, ?, ?)";
+    private static final String UPDATE_NEXT_BILLING_SQL =
+            "UPDATE business_contracts SET next_billing_date = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final DateTimeFormatter PERIOD_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int MAX_DESCRIPTION = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final NumberSequenceService numberSequenceService;
+    private final KpiCounterService kpiCounterService;
+    private final SearchIndexer searchIndexer;
+    private final WebhookService webhookService;
+    private final ContractBillingProperties properties;
+    private final Counter invoicesCreated;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ContractBillingService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  NumberSequenceService numberSequenceService, KpiCounterService kpiCounterService,
+                                  SearchIndexer searchIndexer, WebhookService webhookService,
+                                  ContractBillingProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.numberSequenceService = numberSequenceService;
+        this.kpiCounterService = kpiCounterService;
+        this.searchIndexer = searchIndexer;
+        this.webhookService = webhookService;
+        this.properties = properties;
+        this.invoicesCreated = Counter.builder("contract.billing.invoices")
+                .description("Invoices created by the contract billing run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.contract-billing.cron:0 0 2 * * *}")
+    public void scheduledRun() {
+        run(LocalDate.now());
+    }
+
+    /** Invoices every period starting on or before {@code today}; returns immediately if a run is in progress. */
+    public BillingRun run(LocalDate today) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Contract billing run skipped: another run is in progress");
+            return new BillingRun(0, 0, 0, Duration.ZERO);
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, Integer> invoicesByTenant = new ConcurrentHashMap<>();
+            Map<String, String> currencies = new ConcurrentHashMap<>();
+            List<Future<Integer>> chunks = new ArrayList<>();
+            int contracts;
+            try (ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, properties.getWorkers()))) {
+                ChunkCollector collector = new ChunkCollector(Math.max(1, properties.getChunkSize()),
+                        (tenantId, ids) -> chunks.add(workers.submit(() -> {
+                            String currency = currencies.computeIfAbsent(tenantId, this::defaultCurrency);
+                            int invoices = billChunk(tenantId, ids, today, currency);
+                            if (invoices > 0) invoicesByTenant.merge(tenantId, invoices, Integer::sum);
+                            return invoices;
+                        })));
+                jdbcTemplate.query(DUE_CONTRACTS_SQL, rs -> {
+                    collector.add(rs.getString(1), rs.getLong(2));
+                }, Date.valueOf(today));
+                contracts = collector.finish();
+            }
+
+            int invoices = 0;
+            int failed = 0;
+            for (Future<Integer> chunk : chunks) {
+                try {
+                    invoices += chunk.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.warn("Contract billing chunk failed, its contracts stay due: {}", e.getCause().toString());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            invoicesByTenant.keySet().forEach(tenantId -> kpiCounterService.recount(tenantId, KpiCounter.OPEN_INVOICES));
+
+            Duration duration = Duration.ofNanos(System.nanoTime() - start);
+            if (contracts > 0) {
+                log.info("Contract billing of {}: {} invoice(s) for {} due contract(s) of {} tenant(s) in {} ms, {} failed chunk(s)",
+                        today, invoices, contracts, invoicesByTenant.size(), duration.toMillis(), failed);
+            }
+            return new BillingRun(contracts, invoices, failed, duration);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** Invoices one chunk of a tenant's due contracts in one transaction; returns the number of invoices created. */
+    private int billChunk(String tenantId, List<Long> contractIds, LocalDate today, String defaultCurrency) {
+        TenantContext.setCurrentTenantId(tenantId);
+        try {
+            List<Long> invoiceIds = transactionTemplate.execute(status -> {
+                List<DueContract> due = jdbcTemplate.query(String.format(LOCK_CONTRACTS_SQL, placeholders(contractIds.size())),
+                        (rs, i) -> new DueContract(rs.getLong("id"), rs.getLong("third_party_id"),
+                                rs.getObject("contact_id", Long.class), rs.getString("contract_type"),
+                                rs.getString("reference"), rs.getObject("start_date", LocalDate.class),
+                                rs.getObject("end_date", LocalDate.class),
+                                ContractBillingFrequency.fromCode(rs.getString("billing_frequency")),
+                                rs.getBigDecimal("billing_amount"), rs.getBigDecimal("billing_vat_rate"),
+                                rs.getString("billing_label"), rs.getString("currency_code"),
+                                rs.getObject("next_billing_date", LocalDate.class)),
+                        params(tenantId, Date.valueOf(today), contractIds));
+                if (due.isEmpty()) return List.of();
+                return invoice(tenantId, due, today, defaultCurrency);
+            });
+            invoiceIds.forEach(id -> searchIndexer.enqueue(tenantId, SearchDocumentType.INVOICE, id));
+            invoicesCreated.increment(invoiceIds.size());
+            return invoiceIds.size();
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private List<Long> invoice(String tenantId, List<DueContract> due, LocalDate today, String defaultCurrency) {
+        Set<InvoicedPeriod> invoiced = new HashSet<>();
+        LocalDate oldest = due.stream().map(DueContract::nextBillingDate).min(LocalDate::compareTo).orElseThrow();
+        List<Long> dueIds = due.stream().map(DueContract::id).toList();
+        jdbcTemplate.query(String.format(INVOICED_PERIODS_SQL, placeholders(dueIds.size())), rs -> {
+            invoiced.add(new InvoicedPeriod(rs.getLong(1), rs.getObject(2, LocalDate.class)));
+        }, params(tenantId, Date.valueOf(oldest), dueIds));
+
+        List<Bill> bills = new ArrayList<>();
+        List<Object[]> scheduleUpdates = new ArrayList<>(due.size());
+        for (DueContract c : due) {
+            LocalDate next = null;
+            if (c.frequency() != null && c.amount() != null) {
+                LocalDate period = c.nextBillingDate();
+                while (!period.isAfter(today) && (c.endDate() == null || !period.isAfter(c.endDate()))) {
+                    LocalDate following = c.frequency().periodStartAfter(c.startDate(), period);
+                    if (!invoiced.contains(new InvoicedPeriod(c.id(), period))) {
+                        bills.add(new Bill(c, period, following.minusDays(1)));
+                    }
+                    period = following;
+                }
+                next = c.endDate() != null && period.isAfter(c.endDate()) ? null : period;
+            }
+            scheduleUpdates.add(new Object[]{next != null ? Date.valueOf(next) : null, c.id()});
+        }
+
+        List<Long> invoiceIds = List.of();
+        if (!bills.isEmpty()) {
+            List<String> references = numberSequenceService.next(tenantId, DocumentType.INVOICE_SALES, bills.size());
+            LocalDate dateDue = today.plusDays(properties.getPaymentTermsDays());
+            List<Object[]> invoiceRows = new ArrayList<>(bills.size());
+            for (int i = 0; i < bills.size(); i++) {
+                Bill b = bills.get(i);
+                DueContract c = b.contract();
+                String currency = c.currencyCode() != null ? c.currencyCode() : defaultCurrency;
+                invoiceRows.add(new Object[]{tenantId, references.get(i), c.thirdPartyId(), c.contactId(),
+                        Date.valueOf(today), Date.valueOf(dateDue), currency, b.subtotal(), b.vat(), b.total(), b.total(),
+                        c.id(), Date.valueOf(b.periodStart())});
+            }
+            jdbcTemplate.batchUpdate(INSERT_INVOICE_SQL, invoiceRows);
+
+            Map<String, Long> idsByReference = new HashMap<>();
+            jdbcTemplate.query(String.format(INVOICE_IDS_SQL, placeholders(references.size())), rs -> {
+                idsByReference.put(rs.getString(2), rs.getLong(1));
+            }, params(tenantId, null, references));
+
+            List<Object[]> lineRows = new ArrayList<>(bills.size());
+            invoiceIds = new ArrayList<>(bills.size());
+            List<Map<String, Object>> events = new ArrayList<>(bills.size());
+            for (int i = 0; i < bills.size(); i++) {
+                Bill b = bills.get(i);
+                Long invoiceId = idsByReference.get(references.get(i));
+                invoiceIds.add(invoiceId);
+                lineRows.add(new Object[]{tenantId, invoiceId, b.description(), b.subtotal(), b.contract().vatRate(), b.subtotal()});
+                events.add(payload(invoiceId, references.get(i), b, (String) invoiceRows.get(i)[6], today, dateDue));
+            }
+            jdbcTemplate.batchUpdate(INSERT_LINE_SQL, lineRows);
+            webhookService.triggerAll(tenantId, "INVOICE.CREATED", events);
+        }
+        jdbcTemplate.batchUpdate(UPDATE_NEXT_BILLING_SQL, scheduleUpdates);
+        return invoiceIds;
+    }
+
+    /**
+     * Next period to invoice once a contract is created or edited: its current next billing date while that still
+     * falls on the contract's schedule, otherwise the first period starting on or after today (periods before the
+     * contract was set up for billing are not invoiced). Null when the contract is not, or no longer, billed.
+     */
+    static LocalDate nextBillingDate(BusinessContract contract, LocalDate today) {
+        ContractBillingFrequency frequency = ContractBillingFrequency.fromCode(contract.getBillingFrequency());
+        if (frequency == null || contract.getBillingAmount() == null || contract.getStartDate() == null
+                || !"ACTIVE".equals(contract.getStatus())) {
+            return null;
+        }
+        LocalDate current = contract.getNextBillingDate();
+        LocalDate next = current != null && frequency.periodStartFrom(contract.getStartDate(), current).equals(current)
+                ? current
+                : frequency.periodStartFrom(contract.getStartDate(), today);
+        return contract.getEndDate() != null && next.isAfter(contract.getEndDate()) ? null : next;
+    }
+
+    private String defaultCurrency(String tenantId) {
+        return jdbcTemplate.queryForObject("SELECT default_currency FROM tenants WHERE id = ?", String.class, tenantId);
+    }
+
+    private static Map<String, Object> payload(Long invoiceId, String reference, Bill bill, String currency,
+                                               LocalDate dateIssued, LocalDate dateDue) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("entityId", invoiceId);
+        data.put("reference", reference);
+        data.put("status", "DRAFT");
+        data.put("type", "SALES");
+        data.put("totalAmount", bill.total());
+        data.put("currencyCode", currency);
+        data.put("dateIssued", dateIssued.toString());
+        data.put("dateDue", dateDue.toString());
+        data.put("thirdPartyId", bill.contract().thirdPartyId());
+        data.put("contractId", bill.contract().id());
+        data.put("billingPeriodStart", bill.periodStart().toString());
+        return data;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /** Tenant id, an optional second parameter, then the values of the IN list. */
+    private static Object[] params(String tenantId, Object second, List<?> in) {
+        List<Object> params = new ArrayList<>(in.size() + 2);
+        params.add(tenantId);
+        if (second != null) params.add(second);
+        params.addAll(in);
+        return params.toArray();
+    }
+
+    /** Outcome of a billing run; failed chunks are retried by the next run. */
+    public record BillingRun(int dueContracts, int invoices, int failedChunks, Duration duration) {}
+
+    private record DueContract(long id, long thirdPartyId, Long contactId, String contractType, String reference,
+                               LocalDate startDate, LocalDate endDate, ContractBillingFrequency frequency,
+                               BigDecimal amount, BigDecimal vatRate, String label, String currencyCode,
+                               LocalDate nextBillingDate) {}
+
+    private record InvoicedPeriod(long contractId, LocalDate periodStart) {}
+
+    /** One invoice of one period, with a single line priced like {@link fr.aplose.erp.modules.commerce.entity.Invoice#recalculate()}. */
+    private record Bill(DueContract contract, LocalDate periodStart, LocalDate periodEnd) {
+
+        BigDecimal subtotal() {
+            return contract.amount().setScale(4, RoundingMode.HALF_UP);
+        }
+
+        BigDecimal vat() {
+            return subtotal().multiply(contract.vatRate()).setScale(4, RoundingMode.HALF_UP);
+        }
+
+        BigDecimal total() {
+            return subtotal().add(vat());
+        }
+
+        String description() {
+            String label = contract.label() != null && !contract.label().isBlank() ? contract.label()
+                    : contract.contractType() + (contract.reference() != null ? " " + contract.reference() : "");
+            String text = label + " (" + periodStart.format(PERIOD_FMT) + " - " + periodEnd.format(PERIOD_FMT) + ")";
+            return text.length() > MAX_DESCRIPTION ? text.substring(0, MAX_DESCRIPTION) : text;
+        }
+    }
+
+    /** Cuts the due contracts, read in (tenant, id) order, into single-tenant chunks handed to {@code sink}. */
+    private static final class ChunkCollector {
+
+        private final int chunkSize;
+        private final BiConsumer<String, List<Long>> sink;
+        private String tenantId;
+        private List<Long> ids = new ArrayList<>();
+        private int total;
+
+        ChunkCollector(int chunkSize, BiConsumer<String, List<Long>> sink) {
+            this.chunkSize = chunkSize;
+            this.sink = sink;
+        }
+
+        void add(String tenant, long id) {
+            if (!tenant.equals(tenantId) || ids.size() == chunkSize) flush();
+            tenantId = tenant;
+            ids.add(id);
+            total++;
+        }
+
+        int finish() {
+            flush();
+            return total;
+        }
+
+        private void flush() {
+            if (!ids.isEmpty()) sink.accept(tenantId, ids);
+            ids = new ArrayList<>();
+        }
+    }
+}
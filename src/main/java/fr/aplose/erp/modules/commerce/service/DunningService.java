@@ -0,0 +1,343 @@
+package fr.aplose.erp.modules.commerce.service;
+
+import fr.aplose.erp.mail.service.MailService;
+import fr.aplose.erp.modules.commerce.config.DunningProperties;
+import fr.aplose.erp.modules.commerce.entity.DunningLevel;
+import fr.aplose.erp.modules.commerce.repository.DunningLevelRepository;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.HtmlUtils;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Reminders of overdue sales invoices. Each tenant configures its reminder levels ({@link DunningLevel}); a run
+ * reads all levels at once, then reminds the tenants in parallel. A tenant's unpaid invoices are read in pages
+ * with a keyset on (third party, id) ({@code idx_invoices_dunning}), so that all the invoices of a customer are
+ * reminded in a single e-mail at the highest level they reached.
+ * <p>
+ * Each page is handled in one transaction: {@code reminder_level} / {@code last_reminder_at} of the invoices to remind
+ * are raised with one conditional batch update, then the e-mails of the invoices it actually advanced are queued in
+ * the mail outbox with one batched insert. The update is the claim: when instances run concurrently, the row locks
+ * make the second one see the raised level and mail nothing, so a level is sent at most once per invoice.
+ * Customers without an e-mail address are skipped and stay due.
+ */
+@Slf4j
+@Service
+public class DunningService {
+
+    private static final String LEVELS_SQL =
+            "SELECT l.tenant_id, l.level_no, l.days_after_due, l.template_key, t.name, t.default_locale " +
+            "FROM dunning_levels l JOIN tenants t ON t.id = l.tenant_id WHERE t.is_active = TRUE " +
+            "ORDER BY l.tenant_id, l.level_no";
+    private static final String DUE_INVOICES_SQL =
+            "SELECT id, third_party_id, reference, date_due, amount_remaining, currency_code, reminder_level FROM invoices " +
+            "WHERE tenant_id = ? AND type = 'SALES' AND status IN ('VALIDATED', 'SENT', 'PARTIALLY_PAID') " +
+            "AND amount_remaining > 0 AND date_due <= ? AND reminder_level < ? " +
+            "AND (third_party_id > ? OR (third_party_id = ? AND id > ?)) " +
+            "ORDER BY third_party_id, id LIMIT ?";
+    private static final String THIRD_PARTIES_SQL =
+            "SELECT id, name, email FROM third_parties WHERE tenant_id = ? AND id IN (%s)";
+    private static final String UPDATE_REMINDED_SQL =
+            "UPDATE invoices SET reminder_level = ?, last_reminder_at = ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND reminder_level < ?";
+
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MailService mailService;
+    private final DunningLevelRepository levelRepository;
+    private final DunningProperties properties;
+    private final Counter remindersQueued;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public DunningService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MailService mailService,
+                          DunningLevelRepository levelRepository, DunningProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mailService = mailService;
+        this.levelRepository = levelRepository;
+        this.properties = properties;
+        this.remindersQueued = Counter.builder("dunning.reminders")
+                .description("Invoice reminder e-mails queued by the dunning run")
+                .register(meterRegistry);
+    }
+
+    @Transactional(readOnly = true)
+    public List<DunningLevel> findLevels() {
+        return levelRepository.findByTenantIdOrderByLevelNoAsc(TenantContext.getCurrentTenantId());
+    }
+
+    /**
+     * Replaces the reminder levels of the current tenant: one level per delay, in the given order.
+     * An empty list turns automatic reminders off.
+     */
+    @Transactional
+    public void saveLevels(List<Integer> daysAfterDue) {
+        for (int i = 0; i < daysAfterDue.size(); i++) {
+            if (daysAfterDue.get(i) < 0 || (i > 0 && daysAfterDue.get(i) <= daysAfterDue.get(i - 1))) {
+                throw new IllegalArgumentException("Les délais de relance doivent être positifs et croissants");
+            }
+        }
+        levelRepository.deleteByTenantId(TenantContext.getCurrentTenantId());
+        for (int i = 0; i < daysAfterDue.size(); i++) {
+            DunningLevel level = new DunningLevel();
+            level.setLevelNo((short) (i + 1));
+            level.setDaysAfterDue(daysAfterDue.get(i));
+            levelRepository.save(level);
+        }
+    }
+
+    @Scheduled(cron = "${app.dunning.cron:0 0 7 * * *}")
+    public void scheduledRun() {
+        run(LocalDate.now());
+    }
+
+    /** Sends the reminders due on {@code today}; returns immediately if a run is in progress. */
+    public DunningRun run(LocalDate today) {
+        if (!mailService.isEnabled()) {
+            log.debug("Dunning run skipped: mail sender not configured");
+            return new DunningRun(0, 0, 0, 0, 0, Duration.ZERO);
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.info("Dunning run skipped: another run is in progress");
+            return new DunningRun(0, 0, 0, 0, 0, Duration.ZERO);
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, TenantLevels> tenants = new LinkedHashMap<>();
+            jdbcTemplate.query(LEVELS_SQL, rs -> {
+                String name = rs.getString(5);
+                String locale = rs.getString(6);
+                tenants.computeIfAbsent(rs.getString(1), id -> new TenantLevels(id, name, locale, new ArrayList<>()))
+                        .levels().add(new Level(rs.getShort(2), rs.getInt(3), rs.getString(4)));
+            });
+
+            List<Future<TenantOutcome>> results = new ArrayList<>(tenants.size());
+            try (ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, properties.getWorkers()))) {
+                tenants.values().forEach(t -> results.add(workers.submit(() -> remindTenant(t, today))));
+            }
+
+            int emails = 0;
+            int invoices = 0;
+            int withoutEmail = 0;
+            int failed = 0;
+            for (Future<TenantOutcome> result : results) {
+                try {
+                    TenantOutcome outcome = result.get();
+                    emails += outcome.emails();
+                    invoices += outcome.invoices();
+                    withoutEmail += outcome.withoutEmail();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.warn("Dunning of a tenant failed, its pending reminders stay due: {}", e.getCause().toString());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            Duration duration = Duration.ofNanos(System.nanoTime() - start);
+            if (emails > 0 || failed > 0) {
+                log.info("Dunning of {}: {} e-mail(s) for {} invoice(s) of {} tenant(s) in {} ms, {} customer(s) without e-mail, {} failed tenant(s)",
+                        today, emails, invoices, tenants.size(), duration.toMillis(), withoutEmail, failed);
+            }
+            return new DunningRun(tenants.size(), emails, invoices, withoutEmail, failed, duration);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** Pages through the tenant's unpaid invoices, reminding complete customer groups one page at a time. */
+    private TenantOutcome remindTenant(TenantLevels tenant, LocalDate today) {
+        List<Level> levels = tenant.levels();
+        int pageSize = Math.max(1, properties.getPageSize());
+        LocalDate dueBefore = today.minusDays(levels.get(0).daysAfterDue());
+        short maxLevel = levels.get(levels.size() - 1).levelNo();
+
+        TenantOutcome total = new TenantOutcome(0, 0, 0);
+        List<DueInvoice> pending = new ArrayList<>();
+        long lastThirdParty = 0;
+        long lastId = 0;
+        boolean more = true;
+        while (more) {
+            List<DueInvoice> page = jdbcTemplate.query(DUE_INVOICES_SQL,
+                    (rs, i) -> new DueInvoice(rs.getLong("id"), rs.getLong("third_party_id"), rs.getString("reference"),
+                            rs.getObject("date_due", LocalDate.class), rs.getBigDecimal("amount_remaining"),
+                            rs.getString("currency_code"), rs.getShort("reminder_level")),
+                    tenant.id(), Date.valueOf(dueBefore), maxLevel, lastThirdParty, lastThirdParty, lastId, pageSize);
+            more = page.size() == pageSize;
+            if (!page.isEmpty()) {
+                DueInvoice last = page.get(page.size() - 1);
+                lastThirdParty = last.thirdPartyId();
+                lastId = last.id();
+            }
+            pending.addAll(page);
+            // The last customer of a full page may continue on the next one: keep it for then
+            int complete = pending.size();
+            if (more) {
+                while (complete > 0 && pending.get(complete - 1).thirdPartyId() == lastThirdParty) complete--;
+            }
+            if (complete > 0) {
+                total = total.plus(remind(tenant, pending.subList(0, complete), today));
+                pending = new ArrayList<>(pending.subList(complete, pending.size()));
+            }
+        }
+        return total;
+    }
+
+    /** Reminds whole customer groups (invoices in third party order) in one transaction. */
+    private TenantOutcome remind(TenantLevels tenant, List<DueInvoice> invoices, LocalDate today) {
+        Map<Long, List<Reminder>> byThirdParty = new LinkedHashMap<>();
+        for (DueInvoice invoice : invoices) {
+            Level level = tenant.levelReached(invoice.dateDue(), today);
+            if (level != null && level.levelNo() > invoice.reminderLevel()) {
+                byThirdParty.computeIfAbsent(invoice.thirdPartyId(), k -> new ArrayList<>()).add(new Reminder(invoice, level));
+            }
+        }
+        if (byThirdParty.isEmpty()) return new TenantOutcome(0, 0, 0);
+
+        Map<Long, String[]> contacts = new HashMap<>();
+        List<Long> ids = new ArrayList<>(byThirdParty.keySet());
+        List<Object> params = new ArrayList<>(ids.size() + 1);
+        params.add(tenant.id());
+        params.addAll(ids);
+        jdbcTemplate.query(String.format(THIRD_PARTIES_SQL, String.join(", ", Collections.nCopies(ids.size(), "?"))), rs -> {
+            contacts.put(rs.getLong(1), new String[]{rs.getString(2), rs.getString(3)});
+        }, params.toArray());
+
+        Locale locale = Locale.forLanguageTag(tenant.locale() != null ? tenant.locale() : "fr");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Reminder> claims = new ArrayList<>();
+        int withoutEmail = 0;
+        for (Map.Entry<Long, List<Reminder>> entry : byThirdParty.entrySet()) {
+            String[] contact = contacts.get(entry.getKey());
+            if (contact == null || contact[1] == null || contact[1].isBlank()) {
+                withoutEmail++;
+                continue;
+            }
+            claims.addAll(entry.getValue());
+        }
+        if (claims.isEmpty()) return new TenantOutcome(0, 0, withoutEmail);
+
+        List<Object[]> updates = claims.stream()
+                .map(r -> new Object[]{r.level().levelNo(), now, r.invoice().id(), r.level().levelNo()})
+                .toList();
+        int[] claimed = new int[2]; // e-mails, invoices
+        transactionTemplate.executeWithoutResult(status -> {
+            // Claim first: an invoice whose level another instance already raised matches no row and is not mailed
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_REMINDED_SQL, updates);
+            Map<Long, List<Reminder>> won = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    Reminder r = claims.get(i);
+                    won.computeIfAbsent(r.invoice().thirdPartyId(), k -> new ArrayList<>()).add(r);
+                }
+            }
+            List<MailService.TemplatedMail> mails = new ArrayList<>(won.size());
+            for (Map.Entry<Long, List<Reminder>> entry : won.entrySet()) {
+                String[] contact = contacts.get(entry.getKey());
+                List<Reminder> reminders = entry.getValue();
+                Level level = reminders.stream().map(Reminder::level).reduce((a, b) -> a.levelNo() >= b.levelNo() ? a : b).orElseThrow();
+                mails.add(new MailService.TemplatedMail(contact[1].trim(), level.templateKey(),
+                        variables(tenant, contact[0], level, reminders, locale)));
+                claimed[1] += reminders.size();
+            }
+            claimed[0] = mails.isEmpty() ? 0 : mailService.sendTemplates(tenant.id(), tenant.locale(), mails);
+        });
+        remindersQueued.increment(claimed[0]);
+        return new TenantOutcome(claimed[0], claimed[1], withoutEmail);
+    }
+
+    private static Map<String, String> variables(TenantLevels tenant, String thirdPartyName, Level level,
+                                                 List<Reminder> reminders, Locale locale) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder html = new StringBuilder("<table cellpadding=\"4\">");
+        Map<String, BigDecimal> totals = new LinkedHashMap<>();
+        for (Reminder r : reminders) {
+            DueInvoice invoice = r.invoice();
+            String due = invoice.dateDue().format(DATE_FMT);
+            String amount = amount(invoice.amountRemaining(), invoice.currencyCode(), locale);
+            text.append("\n- ").append(invoice.reference()).append(" - ").append(due).append(" - ").append(amount);
+            html.append("<tr><td>").append(HtmlUtils.htmlEscape(invoice.reference())).append("</td><td>").append(due)
+                    .append("</td><td align=\"right\">").append(HtmlUtils.htmlEscape(amount)).append("</td></tr>");
+            totals.merge(invoice.currencyCode(), invoice.amountRemaining(), BigDecimal::add);
+        }
+        html.append("</table>");
+        text.append('\n');
+
+        Map<String, String> vars = new HashMap<>();
+        vars.put("thirdPartyName", thirdPartyName != null ? thirdPartyName : "");
+        vars.put("companyName", tenant.name() != null ? tenant.name() : "");
+        vars.put("level", String.valueOf(level.levelNo()));
+        vars.put("invoiceCount", String.valueOf(reminders.size()));
+        vars.put("totalDue", totals.entrySet().stream().map(e -> amount(e.getValue(), e.getKey(), locale))
+                .collect(Collectors.joining(" + ")));
+        vars.put("invoicesText", text.toString());
+        vars.put("invoicesHtml", html.toString());
+        return vars;
+    }
+
+    private static String amount(BigDecimal value, String currency, Locale locale) {
+        return String.format(locale, "%,.2f %s", value, currency != null ? currency : "").trim();
+    }
+
+    /** Outcome of a dunning run; reminders of failed tenants are sent by the next run. */
+    public record DunningRun(int tenants, int emails, int invoices, int customersWithoutEmail, int failedTenants,
+                             Duration duration) {}
+
+    private record Level(short levelNo, int daysAfterDue, String templateKey) {}
+
+    private record TenantLevels(String id, String name, String locale, List<Level> levels) {
+
+        /** Highest level whose delay has elapsed for an invoice due on {@code dateDue}, or null. */
+        Level levelReached(LocalDate dateDue, LocalDate today) {
+            Level reached = null;
+            for (Level level : levels) {
+                if (dateDue.plusDays(level.daysAfterDue()).isAfter(today)) break;
+                reached = level;
+            }
+            return reached;
+        }
+    }
+
+    private record DueInvoice(long id, long thirdPartyId, String reference, LocalDate dateDue, BigDecimal amountRemaining,
+                              String currencyCode, short reminderLevel) {}
+
+    private record Reminder(DueInvoice invoice, Level level) {}
+
+    private record TenantOutcome(int emails, int invoices, int withoutEmail) {
+
+        TenantOutcome plus(TenantOutcome other) {
+            return new TenantOutcome(emails + other.emails, invoices + other.invoices, withoutEmail + other.withoutEmail);
+        }
+    }
+}
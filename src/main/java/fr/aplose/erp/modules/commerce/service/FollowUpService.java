@@ -6,6 +6,8 @@ import fr.aplose.erp.modules.commerce.repository.InvoiceRepository;
 import fr.aplose.erp.modules.commerce.repository.ProposalRepository;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,10 +22,13 @@ public class FollowUpService {
     private final ProposalRepository proposalRepository;
 
     private static final int PROPOSAL_FOLLOW_UP_DAYS = 7;
+    private static final int OVERDUE_PAGE_SIZE = 20;
 
+    /** One page of overdue invoices, most overdue first. */
     @Transactional(readOnly = true)
-    public List<Invoice> getOverdueInvoices() {
-        return invoiceRepository.findOverdue(TenantContext.getCurrentTenantId(), LocalDate.now());
+    public Page<Invoice> getOverdueInvoices(int page) {
+        return invoiceRepository.findOverduePage(TenantContext.getCurrentTenantId(), LocalDate.now(),
+                PageRequest.of(Math.max(0, page), OVERDUE_PAGE_SIZE));
     }
 
     @Transactional(readOnly = true)
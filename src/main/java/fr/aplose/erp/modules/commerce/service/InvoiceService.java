@@ -1,5 +1,7 @@
 package fr.aplose.erp.modules.commerce.service;
 
+import fr.aplose.erp.core.sequence.DocumentType;
+import fr.aplose.erp.core.sequence.NumberSequenceService;
 import fr.aplose.erp.modules.automation.service.AutomationRuleService;
 import fr.aplose.erp.modules.catalog.repository.ProductRepository;
 import fr.aplose.erp.modules.webhook.service.WebhookService;
@@ -11,10 +13,13 @@ import fr.aplose.erp.modules.commerce.web.dto.InvoiceDto;
 import fr.aplose.erp.modules.commerce.web.dto.LineDto;
 import fr.aplose.erp.modules.commerce.web.dto.PaymentDto;
 import fr.aplose.erp.modules.contact.repository.ContactRepository;
+import fr.aplose.erp.modules.reporting.service.InvoiceFactService;
 import fr.aplose.erp.modules.thirdparty.repository.ThirdPartyRepository;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +42,8 @@ public class InvoiceService {
     private final ProductRepository productRepo;
     private final AutomationRuleService automationRuleService;
     private final WebhookService webhookService;
+    private final InvoiceFactService invoiceFactService;
+    private final NumberSequenceService numberSequenceService;
 
     @Transactional(readOnly = true)
     public Page<Invoice> findAll(String q, String type, String status, Pageable pageable) {
@@ -47,18 +54,33 @@ public class InvoiceService {
         return repo.findByTenantId(tid, pageable);
     }
 
+    /** Same as {@link #findAll} with the lines loaded (a batch of invoices per query), for use outside a transaction. */
+    @Transactional(readOnly = true)
+    public Page<Invoice> findAllWithLines(String q, String type, String status, Pageable pageable) {
+        Page<Invoice> page = findAll(q, type, status, pageable);
+        page.forEach(inv -> Hibernate.initialize(inv.getLines()));
+        return page;
+    }
+
     @Transactional(readOnly = true)
     public Invoice findById(Long id) {
         return repo.findByIdAndTenantId(id, TenantContext.getCurrentTenantId())
                 .orElseThrow(() -> new IllegalArgumentException("Invoice not found: " + id));
     }
 
+    @Transactional(readOnly = true)
+    public Invoice findByIdWithLines(Long id) {
+        Invoice inv = findById(id);
+        Hibernate.initialize(inv.getLines());
+        return inv;
+    }
+
     @Transactional
     public Invoice create(InvoiceDto dto, Long currentUserId) {
         String tid = TenantContext.getCurrentTenantId();
 
         Invoice inv = new Invoice();
-        inv.setReference(generateReference(tid, dto.getType()));
+        inv.setReference(numberSequenceService.next(tid, DocumentType.forInvoice(dto.getType())));
         inv.setCreatedById(currentUserId);
         applyDto(inv, dto, tid);
         inv = repo.save(inv);
@@ -126,16 +148,21 @@ public class InvoiceService {
         if (inv.getLines().isEmpty()) {
             throw new IllegalStateException("Invoice must have at least one line");
         }
+        var factsBefore = InvoiceFactService.contributionOf(inv);
         inv.setStatus("VALIDATED");
         inv.setValidatedAt(LocalDateTime.now());
         inv.setValidatedById(userId);
         repo.save(inv);
+        invoiceFactService.recordChange(inv.getTenantId(), factsBefore, InvoiceFactService.contributionOf(inv));
 
         Map<String, Object> context = new HashMap<>();
         context.put("status", "VALIDATED");
         context.put("amount", inv.getTotalAmount());
         context.put("entityId", inv.getId());
+        context.put("reference", inv.getReference());
         context.put("thirdPartyId", inv.getThirdParty() != null ? inv.getThirdParty().getId() : null);
+        context.put("thirdPartyName", inv.getThirdParty() != null ? inv.getThirdParty().getName() : null);
+        context.put("thirdPartyEmail", inv.getThirdParty() != null ? inv.getThirdParty().getEmail() : null);
         automationRuleService.runRules("INVOICE", "VALIDATED", context);
         webhookService.trigger(inv.getTenantId(), "INVOICE.VALIDATED", invoicePayload(inv));
     }
@@ -146,6 +173,7 @@ public class InvoiceService {
         if ("DRAFT".equals(inv.getStatus()) || "CANCELLED".equals(inv.getStatus())) {
             throw new IllegalStateException("Cannot add payment to a " + inv.getStatus() + " invoice");
         }
+        var factsBefore = InvoiceFactService.contributionOf(inv);
 
         Payment payment = new Payment();
         payment.setTenantId(TenantContext.getCurrentTenantId());
@@ -173,14 +201,17 @@ public class InvoiceService {
         }
 
         repo.save(inv);
+        invoiceFactService.recordChange(inv.getTenantId(), factsBefore, InvoiceFactService.contributionOf(inv));
         return payment;
     }
 
     @Transactional
     public void cancel(Long id) {
         Invoice inv = findById(id);
+        var factsBefore = InvoiceFactService.contributionOf(inv);
         inv.setStatus("CANCELLED");
         repo.save(inv);
+        invoiceFactService.recordChange(inv.getTenantId(), factsBefore, InvoiceFactService.contributionOf(inv));
     }
 
     @Transactional(readOnly = true)
@@ -194,11 +225,9 @@ public class InvoiceService {
         return repo.findOverdue(TenantContext.getCurrentTenantId(), LocalDate.now());
     }
 
-    private String generateReference(String tid, String type) {
-        String prefix = "SALES".equals(type) ? "INV-%" : "BIL-%";
-        int max = repo.findMaxReferenceNumber(tid, prefix);
-        String pre = "SALES".equals(type) ? "INV-" : "BIL-";
-        return String.format("%s%05d", pre, max + 1);
+    @Transactional(readOnly = true)
+    public List<Invoice> findOverdue(int limit) {
+        return repo.findOverdue(TenantContext.getCurrentTenantId(), LocalDate.now(), PageRequest.of(0, limit));
     }
 
     private void applyDto(Invoice inv, InvoiceDto dto, String tid) {
@@ -1,5 +1,7 @@
 package fr.aplose.erp.modules.commerce.service;
 
+import fr.aplose.erp.core.sequence.DocumentType;
+import fr.aplose.erp.core.sequence.NumberSequenceService;
 import fr.aplose.erp.modules.catalog.repository.ProductRepository;
 import fr.aplose.erp.modules.commerce.entity.Proposal;
 import fr.aplose.erp.modules.commerce.entity.ProposalLine;
@@ -27,6 +29,7 @@ public class ProposalService {
     private final ContactRepository contactRepo;
     private final UserRepository userRepo;
     private final ProductRepository productRepo;
+    private final NumberSequenceService numberSequenceService;
 
     @Transactional(readOnly = true)
     public Page<Proposal> findAll(String q, String status, Pageable pageable) {
@@ -47,7 +50,7 @@ public class ProposalService {
         String tid = TenantContext.getCurrentTenantId();
 
         Proposal p = new Proposal();
-        p.setReference(generateReference(tid));
+        p.setReference(numberSequenceService.next(tid, DocumentType.PROPOSAL));
         p.setCreatedById(currentUserId);
         applyDto(p, dto, tid);
         return repo.save(p);
@@ -118,11 +121,6 @@ public class ProposalService {
                 Set.of("DRAFT", "SENT"));
     }
 
-    private String generateReference(String tid) {
-        int max = repo.findMaxReferenceNumber(tid);
-        return String.format("PRO-%05d", max + 1);
-    }
-
     private void applyDto(Proposal p, ProposalDto dto, String tid) {
         thirdPartyRepo.findByIdAndTenantIdAndDeletedAtIsNull(dto.getThirdPartyId(), tid)
                 .ifPresent(p::setThirdParty);
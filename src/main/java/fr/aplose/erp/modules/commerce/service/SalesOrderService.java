@@ -1,5 +1,7 @@
 package fr.aplose.erp.modules.commerce.service;
 
+import fr.aplose.erp.core.sequence.DocumentType;
+import fr.aplose.erp.core.sequence.NumberSequenceService;
 import fr.aplose.erp.modules.catalog.repository.ProductRepository;
 import fr.aplose.erp.modules.commerce.entity.Proposal;
 import fr.aplose.erp.modules.commerce.entity.SalesOrder;
@@ -30,6 +32,7 @@ public class SalesOrderService {
     private final UserRepository userRepo;
     private final ProductRepository productRepo;
     private final ProposalRepository proposalRepo;
+    private final NumberSequenceService numberSequenceService;
 
     @Transactional(readOnly = true)
     public Page<SalesOrder> findAll(String q, String status, Pageable pageable) {
@@ -49,7 +52,7 @@ public class SalesOrderService {
     public SalesOrder create(SalesOrderDto dto, Long currentUserId) {
         String tid = TenantContext.getCurrentTenantId();
         SalesOrder o = new SalesOrder();
-        o.setReference(generateReference(tid));
+        o.setReference(numberSequenceService.next(tid, DocumentType.SALES_ORDER));
         o.setCreatedById(currentUserId);
         o.setStatus("CONFIRMED");
         applyDto(o, dto, tid);
@@ -68,7 +71,7 @@ public class SalesOrderService {
         }
         String tid = TenantContext.getCurrentTenantId();
         SalesOrder o = new SalesOrder();
-        o.setReference(generateReference(tid));
+        o.setReference(numberSequenceService.next(tid, DocumentType.SALES_ORDER));
         o.setCreatedById(currentUserId);
         o.setProposal(p);
         o.setThirdParty(p.getThirdParty());
@@ -160,11 +163,6 @@ public class SalesOrderService {
         orderRepo.save(o);
     }
 
-    private String generateReference(String tid) {
-        int max = orderRepo.findMaxReferenceNumber(tid);
-        return String.format("SO-%05d", max + 1);
-    }
-
     private void applyDto(SalesOrder o, SalesOrderDto dto, String tid) {
         thirdPartyRepo.findByIdAndTenantIdAndDeletedAtIsNull(dto.getThirdPartyId(), tid)
                 .ifPresent(o::setThirdParty);
@@ -133,6 +133,7 @@ public class BusinessContractController {
         contract.setId(id);
         contract.setTenantId(existing.getTenantId());
         contract.setCreatedAt(existing.getCreatedAt());
+        contract.setNextBillingDate(existing.getNextBillingDate());
         if (thirdPartyId != null) thirdPartyRepository.findByIdAndTenantIdAndDeletedAtIsNull(thirdPartyId, TenantContext.getCurrentTenantId()).ifPresent(contract::setThirdParty);
         if (contactId != null) contactRepository.findByIdAndTenantIdAndDeletedAtIsNull(contactId, TenantContext.getCurrentTenantId()).ifPresent(contract::setContact);
         else contract.setContact(null);
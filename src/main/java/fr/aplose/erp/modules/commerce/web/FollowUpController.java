@@ -1,12 +1,19 @@
 package fr.aplose.erp.modules.commerce.web;
 
+import fr.aplose.erp.modules.commerce.service.DunningService;
 import fr.aplose.erp.modules.commerce.service.FollowUpService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.util.List;
+import java.util.Objects;
 
 @Controller
 @RequestMapping("/follow-up")
@@ -14,12 +21,33 @@ import org.springframework.web.bind.annotation.RequestMapping;
 @RequiredArgsConstructor
 public class FollowUpController {
 
+    /** Reminder levels offered by the settings form. */
+    static final int MAX_DUNNING_LEVELS = 4;
+
     private final FollowUpService followUpService;
+    private final DunningService dunningService;
 
     @GetMapping
-    public String index(Model model) {
-        model.addAttribute("overdueInvoices", followUpService.getOverdueInvoices());
+    public String index(@RequestParam(defaultValue = "0") int page, Model model) {
+        model.addAttribute("overdueInvoices", followUpService.getOverdueInvoices(page));
         model.addAttribute("proposalsToFollowUp", followUpService.getProposalsToFollowUp());
+        model.addAttribute("dunningLevels", dunningService.findLevels());
+        model.addAttribute("maxDunningLevels", MAX_DUNNING_LEVELS);
         return "modules/commerce/follow-up";
     }
+
+    @PostMapping("/dunning-levels")
+    @PreAuthorize("hasAuthority('TENANT_UPDATE')")
+    public String saveDunningLevels(@RequestParam(name = "days", required = false) List<Integer> days,
+                                    RedirectAttributes redirectAttributes) {
+        List<Integer> levels = days != null ? days.stream().filter(Objects::nonNull).limit(MAX_DUNNING_LEVELS).toList() : List.of();
+        try {
+            dunningService.saveLevels(levels);
+            redirectAttributes.addFlashAttribute("successMessage", levels.isEmpty()
+                    ? "Relances automatiques désactivées" : "Niveaux de relance enregistrés");
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+        return "redirect:/follow-up";
+    }
 }
@@ -1,12 +1,13 @@
 package fr.aplose.erp.modules.commerce.web;
 
+import fr.aplose.erp.modules.commerce.entity.Invoice;
 import fr.aplose.erp.modules.commerce.service.InvoiceService;
 import fr.aplose.erp.modules.commerce.web.dto.InvoiceDto;
 import fr.aplose.erp.modules.commerce.web.dto.LineDto;
 import fr.aplose.erp.modules.commerce.web.dto.PaymentDto;
 import fr.aplose.erp.dictionary.DictionaryType;
 import fr.aplose.erp.dictionary.service.DictionaryService;
-import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+import fr.aplose.erp.modules.extrafield.service.ExtraFieldDefinitionView;
 import fr.aplose.erp.modules.extrafield.service.ExtraFieldService;
 import fr.aplose.erp.security.service.ErpUserDetails;
 import jakarta.servlet.http.HttpServletRequest;
@@ -39,21 +40,21 @@ public class InvoiceController {
     private static final String ENTITY_TYPE_INVOICE = "INVOICE";
 
     private void addExtraFieldModelAttributes(Model model, Long entityId) {
-        List<ExtraFieldDefinition> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_INVOICE);
+        List<ExtraFieldDefinitionView> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_INVOICE);
         model.addAttribute("extraFieldDefinitions", definitions);
         Map<String, String> values = entityId != null ? extraFieldService.getValues(ENTITY_TYPE_INVOICE, entityId) : new LinkedHashMap<>();
         model.addAttribute("extraFieldValues", values);
     }
 
     private Map<String, String> getExtraFieldValuesFromRequest(HttpServletRequest request) {
-        List<ExtraFieldDefinition> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_INVOICE);
+        List<ExtraFieldDefinitionView> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_INVOICE);
         Map<String, String> map = new LinkedHashMap<>();
-        for (ExtraFieldDefinition def : defs) {
-            if (!def.isVisibleOnForm()) continue;
-            String paramName = "extraField_" + def.getFieldCode();
+        for (ExtraFieldDefinitionView def : defs) {
+            if (!def.visibleOnForm()) continue;
+            String paramName = "extraField_" + def.fieldCode();
             String value = request.getParameter(paramName);
-            if ("BOOLEAN".equals(def.getFieldType())) map.put(def.getFieldCode(), "true".equals(value) ? "true" : "false");
-            else map.put(def.getFieldCode(), value != null ? value : "");
+            if ("BOOLEAN".equals(def.fieldType())) map.put(def.fieldCode(), "true".equals(value) ? "true" : "false");
+            else map.put(def.fieldCode(), value != null ? value : "");
         }
         return map;
     }
@@ -70,7 +71,12 @@ public class InvoiceController {
                        @RequestParam(defaultValue = "0") int page,
                        Model model) {
         var pageable = PageRequest.of(page, 25, Sort.by(Sort.Direction.DESC, "dateIssued"));
-        model.addAttribute("invoices", service.findAll(q, type, status, pageable));
+        var invoices = service.findAll(q, type, status, pageable);
+        model.addAttribute("invoices", invoices);
+        List<ExtraFieldDefinitionView> listDefs = extraFieldService.getListDefinitions(ENTITY_TYPE_INVOICE);
+        model.addAttribute("extraFieldDefinitionsList", listDefs);
+        model.addAttribute("extraFieldListValues", listDefs.isEmpty() ? Map.of()
+                : extraFieldService.getValues(ENTITY_TYPE_INVOICE, invoices.map(Invoice::getId).getContent()));
         model.addAttribute("q", q);
         model.addAttribute("type", type);
         model.addAttribute("status", status);
@@ -83,8 +89,8 @@ public class InvoiceController {
         model.addAttribute("invoice", inv);
         model.addAttribute("newLine", new LineDto());
         model.addAttribute("newPayment", new PaymentDto());
-        List<ExtraFieldDefinition> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_INVOICE).stream()
-                .filter(ExtraFieldDefinition::isVisibleOnDetail).toList();
+        List<ExtraFieldDefinitionView> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_INVOICE).stream()
+                .filter(ExtraFieldDefinitionView::visibleOnDetail).toList();
         model.addAttribute("extraFieldDefinitionsDetail", detailDefs);
         model.addAttribute("extraFieldValues", extraFieldService.getValues(ENTITY_TYPE_INVOICE, id));
         return "modules/commerce/invoice-detail";
@@ -5,7 +5,7 @@ import fr.aplose.erp.modules.commerce.web.dto.LineDto;
 import fr.aplose.erp.modules.commerce.web.dto.ProposalDto;
 import fr.aplose.erp.dictionary.DictionaryType;
 import fr.aplose.erp.dictionary.service.DictionaryService;
-import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+import fr.aplose.erp.modules.extrafield.service.ExtraFieldDefinitionView;
 import fr.aplose.erp.modules.extrafield.service.ExtraFieldService;
 import fr.aplose.erp.security.service.ErpUserDetails;
 import jakarta.servlet.http.HttpServletRequest;
@@ -38,21 +38,21 @@ public class ProposalController {
     private static final String ENTITY_TYPE_PROPOSAL = "PROPOSAL";
 
     private void addExtraFieldModelAttributes(Model model, Long entityId) {
-        List<ExtraFieldDefinition> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PROPOSAL);
+        List<ExtraFieldDefinitionView> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PROPOSAL);
         model.addAttribute("extraFieldDefinitions", definitions);
         Map<String, String> values = entityId != null ? extraFieldService.getValues(ENTITY_TYPE_PROPOSAL, entityId) : new LinkedHashMap<>();
         model.addAttribute("extraFieldValues", values);
     }
 
     private Map<String, String> getExtraFieldValuesFromRequest(HttpServletRequest request) {
-        List<ExtraFieldDefinition> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PROPOSAL);
+        List<ExtraFieldDefinitionView> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PROPOSAL);
         Map<String, String> map = new LinkedHashMap<>();
-        for (ExtraFieldDefinition def : defs) {
-            if (!def.isVisibleOnForm()) continue;
-            String paramName = "extraField_" + def.getFieldCode();
+        for (ExtraFieldDefinitionView def : defs) {
+            if (!def.visibleOnForm()) continue;
+            String paramName = "extraField_" + def.fieldCode();
             String value = request.getParameter(paramName);
-            if ("BOOLEAN".equals(def.getFieldType())) map.put(def.getFieldCode(), "true".equals(value) ? "true" : "false");
-            else map.put(def.getFieldCode(), value != null ? value : "");
+            if ("BOOLEAN".equals(def.fieldType())) map.put(def.fieldCode(), "true".equals(value) ? "true" : "false");
+            else map.put(def.fieldCode(), value != null ? value : "");
         }
         return map;
     }
@@ -79,8 +79,8 @@ public class ProposalController {
         var proposal = service.findById(id);
         model.addAttribute("proposal", proposal);
         model.addAttribute("newLine", new LineDto());
-        List<ExtraFieldDefinition> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PROPOSAL).stream()
-                .filter(ExtraFieldDefinition::isVisibleOnDetail).toList();
+        List<ExtraFieldDefinitionView> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_PROPOSAL).stream()
+                .filter(ExtraFieldDefinitionView::visibleOnDetail).toList();
         model.addAttribute("extraFieldDefinitionsDetail", detailDefs);
         model.addAttribute("extraFieldValues", extraFieldService.getValues(ENTITY_TYPE_PROPOSAL, id));
         return "modules/commerce/proposal-detail";
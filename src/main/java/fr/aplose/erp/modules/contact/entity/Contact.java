@@ -1,6 +1,7 @@
 package fr.aplose.erp.modules.contact.entity;
 
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -12,6 +13,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "contacts")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
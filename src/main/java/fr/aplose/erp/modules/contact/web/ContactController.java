@@ -6,7 +6,7 @@ import fr.aplose.erp.modules.contact.entity.ContactThirdPartyLink;
 import fr.aplose.erp.modules.contact.service.ContactService;
 import fr.aplose.erp.modules.contact.web.dto.ContactDto;
 import fr.aplose.erp.modules.contact.web.dto.ContactThirdPartyLinkDto;
-import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+import fr.aplose.erp.modules.extrafield.service.ExtraFieldDefinitionView;
 import fr.aplose.erp.modules.extrafield.service.ExtraFieldService;
 import fr.aplose.erp.modules.thirdparty.service.ThirdPartyService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -48,7 +48,7 @@ public class ContactController {
     }
 
     private void addExtraFieldModelAttributes(Model model, Long entityId) {
-        List<ExtraFieldDefinition> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_CONTACT);
+        List<ExtraFieldDefinitionView> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_CONTACT);
         model.addAttribute("extraFieldDefinitions", definitions);
         Map<String, String> values = entityId != null
                 ? extraFieldService.getValues(ENTITY_TYPE_CONTACT, entityId)
@@ -57,16 +57,16 @@ public class ContactController {
     }
 
     private Map<String, String> getExtraFieldValuesFromRequest(HttpServletRequest request) {
-        List<ExtraFieldDefinition> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_CONTACT);
+        List<ExtraFieldDefinitionView> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_CONTACT);
         Map<String, String> map = new LinkedHashMap<>();
-        for (ExtraFieldDefinition def : defs) {
-            if (!def.isVisibleOnForm()) continue;
-            String paramName = "extraField_" + def.getFieldCode();
+        for (ExtraFieldDefinitionView def : defs) {
+            if (!def.visibleOnForm()) continue;
+            String paramName = "extraField_" + def.fieldCode();
             String value = request.getParameter(paramName);
-            if ("BOOLEAN".equals(def.getFieldType())) {
-                map.put(def.getFieldCode(), "true".equals(value) ? "true" : "false");
+            if ("BOOLEAN".equals(def.fieldType())) {
+                map.put(def.fieldCode(), "true".equals(value) ? "true" : "false");
             } else {
-                map.put(def.getFieldCode(), value != null ? value : "");
+                map.put(def.fieldCode(), value != null ? value : "");
             }
         }
         return map;
@@ -90,8 +90,8 @@ public class ContactController {
     @GetMapping("/{id}")
     public String detail(@PathVariable Long id, Model model) {
         model.addAttribute("contact", service.findById(id));
-        List<ExtraFieldDefinition> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_CONTACT).stream()
-                .filter(ExtraFieldDefinition::isVisibleOnDetail)
+        List<ExtraFieldDefinitionView> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_CONTACT).stream()
+                .filter(ExtraFieldDefinitionView::visibleOnDetail)
                 .toList();
         model.addAttribute("extraFieldDefinitionsDetail", detailDefs);
         model.addAttribute("extraFieldValues", extraFieldService.getValues(ENTITY_TYPE_CONTACT, id));
@@ -73,36 +73,4 @@ public class ExtraFieldDefinition {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
-
-    public String getHtmlInputType() {
-        return switch (fieldType) {
-            case "INTEGER" -> "number";
-            case "DECIMAL" -> "number";
-            case "BOOLEAN" -> "checkbox";
-            case "DATE" -> "date";
-            case "DATETIME" -> "datetime-local";
-            case "EMAIL" -> "email";
-            case "URL" -> "url";
-            case "PHONE" -> "tel";
-            default -> "text";
-        };
-    }
-
-    public boolean isSelectType() {
-        return "SELECT".equals(fieldType);
-    }
-
-    public boolean isTextArea() {
-        return "TEXT".equals(fieldType);
-    }
-
-    public boolean isBooleanType() {
-        return "BOOLEAN".equals(fieldType);
-    }
-
-    public String[] getSelectOptions() {
-        if (fieldOptions == null || fieldOptions.isBlank()) return new String[0];
-        String clean = fieldOptions.replaceAll("[\\[\\]\"]", "");
-        return clean.split(",");
-    }
 }
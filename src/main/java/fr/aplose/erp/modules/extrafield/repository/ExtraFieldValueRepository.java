@@ -4,6 +4,7 @@ import fr.aplose.erp.modules.extrafield.entity.ExtraFieldValue;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,6 +13,8 @@ public interface ExtraFieldValueRepository extends JpaRepository<ExtraFieldValue
 
     List<ExtraFieldValue> findByTenantIdAndEntityTypeAndEntityId(String tenantId, String entityType, Long entityId);
 
+    List<ExtraFieldValue> findByTenantIdAndEntityTypeAndEntityIdIn(String tenantId, String entityType, Collection<Long> entityIds);
+
     Optional<ExtraFieldValue> findByTenantIdAndEntityTypeAndEntityIdAndFieldCode(
             String tenantId, String entityType, Long entityId, String fieldCode);
 
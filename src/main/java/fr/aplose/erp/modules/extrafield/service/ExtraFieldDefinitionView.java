@@ -0,0 +1,53 @@
+package fr.aplose.erp.modules.extrafield.service;
+
+import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+
+import java.util.List;
+
+/**
+ * Read-only copy of an {@link ExtraFieldDefinition}, as cached by {@link ExtraFieldService} and shared by all
+ * requests: unlike the entity, it is not bound to a persistence context and cannot be modified.
+ */
+public record ExtraFieldDefinitionView(Long id, String entityType, String fieldCode, String label, String fieldType,
+                                       String fieldOptions, String defaultValue, boolean required, short sortOrder,
+                                       boolean visibleOnList, boolean visibleOnDetail, boolean visibleOnForm,
+                                       boolean active) {
+
+    static ExtraFieldDefinitionView of(ExtraFieldDefinition def) {
+        return new ExtraFieldDefinitionView(def.getId(), def.getEntityType(), def.getFieldCode(), def.getLabel(),
+                def.getFieldType(), def.getFieldOptions(), def.getDefaultValue(), def.isRequired(), def.getSortOrder(),
+                def.isVisibleOnList(), def.isVisibleOnDetail(), def.isVisibleOnForm(), def.isActive());
+    }
+
+    public String htmlInputType() {
+        return switch (fieldType) {
+            case "INTEGER" -> "number";
+            case "DECIMAL" -> "number";
+            case "BOOLEAN" -> "checkbox";
+            case "DATE" -> "date";
+            case "DATETIME" -> "datetime-local";
+            case "EMAIL" -> "email";
+            case "URL" -> "url";
+            case "PHONE" -> "tel";
+            default -> "text";
+        };
+    }
+
+    public boolean selectType() {
+        return "SELECT".equals(fieldType);
+    }
+
+    public boolean textArea() {
+        return "TEXT".equals(fieldType);
+    }
+
+    public boolean booleanType() {
+        return "BOOLEAN".equals(fieldType);
+    }
+
+    public List<String> selectOptions() {
+        if (fieldOptions == null || fieldOptions.isBlank()) return List.of();
+        String clean = fieldOptions.replaceAll("[\\[\\]\"]", "");
+        return List.of(clean.split(","));
+    }
+}
@@ -1,5 +1,8 @@
 package fr.aplose.erp.modules.extrafield.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.core.transaction.AfterCommit;
 import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
 import fr.aplose.erp.modules.extrafield.entity.ExtraFieldValue;
 import fr.aplose.erp.modules.extrafield.repository.ExtraFieldDefinitionRepository;
@@ -7,9 +10,14 @@ import fr.aplose.erp.modules.extrafield.repository.ExtraFieldValueRepository;
 import fr.aplose.erp.modules.extrafield.web.dto.ExtraFieldDefinitionDto;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,19 +26,41 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ExtraFieldService {
 
+    /** Entity ids per {@code IN} query when loading values for a list. */
+    private static final int IN_CHUNK = 500;
+
+    private static final String UPSERT_SQL = "INSERT INTO extrafield_values (tenant_id, entity_type, entity_id, field_code, value_text) " +
+            "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE value_text = ?";
+
     private final ExtraFieldDefinitionRepository defRepo;
     private final ExtraFieldValueRepository valRepo;
+    private final JdbcTemplate jdbcTemplate;
 
-    @Transactional(readOnly = true)
-    public List<ExtraFieldDefinition> getDefinitions(String entityType) {
-        return defRepo.findByTenantIdAndEntityTypeOrderBySortOrderAsc(
-                TenantContext.getCurrentTenantId(), entityType);
+    /**
+     * Definitions per (tenant, entity type), in sort order, read by every form, detail and list screen. Immutable
+     * views, never entities: a cached entity would be shared by concurrent requests and detached from their
+     * persistence contexts. Evicted after commit when a definition changes; the TTL bounds staleness across instances.
+     */
+    private final Cache<DefinitionsKey, List<ExtraFieldDefinitionView>> definitions = Caffeine.newBuilder()
+            .maximumSize(5_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    public List<ExtraFieldDefinitionView> getDefinitions(String entityType) {
+        String tid = TenantContext.getCurrentTenantId();
+        return definitions.get(new DefinitionsKey(tid, entityType),
+                k -> defRepo.findByTenantIdAndEntityTypeOrderBySortOrderAsc(tid, entityType).stream()
+                        .map(ExtraFieldDefinitionView::of)
+                        .toList());
     }
 
-    @Transactional(readOnly = true)
-    public List<ExtraFieldDefinition> getActiveDefinitions(String entityType) {
-        return defRepo.findByTenantIdAndEntityTypeAndActiveTrueOrderBySortOrderAsc(
-                TenantContext.getCurrentTenantId(), entityType);
+    public List<ExtraFieldDefinitionView> getActiveDefinitions(String entityType) {
+        return getDefinitions(entityType).stream().filter(ExtraFieldDefinitionView::active).toList();
+    }
+
+    /** Active definitions shown as columns on the entity's list screen. */
+    public List<ExtraFieldDefinitionView> getListDefinitions(String entityType) {
+        return getActiveDefinitions(entityType).stream().filter(ExtraFieldDefinitionView::visibleOnList).toList();
     }
 
     @Transactional(readOnly = true)
@@ -50,26 +80,35 @@ public class ExtraFieldService {
         return map;
     }
 
+    /**
+     * Values of a page of entities, loaded with one {@code IN} query per {@value #IN_CHUNK} ids.
+     * Column-oriented: field code -> entity id -> value; entities without a value are absent.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<Long, String>> getValues(String entityType, Collection<Long> entityIds) {
+        Map<String, Map<Long, String>> columns = new HashMap<>();
+        if (entityIds == null || entityIds.isEmpty()) return columns;
+        String tid = TenantContext.getCurrentTenantId();
+        List<Long> ids = List.copyOf(entityIds);
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            for (ExtraFieldValue v : valRepo.findByTenantIdAndEntityTypeAndEntityIdIn(
+                    tid, entityType, ids.subList(from, Math.min(from + IN_CHUNK, ids.size())))) {
+                columns.computeIfAbsent(v.getFieldCode(), k -> new HashMap<>()).put(v.getEntityId(), v.getValueText());
+            }
+        }
+        return columns;
+    }
+
+    /** Inserts or updates all values of the entity in one JDBC batch, relying on the (tenant, type, entity, field) unique key. */
     @Transactional
     public void saveValues(String entityType, Long entityId, Map<String, String> values) {
+        if (values == null || values.isEmpty()) return;
         String tid = TenantContext.getCurrentTenantId();
+        List<Object[]> rows = new ArrayList<>(values.size());
         for (Map.Entry<String, String> entry : values.entrySet()) {
-            String fieldCode = entry.getKey();
-            String value = entry.getValue();
-
-            ExtraFieldValue efv = valRepo.findByTenantIdAndEntityTypeAndEntityIdAndFieldCode(
-                    tid, entityType, entityId, fieldCode)
-                    .orElseGet(() -> {
-                        ExtraFieldValue nv = new ExtraFieldValue();
-                        nv.setTenantId(tid);
-                        nv.setEntityType(entityType);
-                        nv.setEntityId(entityId);
-                        nv.setFieldCode(fieldCode);
-                        return nv;
-                    });
-            efv.setValueText(value);
-            valRepo.save(efv);
+            rows.add(new Object[]{tid, entityType, entityId, entry.getKey(), entry.getValue(), entry.getValue()});
         }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
     }
 
     @Transactional
@@ -82,6 +121,7 @@ public class ExtraFieldService {
         def.setTenantId(tid);
         def.setEntityType(entityType);
         applyDto(def, dto);
+        evictDefinitions(tid, entityType);
         return defRepo.save(def);
     }
 
@@ -93,6 +133,7 @@ public class ExtraFieldService {
                 .filter(d -> !d.getId().equals(id))
                 .ifPresent(d -> { throw new IllegalStateException("Field code already exists: " + dto.getFieldCode()); });
         applyDto(def, dto);
+        evictDefinitions(tid, def.getEntityType());
         return defRepo.save(def);
     }
 
@@ -100,6 +141,12 @@ public class ExtraFieldService {
     public void deleteDefinition(Long id) {
         ExtraFieldDefinition def = getDefinitionById(id);
         defRepo.delete(def);
+        evictDefinitions(def.getTenantId(), def.getEntityType());
+    }
+
+    private void evictDefinitions(String tenantId, String entityType) {
+        DefinitionsKey key = new DefinitionsKey(tenantId, entityType);
+        AfterCommit.run(() -> definitions.invalidate(key));
     }
 
     private void applyDto(ExtraFieldDefinition def, ExtraFieldDefinitionDto dto) {
@@ -115,4 +162,6 @@ public class ExtraFieldService {
         def.setVisibleOnForm(dto.isVisibleOnForm());
         def.setActive(dto.isActive());
     }
+
+    private record DefinitionsKey(String tenantId, String entityType) {}
 }
@@ -2,6 +2,7 @@ package fr.aplose.erp.modules.extrafield.web;
 
 import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
 import fr.aplose.erp.modules.extrafield.service.EntityFieldRegistry;
+import fr.aplose.erp.modules.extrafield.service.ExtraFieldDefinitionView;
 import fr.aplose.erp.modules.extrafield.service.ExtraFieldService;
 import fr.aplose.erp.modules.extrafield.web.dto.ExtraFieldDefinitionDto;
 import jakarta.validation.Valid;
@@ -34,7 +35,7 @@ public class ExtraFieldDefinitionController {
         if (!EntityFieldRegistry.ENTITY_TYPES.stream().anyMatch(e -> e.code().equals(entityType))) {
             return "redirect:/admin/extrafields";
         }
-        List<ExtraFieldDefinition> definitions = extraFieldService.getDefinitions(entityType);
+        List<ExtraFieldDefinitionView> definitions = extraFieldService.getDefinitions(entityType);
         EntityFieldRegistry.EntityMeta meta = EntityFieldRegistry.ENTITY_TYPES.stream()
                 .filter(e -> e.code().equals(entityType)).findFirst().orElse(null);
         model.addAttribute("entityType", entityType);
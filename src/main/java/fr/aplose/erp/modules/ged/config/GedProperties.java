@@ -0,0 +1,31 @@
+package fr.aplose.erp.modules.ged.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.ged")
+public class GedProperties {
+
+    /** Root of the document store; files are kept under {tenantId}/{hash[0..2]}/{hash[2..4]}/{hash}. */
+    private String storageDir = "ged";
+    /** Contents no longer referenced by any document are deleted once unreferenced for this long. */
+    private Duration orphanGrace = Duration.ofHours(1);
+    /** Move documents of the former flat layout into the content store at startup. */
+    private boolean migrateLegacyFiles = true;
+    /** Threads extracting the text of uploaded documents for the full-text search. */
+    private int extractionWorkers = 2;
+    /** Contents waiting for extraction beyond this are left to the next sweep. */
+    private int extractionQueueCapacity = 500;
+    /** Extracted text is truncated to this many characters. */
+    private int extractionMaxChars = 500_000;
+    /** Larger files are not extracted (only their name is searchable). */
+    private DataSize extractionMaxFileSize = DataSize.ofMegabytes(50);
+}
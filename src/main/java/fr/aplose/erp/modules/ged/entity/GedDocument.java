@@ -1,6 +1,7 @@
 package fr.aplose.erp.modules.ged.entity;
 
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -8,6 +9,7 @@ import lombok.Setter;
 
 @Entity
 @Table(name = "ged_documents")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -22,9 +24,14 @@ public class GedDocument extends BaseEntity {
     @Column(name = "file_name", nullable = false)
     private String fileName;
 
+    /** Path in the content store, relative to its root; absolute for documents of the former flat layout. */
     @Column(name = "file_path", length = 500, nullable = false)
     private String filePath;
 
+    /** SHA-256 of the content, key in the content store; null for documents of the former flat layout. */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "mime_type", length = 100)
     private String mimeType;
 
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,5 +22,9 @@ public interface GedDocumentRepository extends JpaRepository<GedDocument, Long>
     @Query("SELECT d FROM GedDocument d WHERE d.tenantId = :tid AND (LOWER(d.fileName) LIKE LOWER(CONCAT('%',:q,'%')))")
     Page<GedDocument> searchByFileName(@Param("tid") String tenantId, @Param("q") String q, Pageable pageable);
 
+    @Query("SELECT d FROM GedDocument d WHERE d.tenantId = :tid AND (LOWER(d.fileName) LIKE LOWER(CONCAT('%',:q,'%')) OR d.id IN :ids)")
+    Page<GedDocument> searchByFileNameOrIds(@Param("tid") String tenantId, @Param("q") String q,
+                                            @Param("ids") Collection<Long> ids, Pageable pageable);
+
     Optional<GedDocument> findByIdAndTenantId(Long id, String tenantId);
 }
@@ -0,0 +1,167 @@
+package fr.aplose.erp.modules.ged.service;
+
+import fr.aplose.erp.modules.ged.config.GedProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed GED storage: a file is stored once per tenant under its SHA-256, in a two-level fan-out
+ * ({@code {tenantId}/ab/cd/abcd...}) so that no directory grows too large. {@code ged_blobs.ref_count} counts
+ * the documents sharing a content; unreferenced contents are purged after {@link GedProperties#getOrphanGrace()},
+ * which leaves time to a concurrent upload of the same content to reference it again.
+ * <p>
+ * A new content is registered with no reference, in its own committed transaction, before its file is placed:
+ * if the caller's transaction then rolls back, the file is left as an orphan that the purge removes.
+ */
+@Slf4j
+@Component
+public class GedBlobStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9-]{1,36}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate registration;
+    private final GedProperties properties;
+    private final Path root;
+    /** Serializes placing and purging the file of a given content (striped by hash) within this instance. */
+    private final Object[] locks = new Object[64];
+
+    public record StoredBlob(String hash, long size, String relativePath) {}
+
+    public GedBlobStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, GedProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.registration = new TransactionTemplate(transactionManager);
+        this.registration.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+        this.root = Paths.get(properties.getStorageDir()).toAbsolutePath().normalize();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores the content (hashing it while copying) and adds a reference to it, in the current transaction.
+     * An identical content already stored for the tenant is reused.
+     */
+    public StoredBlob store(String tenantId, InputStream content) throws IOException {
+        Path tenantDir = tenantDir(tenantId);
+        Files.createDirectories(tenantDir);
+        Path temp = Files.createTempFile(tenantDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = content; OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = in.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = path(tenantId, hash);
+            synchronized (lock(hash)) {
+                if (Files.exists(target)) {
+                    Files.delete(temp);
+                } else {
+                    register(tenantId, hash, size);
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                addReference(tenantId, hash, size);
+            }
+            return new StoredBlob(hash, size, root.relativize(target).toString());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Records a content about to be placed, unreferenced and committed at once, so that the purge knows its file. */
+    private void register(String tenantId, String hash, long size) {
+        registration.executeWithoutResult(status -> jdbcTemplate.update(
+                "INSERT INTO ged_blobs (tenant_id, content_hash, size_bytes, ref_count) VALUES (?, ?, ?, 0) " +
+                "ON DUPLICATE KEY UPDATE updated_at = CURRENT_TIMESTAMP", tenantId, hash, size));
+    }
+
+    /** Adds a reference to a content already in the store (copies of a document, migration). */
+    void addReference(String tenantId, String hash, long size) {
+        jdbcTemplate.update("INSERT INTO ged_blobs (tenant_id, content_hash, size_bytes, ref_count) VALUES (?, ?, ?, 1) " +
+                "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = CURRENT_TIMESTAMP", tenantId, hash, size);
+    }
+
+    /** Drops a reference, in the current transaction; the file itself is deleted later by {@link #purgeOrphans()}. */
+    public void release(String tenantId, String hash) {
+        jdbcTemplate.update("UPDATE ged_blobs SET ref_count = ref_count - 1, updated_at = CURRENT_TIMESTAMP " +
+                "WHERE tenant_id = ? AND content_hash = ? AND ref_count > 0", tenantId, hash);
+    }
+
+    public Path path(String tenantId, String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid content hash");
+        }
+        return tenantDir(tenantId).resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    @Scheduled(cron = "${app.ged.purge-cron:0 15 * * * *}")
+    public void purgeOrphans() {
+        Timestamp before = Timestamp.valueOf(LocalDateTime.now().minus(properties.getOrphanGrace()));
+        List<Map<String, Object>> orphans = jdbcTemplate.queryForList(
+                "SELECT tenant_id, content_hash FROM ged_blobs WHERE ref_count = 0 AND updated_at < ?", before);
+        int purged = 0;
+        for (Map<String, Object> orphan : orphans) {
+            String tenantId = (String) orphan.get("tenant_id");
+            String hash = (String) orphan.get("content_hash");
+            synchronized (lock(hash)) {
+                // Re-checked by the database: a document may have referenced the content again meanwhile
+                if (jdbcTemplate.update("DELETE FROM ged_blobs WHERE tenant_id = ? AND content_hash = ? AND ref_count = 0",
+                        tenantId, hash) == 0) continue;
+                try {
+                    Files.deleteIfExists(path(tenantId, hash));
+                    purged++;
+                } catch (IOException e) {
+                    log.warn("Could not delete GED content {} of tenant {}: {}", hash, tenantId, e.getMessage());
+                }
+            }
+        }
+        if (purged > 0) {
+            log.info("Purged {} unreferenced GED file(s)", purged);
+        }
+    }
+
+    private Path tenantDir(String tenantId) {
+        if (tenantId == null || !TENANT_ID.matcher(tenantId).matches()) {
+            throw new IllegalArgumentException("Invalid tenant id");
+        }
+        return root.resolve(tenantId);
+    }
+
+    private Object lock(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), locks.length)];
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,33 +1,37 @@
 package fr.aplose.erp.modules.ged.service;
 
+import fr.aplose.erp.core.search.SearchDocumentType;
+import fr.aplose.erp.core.search.SearchHit;
+import fr.aplose.erp.core.search.SearchIndexService;
+import fr.aplose.erp.core.transaction.AfterCommit;
 import fr.aplose.erp.modules.ged.entity.GedDocument;
 import fr.aplose.erp.modules.ged.repository.GedDocumentRepository;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class GedService {
 
-    private final GedDocumentRepository repository;
+    private static final int MAX_CONTENT_HITS = 500;
 
-    private static final String GED_STORAGE_PREFIX = "ged";
+    private final GedDocumentRepository repository;
+    private final GedBlobStore blobStore;
+    private final GedTextExtractionService textExtractionService;
+    private final SearchIndexService searchIndexService;
 
     @Transactional(readOnly = true)
     public List<GedDocument> findByEntity(String entityType, Long entityId) {
@@ -40,12 +44,22 @@ public class GedService {
         return repository.findByTenantIdOrderByCreatedAtDesc(TenantContext.getCurrentTenantId(), pageable);
     }
 
+    /**
+     * Documents whose name contains {@code q} or whose text (extracted in the background after upload)
+     * matches its words; the text of the best {@value #MAX_CONTENT_HITS} matches is considered.
+     */
     @Transactional(readOnly = true)
     public Page<GedDocument> search(String q, Pageable pageable) {
-        if (q != null && !q.isBlank()) {
-            return repository.searchByFileName(TenantContext.getCurrentTenantId(), q, pageable);
+        if (q == null || q.isBlank()) {
+            return findAll(pageable);
         }
-        return findAll(pageable);
+        String tid = TenantContext.getCurrentTenantId();
+        List<Long> contentHits = searchIndexService.search(tid, q, EnumSet.of(SearchDocumentType.GED_DOCUMENT), MAX_CONTENT_HITS)
+                .stream().map(SearchHit::id).toList();
+        if (contentHits.isEmpty()) {
+            return repository.searchByFileName(tid, q, pageable);
+        }
+        return repository.searchByFileNameOrIds(tid, q, contentHits, pageable);
     }
 
     @Transactional(readOnly = true)
@@ -60,50 +74,51 @@ public class GedService {
     }
 
     /**
-     * Returns the file as a Resource for download. Caller must verify access rights.
+     * Returns the file of the document. Caller must verify access rights.
      */
-    public Resource getFileResource(GedDocument doc) throws IOException {
-        Path path = Paths.get(doc.getFilePath());
-        if (!Files.exists(path) || !Files.isReadable(path)) {
+    public Path getFile(GedDocument doc) throws IOException {
+        Path path = doc.getContentHash() != null
+                ? blobStore.path(doc.getTenantId(), doc.getContentHash())
+                : Paths.get(doc.getFilePath());
+        if (!Files.isReadable(path)) {
             throw new IOException("File not readable: " + doc.getFileName());
         }
-        try {
-            return new UrlResource(path.toUri());
-        } catch (MalformedURLException e) {
-            throw new IOException("Invalid file path", e);
-        }
+        return path;
     }
 
     @Transactional
     public GedDocument upload(String entityType, Long entityId, MultipartFile file, Long currentUserId) throws IOException {
         String tid = TenantContext.getCurrentTenantId();
-        Path tenantDir = Paths.get(GED_STORAGE_PREFIX, tid).toAbsolutePath();
-        Files.createDirectories(tenantDir);
         String originalName = file.getOriginalFilename();
         if (originalName == null || originalName.isBlank()) originalName = "document";
-        String storedName = UUID.randomUUID().toString() + "_" + originalName.replaceAll("[^a-zA-Z0-9._-]", "_");
-        Path target = tenantDir.resolve(storedName);
-        file.transferTo(target.toFile());
+        GedBlobStore.StoredBlob blob = blobStore.store(tid, file.getInputStream());
 
         GedDocument doc = new GedDocument();
         doc.setEntityType(entityType);
         doc.setEntityId(entityId);
         doc.setFileName(originalName);
-        doc.setFilePath(target.toString());
+        doc.setFilePath(blob.relativePath());
+        doc.setContentHash(blob.hash());
         doc.setMimeType(file.getContentType());
-        doc.setFileSize(file.getSize());
+        doc.setFileSize(blob.size());
         doc.setVersion(1);
         doc.setCreatedById(currentUserId);
-        return repository.save(doc);
+        GedDocument saved = repository.save(doc);
+        AfterCommit.run(() -> textExtractionService.submit(tid, blob.hash(), saved.getFileName(), saved.getMimeType()));
+        return saved;
     }
 
     @Transactional
     public void delete(Long id) {
         GedDocument doc = findById(id);
-        try {
-            Path path = Paths.get(doc.getFilePath());
-            if (Files.exists(path)) Files.delete(path);
-        } catch (IOException ignored) { }
+        if (doc.getContentHash() != null) {
+            blobStore.release(doc.getTenantId(), doc.getContentHash());
+        } else {
+            try {
+                Path path = Paths.get(doc.getFilePath());
+                if (Files.exists(path)) Files.delete(path);
+            } catch (IOException ignored) { }
+        }
         repository.delete(doc);
     }
 }
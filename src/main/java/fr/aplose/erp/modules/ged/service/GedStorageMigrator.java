@@ -0,0 +1,103 @@
+package fr.aplose.erp.modules.ged.service;
+
+import fr.aplose.erp.modules.ged.config.GedProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves documents of the former flat layout ({@code ged/{tenantId}/{uuid}_{name}}, no content hash) into the
+ * content store, deduplicating them on the way. Runs in the background at startup and can be re-run: only
+ * documents without a content hash are considered, and a missing file is reported and left as it is.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GedStorageMigrator {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GedBlobStore blobStore;
+    private final GedProperties properties;
+
+    public record Result(int migrated, int missing) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInBackground() {
+        if (!properties.isMigrateLegacyFiles()) return;
+        Integer legacy = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ged_documents WHERE content_hash IS NULL", Integer.class);
+        if (legacy == null || legacy == 0) return;
+        Thread.ofVirtual().name("ged-storage-migration").start(() -> {
+            try {
+                migrate();
+            } catch (RuntimeException e) {
+                log.warn("GED storage migration stopped: {}", e.getMessage());
+            }
+        });
+    }
+
+    public synchronized Result migrate() {
+        int migrated = 0;
+        int missing = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, tenant_id, file_path FROM ged_documents WHERE content_hash IS NULL AND id > ? ORDER BY id LIMIT ?",
+                    lastId, BATCH_SIZE);
+            if (rows.isEmpty()) break;
+            for (Map<String, Object> row : rows) {
+                lastId = ((Number) row.get("id")).longValue();
+                Path legacyFile = Paths.get((String) row.get("file_path"));
+                if (!Files.isReadable(legacyFile)) {
+                    log.warn("GED document {}: file {} not found, not migrated", lastId, legacyFile);
+                    missing++;
+                    continue;
+                }
+                if (migrate(lastId, (String) row.get("tenant_id"), legacyFile)) {
+                    migrated++;
+                }
+            }
+        }
+        log.info("GED storage migration: {} document(s) moved to the content store, {} with a missing file", migrated, missing);
+        return new Result(migrated, missing);
+    }
+
+    private boolean migrate(long documentId, String tenantId, Path legacyFile) {
+        Boolean done = transactionTemplate.execute(status -> {
+            try (InputStream in = Files.newInputStream(legacyFile)) {
+                GedBlobStore.StoredBlob blob = blobStore.store(tenantId, in);
+                int updated = jdbcTemplate.update("UPDATE ged_documents SET content_hash = ?, file_path = ?, file_size = ? " +
+                        "WHERE id = ? AND content_hash IS NULL", blob.hash(), blob.relativePath(), blob.size(), documentId);
+                if (updated == 0) {
+                    status.setRollbackOnly(); // migrated concurrently
+                }
+                return updated > 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (Boolean.TRUE.equals(done)) {
+            try {
+                Files.deleteIfExists(legacyFile);
+            } catch (IOException e) {
+                log.warn("GED document {}: could not delete former file {}: {}", documentId, legacyFile, e.getMessage());
+            }
+        }
+        return Boolean.TRUE.equals(done);
+    }
+}
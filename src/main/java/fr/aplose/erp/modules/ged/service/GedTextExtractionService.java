@@ -0,0 +1,196 @@
+package fr.aplose.erp.modules.ged.service;
+
+import fr.aplose.erp.core.search.SearchDocumentType;
+import fr.aplose.erp.core.search.SearchIndexer;
+import fr.aplose.erp.modules.ged.config.GedProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts the text of GED contents on a bounded pool, once per content (documents sharing a content share
+ * its text in {@code ged_texts}), then queues the documents for the search index, which reads the text with them.
+ * Contents that could not be queued (full queue, restart) are picked up by a periodic sweep.
+ * Metrics: {@code ged.extraction.queue} (waiting contents), {@code ged.extraction.duration} (one timer per
+ * outcome: extracted, unsupported, failed) and {@code ged.extraction.rejected}.
+ */
+@Service
+@Slf4j
+public class GedTextExtractionService {
+
+    static final String STATUS_EXTRACTED = "EXTRACTED";
+    static final String STATUS_UNSUPPORTED = "UNSUPPORTED";
+    static final String STATUS_FAILED = "FAILED";
+
+    private static final int SWEEP_BATCH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GedBlobStore blobStore;
+    private final SearchIndexer searchIndexer;
+    private final GedProperties properties;
+
+    private final ThreadPoolExecutor workers;
+    private final Set<ContentKey> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Timer> timers;
+    private final Counter rejectedCounter;
+
+    public GedTextExtractionService(JdbcTemplate jdbcTemplate, GedBlobStore blobStore, SearchIndexer searchIndexer,
+                                    GedProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.searchIndexer = searchIndexer;
+        this.properties = properties;
+        AtomicInteger threads = new AtomicInteger();
+        int size = Math.max(1, properties.getExtractionWorkers());
+        this.workers = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getExtractionQueueCapacity())), r -> {
+                    Thread t = new Thread(r, "ged-extraction-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        Gauge.builder("ged.extraction.queue", workers, w -> w.getQueue().size())
+                .description("GED contents waiting for text extraction")
+                .register(meterRegistry);
+        this.timers = Map.of(
+                STATUS_EXTRACTED, extractionTimer(meterRegistry, "extracted"),
+                STATUS_UNSUPPORTED, extractionTimer(meterRegistry, "unsupported"),
+                STATUS_FAILED, extractionTimer(meterRegistry, "failed"));
+        this.rejectedCounter = Counter.builder("ged.extraction.rejected").register(meterRegistry);
+    }
+
+    private static Timer extractionTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("ged.extraction.duration").tag("outcome", outcome).register(meterRegistry);
+    }
+
+    /**
+     * Queues the extraction of a content, named by one of its documents (for its format); called after the upload
+     * has committed. Does nothing if the content is already extracted or queued.
+     */
+    public void submit(String tenantId, String contentHash, String fileName, String mimeType) {
+        ContentKey key = new ContentKey(tenantId, contentHash);
+        if (!inFlight.add(key)) return;
+        try {
+            workers.execute(() -> {
+                try {
+                    extract(key, fileName, mimeType);
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            rejectedCounter.increment();
+            log.debug("GED extraction queue full, content {} left to the next sweep", contentHash);
+        }
+    }
+
+    /** Queues contents of documents that have no extracted text yet (uploads rejected by a full queue, restarts). */
+    @Scheduled(fixedDelayString = "${app.ged.extraction-sweep-interval-ms:300000}", initialDelayString = "${app.ged.extraction-sweep-interval-ms:300000}")
+    public void sweep() {
+        int free = workers.getQueue().remainingCapacity();
+        if (free == 0) return;
+        List<Map<String, Object>> pending = jdbcTemplate.queryForList(
+                "SELECT d.tenant_id, d.content_hash, MIN(d.file_name) AS file_name, MIN(d.mime_type) AS mime_type " +
+                "FROM ged_documents d LEFT JOIN ged_texts x ON x.tenant_id = d.tenant_id AND x.content_hash = d.content_hash " +
+                "WHERE d.content_hash IS NOT NULL AND x.content_hash IS NULL " +
+                "GROUP BY d.tenant_id, d.content_hash LIMIT " + Math.min(free, SWEEP_BATCH));
+        for (Map<String, Object> row : pending) {
+            submit((String) row.get("tenant_id"), ((String) row.get("content_hash")).trim(),
+                    (String) row.get("file_name"), (String) row.get("mime_type"));
+        }
+        if (!pending.isEmpty()) {
+            log.info("Queued {} GED content(s) for text extraction", pending.size());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void extractMissing() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.warn("Could not queue GED contents for text extraction: {}", e.getMessage());
+        }
+    }
+
+    private void extract(ContentKey key, String fileName, String mimeType) {
+        if (isExtracted(key)) return;
+        long start = System.nanoTime();
+        String status;
+        String text = null;
+        String error = null;
+        Optional<GedTextExtractor.Format> format = GedTextExtractor.format(fileName, mimeType);
+        try {
+            Path file = blobStore.path(key.tenantId(), key.contentHash());
+            if (format.isEmpty() || Files.size(file) > properties.getExtractionMaxFileSize().toBytes()) {
+                status = STATUS_UNSUPPORTED;
+            } else {
+                text = GedTextExtractor.extract(file, format.get(), properties.getExtractionMaxChars());
+                status = STATUS_EXTRACTED;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Damaged or encrypted files: recorded so they are not retried, the document stays searchable by name
+            status = STATUS_FAILED;
+            error = abbreviate(e.getClass().getSimpleName() + ": " + e.getMessage());
+            log.info("Could not extract the text of GED content {} ({}): {}", key.contentHash(), fileName, error);
+        }
+        timers.get(status).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!save(key, status, text, error)) return;
+        if (text != null && !text.isBlank()) {
+            jdbcTemplate.queryForList("SELECT id FROM ged_documents WHERE tenant_id = ? AND content_hash = ?",
+                            Long.class, key.tenantId(), key.contentHash())
+                    .forEach(id -> searchIndexer.enqueue(key.tenantId(), SearchDocumentType.GED_DOCUMENT, id));
+        }
+    }
+
+    private boolean isExtracted(ContentKey key) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ged_texts WHERE tenant_id = ? AND content_hash = ?",
+                Integer.class, key.tenantId(), key.contentHash()) > 0;
+    }
+
+    private boolean save(ContentKey key, String status, String text, String error) {
+        try {
+            jdbcTemplate.update("INSERT INTO ged_texts (tenant_id, content_hash, status, content, error) VALUES (?, ?, ?, ?, ?) " +
+                            "ON DUPLICATE KEY UPDATE status = ?, content = ?, error = ?",
+                    key.tenantId(), key.contentHash(), status, text, error, status, text, error);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // The content was purged meanwhile
+            return false;
+        }
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() > 500 ? s.substring(0, 500) : s;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private record ContentKey(String tenantId, String contentHash) {}
+}
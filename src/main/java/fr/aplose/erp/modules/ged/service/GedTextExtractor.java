@@ -0,0 +1,116 @@
+package fr.aplose.erp.modules.ged.service;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import org.apache.poi.ooxml.extractor.POIXMLTextExtractor;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.extractor.XSSFExcelExtractor;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Plain text of a GED file, for the full-text search: PDF (OpenPDF), DOCX and XLSX (POI) and text files.
+ * The text is truncated to {@code maxChars}; other formats have no text.
+ */
+final class GedTextExtractor {
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of("txt", "csv", "md", "log", "xml", "json", "html", "htm");
+
+    enum Format { PDF, DOCX, XLSX, TEXT }
+
+    private GedTextExtractor() {
+    }
+
+    /** Format of a file from its name, then its MIME type; empty if its text cannot be extracted. */
+    static Optional<Format> format(String fileName, String mimeType) {
+        String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+        String extension = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : "";
+        String mime = mimeType != null ? mimeType.toLowerCase(Locale.ROOT) : "";
+        if (extension.equals("pdf") || mime.equals("application/pdf")) return Optional.of(Format.PDF);
+        if (extension.equals("docx") || mime.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document")) {
+            return Optional.of(Format.DOCX);
+        }
+        if (extension.equals("xlsx") || mime.equals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")) {
+            return Optional.of(Format.XLSX);
+        }
+        if (TEXT_EXTENSIONS.contains(extension) || mime.startsWith("text/")) return Optional.of(Format.TEXT);
+        return Optional.empty();
+    }
+
+    static String extract(Path file, Format format, int maxChars) throws IOException {
+        return switch (format) {
+            case PDF -> pdf(file, maxChars);
+            case DOCX -> office(file, pkg -> new XWPFWordExtractor(new XWPFDocument(pkg)), maxChars);
+            case XLSX -> office(file, pkg -> new XSSFExcelExtractor(new XSSFWorkbook(pkg)), maxChars);
+            case TEXT -> text(file, maxChars);
+        };
+    }
+
+    private static String pdf(Path file, int maxChars) throws IOException {
+        PdfReader reader = new PdfReader(file.toString());
+        try {
+            PdfTextExtractor extractor = new PdfTextExtractor(reader);
+            StringBuilder text = new StringBuilder();
+            for (int page = 1; page <= reader.getNumberOfPages() && text.length() < maxChars; page++) {
+                text.append(extractor.getTextFromPage(page)).append('\n');
+            }
+            return truncate(text.toString(), maxChars);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String text(Path file, int maxChars) throws IOException {
+        // Malformed bytes are replaced, so files in another encoding still yield their ASCII words
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[Math.min(maxChars, 8192)];
+            StringBuilder text = new StringBuilder();
+            int read;
+            while (text.length() < maxChars && (read = reader.read(buffer, 0, Math.min(buffer.length, maxChars - text.length()))) > 0) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        }
+    }
+
+    /** Reads the package from the file, without loading it in memory; closing the extractor releases it. */
+    private static String office(Path file, OfficeExtractor factory, int maxChars) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Not an Office Open XML file", e);
+        }
+        POIXMLTextExtractor extractor;
+        try {
+            extractor = factory.open(pkg);
+        } catch (IOException | RuntimeException e) {
+            pkg.revert();
+            throw e;
+        }
+        try (extractor) {
+            return truncate(extractor.getText(), maxChars);
+        }
+    }
+
+    private interface OfficeExtractor {
+        POIXMLTextExtractor open(OPCPackage pkg) throws IOException;
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() > maxChars ? text.substring(0, maxChars) : text;
+    }
+}
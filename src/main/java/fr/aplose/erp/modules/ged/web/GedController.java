@@ -2,6 +2,8 @@ package fr.aplose.erp.modules.ged.web;
 
 import fr.aplose.erp.modules.ged.service.GedService;
 import fr.aplose.erp.security.service.ErpUserDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.util.List;
 
 @Controller
@@ -22,6 +25,7 @@ import java.util.List;
 public class GedController {
 
     private final GedService gedService;
+    private final GedDownloadResponder downloadResponder;
 
     @GetMapping
     public String index(@RequestParam(defaultValue = "") String q,
@@ -60,6 +64,17 @@ public class GedController {
         return "redirect:/ged";
     }
 
+    /** Target of the global search hits. */
+    @GetMapping("/{id}")
+    public String show(@PathVariable Long id) {
+        return "redirect:/ged/" + id + "/download";
+    }
+
+    @GetMapping("/{id}/download")
+    public void download(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        downloadResponder.send(gedService.findById(id), request, response);
+    }
+
     @PostMapping("/{id}/delete")
     @PreAuthorize("hasAuthority('GED_DELETE')")
     public String delete(@PathVariable Long id, RedirectAttributes redirectAttributes) {
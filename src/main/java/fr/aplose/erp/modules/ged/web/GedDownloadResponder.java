@@ -0,0 +1,110 @@
+package fr.aplose.erp.modules.ged.web;
+
+import fr.aplose.erp.modules.ged.entity.GedDocument;
+import fr.aplose.erp.modules.ged.service.GedService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a GED document to the response with {@link FileChannel#transferTo}, so the file is streamed through the
+ * servlet output stream's buffer rather than read into memory (the servlet API offers no zero-copy path to the
+ * socket). The content hash is a strong ETag, so revalidations ({@code If-None-Match}) get a 304, and a single
+ * byte range ({@code Range}, honoured under {@code If-Range}) gets a 206 so interrupted downloads and PDF viewers
+ * fetch only what they need. Multiple ranges are answered with the whole file, as HTTP allows.
+ */
+@Component
+@RequiredArgsConstructor
+public class GedDownloadResponder {
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private final GedService gedService;
+
+    /** Caller must verify access rights. */
+    public void send(GedDocument doc, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = gedService.getFile(doc);
+        String etag = doc.getContentHash() != null ? "\"" + doc.getContentHash() + "\"" : null;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            Matcher m = range != null ? SINGLE_RANGE.matcher(range.trim()) : null;
+            boolean partial = m != null && m.matches() && !(m.group(1).isEmpty() && m.group(2).isEmpty())
+                    && (ifRange == null || ifRange.equals(etag));
+            if (partial) {
+                if (m.group(1).isEmpty()) {
+                    start = Math.max(0, length - position(m.group(2)));
+                } else {
+                    start = position(m.group(1));
+                    if (!m.group(2).isEmpty()) end = Math.min(end, position(m.group(2)));
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+
+            long count = end - start + 1;
+            String filename = URLEncoder.encode(doc.getFileName(), StandardCharsets.UTF_8).replace("+", "%20");
+            response.setContentType(doc.getMimeType() != null ? doc.getMimeType() : "application/octet-stream");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"" + doc.getFileName().replace("\"", "") + "\"; filename*=UTF-8''" + filename);
+            response.setContentLengthLong(Math.max(count, 0));
+            if (count <= 0 || "HEAD".equals(request.getMethod())) return;
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, out);
+                if (sent <= 0) break;
+                position += sent;
+                count -= sent;
+            }
+            response.flushBuffer();
+        }
+    }
+
+    /** Byte position of a range; positions too large for a long are beyond any file, hence clamped. */
+    private static long position(String digits) {
+        return digits.length() > 18 ? Long.MAX_VALUE : Long.parseLong(digits);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
@@ -1,15 +1,19 @@
 package fr.aplose.erp.modules.leave.repository;
 
 import fr.aplose.erp.modules.leave.entity.LeaveRequest;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LeaveRequestRepository extends JpaRepository<LeaveRequest, Long> {
@@ -34,4 +38,11 @@ public interface LeaveRequestRepository extends JpaRepository<LeaveRequest, Long
                                                 @Param("fromDate") LocalDate fromDate,
                                                 @Param("toDate") LocalDate toDate,
                                                 Pageable pageable);
+
+    /** Cursor over leave requests for exports (all rows, optional status); must be consumed inside a transaction and closed. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT lr FROM LeaveRequest lr LEFT JOIN FETCH lr.requester LEFT JOIN FETCH lr.leaveType " +
+           "WHERE lr.tenantId = :tid AND (:status IS NULL OR lr.status = :status) " +
+           "ORDER BY lr.createdAt DESC")
+    Stream<LeaveRequest> streamForExport(@Param("tid") String tenantId, @Param("status") String status);
 }
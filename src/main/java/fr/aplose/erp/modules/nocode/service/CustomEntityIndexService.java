@@ -0,0 +1,506 @@
+package fr.aplose.erp.modules.nocode.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.modules.nocode.entity.CustomEntityData;
+import fr.aplose.erp.modules.nocode.entity.CustomEntityDefinition;
+import fr.aplose.erp.modules.nocode.repository.CustomEntityDefinitionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Maintains {@code custom_entity_field_index}: for every record, one row per field of its definition's
+ * {@code fieldsSchema}, with the value stored in the column of the field's type (text, number or date).
+ * No-code lists filter, sort and page (by keyset) on this table and only parse the payloads of the page shown.
+ * <p>
+ * Index rows belong to a version. Searches read the definition's active version, built from the schema stored
+ * next to it; when the definition's {@code fieldsSchema} differs (checked at startup and before searching), a new
+ * version is built in the background, record writes going to both versions meanwhile, and searches switch to it
+ * once complete. One node builds a definition at a time: the build holds a heartbeat, and one that stops beating
+ * is taken over.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CustomEntityIndexService {
+
+    static final int MAX_STRING_LENGTH = 255;
+    private static final int REBUILD_BATCH = 1000;
+    private static final int PURGE_BATCH = 1000;
+    private static final BigDecimal MAX_NUMBER = new BigDecimal("1E15");
+    private static final Duration STALE_BUILD = Duration.ofMinutes(10);
+    /** How far before the start of a build records are re-read once it has scanned them all (long write transactions). */
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO custom_entity_field_index (data_id, index_version, field_code, tenant_id, entity_definition_id, " +
+            "value_string, value_number, value_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE value_string = ?, value_number = ?, value_date = ?";
+    private static final String STATE_SQL =
+            "SELECT fields_schema, index_version, indexed_fields_schema, indexed_schema_hash, " +
+            "building_index_version, building_fields_schema, building_heartbeat_at FROM custom_entity_definitions WHERE id = ?";
+    private static final String CLAIM_SQL =
+            "UPDATE custom_entity_definitions SET " +
+            "building_index_version = GREATEST(COALESCE(index_version, 0), COALESCE(building_index_version, 0)) + 1, " +
+            "building_fields_schema = fields_schema, building_heartbeat_at = ? " +
+            "WHERE id = ? AND (building_index_version IS NULL OR building_heartbeat_at < ?)";
+    private static final String HEARTBEAT_SQL =
+            "UPDATE custom_entity_definitions SET building_heartbeat_at = ? WHERE id = ? AND building_index_version = ?";
+    private static final String SWAP_SQL =
+            "UPDATE custom_entity_definitions SET index_version = building_index_version, " +
+            "indexed_fields_schema = building_fields_schema, indexed_schema_hash = ?, " +
+            "building_index_version = NULL, building_fields_schema = NULL, building_heartbeat_at = NULL " +
+            "WHERE id = ? AND building_index_version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomEntityDefinitionRepository definitionRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Parsed fields by schema JSON (a definition has at most two in use: the active one and the one being built). */
+    private final Cache<String, Map<String, FieldType>> schemas = Caffeine.newBuilder().maximumSize(500).build();
+    private final Set<Long> rebuilding = ConcurrentHashMap.newKeySet();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("custom-entity-index-rebuild").daemon().factory());
+
+    /** Writes the index rows of a record, for the active version and the one being built, in the caller's transaction. */
+    @Transactional
+    public void index(CustomEntityData data, Map<String, Object> payload) {
+        Long definitionId = data.getEntityDefinition().getId();
+        IndexState state = state(definitionId);
+        List<Object[]> rows = new ArrayList<>();
+        if (state.version() != null) {
+            rows.addAll(rows(data.getId(), state.version(), data.getTenantId(), definitionId, fields(state.schema()), payload));
+        }
+        if (state.buildingVersion() != null) {
+            rows.addAll(rows(data.getId(), state.buildingVersion(), data.getTenantId(), definitionId,
+                    fields(state.buildingSchema()), payload));
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    /**
+     * The version searches of the definition read and its fields, starting a rebuild when the definition's schema
+     * changed since. Resolved once per list request and passed to {@link #search}.
+     */
+    public IndexView view(CustomEntityDefinition def) {
+        IndexState state = state(def.getId());
+        refreshIfStale(def.getId(), state);
+        return state.version() != null ? new IndexView(state.version(), fields(state.schema())) : new IndexView(null, Map.of());
+    }
+
+    /**
+     * Ids of the tenant's records of a definition matching the query, in order, for the page following the
+     * {@code after} cursor (the first page when null or not a cursor of this list). Filters and sort fields
+     * that are not in the view's fields are ignored, as are all of them before a first version is built.
+     */
+    public IdPage search(String tenantId, CustomEntityDefinition def, IndexView view, CustomEntityQuery query,
+                         String after, int size) {
+        Integer version = view.version();
+        Map<String, FieldType> fields = view.fields();
+
+        StringBuilder joins = new StringBuilder();
+        List<Object> joinArgs = new ArrayList<>();
+        int i = 0;
+        for (CustomEntityQuery.Filter filter : query.filters()) {
+            FieldType type = fields.get(filter.field());
+            Object value = type != null ? filterValue(type, filter) : null;
+            if (value == null) continue;
+            String alias = "f" + i++;
+            joins.append(" JOIN custom_entity_field_index ").append(alias)
+                    .append(" ON ").append(alias).append(".data_id = d.id")
+                    .append(" AND ").append(alias).append(".tenant_id = ? AND ").append(alias).append(".entity_definition_id = ?")
+                    .append(" AND ").append(alias).append(".index_version = ? AND ").append(alias).append(".field_code = ?")
+                    .append(" AND ").append(alias).append('.').append(type.column).append(operator(filter.op())).append('?');
+            joinArgs.add(tenantId);
+            joinArgs.add(def.getId());
+            joinArgs.add(version);
+            joinArgs.add(filter.field());
+            joinArgs.add(value);
+        }
+
+        String where = " WHERE d.tenant_id = ? AND d.entity_definition_id = ?";
+        List<Object> countArgs = new ArrayList<>(joinArgs);
+        countArgs.add(tenantId);
+        countArgs.add(def.getId());
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM custom_entity_data d" + joins + where,
+                Long.class, countArgs.toArray());
+        if (total == null || total == 0) return new IdPage(List.of(), 0, null);
+
+        // Without a sort field: most recently updated first
+        FieldType sortType = query.isSorted() ? fields.get(query.sortField()) : null;
+        String sortColumn = sortType != null ? "s." + sortType.column : "d.updated_at";
+        boolean ascending = sortType != null && query.ascending();
+        StringBuilder sql = new StringBuilder("SELECT d.id, ").append(sortColumn).append(" FROM custom_entity_data d");
+        List<Object> args = new ArrayList<>();
+        if (sortType != null) {
+            sql.append(" JOIN custom_entity_field_index s ON s.data_id = d.id AND s.tenant_id = ?")
+                    .append(" AND s.entity_definition_id = ? AND s.index_version = ? AND s.field_code = ?");
+            args.add(tenantId);
+            args.add(def.getId());
+            args.add(version);
+            args.add(query.sortField());
+        }
+        sql.append(joins).append(where);
+        args.addAll(joinArgs);
+        args.add(tenantId);
+        args.add(def.getId());
+        Cursor cursor = Cursor.decode(after, sortType);
+        if (cursor != null) {
+            appendKeyset(sql, args, sortColumn, ascending, cursor);
+        }
+        String dir = ascending ? " ASC" : " DESC";
+        sql.append(" ORDER BY ").append(sortColumn).append(dir).append(", d.id").append(dir)
+                .append(" LIMIT ?");
+        args.add(size + 1);
+
+        List<Cursor> rows = jdbcTemplate.query(sql.toString(),
+                (rs, n) -> new Cursor(rs.getLong(1), sortValue(sortType, rs.getObject(2))), args.toArray());
+        boolean more = rows.size() > size;
+        List<Cursor> page = more ? rows.subList(0, size) : rows;
+        return new IdPage(page.stream().map(Cursor::id).toList(), total, more ? page.getLast().encode() : null);
+    }
+
+    /** Whether searches read a version built from the definition's current schema. */
+    public boolean isIndexed(Long definitionId) {
+        return state(definitionId).upToDate();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexAllDefinitions() {
+        for (CustomEntityDefinition def : definitionRepository.findAll()) {
+            try {
+                refreshIfStale(def.getId(), state(def.getId()));
+            } catch (RuntimeException e) {
+                log.warn("Could not index custom entity definition {}: {}", def.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /** Starts building a new version of the definition's index in the background; false if one is already queued or running here. */
+    public boolean rebuildAsync(Long definitionId) {
+        if (!rebuilding.add(definitionId)) return false;
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild(definitionId);
+            } catch (RuntimeException e) {
+                log.warn("Index rebuild of custom entity definition {} failed: {}", definitionId, e.getMessage());
+            } finally {
+                rebuilding.remove(definitionId);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRebuilding(Long definitionId) {
+        return rebuilding.contains(definitionId);
+    }
+
+    private void refreshIfStale(Long definitionId, IndexState state) {
+        if (!state.upToDate() && !state.buildLive()) {
+            rebuildAsync(definitionId);
+        }
+    }
+
+    /**
+     * Builds a new version from the definition's current schema by id ranges, committing batch by batch, then
+     * re-reads the records updated since shortly before it started (written by transactions that saw no build
+     * yet), makes it the active version and purges the older ones. Does nothing if another node holds the build.
+     */
+    void rebuild(Long definitionId) {
+        long start = System.currentTimeMillis();
+        if (state(definitionId).upToDate()) return;
+        LocalDateTime startedAt = LocalDateTime.now();
+        if (jdbcTemplate.update(CLAIM_SQL, startedAt, definitionId, startedAt.minus(STALE_BUILD)) == 0) return;
+        IndexState state = state(definitionId);
+        int version = state.buildingVersion();
+        Map<String, FieldType> fields = fields(state.buildingSchema());
+
+        int count = reindex(definitionId, version, fields, null);
+        if (count >= 0 && reindex(definitionId, version, fields, startedAt.minus(CATCH_UP_MARGIN)) >= 0
+                && jdbcTemplate.update(SWAP_SQL, sha256(text(state.buildingSchema())), definitionId, version) == 1) {
+            purgeBefore(definitionId, version);
+            log.info("Indexed {} record(s) of custom entity definition {} (version {}) in {} ms",
+                    count, definitionId, version, System.currentTimeMillis() - start);
+        } else {
+            log.info("Index build {} of custom entity definition {} was taken over, abandoning it", version, definitionId);
+        }
+    }
+
+    /** Writes the version's rows of the definition's records (updated since the given time, if any); -1 if the build was taken over. */
+    private int reindex(Long definitionId, int version, Map<String, FieldType> fields, LocalDateTime updatedSince) {
+        String sql = "SELECT id, tenant_id, payload FROM custom_entity_data WHERE entity_definition_id = ? AND id > ?"
+                + (updatedSince != null ? " AND updated_at >= ?" : "") + " ORDER BY id LIMIT " + REBUILD_BATCH;
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>();
+            long[] maxId = {lastId};
+            int[] read = {0};
+            Object[] args = updatedSince != null
+                    ? new Object[]{definitionId, lastId, updatedSince}
+                    : new Object[]{definitionId, lastId};
+            jdbcTemplate.query(sql, rs -> {
+                long id = rs.getLong(1);
+                rows.addAll(rows(id, version, rs.getString(2), definitionId, fields, parse(rs.getString(3))));
+                maxId[0] = id;
+                read[0]++;
+            }, args);
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+            }
+            if (jdbcTemplate.update(HEARTBEAT_SQL, LocalDateTime.now(), definitionId, version) == 0) return -1;
+            count += read[0];
+            if (read[0] < REBUILD_BATCH) break;
+            lastId = maxId[0];
+        }
+        return count;
+    }
+
+    /** Deletes the rows of versions older than the given one, a page of records at a time. */
+    private void purgeBefore(Long definitionId, int version) {
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList("SELECT DISTINCT data_id FROM custom_entity_field_index " +
+                    "WHERE entity_definition_id = ? AND index_version < ? LIMIT " + PURGE_BATCH, Long.class, definitionId, version);
+            if (ids.isEmpty()) return;
+            List<Object> args = new ArrayList<>(ids.size() + 2);
+            args.add(definitionId);
+            args.add(version);
+            args.addAll(ids);
+            jdbcTemplate.update("DELETE FROM custom_entity_field_index WHERE entity_definition_id = ? AND index_version < ? " +
+                    "AND data_id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")", args.toArray());
+            if (ids.size() < PURGE_BATCH) return;
+        }
+    }
+
+    /** {@code (v, id) > cursor} in list order, NULL values sorting lowest as in MariaDB (and H2 in MySQL mode). */
+    private static void appendKeyset(StringBuilder sql, List<Object> args, String column, boolean ascending, Cursor cursor) {
+        String cmp = ascending ? " > ?" : " < ?";
+        if (cursor.value() == null) {
+            sql.append(ascending
+                    ? " AND ((" + column + " IS NULL AND d.id" + cmp + ") OR " + column + " IS NOT NULL)"
+                    : " AND " + column + " IS NULL AND d.id" + cmp);
+            args.add(cursor.id());
+        } else {
+            sql.append(" AND (").append(column).append(cmp).append(" OR (").append(column).append(" = ? AND d.id").append(cmp).append(')')
+                    .append(ascending ? ")" : " OR " + column + " IS NULL)");
+            args.add(cursor.value());
+            args.add(cursor.value());
+            args.add(cursor.id());
+        }
+    }
+
+    /** Sort value as read from the database or a cursor: the typed column, or {@code updated_at} without a sort field. */
+    private static Object sortValue(FieldType sortType, Object raw) {
+        if (raw == null) return null;
+        if (sortType == null) {
+            return raw instanceof Timestamp ts ? ts.toLocalDateTime() : LocalDateTime.parse(raw.toString());
+        }
+        return switch (sortType) {
+            case NUMBER -> raw instanceof BigDecimal n ? n : new BigDecimal(raw.toString());
+            case DATE -> raw instanceof Date date ? date.toLocalDate() : LocalDate.parse(raw.toString());
+            case STRING -> raw.toString();
+        };
+    }
+
+    private IndexState state(Long definitionId) {
+        return jdbcTemplate.queryForObject(STATE_SQL, (rs, n) -> new IndexState(
+                rs.getString(1), rs.getObject(2, Integer.class), rs.getString(3), rs.getString(4),
+                rs.getObject(5, Integer.class), rs.getString(6), rs.getObject(7, LocalDateTime.class)), definitionId);
+    }
+
+    private List<Object[]> rows(Long dataId, int version, String tenantId, Long definitionId, Map<String, FieldType> fields,
+                                Map<String, Object> payload) {
+        List<Object[]> rows = new ArrayList<>(fields.size());
+        for (Map.Entry<String, FieldType> field : fields.entrySet()) {
+            Object raw = payload.get(field.getKey());
+            String text = raw != null ? raw.toString().trim() : null;
+            if (text != null && text.isEmpty()) text = null;
+            String valueString = null;
+            BigDecimal valueNumber = null;
+            LocalDate valueDate = null;
+            switch (field.getValue()) {
+                case NUMBER -> valueNumber = parseNumber(text);
+                case DATE -> valueDate = parseDate(text);
+                case STRING -> valueString = text != null && text.length() > MAX_STRING_LENGTH ? text.substring(0, MAX_STRING_LENGTH) : text;
+            }
+            rows.add(new Object[]{dataId, version, field.getKey(), tenantId, definitionId, valueString, valueNumber, valueDate,
+                    valueString, valueNumber, valueDate});
+        }
+        return rows;
+    }
+
+    private static Object filterValue(FieldType type, CustomEntityQuery.Filter filter) {
+        String text = filter.value() != null ? filter.value().trim() : "";
+        if (text.isEmpty()) return null;
+        return switch (type) {
+            case NUMBER -> filter.op() == CustomEntityQuery.Op.PREFIX ? null : parseNumber(text);
+            case DATE -> filter.op() == CustomEntityQuery.Op.PREFIX ? null : parseDate(text);
+            case STRING -> filter.op() == CustomEntityQuery.Op.PREFIX
+                    ? text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%"
+                    : text;
+        };
+    }
+
+    private static String operator(CustomEntityQuery.Op op) {
+        return switch (op) {
+            case PREFIX -> " LIKE ";
+            case EQ -> " = ";
+            case GTE -> " >= ";
+            case LTE -> " <= ";
+        };
+    }
+
+    private static BigDecimal parseNumber(String text) {
+        if (text == null) return null;
+        try {
+            BigDecimal n = new BigDecimal(text.replace(',', '.'));
+            return n.abs().compareTo(MAX_NUMBER) < 0 ? n : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate parseDate(String text) {
+        if (text == null) return null;
+        try {
+            return LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Map<String, FieldType> fields(String fieldsSchema) {
+        return schemas.get(text(fieldsSchema), this::parseFields);
+    }
+
+    private static String text(String fieldsSchema) {
+        return fieldsSchema != null ? fieldsSchema : "";
+    }
+
+    private Map<String, FieldType> parseFields(String fieldsSchema) {
+        Map<String, FieldType> fields = new LinkedHashMap<>();
+        if (fieldsSchema == null || fieldsSchema.isBlank()) return fields;
+        try {
+            List<Map<String, Object>> specs = objectMapper.readValue(fieldsSchema, new TypeReference<>() {});
+            for (Map<String, Object> spec : specs) {
+                Object name = spec.get("name");
+                if (name != null) fields.put(name.toString(), FieldType.of((String) spec.get("type")));
+            }
+        } catch (Exception e) {
+            log.warn("Invalid custom entity fields schema: {}", e.getMessage());
+        }
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse(String payload) {
+        if (payload == null || payload.isBlank()) return Map.of();
+        try {
+            return objectMapper.readValue(payload, Map.class);
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Indexed column of a field, from its {@code type} in the schema ({@code string}, {@code text}, {@code number}, {@code date}). */
+    public enum FieldType {
+        STRING("value_string"), NUMBER("value_number"), DATE("value_date");
+
+        private final String column;
+
+        FieldType(String column) {
+            this.column = column;
+        }
+
+        static FieldType of(String type) {
+            if ("number".equals(type)) return NUMBER;
+            if ("date".equals(type)) return DATE;
+            return STRING;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /** Ids of one page of a list, the list's total and the cursor of the next page (null on the last one). */
+    public record IdPage(List<Long> ids, long total, String next) {}
+
+    /** Active version of a definition's index (null before the first build) and its fields, in schema order. */
+    public record IndexView(Integer version, Map<String, FieldType> fields) {}
+
+    private record IndexState(String currentSchema, Integer version, String schema, String hash,
+                              Integer buildingVersion, String buildingSchema, LocalDateTime heartbeatAt) {
+
+        boolean upToDate() {
+            return version != null && sha256(text(currentSchema)).equals(hash);
+        }
+
+        boolean buildLive() {
+            return buildingVersion != null && heartbeatAt != null && heartbeatAt.isAfter(LocalDateTime.now().minus(STALE_BUILD));
+        }
+    }
+
+    /** Position after a row: its id and sort value, encoded URL-safe as {@code id} or {@code id:value}. */
+    private record Cursor(long id, Object value) {
+
+        String encode() {
+            String text = value != null ? id + ":" + value : Long.toString(id);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String after, FieldType sortType) {
+            if (after == null || after.isBlank()) return null;
+            try {
+                String text = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+                int sep = text.indexOf(':');
+                return sep < 0
+                        ? new Cursor(Long.parseLong(text), null)
+                        : new Cursor(Long.parseLong(text.substring(0, sep)), sortValue(sortType, text.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package fr.aplose.erp.modules.nocode.service;
+
+import fr.aplose.erp.modules.nocode.entity.CustomEntityData;
+
+import java.util.List;
+
+/**
+ * One page of a no-code list: its records, the number of records matching the list's filters and the cursor
+ * of the next page ({@code null} on the last page).
+ */
+public record CustomEntityPage(List<CustomEntityData> content, long total, String next) {
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,26 @@
+package fr.aplose.erp.modules.nocode.service;
+
+import java.util.List;
+
+/**
+ * Filters and sort of a no-code list, on fields of the definition's {@code fieldsSchema}.
+ * Without a sort field, records are listed most recently updated first.
+ */
+public record CustomEntityQuery(List<Filter> filters, String sortField, boolean ascending) {
+
+    public static CustomEntityQuery unfiltered() {
+        return new CustomEntityQuery(List.of(), null, false);
+    }
+
+    public boolean isSorted() {
+        return sortField != null && !sortField.isBlank();
+    }
+
+    /**
+     * {@code PREFIX} applies to text fields; {@code EQ}, {@code GTE} and {@code LTE} compare numbers and dates
+     * (and text fields exactly).
+     */
+    public enum Op { PREFIX, EQ, GTE, LTE }
+
+    public record Filter(String field, Op op, String value) {}
+}
@@ -15,7 +15,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +27,7 @@ public class CustomEntityService {
     private final CustomEntityDataRepository dataRepository;
     private final CustomEntityDefinitionRepository definitionRepository;
     private final ModuleDefinitionRepository moduleDefinitionRepository;
+    private final CustomEntityIndexService indexService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public Optional<CustomEntityDefinition> findDefinitionByModuleAndObjectCode(String moduleCode, String objectCode) {
@@ -39,6 +43,35 @@ public class CustomEntityService {
         return dataRepository.findByTenantIdAndEntityDefinitionId(tenantId, entityDefinitionId, pageable);
     }
 
+    /**
+     * The page of records matching the query that follows the {@code after} cursor (the first page when null),
+     * filtered and sorted through the field index; only the records of the page are loaded.
+     */
+    public CustomEntityPage search(String tenantId, CustomEntityDefinition definition, CustomEntityQuery query, String after, int size) {
+        return search(tenantId, definition, indexService.view(definition), query, after, size);
+    }
+
+    /** Like {@link #search(String, CustomEntityDefinition, CustomEntityQuery, String, int)}, over an index view already resolved. */
+    public CustomEntityPage search(String tenantId, CustomEntityDefinition definition, CustomEntityIndexService.IndexView index,
+                                   CustomEntityQuery query, String after, int size) {
+        CustomEntityIndexService.IdPage ids = indexService.search(tenantId, definition, index, query, after, size);
+        if (ids.ids().isEmpty()) return new CustomEntityPage(List.of(), ids.total(), null);
+        Map<Long, CustomEntityData> byId = dataRepository.findAllById(ids.ids()).stream()
+                .collect(Collectors.toMap(CustomEntityData::getId, Function.identity()));
+        List<CustomEntityData> content = ids.ids().stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new CustomEntityPage(content, ids.total(), ids.next());
+    }
+
+    /** Version of the field index the definition's lists read, with its filterable and sortable fields. */
+    public CustomEntityIndexService.IndexView indexView(CustomEntityDefinition definition) {
+        return indexService.view(definition);
+    }
+
+    /** Filterable and sortable fields of the definition, with their indexed type. */
+    public Map<String, CustomEntityIndexService.FieldType> fieldTypes(CustomEntityDefinition definition) {
+        return indexService.view(definition).fields();
+    }
+
     public List<CustomEntityData> findAll(String tenantId, Long entityDefinitionId, int limit) {
         return dataRepository.findByTenantIdAndEntityDefinitionIdOrderByUpdatedAtDesc(
                 tenantId, entityDefinitionId, Pageable.ofSize(limit));
@@ -57,7 +90,9 @@ public class CustomEntityService {
         data.setTenantId(tenantId);
         data.setEntityDefinition(definitionRepository.getReferenceById(entityDefinitionId));
         data.setPayload(toJson(payloadMap));
-        return dataRepository.save(data);
+        CustomEntityData saved = dataRepository.save(data);
+        indexService.index(saved, payloadMap != null ? payloadMap : Map.of());
+        return saved;
     }
 
     @Transactional
@@ -65,13 +100,16 @@ public class CustomEntityService {
         CustomEntityData data = dataRepository.findById(id).orElseThrow();
         if (!tenantId.equals(data.getTenantId())) throw new SecurityException("Tenant mismatch");
         data.setPayload(toJson(payloadMap));
-        return dataRepository.save(data);
+        CustomEntityData saved = dataRepository.save(data);
+        indexService.index(saved, payloadMap != null ? payloadMap : Map.of());
+        return saved;
     }
 
     @Transactional
     public void delete(Long id, String tenantId) {
         CustomEntityData data = dataRepository.findById(id).orElseThrow();
         if (!tenantId.equals(data.getTenantId())) throw new SecurityException("Tenant mismatch");
+        // Index rows are removed by the foreign key (ON DELETE CASCADE)
         dataRepository.delete(data);
     }
 
@@ -4,6 +4,7 @@ import fr.aplose.erp.modules.nocode.entity.ModuleDefinition;
 import fr.aplose.erp.modules.nocode.repository.ModuleDefinitionRepository;
 import fr.aplose.erp.tenant.entity.TenantModule;
 import fr.aplose.erp.tenant.repository.TenantModuleRepository;
+import fr.aplose.erp.tenant.service.TenantModuleService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +18,7 @@ public class ModuleDefinitionService {
 
     private final ModuleDefinitionRepository moduleDefinitionRepository;
     private final TenantModuleRepository tenantModuleRepository;
+    private final TenantModuleService tenantModuleService;
 
     public List<ModuleDefinition> findAllPublic() {
         return moduleDefinitionRepository.findByIsPublicTrueOrderByNameAsc();
@@ -44,6 +46,7 @@ public class ModuleDefinitionService {
         tm.setEnabled(true);
         tm.setModuleDefinition(md);
         tenantModuleRepository.save(tm);
+        tenantModuleService.invalidate(tenantId);
     }
 
     public boolean isActivatedForTenant(String tenantId, Long moduleDefinitionId) {
@@ -4,6 +4,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.aplose.erp.modules.nocode.entity.CustomEntityData;
 import fr.aplose.erp.modules.nocode.entity.CustomEntityDefinition;
+import fr.aplose.erp.modules.nocode.service.CustomEntityIndexService;
+import fr.aplose.erp.modules.nocode.service.CustomEntityPage;
+import fr.aplose.erp.modules.nocode.service.CustomEntityQuery;
 import fr.aplose.erp.modules.nocode.service.CustomEntityService;
 import fr.aplose.erp.tenant.context.TenantContext;
 import fr.aplose.erp.tenant.service.TenantModuleService;
@@ -14,6 +17,10 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,10 +34,16 @@ public class CustomEntityController {
     private final CustomEntityService customEntityService;
     private final TenantModuleService tenantModuleService;
     private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int PAGE_SIZE = 25;
+    private static final String FILTER_PREFIX = "f_";
 
     @GetMapping
     public String list(@PathVariable String moduleCode,
                        @PathVariable String objectCode,
+                       @RequestParam Map<String, String> params,
+                       @RequestParam(required = false) String after,
+                       @RequestParam(required = false) String sort,
+                       @RequestParam(defaultValue = "asc") String dir,
                        Model model,
                        RedirectAttributes ra) {
         String tenantId = TenantContext.getCurrentTenantId();
@@ -44,15 +57,28 @@ public class CustomEntityController {
             return "redirect:/dashboard";
         }
         CustomEntityDefinition def = defOpt.get();
-        List<CustomEntityData> items = customEntityService.findAll(tenantId, def.getId(), 500);
+        CustomEntityIndexService.IndexView index = customEntityService.indexView(def);
+        Map<String, CustomEntityIndexService.FieldType> types = index.fields();
+        Map<String, String> filters = filterParams(params);
+        CustomEntityQuery query = new CustomEntityQuery(toFilters(filters, types), sort, !"desc".equalsIgnoreCase(dir));
+        CustomEntityPage items = customEntityService.search(tenantId, def, index, query, after, PAGE_SIZE);
         List<String> columns = parseListColumns(def.getListColumns());
-        List<Map<String, Object>> payloads = items.stream()
+        List<Map<String, Object>> payloads = items.content().stream()
                 .map(d -> customEntityService.parsePayload(d.getPayload()))
                 .toList();
+        Map<String, String> fieldTypes = new LinkedHashMap<>();
+        types.forEach((field, type) -> fieldTypes.put(field, type.name()));
         model.addAttribute("definition", def);
-        model.addAttribute("items", items);
+        model.addAttribute("items", items.content());
+        model.addAttribute("page", items);
         model.addAttribute("columns", columns);
         model.addAttribute("payloads", payloads);
+        model.addAttribute("fieldTypes", fieldTypes);
+        model.addAttribute("filters", filters);
+        model.addAttribute("hasPrevious", after != null && !after.isBlank());
+        model.addAttribute("sort", sort);
+        model.addAttribute("dir", query.ascending() ? "asc" : "desc");
+        model.addAttribute("listUrl", listUrl(moduleCode, objectCode, filters));
         model.addAttribute("moduleCode", moduleCode);
         model.addAttribute("objectCode", objectCode);
         return "modules/nocode/list";
@@ -189,6 +215,44 @@ public class CustomEntityController {
         return payload;
     }
 
+    /** Non-blank {@code f_<field>} (text prefix or exact value) and {@code f_<field>_from}/{@code _to} (range) parameters. */
+    private static Map<String, String> filterParams(Map<String, String> params) {
+        Map<String, String> filters = new LinkedHashMap<>();
+        params.forEach((name, value) -> {
+            if (name.startsWith(FILTER_PREFIX) && value != null && !value.isBlank()) filters.put(name, value.trim());
+        });
+        return filters;
+    }
+
+    /** Text fields match by prefix, numbers and dates exactly; {@code _from}/{@code _to} bound the value. */
+    private static List<CustomEntityQuery.Filter> toFilters(Map<String, String> filters, Map<String, CustomEntityIndexService.FieldType> types) {
+        List<CustomEntityQuery.Filter> result = new ArrayList<>();
+        filters.forEach((name, value) -> {
+            String field = name.substring(FILTER_PREFIX.length());
+            if (field.endsWith("_from")) {
+                result.add(new CustomEntityQuery.Filter(field.substring(0, field.length() - 5), CustomEntityQuery.Op.GTE, value));
+            } else if (field.endsWith("_to")) {
+                result.add(new CustomEntityQuery.Filter(field.substring(0, field.length() - 3), CustomEntityQuery.Op.LTE, value));
+            } else {
+                CustomEntityQuery.Op op = types.get(field) == CustomEntityIndexService.FieldType.STRING
+                        ? CustomEntityQuery.Op.PREFIX : CustomEntityQuery.Op.EQ;
+                result.add(new CustomEntityQuery.Filter(field, op, value));
+            }
+        });
+        return result;
+    }
+
+    private static String listUrl(String moduleCode, String objectCode, Map<String, String> filters) {
+        StringBuilder url = new StringBuilder("/app/").append(moduleCode).append('/').append(objectCode);
+        char sep = '?';
+        for (Map.Entry<String, String> e : filters.entrySet()) {
+            url.append(sep).append(URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8))
+                    .append('=').append(URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8));
+            sep = '&';
+        }
+        return url.toString();
+    }
+
     private static List<String> parseListColumns(String listColumnsJson) {
         if (listColumnsJson == null || listColumnsJson.isBlank()) return List.of();
         try {
@@ -1,13 +1,13 @@
 package fr.aplose.erp.modules.portal.web;
 
+import fr.aplose.erp.modules.ged.entity.GedDocument;
 import fr.aplose.erp.modules.ged.service.GedService;
+import fr.aplose.erp.modules.ged.web.GedDownloadResponder;
 import fr.aplose.erp.modules.portal.service.PortalService;
 import fr.aplose.erp.security.service.ErpUserDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -21,8 +21,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 
 /**
  * Client portal: read-only access to proposals and invoices for the third party linked to the current user.
@@ -38,6 +37,7 @@ public class PortalController {
 
     private final PortalService portalService;
     private final GedService gedService;
+    private final GedDownloadResponder downloadResponder;
 
     @GetMapping
     public String index(@AuthenticationPrincipal ErpUserDetails principal, Model model) {
@@ -128,24 +128,19 @@ public class PortalController {
     }
 
     @GetMapping("/documents/{id}/download")
-    public ResponseEntity<Resource> download(@AuthenticationPrincipal ErpUserDetails principal, @PathVariable Long id) {
+    public void download(@AuthenticationPrincipal ErpUserDetails principal, @PathVariable Long id,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
         Long thirdPartyId = portalService.getThirdPartyIdForUser(principal.getUserId());
-        if (thirdPartyId == null) {
-            return ResponseEntity.notFound().build();
+        Optional<GedDocument> doc = thirdPartyId == null ? Optional.empty()
+                : portalService.getDocumentIfBelongsToThirdParty(id, principal.getTenantId(), thirdPartyId);
+        if (doc.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try {
+            downloadResponder.send(doc.get(), request, response);
+        } catch (IOException e) {
+            if (!response.isCommitted()) response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
-        return portalService.getDocumentIfBelongsToThirdParty(id, principal.getTenantId(), thirdPartyId)
-                .map(doc -> {
-                    try {
-                        Resource resource = gedService.getFileResource(doc);
-                        String filename = URLEncoder.encode(doc.getFileName(), StandardCharsets.UTF_8).replace("+", "%20");
-                        return ResponseEntity.ok()
-                                .contentType(MediaType.parseMediaType(doc.getMimeType() != null ? doc.getMimeType() : "application/octet-stream"))
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + doc.getFileName() + "\"; filename*=UTF-8''" + filename)
-                                .body(resource);
-                    } catch (IOException e) {
-                        return ResponseEntity.notFound().<Resource>build();
-                    }
-                })
-                .orElse(ResponseEntity.notFound().build());
     }
 }
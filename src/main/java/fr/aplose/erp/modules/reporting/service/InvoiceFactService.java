@@ -0,0 +1,204 @@
+package fr.aplose.erp.modules.reporting.service;
+
+import fr.aplose.erp.modules.commerce.entity.Invoice;
+import fr.aplose.erp.modules.commerce.repository.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains {@code invoice_monthly_facts}: per tenant, month, invoice type and currency,
+ * the issued total of validated invoices (by issue month) and the open remaining amount (by due month).
+ * Rows are updated incrementally from the invoice write paths by applying the difference between
+ * an invoice's contribution before and after the change; {@link #rebuild(String)} recomputes a tenant from scratch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceFactService {
+
+    static final Set<String> ISSUED_STATUSES = Set.of("VALIDATED", "PARTIALLY_PAID", "PAID");
+    static final Set<String> OPEN_STATUSES = Set.of("VALIDATED", "PARTIALLY_PAID");
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO invoice_monthly_facts (tenant_id, period_month, invoice_type, currency_code, " +
+            "issued_amount, issued_count, open_amount, open_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE issued_amount = issued_amount + ?, issued_count = issued_count + ?, " +
+            "open_amount = open_amount + ?, open_count = open_count + ?";
+
+    private static final String REBUILD_SQL =
+            "INSERT INTO invoice_monthly_facts (tenant_id, period_month, invoice_type, currency_code, " +
+            "issued_amount, issued_count, open_amount, open_count) " +
+            "SELECT tenant_id, period_month, invoice_type, currency_code, " +
+            "SUM(issued_amount), SUM(issued_count), SUM(open_amount), SUM(open_count) FROM (" +
+            " SELECT tenant_id, YEAR(date_issued) * 100 + MONTH(date_issued) AS period_month, type AS invoice_type, currency_code," +
+            " total_amount AS issued_amount, 1 AS issued_count, 0 AS open_amount, 0 AS open_count" +
+            " FROM invoices WHERE tenant_id = ? AND status IN ('VALIDATED', 'PARTIALLY_PAID', 'PAID')" +
+            " UNION ALL" +
+            " SELECT tenant_id, YEAR(date_due) * 100 + MONTH(date_due), type, currency_code, 0, 0, amount_remaining, 1" +
+            " FROM invoices WHERE tenant_id = ? AND status IN ('VALIDATED', 'PARTIALLY_PAID') AND amount_remaining > 0" +
+            ") f GROUP BY tenant_id, period_month, invoice_type, currency_code";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InvoiceRepository invoiceRepository;
+
+    /**
+     * Captures what an invoice currently adds to the facts. Take one before and one after a change,
+     * then pass both to {@link #recordChange}.
+     */
+    public static Contribution contributionOf(Invoice inv) {
+        return contributionOf(inv.getType(), inv.getStatus(), inv.getCurrencyCode(), inv.getDateIssued(), inv.getDateDue(),
+                inv.getTotalAmount(), inv.getAmountRemaining());
+    }
+
+    /** Same as {@link #contributionOf(Invoice)}, for invoices read or written with plain JDBC. */
+    public static Contribution contributionOf(String type, String status, String currency, LocalDate dateIssued,
+                                              LocalDate dateDue, BigDecimal totalAmount, BigDecimal amountRemaining) {
+        boolean issued = ISSUED_STATUSES.contains(status);
+        boolean open = OPEN_STATUSES.contains(status) && amountRemaining != null && amountRemaining.signum() > 0;
+        return new Contribution(type, currency,
+                issued && dateIssued != null ? periodMonth(dateIssued) : 0,
+                issued ? nz(totalAmount) : BigDecimal.ZERO,
+                open && dateDue != null ? periodMonth(dateDue) : 0,
+                open ? amountRemaining : BigDecimal.ZERO);
+    }
+
+    /**
+     * Applies the difference between two contributions of the same invoice. Runs in the caller's transaction,
+     * so the facts commit or roll back together with the invoice.
+     */
+    @Transactional
+    public void recordChange(String tenantId, Contribution before, Contribution after) {
+        recordChanges(tenantId, List.of(before), List.of(after));
+    }
+
+    /** Applies the differences of many invoices at once (bulk writes), with a single batch. */
+    @Transactional
+    public void recordChanges(String tenantId, List<Contribution> before, List<Contribution> after) {
+        Map<FactKey, Delta> deltas = new LinkedHashMap<>();
+        before.forEach(c -> c.addTo(deltas, -1));
+        after.forEach(c -> c.addTo(deltas, 1));
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<FactKey, Delta> e : deltas.entrySet()) {
+            FactKey k = e.getKey();
+            Delta d = e.getValue();
+            if (d.isZero()) continue;
+            batch.add(new Object[]{tenantId, k.periodMonth(), k.type(), k.currency(),
+                    d.issuedAmount, d.issuedCount, d.openAmount, d.openCount,
+                    d.issuedAmount, d.issuedCount, d.openAmount, d.openCount});
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+        }
+    }
+
+    /**
+     * Recomputes all facts of a tenant from the invoices table (e.g. after an import or a manual fix).
+     * Should run while no invoice of the tenant is being written.
+     */
+    @Transactional
+    public void rebuild(String tenantId) {
+        jdbcTemplate.update("DELETE FROM invoice_monthly_facts WHERE tenant_id = ?", tenantId);
+        int rows = jdbcTemplate.update(REBUILD_SQL, tenantId, tenantId);
+        log.info("Rebuilt {} invoice fact row(s) for tenant {}", rows, tenantId);
+    }
+
+    /**
+     * Sum of issued (validated) invoice totals of the given type with an issue date in [from, to], all currencies.
+     * Whole months come from the facts; partial months at either end are corrected from the invoices table.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal sumIssued(String tenantId, String type, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) return BigDecimal.ZERO;
+        BigDecimal total = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(issued_amount), 0) FROM invoice_monthly_facts " +
+                "WHERE tenant_id = ? AND invoice_type = ? AND period_month BETWEEN ? AND ?",
+                BigDecimal.class, tenantId, type, periodMonth(from), periodMonth(to));
+        total = nz(total);
+        LocalDate monthStart = from.withDayOfMonth(1);
+        if (from.isAfter(monthStart)) {
+            total = total.subtract(sumInvoices(tenantId, type, monthStart, from.minusDays(1)));
+        }
+        LocalDate monthEnd = YearMonth.from(to).atEndOfMonth();
+        if (to.isBefore(monthEnd)) {
+            total = total.subtract(sumInvoices(tenantId, type, to.plusDays(1), monthEnd));
+        }
+        return total;
+    }
+
+    /**
+     * Open remaining amounts by due month and invoice type for months in [fromMonth, toMonth], all currencies.
+     */
+    @Transactional(readOnly = true)
+    public Map<YearMonth, Map<String, BigDecimal>> sumOpenByMonthAndType(String tenantId, YearMonth fromMonth, YearMonth toMonth) {
+        Map<YearMonth, Map<String, BigDecimal>> result = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT period_month, invoice_type, SUM(open_amount) FROM invoice_monthly_facts " +
+                "WHERE tenant_id = ? AND period_month BETWEEN ? AND ? GROUP BY period_month, invoice_type",
+                rs -> {
+                    int pm = rs.getInt(1);
+                    result.computeIfAbsent(YearMonth.of(pm / 100, pm % 100), k -> new HashMap<>())
+                            .put(rs.getString(2), nz(rs.getBigDecimal(3)));
+                },
+                tenantId, periodMonth(fromMonth.atDay(1)), periodMonth(toMonth.atDay(1)));
+        return result;
+    }
+
+    private BigDecimal sumInvoices(String tenantId, String type, LocalDate from, LocalDate to) {
+        return nz(invoiceRepository.sumTotalAmountByTenantAndTypeAndDateRange(tenantId, type, from, to));
+    }
+
+    static int periodMonth(LocalDate date) {
+        return date.getYear() * 100 + date.getMonthValue();
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v != null ? v : BigDecimal.ZERO;
+    }
+
+    /** What one invoice adds to the facts: its total in the issue month and its remaining amount in the due month. */
+    public record Contribution(String type, String currency,
+                               int issuedMonth, BigDecimal issuedAmount,
+                               int openMonth, BigDecimal openAmount) {
+
+        private void addTo(Map<FactKey, Delta> deltas, int sign) {
+            if (type == null || currency == null) return;
+            if (issuedMonth != 0) {
+                Delta d = deltas.computeIfAbsent(new FactKey(issuedMonth, type, currency), k -> new Delta());
+                d.issuedAmount = d.issuedAmount.add(sign > 0 ? issuedAmount : issuedAmount.negate());
+                d.issuedCount += sign;
+            }
+            if (openMonth != 0) {
+                Delta d = deltas.computeIfAbsent(new FactKey(openMonth, type, currency), k -> new Delta());
+                d.openAmount = d.openAmount.add(sign > 0 ? openAmount : openAmount.negate());
+                d.openCount += sign;
+            }
+        }
+    }
+
+    private record FactKey(int periodMonth, String type, String currency) {}
+
+    private static final class Delta {
+        private BigDecimal issuedAmount = BigDecimal.ZERO;
+        private int issuedCount;
+        private BigDecimal openAmount = BigDecimal.ZERO;
+        private int openCount;
+
+        private boolean isZero() {
+            return issuedCount == 0 && openCount == 0
+                    && issuedAmount.signum() == 0 && openAmount.signum() == 0;
+        }
+    }
+}
@@ -21,12 +21,11 @@ public class ReportingService {
 
     private final InvoiceRepository invoiceRepository;
     private final LeaveRequestRepository leaveRequestRepository;
+    private final InvoiceFactService invoiceFactService;
 
     @Transactional(readOnly = true)
     public BigDecimal getSalesRevenue(LocalDate from, LocalDate to) {
-        BigDecimal sum = invoiceRepository.sumTotalAmountByTenantAndTypeAndDateRange(
-                TenantContext.getCurrentTenantId(), "SALES", from, to);
-        return sum != null ? sum : BigDecimal.ZERO;
+        return invoiceFactService.sumIssued(TenantContext.getCurrentTenantId(), "SALES", from, to);
     }
 
     @Transactional(readOnly = true)
@@ -1,19 +1,24 @@
 package fr.aplose.erp.modules.reporting.web;
 
+import fr.aplose.erp.modules.reporting.service.InvoiceFactService;
 import fr.aplose.erp.modules.reporting.service.ReportingExportService;
 import fr.aplose.erp.modules.reporting.service.ReportingService;
+import fr.aplose.erp.tenant.context.TenantContext;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
@@ -23,9 +28,12 @@ import java.time.format.DateTimeFormatter;
 public class ReportingController {
 
     private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String CSV_TYPE = "text/csv; charset=UTF-8";
+    private static final String XLSX_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
 
     private final ReportingService reportingService;
     private final ReportingExportService reportingExportService;
+    private final InvoiceFactService invoiceFactService;
 
     @GetMapping
     @PreAuthorize("hasAuthority('REPORT_READ')")
@@ -66,102 +74,83 @@ public class ReportingController {
         return "modules/reporting/leave-report";
     }
 
+    /** Recomputes the monthly invoice facts of the current tenant (revenue and treasury figures). */
+    @PostMapping("/facts/rebuild")
+    @PreAuthorize("hasAuthority('TENANT_UPDATE')")
+    public String rebuildFacts(RedirectAttributes redirectAttributes) {
+        invoiceFactService.rebuild(TenantContext.getCurrentTenantId());
+        redirectAttributes.addFlashAttribute("successMessage", "Report figures rebuilt from invoices.");
+        return "redirect:/reporting";
+    }
+
     // --- Export endpoints (REPORT_EXPORT) ---
+    // Exports are written straight to the response; nothing is buffered in memory.
 
     @GetMapping("/sales/export")
     @PreAuthorize("hasAuthority('REPORT_EXPORT')")
-    public ResponseEntity<byte[]> exportSales(
+    public void exportSales(
             @RequestParam String format,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) throws Exception {
-        if (from == null) from = LocalDate.now().withDayOfMonth(1);
-        if (to == null) to = LocalDate.now();
-        String baseName = "sales-report-" + from.format(FILE_DATE) + "-" + to.format(FILE_DATE);
-        return switch (format.toLowerCase()) {
-            case "csv" -> {
-                byte[] data = reportingExportService.exportSalesCsv(from, to);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".csv\"")
-                        .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
-                        .body(data);
-            }
-            case "excel", "xlsx" -> {
-                byte[] data = reportingExportService.exportSalesExcel(from, to);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".xlsx\"")
-                        .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                        .body(data);
-            }
-            case "pdf" -> {
-                byte[] data = reportingExportService.exportSalesPdf(from, to);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".pdf\"")
-                        .contentType(MediaType.APPLICATION_PDF)
-                        .body(data);
-            }
-            default -> ResponseEntity.badRequest().build();
-        };
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws Exception {
+        LocalDate start = from != null ? from : LocalDate.now().withDayOfMonth(1);
+        LocalDate end = to != null ? to : LocalDate.now();
+        String baseName = "sales-report-" + start.format(FILE_DATE) + "-" + end.format(FILE_DATE);
+        switch (format.toLowerCase()) {
+            case "csv" -> writeExport(response, baseName + ".csv", CSV_TYPE,
+                    out -> reportingExportService.exportSalesCsv(start, end, out));
+            case "excel", "xlsx" -> writeExport(response, baseName + ".xlsx", XLSX_TYPE,
+                    out -> reportingExportService.exportSalesExcel(start, end, out));
+            case "pdf" -> writeExport(response, baseName + ".pdf", MediaType.APPLICATION_PDF_VALUE,
+                    out -> reportingExportService.exportSalesPdf(start, end, out));
+            default -> response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        }
     }
 
     @GetMapping("/overdue-invoices/export")
     @PreAuthorize("hasAuthority('REPORT_EXPORT')")
-    public ResponseEntity<byte[]> exportOverdueInvoices(@RequestParam String format) throws Exception {
+    public void exportOverdueInvoices(@RequestParam String format, HttpServletResponse response) throws Exception {
         String baseName = "overdue-invoices-" + LocalDate.now().format(FILE_DATE);
-        return switch (format.toLowerCase()) {
-            case "csv" -> {
-                byte[] data = reportingExportService.exportOverdueInvoicesCsv();
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".csv\"")
-                        .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
-                        .body(data);
-            }
-            case "excel", "xlsx" -> {
-                byte[] data = reportingExportService.exportOverdueInvoicesExcel();
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".xlsx\"")
-                        .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                        .body(data);
-            }
-            case "pdf" -> {
-                byte[] data = reportingExportService.exportOverdueInvoicesPdf();
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".pdf\"")
-                        .contentType(MediaType.APPLICATION_PDF)
-                        .body(data);
-            }
-            default -> ResponseEntity.badRequest().build();
-        };
+        switch (format.toLowerCase()) {
+            case "csv" -> writeExport(response, baseName + ".csv", CSV_TYPE,
+                    reportingExportService::exportOverdueInvoicesCsv);
+            case "excel", "xlsx" -> writeExport(response, baseName + ".xlsx", XLSX_TYPE,
+                    reportingExportService::exportOverdueInvoicesExcel);
+            case "pdf" -> writeExport(response, baseName + ".pdf", MediaType.APPLICATION_PDF_VALUE,
+                    reportingExportService::exportOverdueInvoicesPdf);
+            default -> response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        }
     }
 
     @GetMapping("/leave/export")
     @PreAuthorize("hasAuthority('REPORT_EXPORT')")
-    public ResponseEntity<byte[]> exportLeave(
+    public void exportLeave(
             @RequestParam String format,
-            @RequestParam(required = false) String status) throws Exception {
+            @RequestParam(required = false) String status,
+            HttpServletResponse response) throws Exception {
         String baseName = "leave-report-" + LocalDate.now().format(FILE_DATE);
-        return switch (format.toLowerCase()) {
-            case "csv" -> {
-                byte[] data = reportingExportService.exportLeaveCsv(status);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".csv\"")
-                        .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
-                        .body(data);
-            }
-            case "excel", "xlsx" -> {
-                byte[] data = reportingExportService.exportLeaveExcel(status);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".xlsx\"")
-                        .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                        .body(data);
-            }
-            case "pdf" -> {
-                byte[] data = reportingExportService.exportLeavePdf(status);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + ".pdf\"")
-                        .contentType(MediaType.APPLICATION_PDF)
-                        .body(data);
-            }
-            default -> ResponseEntity.badRequest().build();
-        };
+        switch (format.toLowerCase()) {
+            case "csv" -> writeExport(response, baseName + ".csv", CSV_TYPE,
+                    out -> reportingExportService.exportLeaveCsv(status, out));
+            case "excel", "xlsx" -> writeExport(response, baseName + ".xlsx", XLSX_TYPE,
+                    out -> reportingExportService.exportLeaveExcel(status, out));
+            case "pdf" -> writeExport(response, baseName + ".pdf", MediaType.APPLICATION_PDF_VALUE,
+                    out -> reportingExportService.exportLeavePdf(status, out));
+            default -> response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
+
+    private static void writeExport(HttpServletResponse response, String fileName, String contentType,
+                                    ExportWriter writer) throws Exception {
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        OutputStream out = response.getOutputStream();
+        writer.write(out);
+        out.flush();
+    }
+
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(OutputStream out) throws Exception;
     }
 }
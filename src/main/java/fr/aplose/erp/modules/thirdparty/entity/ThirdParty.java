@@ -2,6 +2,7 @@ package fr.aplose.erp.modules.thirdparty.entity;
 
 import fr.aplose.erp.core.businessobject.BusinessObject;
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import fr.aplose.erp.modules.contact.entity.ContactThirdPartyLink;
 import fr.aplose.erp.security.entity.User;
 import jakarta.persistence.*;
@@ -16,6 +17,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "third_parties")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -48,6 +50,10 @@ public class ThirdParty extends BaseEntity implements BusinessObject {
     @Column(name = "registration_no", length = 100)
     private String registrationNo;
 
+    /** Bank account of the third party, without spaces; used to match bank movements to its invoices. */
+    @Column(name = "iban", length = 34)
+    private String iban;
+
     @Column(name = "website")
     private String website;
 
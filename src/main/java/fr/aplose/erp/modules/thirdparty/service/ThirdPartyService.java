@@ -81,6 +81,7 @@ public class ThirdPartyService {
         tp.setLegalForm(dto.getLegalForm());
         tp.setTaxId(dto.getTaxId());
         tp.setRegistrationNo(dto.getRegistrationNo());
+        tp.setIban(dto.getIban());
         tp.setWebsite(dto.getWebsite());
         tp.setPhone(dto.getPhone());
         tp.setFax(dto.getFax());
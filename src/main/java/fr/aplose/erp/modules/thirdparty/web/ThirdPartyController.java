@@ -4,8 +4,9 @@ import fr.aplose.erp.dictionary.DictionaryType;
 import fr.aplose.erp.dictionary.service.DictionaryService;
 import fr.aplose.erp.modules.contact.entity.ContactThirdPartyLink;
 import fr.aplose.erp.modules.contact.repository.ContactThirdPartyLinkRepository;
-import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+import fr.aplose.erp.modules.extrafield.service.ExtraFieldDefinitionView;
 import fr.aplose.erp.modules.extrafield.service.ExtraFieldService;
+import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
 import fr.aplose.erp.modules.thirdparty.service.ThirdPartyService;
 import fr.aplose.erp.modules.thirdparty.web.dto.ThirdPartyDto;
 import fr.aplose.erp.security.service.ErpUserDetails;
@@ -46,7 +47,7 @@ public class ThirdPartyController {
     }
 
     private void addExtraFieldModelAttributes(Model model, Long entityId) {
-        List<ExtraFieldDefinition> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_THIRD_PARTY);
+        List<ExtraFieldDefinitionView> definitions = extraFieldService.getActiveDefinitions(ENTITY_TYPE_THIRD_PARTY);
         model.addAttribute("extraFieldDefinitions", definitions);
         Map<String, String> values = entityId != null
                 ? extraFieldService.getValues(ENTITY_TYPE_THIRD_PARTY, entityId)
@@ -55,16 +56,16 @@ public class ThirdPartyController {
     }
 
     private Map<String, String> getExtraFieldValuesFromRequest(HttpServletRequest request) {
-        List<ExtraFieldDefinition> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_THIRD_PARTY);
+        List<ExtraFieldDefinitionView> defs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_THIRD_PARTY);
         Map<String, String> map = new LinkedHashMap<>();
-        for (ExtraFieldDefinition def : defs) {
-            if (!def.isVisibleOnForm()) continue;
-            String paramName = "extraField_" + def.getFieldCode();
+        for (ExtraFieldDefinitionView def : defs) {
+            if (!def.visibleOnForm()) continue;
+            String paramName = "extraField_" + def.fieldCode();
             String value = request.getParameter(paramName);
-            if ("BOOLEAN".equals(def.getFieldType())) {
-                map.put(def.getFieldCode(), "true".equals(value) ? "true" : "false");
+            if ("BOOLEAN".equals(def.fieldType())) {
+                map.put(def.fieldCode(), "true".equals(value) ? "true" : "false");
             } else {
-                map.put(def.getFieldCode(), value != null ? value : "");
+                map.put(def.fieldCode(), value != null ? value : "");
             }
         }
         return map;
@@ -81,7 +82,12 @@ public class ThirdPartyController {
                        @RequestParam(defaultValue = "0") int page,
                        Model model) {
         var pageable = PageRequest.of(page, 25, Sort.by("name"));
-        model.addAttribute("thirdParties", service.findAll(q, filter, pageable));
+        var thirdParties = service.findAll(q, filter, pageable);
+        model.addAttribute("thirdParties", thirdParties);
+        List<ExtraFieldDefinitionView> listDefs = extraFieldService.getListDefinitions(ENTITY_TYPE_THIRD_PARTY);
+        model.addAttribute("extraFieldDefinitionsList", listDefs);
+        model.addAttribute("extraFieldListValues", listDefs.isEmpty() ? Map.of()
+                : extraFieldService.getValues(ENTITY_TYPE_THIRD_PARTY, thirdParties.map(ThirdParty::getId).getContent()));
         model.addAttribute("q", q);
         model.addAttribute("filter", filter);
         return "modules/thirdparty/list";
@@ -98,8 +104,8 @@ public class ThirdPartyController {
         dictionaryService.findByType(DictionaryType.CONTACT_THIRD_PARTY_LINK_TYPE)
                 .forEach(item -> linkTypeLabels.put(item.getCode(), item.getLabel()));
         model.addAttribute("linkTypeLabels", linkTypeLabels);
-        List<ExtraFieldDefinition> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_THIRD_PARTY).stream()
-                .filter(ExtraFieldDefinition::isVisibleOnDetail)
+        List<ExtraFieldDefinitionView> detailDefs = extraFieldService.getActiveDefinitions(ENTITY_TYPE_THIRD_PARTY).stream()
+                .filter(ExtraFieldDefinitionView::visibleOnDetail)
                 .toList();
         model.addAttribute("extraFieldDefinitionsDetail", detailDefs);
         model.addAttribute("extraFieldValues", extraFieldService.getValues(ENTITY_TYPE_THIRD_PARTY, id));
@@ -149,7 +155,7 @@ public class ThirdPartyController {
         dto.setCode(tp.getCode()); dto.setName(tp.getName());
         dto.setCustomer(tp.isCustomer()); dto.setSupplier(tp.isSupplier()); dto.setProspect(tp.isProspect());
         dto.setLegalForm(tp.getLegalForm()); dto.setTaxId(tp.getTaxId());
-        dto.setRegistrationNo(tp.getRegistrationNo()); dto.setWebsite(tp.getWebsite());
+        dto.setRegistrationNo(tp.getRegistrationNo()); dto.setIban(tp.getIban()); dto.setWebsite(tp.getWebsite());
         dto.setPhone(tp.getPhone()); dto.setFax(tp.getFax()); dto.setEmail(tp.getEmail());
         dto.setAddressLine1(tp.getAddressLine1()); dto.setAddressLine2(tp.getAddressLine2());
         dto.setCity(tp.getCity()); dto.setStateProvince(tp.getStateProvince());
@@ -0,0 +1,22 @@
+package fr.aplose.erp.modules.thirdparty.web.dto;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** An IBAN without spaces: country code, check digits, 11 to 30 alphanumerics and a valid mod-97 checksum. Null is valid. */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = IbanValidator.class)
+public @interface Iban {
+
+    String message() default "Invalid IBAN";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
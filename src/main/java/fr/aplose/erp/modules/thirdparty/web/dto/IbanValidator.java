@@ -0,0 +1,28 @@
+package fr.aplose.erp.modules.thirdparty.web.dto;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.util.regex.Pattern;
+
+public class IbanValidator implements ConstraintValidator<Iban, String> {
+
+    private static final Pattern FORMAT = Pattern.compile("[A-Z]{2}[0-9]{2}[A-Z0-9]{11,30}");
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || isValid(value);
+    }
+
+    /** ISO 13616: the first four characters moved to the end, letters as 10..35, the number modulo 97 is 1. */
+    static boolean isValid(String iban) {
+        if (!FORMAT.matcher(iban).matches()) return false;
+        String rearranged = iban.substring(4) + iban.substring(0, 4);
+        int remainder = 0;
+        for (int i = 0; i < rearranged.length(); i++) {
+            int digit = Character.digit(rearranged.charAt(i), 36);
+            remainder = (digit > 9 ? remainder * 100 + digit : remainder * 10 + digit) % 97;
+        }
+        return remainder == 1;
+    }
+}
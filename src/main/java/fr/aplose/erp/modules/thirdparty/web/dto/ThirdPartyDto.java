@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.math.BigDecimal;
+import java.util.Locale;
 
 @Getter
 @Setter
@@ -31,6 +32,10 @@ public class ThirdPartyDto {
     @Size(max = 100)
     private String registrationNo;
 
+    /** Stored without spaces, upper case: see {@link #setIban}. */
+    @Iban
+    private String iban;
+
     @Size(max = 255)
     private String website;
 
@@ -75,4 +80,10 @@ public class ThirdPartyDto {
     private String status = "ACTIVE";
     private Long salesRepId;
     private Long parentId;
+
+    /** Accepts the grouped form ("FR76 3000 ..."): validated and stored without spaces. */
+    public void setIban(String iban) {
+        String compact = iban == null ? "" : iban.replaceAll("\\s", "").toUpperCase(Locale.ROOT);
+        this.iban = compact.isEmpty() ? null : compact;
+    }
 }
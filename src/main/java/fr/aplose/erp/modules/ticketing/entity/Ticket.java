@@ -1,6 +1,7 @@
 package fr.aplose.erp.modules.ticketing.entity;
 
 import fr.aplose.erp.core.entity.BaseEntity;
+import fr.aplose.erp.core.search.SearchIndexListener;
 import fr.aplose.erp.security.entity.User;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -12,11 +13,15 @@ import java.util.List;
 
 @Entity
 @Table(name = "tickets")
+@EntityListeners(SearchIndexListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
 public class Ticket extends BaseEntity {
 
+    @Column(name = "reference", length = 50, updatable = false)
+    private String reference;
+
     @Column(name = "subject", nullable = false)
     private String subject;
 
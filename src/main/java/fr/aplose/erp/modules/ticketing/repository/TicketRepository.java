@@ -19,7 +19,7 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
 
     Page<Ticket> findByTenantIdAndAssigneeIdOrderByCreatedAtDesc(String tenantId, Long assigneeId, Pageable pageable);
 
-    @Query("SELECT t FROM Ticket t WHERE t.tenantId = :tid AND (LOWER(t.subject) LIKE LOWER(CONCAT('%',:q,'%')) OR LOWER(t.description) LIKE LOWER(CONCAT('%',:q,'%')))")
+    @Query("SELECT t FROM Ticket t WHERE t.tenantId = :tid AND (LOWER(t.reference) LIKE LOWER(CONCAT('%',:q,'%')) OR LOWER(t.subject) LIKE LOWER(CONCAT('%',:q,'%')) OR LOWER(t.description) LIKE LOWER(CONCAT('%',:q,'%')))")
     Page<Ticket> search(@Param("tid") String tenantId, @Param("q") String q, Pageable pageable);
 
     Optional<Ticket> findByIdAndTenantId(Long id, String tenantId);
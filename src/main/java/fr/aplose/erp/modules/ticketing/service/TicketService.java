@@ -1,5 +1,7 @@
 package fr.aplose.erp.modules.ticketing.service;
 
+import fr.aplose.erp.core.sequence.DocumentType;
+import fr.aplose.erp.core.sequence.NumberSequenceService;
 import fr.aplose.erp.modules.ticketing.entity.Ticket;
 import fr.aplose.erp.modules.ticketing.entity.TicketComment;
 import fr.aplose.erp.modules.ticketing.repository.TicketCommentRepository;
@@ -19,6 +21,7 @@ public class TicketService {
     private final TicketRepository ticketRepository;
     private final TicketCommentRepository commentRepository;
     private final UserRepository userRepository;
+    private final NumberSequenceService numberSequenceService;
 
     @Transactional(readOnly = true)
     public Page<Ticket> findAll(String q, String status, Pageable pageable) {
@@ -43,6 +46,9 @@ public class TicketService {
             userRepository.findByIdAndTenantId(ticket.getAssignee().getId(), TenantContext.getCurrentTenantId())
                     .orElseThrow(() -> new IllegalArgumentException("Assignee not in tenant"));
         }
+        if (ticket.getId() == null) {
+            ticket.setReference(numberSequenceService.next(DocumentType.TICKET));
+        }
         return ticketRepository.save(ticket);
     }
 
@@ -2,6 +2,7 @@ package fr.aplose.erp.modules.treasury.service;
 
 import fr.aplose.erp.modules.commerce.entity.Invoice;
 import fr.aplose.erp.modules.commerce.repository.InvoiceRepository;
+import fr.aplose.erp.modules.reporting.service.InvoiceFactService;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -12,27 +13,32 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class TreasuryService {
 
     private final InvoiceRepository invoiceRepository;
+    private final InvoiceFactService invoiceFactService;
 
-    /** Forecast entries for the next N months: inflows (sales to collect), outflows (purchases to pay), balance. */
+    /**
+     * Forecast entries for the next N months: inflows (sales to collect), outflows (purchases to pay), balance.
+     * Read from the monthly invoice facts in a single query.
+     */
     @Transactional(readOnly = true)
     public List<TreasuryForecastEntry> getForecastByMonth(int numberOfMonths) {
-        String tid = TenantContext.getCurrentTenantId();
-        LocalDate from = LocalDate.now();
-        LocalDate to = from.plusMonths(numberOfMonths);
+        YearMonth ym = YearMonth.now();
+        YearMonth endYm = ym.plusMonths(numberOfMonths);
+        Map<YearMonth, Map<String, BigDecimal>> open = invoiceFactService.sumOpenByMonthAndType(
+                TenantContext.getCurrentTenantId(), ym, endYm);
         List<TreasuryForecastEntry> result = new ArrayList<>();
-        YearMonth ym = YearMonth.from(from);
-        YearMonth endYm = YearMonth.from(to);
         while (!ym.isAfter(endYm)) {
             LocalDate periodStart = ym.atDay(1);
             LocalDate periodEnd = ym.atEndOfMonth();
-            BigDecimal inflows = sumRemaining(invoiceRepository.findForTreasuryByTypeAndDueBetween(tid, "SALES", periodStart, periodEnd));
-            BigDecimal outflows = sumRemaining(invoiceRepository.findForTreasuryByTypeAndDueBetween(tid, "PURCHASE", periodStart, periodEnd));
+            Map<String, BigDecimal> byType = open.getOrDefault(ym, Map.of());
+            BigDecimal inflows = byType.getOrDefault("SALES", BigDecimal.ZERO);
+            BigDecimal outflows = byType.getOrDefault("PURCHASE", BigDecimal.ZERO);
             result.add(new TreasuryForecastEntry(ym.toString(), periodStart, periodEnd, inflows, outflows, inflows.subtract(outflows)));
             ym = ym.plusMonths(1);
         }
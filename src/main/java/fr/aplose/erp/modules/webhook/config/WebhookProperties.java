@@ -0,0 +1,34 @@
+package fr.aplose.erp.modules.webhook.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.webhooks")
+public class WebhookProperties {
+
+    /**
+     * Deliveries claimed per dispatcher run; lowered when needed so that a batch sent to a single endpoint completes
+     * well within {@link #claimTimeout} (see {@code WebhookDispatcher#claimBatchSize}).
+     */
+    private int batchSize = 100;
+    /** Attempts before a delivery is moved to the dead-letter state. */
+    private int maxAttempts = 8;
+    /** Delay before the first retry; doubled on every further failure. */
+    private Duration initialBackoff = Duration.ofSeconds(30);
+    private Duration maxBackoff = Duration.ofHours(6);
+    /** Concurrent in-flight deliveries per endpoint. */
+    private int maxConcurrencyPerEndpoint = 4;
+    /** A claimed delivery not completed within this delay is requeued (dispatcher crash). */
+    private Duration claimTimeout = Duration.ofMinutes(5);
+    /** Delivered rows are deleted after this delay; dead-lettered ones are kept for inspection and replay. */
+    private Duration deliveredRetention = Duration.ofDays(30);
+    /** Endpoints changed on another instance are routed to after this delay. */
+    private Duration routeCacheTtl = Duration.ofMinutes(1);
+}
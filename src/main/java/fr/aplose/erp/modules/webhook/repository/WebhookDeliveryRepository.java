@@ -0,0 +1,57 @@
+package fr.aplose.erp.modules.webhook.repository;
+
+import fr.aplose.erp.modules.webhook.entity.WebhookDelivery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery, Long> {
+
+    @Query("SELECT d.id FROM WebhookDelivery d WHERE d.status = 'PENDING' AND d.nextAttemptAt <= :now ORDER BY d.nextAttemptAt")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /** Claims due rows for this dispatcher run; rows already claimed by another instance are skipped. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookDelivery d SET d.status = 'IN_PROGRESS', d.claimToken = :token, d.lockedUntil = :lockedUntil, " +
+           "d.version = d.version + 1 " +
+           "WHERE d.id IN :ids AND d.status = 'PENDING'")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    List<WebhookDelivery> findByClaimToken(String claimToken);
+
+    /** Requeues rows whose dispatcher died mid-delivery. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookDelivery d SET d.status = 'PENDING', d.claimToken = NULL, d.lockedUntil = NULL, " +
+           "d.version = d.version + 1 " +
+           "WHERE d.status = 'IN_PROGRESS' AND d.lockedUntil < :now")
+    int releaseExpiredClaims(@Param("now") LocalDateTime now);
+
+    long countByStatus(String status);
+
+    @Query("SELECT d.id FROM WebhookDelivery d WHERE d.status = 'DELIVERED' AND d.deliveredAt < :before ORDER BY d.id")
+    List<Long> findDeliveredBefore(@Param("before") LocalDateTime before, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WebhookDelivery d WHERE d.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    Page<WebhookDelivery> findByTenantIdOrderByCreatedAtDesc(String tenantId, Pageable pageable);
+
+    Page<WebhookDelivery> findByTenantIdAndStatusOrderByCreatedAtDesc(String tenantId, String status, Pageable pageable);
+
+    Optional<WebhookDelivery> findByIdAndTenantId(Long id, String tenantId);
+}
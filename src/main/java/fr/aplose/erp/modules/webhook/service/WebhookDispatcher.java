@@ -0,0 +1,246 @@
+package fr.aplose.erp.modules.webhook.service;
+
+import fr.aplose.erp.modules.webhook.config.WebhookProperties;
+import fr.aplose.erp.modules.webhook.entity.WebhookDelivery;
+import fr.aplose.erp.modules.webhook.entity.WebhookEndpoint;
+import fr.aplose.erp.modules.webhook.repository.WebhookDeliveryRepository;
+import fr.aplose.erp.modules.webhook.repository.WebhookEndpointRepository;
+import fr.aplose.erp.core.metrics.CachedGauge;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the webhook outbox: claims due deliveries, posts them on virtual threads with a per-endpoint
+ * concurrency limit, and reschedules failures with exponential backoff until they are dead-lettered.
+ * Claims use a token so several application instances can poll the same table. A batch is sized so that it is sent
+ * well before its claim expires, and a delivery still waiting for its endpoint when the claim expires is not sent:
+ * another dispatcher may have requeued and claimed it. Delivered rows are purged after the retention period.
+ */
+@Slf4j
+@Component
+public class WebhookDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final int PURGE_PAGE_SIZE = 1_000;
+    private static final Duration DEPTH_REFRESH = Duration.ofSeconds(30);
+
+    private final WebhookDeliveryRepository deliveryRepository;
+    private final WebhookEndpointRepository endpointRepository;
+    private final WebhookSender sender;
+    private final WebhookProperties properties;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, Semaphore> endpointPermits = new ConcurrentHashMap<>();
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter deliveredCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+
+    public WebhookDispatcher(WebhookDeliveryRepository deliveryRepository,
+                             WebhookEndpointRepository endpointRepository,
+                             WebhookSender sender,
+                             WebhookProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.deliveryRepository = deliveryRepository;
+        this.endpointRepository = endpointRepository;
+        this.sender = sender;
+        this.properties = properties;
+        CachedGauge.register(meterRegistry, "webhook.queue.depth", "Webhook deliveries waiting to be sent", DEPTH_REFRESH,
+                () -> deliveryRepository.countByStatus(WebhookDelivery.STATUS_PENDING));
+        this.successTimer = Timer.builder("webhook.delivery.latency").tag("outcome", "success").register(meterRegistry);
+        this.failureTimer = Timer.builder("webhook.delivery.latency").tag("outcome", "failure").register(meterRegistry);
+        this.deliveredCounter = Counter.builder("webhook.deliveries").tag("result", "delivered").register(meterRegistry);
+        this.retriedCounter = Counter.builder("webhook.deliveries").tag("result", "retry").register(meterRegistry);
+        this.deadCounter = Counter.builder("webhook.deliveries").tag("result", "dead").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhooks.poll-interval-ms:2000}")
+    public void dispatch() {
+        int batchSize = claimBatchSize();
+        int claimed;
+        do {
+            claimed = dispatchBatch(batchSize);
+        } while (claimed == batchSize && !Thread.currentThread().isInterrupted());
+    }
+
+    /**
+     * The configured batch size, lowered so that even a batch for a single endpoint, sent
+     * {@code maxConcurrencyPerEndpoint} at a time with every call taking the sender's longest duration, completes
+     * within half the claim timeout.
+     */
+    int claimBatchSize() {
+        int concurrency = Math.max(1, properties.getMaxConcurrencyPerEndpoint());
+        long rounds = properties.getClaimTimeout().toMillis() / (2 * WebhookSender.MAX_SEND_DURATION.toMillis());
+        long fitting = Math.max(1, rounds) * concurrency;
+        return (int) Math.max(1, Math.min(properties.getBatchSize(), fitting));
+    }
+
+    /** Claims and sends one batch of due deliveries; returns the number claimed. */
+    private int dispatchBatch(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        int released = deliveryRepository.releaseExpiredClaims(now);
+        if (released > 0) {
+            log.warn("Requeued {} webhook deliveries with an expired claim", released);
+        }
+
+        List<Long> dueIds = deliveryRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) return 0;
+        String token = UUID.randomUUID().toString();
+        if (deliveryRepository.claim(dueIds, token, now.plus(properties.getClaimTimeout())) == 0) return 0;
+
+        List<WebhookDelivery> batch = deliveryRepository.findByClaimToken(token);
+        Map<Long, WebhookEndpoint> endpoints = endpointRepository.findAllById(
+                        batch.stream().map(WebhookDelivery::getEndpointId).distinct().toList())
+                .stream().collect(Collectors.toMap(WebhookEndpoint::getId, Function.identity()));
+
+        List<Future<?>> inFlight = new ArrayList<>(batch.size());
+        for (WebhookDelivery delivery : batch) {
+            inFlight.add(workers.submit(() -> deliver(delivery, endpoints.get(delivery.getEndpointId()))));
+        }
+        for (Future<?> f : inFlight) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return batch.size();
+            } catch (Exception e) {
+                log.warn("Webhook delivery task failed: {}", e.getMessage());
+            }
+        }
+        return batch.size();
+    }
+
+    @Scheduled(cron = "${app.webhooks.purge-cron:0 45 * * * *}")
+    public void purgeDelivered() {
+        LocalDateTime before = LocalDateTime.now().minus(properties.getDeliveredRetention());
+        int purged = 0;
+        List<Long> ids;
+        do {
+            ids = deliveryRepository.findDeliveredBefore(before, PageRequest.of(0, PURGE_PAGE_SIZE));
+            if (!ids.isEmpty()) purged += deliveryRepository.deleteByIdIn(ids);
+        } while (ids.size() == PURGE_PAGE_SIZE);
+        if (purged > 0) {
+            log.info("Purged {} delivered webhook deliveries older than {}", purged, properties.getDeliveredRetention());
+        }
+    }
+
+    private void deliver(WebhookDelivery delivery, WebhookEndpoint endpoint) {
+        if (endpoint == null || !endpoint.isEnabled()) {
+            delivery.setAttempts(delivery.getAttempts() + 1);
+            markDead(delivery, endpoint == null ? "Endpoint deleted" : "Endpoint disabled");
+            return;
+        }
+        Semaphore permits = endpointPermits.computeIfAbsent(endpoint.getId(),
+                id -> new Semaphore(Math.max(1, properties.getMaxConcurrencyPerEndpoint())));
+        WebhookSender.DeliveryResult result;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // claim expires and the delivery is requeued
+        }
+        if (delivery.getLockedUntil() != null && LocalDateTime.now().isAfter(delivery.getLockedUntil())) {
+            permits.release();
+            log.warn("Webhook delivery {} not sent: its claim expired while waiting for endpoint {}",
+                    delivery.getId(), endpoint.getId());
+            return; // requeued by the next releaseExpiredClaims, possibly already claimed elsewhere
+        }
+        try {
+            result = sender.send(endpoint.getUrl(), endpoint.getSecret(), delivery.getPayload());
+        } finally {
+            permits.release();
+        }
+
+        delivery.setAttempts(delivery.getAttempts() + 1);
+        delivery.setLastStatusCode(result.statusCode());
+        delivery.setLastDurationMs(result.durationMs());
+        delivery.setClaimToken(null);
+        delivery.setLockedUntil(null);
+        if (result.success()) {
+            successTimer.record(result.durationMs(), TimeUnit.MILLISECONDS);
+            delivery.setStatus(WebhookDelivery.STATUS_DELIVERED);
+            delivery.setDeliveredAt(LocalDateTime.now());
+            delivery.setLastError(null);
+            deliveredCounter.increment();
+            saveOutcome(delivery);
+            return;
+        }
+        failureTimer.record(result.durationMs(), TimeUnit.MILLISECONDS);
+        if (delivery.getAttempts() >= properties.getMaxAttempts()) {
+            markDead(delivery, result.error());
+            return;
+        }
+        delivery.setStatus(WebhookDelivery.STATUS_PENDING);
+        delivery.setLastError(truncate(result.error()));
+        delivery.setNextAttemptAt(LocalDateTime.now().plus(backoff(delivery.getAttempts())));
+        retriedCounter.increment();
+        saveOutcome(delivery);
+    }
+
+    private void markDead(WebhookDelivery delivery, String error) {
+        delivery.setStatus(WebhookDelivery.STATUS_DEAD);
+        delivery.setLastError(truncate(error));
+        delivery.setClaimToken(null);
+        delivery.setLockedUntil(null);
+        deadCounter.increment();
+        saveOutcome(delivery);
+        log.warn("Webhook delivery {} ({}) dead after {} attempt(s): {}",
+                delivery.getId(), delivery.getEventType(), delivery.getAttempts(), error);
+    }
+
+    /** Records the outcome of an attempt, unless the claim was lost meanwhile (the row was requeued or re-claimed). */
+    private void saveOutcome(WebhookDelivery delivery) {
+        try {
+            deliveryRepository.save(delivery);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Webhook delivery {} outcome ({}) dropped: its claim expired and it was requeued",
+                    delivery.getId(), delivery.getStatus());
+        }
+    }
+
+    /** initialBackoff * 2^(attempts-1), capped, with up to 20% jitter so retries of one outage spread out. */
+    Duration backoff(int attempts) {
+        long baseMs = properties.getInitialBackoff().toMillis();
+        long maxMs = properties.getMaxBackoff().toMillis();
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        long delayMs = Math.min(baseMs << shift, maxMs);
+        if (delayMs < 0) delayMs = maxMs;
+        long jitter = (long) (delayMs * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delayMs + jitter);
+    }
+
+    private static String truncate(String s) {
+        if (s == null) return null;
+        return s.length() > MAX_ERROR_LENGTH ? s.substring(0, MAX_ERROR_LENGTH) : s;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -1,73 +1,94 @@
 package fr.aplose.erp.modules.webhook.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Posts webhook payloads over a single shared {@link HttpClient} (HTTP/2 with HTTP/1.1 fallback, pooled connections).
+ * Delivery is synchronous; retries and scheduling are handled by {@link WebhookDispatcher}.
+ */
 @Component
 @Slf4j
 public class WebhookSender {
 
-    private static final int CONNECT_TIMEOUT_MS = 5_000;
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    private static final int READ_TIMEOUT_MS = 10_000;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+    /** Longest a {@link #send} call can take. */
+    static final Duration MAX_SEND_DURATION = CONNECT_TIMEOUT.plus(READ_TIMEOUT);
     private static final String SIGNATURE_HEADER = "X-Webhook-Signature";
     private static final String HMAC_SHA256 = "HmacSHA256";
 
-    @Async
-    public void sendAsync(String url, String secret, Map<String, Object> payload) {
+    private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(httpExecutor)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    /**
+     * POSTs the JSON body to the URL, signed with the secret when present. Never throws.
+     */
+    public DeliveryResult send(String url, String secret, String body) {
+        long start = System.nanoTime();
         try {
-            String body = OBJECT_MAPPER.writeValueAsString(payload);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(READ_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
             if (secret != null && !secret.isBlank()) {
-                headers.set(SIGNATURE_HEADER, "sha256=" + hmacHex(secret, body));
+                request.header(SIGNATURE_HEADER, "sha256=" + hmacHex(secret, body));
             }
-            HttpEntity<String> entity = new HttpEntity<>(body, headers);
-            RestTemplate rest = createRestTemplate();
-            ResponseEntity<String> response = rest.exchange(url, HttpMethod.POST, entity, String.class);
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                log.warn("Webhook POST {} returned {}", url, response.getStatusCode());
+            HttpResponse<Void> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                return new DeliveryResult(true, status, null, durationMs);
             }
-        } catch (JsonProcessingException e) {
-            log.error("Webhook payload serialization error: {}", e.getMessage());
-        } catch (ResourceAccessException e) {
-            log.warn("Webhook delivery failed (timeout/connect): {} - {}", url, e.getMessage());
+            log.debug("Webhook POST {} returned {}", url, status);
+            return new DeliveryResult(false, status, "HTTP " + status, durationMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DeliveryResult(false, null, "Interrupted", (System.nanoTime() - start) / 1_000_000);
         } catch (Exception e) {
-            log.warn("Webhook delivery failed: {} - {}", url, e.getMessage());
+            log.debug("Webhook delivery failed: {} - {}", url, e.toString());
+            return new DeliveryResult(false, null, e.getClass().getSimpleName() + ": " + e.getMessage(),
+                    (System.nanoTime() - start) / 1_000_000);
         }
     }
 
-    private static String hmacHex(String secret, String body) {
+    static String hmacHex(String secret, String body) {
         try {
             Mac mac = Mac.getInstance(HMAC_SHA256);
             mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
             byte[] hash = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(hash.length * 2);
-            for (byte b : hash) sb.append(String.format("%02x", b));
-            return sb.toString();
+            return HexFormat.of().formatHex(hash);
         } catch (Exception e) {
             throw new RuntimeException("HMAC computation failed", e);
         }
     }
 
-    private static RestTemplate createRestTemplate() {
-        RestTemplate rest = new RestTemplate();
-        org.springframework.http.client.SimpleClientHttpRequestFactory f =
-                new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        f.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        f.setReadTimeout(READ_TIMEOUT_MS);
-        rest.setRequestFactory(f);
-        return rest;
+    @PreDestroy
+    public void close() {
+        httpClient.close();
+        httpExecutor.close();
     }
+
+    /**
+     * @param statusCode null when no HTTP response was received (connect error, timeout)
+     */
+    public record DeliveryResult(boolean success, Integer statusCode, String error, long durationMs) {}
 }
@@ -1,26 +1,54 @@
 package fr.aplose.erp.modules.webhook.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.core.transaction.AfterCommit;
+import fr.aplose.erp.modules.webhook.config.WebhookProperties;
+import fr.aplose.erp.modules.webhook.entity.WebhookDelivery;
 import fr.aplose.erp.modules.webhook.entity.WebhookEndpoint;
+import fr.aplose.erp.modules.webhook.repository.WebhookDeliveryRepository;
 import fr.aplose.erp.modules.webhook.repository.WebhookEndpointRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class WebhookService {
 
     private static final DateTimeFormatter ISO = DateTimeFormatter.ISO_DATE_TIME;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final WebhookEndpointRepository repository;
-    private final WebhookSender sender;
+    private final WebhookDeliveryRepository deliveryRepository;
+
+    /**
+     * Enabled endpoints per tenant, so triggering an event does not query the endpoints table. Evicted by this
+     * instance's changes; changes made on another instance are seen once the entry expires.
+     */
+    private final Cache<String, List<EndpointRoute>> routesByTenant;
+
+    public WebhookService(WebhookEndpointRepository repository, WebhookDeliveryRepository deliveryRepository,
+                          WebhookProperties properties) {
+        this.repository = repository;
+        this.deliveryRepository = deliveryRepository;
+        this.routesByTenant = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(properties.getRouteCacheTtl())
+                .build();
+    }
 
     @Transactional(readOnly = true)
     public List<WebhookEndpoint> findByTenant(String tenantId) {
@@ -40,7 +68,9 @@ public class WebhookService {
         if (endpoint.getId() == null) {
             endpoint.setCreatedAt(LocalDateTime.now());
         }
-        return repository.save(endpoint);
+        WebhookEndpoint saved = repository.save(endpoint);
+        invalidateRoutes(tenantId);
+        return saved;
     }
 
     @Transactional
@@ -49,16 +79,72 @@ public class WebhookService {
             throw new IllegalArgumentException("Webhook endpoint not found: " + id);
         }
         repository.deleteById(id);
+        invalidateRoutes(tenantId);
     }
 
     /**
-     * Dispatches event to all enabled endpoints for the tenant that subscribe to this event.
-     * Delivery is asynchronous (fire-and-forget).
+     * Records the event in the webhook outbox for every enabled endpoint of the tenant subscribed to it.
+     * Rows are written in the caller's transaction, so an event is only delivered if the business change commits;
+     * {@link WebhookDispatcher} then delivers them with retries.
      */
+    @Transactional
     public void trigger(String tenantId, String eventType, Map<String, Object> data) {
-        List<WebhookEndpoint> endpoints = repository.findByTenantIdAndEnabledTrue(tenantId);
-        if (endpoints.isEmpty()) return;
+        triggerAll(tenantId, eventType, Collections.singletonList(data));
+    }
+
+    /** Like {@link #trigger}, for several events of one type (e.g. a batch of created invoices) saved at once. */
+    @Transactional
+    public void triggerAll(String tenantId, String eventType, List<Map<String, Object>> events) {
+        if (events.isEmpty()) return;
+        List<Long> endpointIds = routesByTenant.get(tenantId, this::loadRoutes).stream()
+                .filter(route -> route.accepts(eventType))
+                .map(EndpointRoute::id)
+                .toList();
+        if (endpointIds.isEmpty()) return;
+
+        List<WebhookDelivery> deliveries = new ArrayList<>(events.size() * endpointIds.size());
+        for (Map<String, Object> data : events) {
+            String body = serialize(tenantId, eventType, data);
+            if (body == null) continue;
+            for (Long endpointId : endpointIds) {
+                WebhookDelivery d = new WebhookDelivery();
+                d.setTenantId(tenantId);
+                d.setEndpointId(endpointId);
+                d.setEventType(eventType);
+                d.setPayload(body);
+                deliveries.add(d);
+            }
+        }
+        if (!deliveries.isEmpty()) {
+            deliveryRepository.saveAll(deliveries);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Page<WebhookDelivery> findDeliveries(String tenantId, String status, Pageable pageable) {
+        if (status != null && !status.isBlank()) {
+            return deliveryRepository.findByTenantIdAndStatusOrderByCreatedAtDesc(tenantId, status, pageable);
+        }
+        return deliveryRepository.findByTenantIdOrderByCreatedAtDesc(tenantId, pageable);
+    }
+
+    /**
+     * Puts a dead (or delivered) delivery back in the queue for an immediate new attempt.
+     */
+    @Transactional
+    public void retryDelivery(Long id, String tenantId) {
+        WebhookDelivery d = deliveryRepository.findByIdAndTenantId(id, tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Webhook delivery not found: " + id));
+        if (WebhookDelivery.STATUS_IN_PROGRESS.equals(d.getStatus())) return;
+        d.setStatus(WebhookDelivery.STATUS_PENDING);
+        d.setAttempts(0);
+        d.setNextAttemptAt(LocalDateTime.now());
+        d.setClaimToken(null);
+        d.setLockedUntil(null);
+        deliveryRepository.save(d);
+    }
 
+    private String serialize(String tenantId, String eventType, Map<String, Object> data) {
         Map<String, Object> payload = Map.of(
                 "event", eventType,
                 "tenantId", tenantId,
@@ -66,11 +152,27 @@ public class WebhookService {
                 "timestamp", LocalDateTime.now().format(ISO),
                 "data", data != null ? data : Map.of()
         );
+        try {
+            return OBJECT_MAPPER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.error("Webhook payload serialization error for {}: {}", eventType, e.getMessage());
+            return null;
+        }
+    }
 
-        for (WebhookEndpoint ep : endpoints) {
-            if (ep.getEventTypeList().stream().anyMatch(e -> "*".equals(e) || eventType.equals(e))) {
-                sender.sendAsync(ep.getUrl(), ep.getSecret(), payload);
-            }
+    private List<EndpointRoute> loadRoutes(String tenantId) {
+        return repository.findByTenantIdAndEnabledTrue(tenantId).stream()
+                .map(ep -> new EndpointRoute(ep.getId(), Set.copyOf(ep.getEventTypeList())))
+                .toList();
+    }
+
+    private void invalidateRoutes(String tenantId) {
+        AfterCommit.run(() -> routesByTenant.invalidate(tenantId));
+    }
+
+    private record EndpointRoute(Long id, Set<String> eventTypes) {
+        boolean accepts(String eventType) {
+            return eventTypes.contains("*") || eventTypes.contains(eventType);
         }
     }
 }
@@ -1,9 +1,13 @@
 package fr.aplose.erp.modules.webhook.web;
 
+import fr.aplose.erp.modules.webhook.entity.WebhookDelivery;
 import fr.aplose.erp.modules.webhook.entity.WebhookEndpoint;
 import fr.aplose.erp.modules.webhook.service.WebhookService;
 import fr.aplose.erp.security.service.ErpUserDetails;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -11,7 +15,9 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/admin/webhooks")
@@ -28,6 +34,39 @@ public class WebhookController {
         return "modules/admin/webhooks";
     }
 
+    @GetMapping("/deliveries")
+    @PreAuthorize("hasAuthority('WEBHOOK_READ')")
+    public String deliveries(@RequestParam(required = false) String status,
+                             @PageableDefault(size = 50) Pageable pageable,
+                             @AuthenticationPrincipal ErpUserDetails user,
+                             Model model) {
+        String tenantId = user.getTenantId();
+        String filter = status != null && !status.isBlank() ? status : null;
+        Page<WebhookDelivery> page = webhookService.findDeliveries(tenantId, filter, pageable);
+        Map<Long, String> endpointUrls = new HashMap<>();
+        for (WebhookEndpoint ep : webhookService.findByTenant(tenantId)) {
+            endpointUrls.put(ep.getId(), ep.getUrl());
+        }
+        model.addAttribute("deliveries", page);
+        model.addAttribute("endpointUrls", endpointUrls);
+        model.addAttribute("status", filter);
+        model.addAttribute("statuses", List.of(WebhookDelivery.STATUS_PENDING, WebhookDelivery.STATUS_IN_PROGRESS,
+                WebhookDelivery.STATUS_DELIVERED, WebhookDelivery.STATUS_DEAD));
+        return "modules/admin/webhook-deliveries";
+    }
+
+    @PostMapping("/deliveries/{id}/retry")
+    @PreAuthorize("hasAuthority('WEBHOOK_UPDATE')")
+    public String retryDelivery(@PathVariable Long id, @AuthenticationPrincipal ErpUserDetails user, RedirectAttributes ra) {
+        try {
+            webhookService.retryDelivery(id, user.getTenantId());
+            ra.addFlashAttribute("message", "webhook.deliveries.requeued");
+        } catch (IllegalArgumentException e) {
+            ra.addFlashAttribute("error", "webhook.delivery.notfound");
+        }
+        return "redirect:/admin/webhooks/deliveries";
+    }
+
     @PostMapping("/create")
     @PreAuthorize("hasAuthority('WEBHOOK_CREATE')")
     public String create(@RequestParam String url,
@@ -2,7 +2,6 @@ package fr.aplose.erp.security.api;
 
 import fr.aplose.erp.security.service.ApiKeyService;
 import fr.aplose.erp.security.service.ErpUserDetails;
-import fr.aplose.erp.security.repository.UserRepository;
 import fr.aplose.erp.tenant.context.TenantContext;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -22,6 +21,7 @@ import java.util.Optional;
 /**
  * Authenticates requests that carry an API key (X-API-Key or Authorization: Bearer).
  * Sets tenant context and a full UserDetails-based authentication so @PreAuthorize works.
+ * User details come with the validated key from the API key cache (no user reload per request).
  */
 @Slf4j
 @Component
@@ -34,7 +34,6 @@ public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
     private static final String BEARER_PREFIX = "Bearer ";
 
     private final ApiKeyService apiKeyService;
-    private final UserRepository userRepository;
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
@@ -72,13 +71,11 @@ public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
 
         ApiKeyService.ApiKeyAuthResult authResult = result.get();
         TenantContext.setCurrentTenantId(authResult.tenantId());
-        userRepository.findByIdAndTenantId(authResult.userId(), authResult.tenantId())
-                .ifPresent(user -> {
-                    user.getRoles().forEach(role -> role.getPermissions().size());
-                    ErpUserDetails details = new ErpUserDetails(user);
-                    SecurityContextHolder.getContext().setAuthentication(
-                            new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
-                });
+        ErpUserDetails details = authResult.userDetails();
+        if (details != null) {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+        }
 
         try {
             filterChain.doFilter(request, response);
@@ -19,6 +19,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByIdAndTenantId(Long id, String tenantId);
 
+    /** Loads the user with roles and permissions in one query (for building authorities outside a transaction). */
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles r LEFT JOIN FETCH r.permissions " +
+           "WHERE u.id = :id AND u.tenantId = :tenantId")
+    Optional<User> findWithAuthoritiesByIdAndTenantId(@Param("id") Long id, @Param("tenantId") String tenantId);
+
     Page<User> findByTenantIdAndDeletedAtIsNull(String tenantId, Pageable pageable);
 
     @Query("SELECT u FROM User u WHERE u.tenantId = :tenantId AND u.deletedAt IS NULL " +
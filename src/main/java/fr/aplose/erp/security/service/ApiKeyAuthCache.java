@@ -0,0 +1,87 @@
+package fr.aplose.erp.security.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.core.transaction.AfterCommit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of validated API keys: SHA-256 key hash -> tenant, user and authorities.
+ * Entries are evicted when the key is revoked, when the user or one of the tenant's roles changes,
+ * and when the key expires (checked on every hit). The TTL bounds staleness for changes made elsewhere
+ * (other application instances).
+ * <p>
+ * Evictions run after commit and bump a generation: a result loaded before an eviction (possibly from the state
+ * the committed change replaced) is not kept in the cache, see {@link #put}.
+ */
+@Component
+public class ApiKeyAuthCache {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+    private static final long MAX_SIZE = 10_000;
+
+    private final Cache<String, ApiKeyService.ApiKeyAuthResult> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public ApiKeyAuthCache(MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_SIZE)
+                .expireAfterWrite(TTL)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "api.key.auth");
+    }
+
+    ApiKeyService.ApiKeyAuthResult get(String keyHash) {
+        return cache.getIfPresent(keyHash);
+    }
+
+    /** Current generation, to read before loading a result from the database. */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a result loaded at {@code loadedGeneration}, unless an eviction happened since. The entry is written
+     * before the generation is checked again, so an eviction running concurrently either sees it or is seen.
+     */
+    void put(String keyHash, ApiKeyService.ApiKeyAuthResult result, long loadedGeneration) {
+        cache.put(keyHash, result);
+        if (generation.get() != loadedGeneration) {
+            cache.invalidate(keyHash);
+        }
+    }
+
+    void evictHash(String keyHash) {
+        cache.invalidate(keyHash);
+    }
+
+    public void evictKey(Long keyId) {
+        if (keyId == null) return;
+        AfterCommit.run(() -> evict(r -> keyId.equals(r.keyId())));
+    }
+
+    /** Call when a user's roles, status or profile change. */
+    public void evictUser(String tenantId, Long userId) {
+        if (userId == null) return;
+        AfterCommit.run(() -> evict(r -> userId.equals(r.userId()) && Objects.equals(tenantId, r.tenantId())));
+    }
+
+    /** Call when a role or its permissions change: any user of the tenant may be affected. */
+    public void evictTenant(String tenantId) {
+        if (tenantId == null) return;
+        AfterCommit.run(() -> evict(r -> tenantId.equals(r.tenantId())));
+    }
+
+    private void evict(Predicate<ApiKeyService.ApiKeyAuthResult> stale) {
+        generation.incrementAndGet();
+        cache.asMap().values().removeIf(stale);
+    }
+}
@@ -2,6 +2,7 @@ package fr.aplose.erp.security.service;
 
 import fr.aplose.erp.security.entity.ApiKey;
 import fr.aplose.erp.security.repository.ApiKeyRepository;
+import fr.aplose.erp.security.repository.UserRepository;
 import fr.aplose.erp.tenant.context.TenantContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,6 +28,9 @@ public class ApiKeyService {
     private static final int PREFIX_LENGTH = 8; // PREFIX + 5 hex chars for lookup
 
     private final ApiKeyRepository repository;
+    private final UserRepository userRepository;
+    private final ApiKeyAuthCache authCache;
+    private final ApiKeyUsageTracker usageTracker;
 
     /**
      * Creates a new API key. The raw key is returned only once and cannot be retrieved later.
@@ -53,25 +57,43 @@ public class ApiKeyService {
     }
 
     /**
-     * Validates the raw key and returns the associated tenant id and user id if valid.
+     * Validates the raw key and returns the associated tenant, user and authorities if valid.
+     * Validated keys are served from {@link ApiKeyAuthCache}; last-used timestamps are recorded
+     * by {@link ApiKeyUsageTracker} and written in batches, so a cache hit costs no query at all.
      */
-    @Transactional
     public Optional<ApiKeyAuthResult> validate(String rawKey) {
         if (rawKey == null || rawKey.length() < PREFIX_LENGTH || !rawKey.startsWith(PREFIX)) {
             return Optional.empty();
         }
-        String keyPrefix = rawKey.substring(0, PREFIX_LENGTH);
         String keyHash = hash(rawKey);
 
-        List<ApiKey> candidates = repository.findByKeyPrefix(keyPrefix);
-        for (ApiKey key : candidates) {
+        ApiKeyAuthResult result = authCache.get(keyHash);
+        if (result == null) {
+            long generation = authCache.generation();
+            result = load(rawKey.substring(0, PREFIX_LENGTH), keyHash);
+            if (result == null) {
+                return Optional.empty();
+            }
+            authCache.put(keyHash, result, generation);
+        }
+        if (result.isExpired()) {
+            authCache.evictHash(keyHash);
+            return Optional.empty();
+        }
+        usageTracker.touch(result.keyId());
+        return Optional.of(result);
+    }
+
+    private ApiKeyAuthResult load(String keyPrefix, String keyHash) {
+        for (ApiKey key : repository.findByKeyPrefix(keyPrefix)) {
             if (key.getKeyHash().equals(keyHash) && !key.isExpired()) {
-                key.setLastUsedAt(LocalDateTime.now());
-                repository.save(key);
-                return Optional.of(new ApiKeyAuthResult(key.getTenantId(), key.getUserId(), key.getId()));
+                ErpUserDetails details = userRepository.findWithAuthoritiesByIdAndTenantId(key.getUserId(), key.getTenantId())
+                        .map(ErpUserDetails::new)
+                        .orElse(null);
+                return new ApiKeyAuthResult(key.getTenantId(), key.getUserId(), key.getId(), key.getExpiresAt(), details);
             }
         }
-        return Optional.empty();
+        return null;
     }
 
     @Transactional(readOnly = true)
@@ -84,6 +106,7 @@ public class ApiKeyService {
         ApiKey key = repository.findByIdAndTenantId(id, TenantContext.getCurrentTenantId())
                 .orElseThrow(() -> new IllegalArgumentException("API key not found: " + id));
         repository.delete(key);
+        authCache.evictKey(key.getId());
         log.info("API key revoked: id={}", id);
     }
 
@@ -97,5 +120,14 @@ public class ApiKeyService {
         }
     }
 
-    public record ApiKeyAuthResult(String tenantId, Long userId, Long keyId) {}
+    /**
+     * @param userDetails null when the key's user no longer exists (tenant is still resolved, no authentication is set)
+     */
+    public record ApiKeyAuthResult(String tenantId, Long userId, Long keyId, LocalDateTime expiresAt,
+                                   ErpUserDetails userDetails) {
+
+        public boolean isExpired() {
+            return expiresAt != null && LocalDateTime.now().isAfter(expiresAt);
+        }
+    }
 }
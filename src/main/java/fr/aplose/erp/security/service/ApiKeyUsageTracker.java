@@ -0,0 +1,59 @@
+package fr.aplose.erp.security.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces API key "last used" timestamps in memory and writes them in one JDBC batch,
+ * instead of one UPDATE per API call. Only the latest use of each key since the previous flush is written.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ApiKeyUsageTracker {
+
+    private static final String UPDATE_SQL = "UPDATE api_keys SET last_used_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    public void touch(Long keyId) {
+        if (keyId != null) pending.put(keyId, LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${app.api-keys.last-used-flush-ms:30000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, LocalDateTime> e : pending.entrySet()) {
+            // Only drop the entry we are writing; a newer touch stays pending for the next flush
+            if (pending.remove(e.getKey(), e.getValue())) {
+                batch.add(new Object[]{Timestamp.valueOf(e.getValue()), e.getKey()});
+            }
+        }
+        if (batch.isEmpty()) return;
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            log.debug("Flushed last-used timestamps for {} API key(s)", batch.size());
+        } catch (Exception e) {
+            log.warn("Could not flush API key last-used timestamps: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
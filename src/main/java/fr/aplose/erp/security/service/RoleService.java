@@ -19,6 +19,7 @@ public class RoleService {
 
     private final RoleRepository roleRepository;
     private final PermissionRepository permissionRepository;
+    private final ApiKeyAuthCache apiKeyAuthCache;
 
     @Transactional(readOnly = true)
     public List<Role> findAll() {
@@ -73,6 +74,7 @@ public class RoleService {
         role.setName(dto.getName());
         role.setDescription(dto.getDescription());
         role.setPermissions(resolvePermissions(dto.getPermissionIds()));
+        apiKeyAuthCache.evictTenant(role.getTenantId());
 
         return roleRepository.save(role);
     }
@@ -84,6 +86,7 @@ public class RoleService {
             throw new IllegalStateException("Cannot delete a system role");
         }
         roleRepository.delete(role);
+        apiKeyAuthCache.evictTenant(role.getTenantId());
     }
 
     private Set<Permission> resolvePermissions(Set<Long> ids) {
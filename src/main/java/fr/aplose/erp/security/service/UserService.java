@@ -27,6 +27,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApiKeyAuthCache apiKeyAuthCache;
 
     @Transactional(readOnly = true)
     public Page<User> findAll(Pageable pageable) {
@@ -110,6 +111,7 @@ public class UserService {
             leaveValidator = userRepository.findByIdAndTenantId(dto.getLeaveValidatorId(), tenantId).orElse(null);
         }
         user.setLeaveValidator(leaveValidator);
+        apiKeyAuthCache.evictUser(user.getTenantId(), user.getId());
 
         return userRepository.save(user);
     }
@@ -148,6 +150,7 @@ public class UserService {
         user.setDeletedAt(LocalDateTime.now());
         user.setActive(false);
         userRepository.save(user);
+        apiKeyAuthCache.evictUser(user.getTenantId(), user.getId());
     }
 
     @Transactional
@@ -155,6 +158,7 @@ public class UserService {
         User user = findById(id);
         user.setActive(!user.isActive());
         userRepository.save(user);
+        apiKeyAuthCache.evictUser(user.getTenantId(), user.getId());
     }
 
     private Set<Role> resolveRoles(Set<Long> roleIds, String tenantId) {
@@ -0,0 +1,20 @@
+package fr.aplose.erp.tenant.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.tenants")
+public class TenantProperties {
+
+    /** Module snapshots are rebuilt after this delay, which bounds how long a module toggled on another instance is stale. */
+    private Duration moduleCacheTtl = Duration.ofMinutes(1);
+    /** Tenants whose module snapshot is kept in memory; the least recently used ones are rebuilt on their next request. */
+    private long moduleCacheSize = 10_000;
+}
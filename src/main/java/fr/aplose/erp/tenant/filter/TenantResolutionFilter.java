@@ -1,7 +1,7 @@
 package fr.aplose.erp.tenant.filter;
 
 import fr.aplose.erp.tenant.context.TenantContext;
-import fr.aplose.erp.tenant.repository.TenantRepository;
+import fr.aplose.erp.tenant.service.TenantLookupCache;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -22,6 +22,9 @@ import java.io.IOException;
  *  3. Session attribute TENANT_ID (dev / localhost)
  *  4. HTTP header X-Tenant-ID (future API clients)
  *  5. Fallback: first active tenant in DB (single-tenant dev mode)
+ *
+ * Code lookups and the fallback go through {@link TenantLookupCache}, so known and unknown codes
+ * do not cost a database round trip per request.
  */
 @Slf4j
 @Component
@@ -33,7 +36,7 @@ public class TenantResolutionFilter implements Filter {
     private static final String HEADER_NAME  = "X-Tenant-ID";
     private static final String PATH_PREFIX  = "/t/";
 
-    private final TenantRepository tenantRepository;
+    private final TenantLookupCache tenantLookupCache;
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
@@ -59,9 +62,7 @@ public class TenantResolutionFilter implements Filter {
         if (host != null && host.contains(".")) {
             String subdomain = host.split("\\.")[0];
             if (!"www".equals(subdomain) && !"localhost".equals(subdomain)) {
-                return tenantRepository.findByCodeAndActiveTrue(subdomain)
-                        .map(t -> t.getId())
-                        .orElse(null);
+                return tenantLookupCache.findActiveTenantIdByCode(subdomain);
             }
         }
 
@@ -70,9 +71,7 @@ public class TenantResolutionFilter implements Filter {
         if (uri.startsWith(PATH_PREFIX)) {
             String[] parts = uri.substring(PATH_PREFIX.length()).split("/", 2);
             if (parts.length > 0 && !parts[0].isBlank()) {
-                return tenantRepository.findByCodeAndActiveTrue(parts[0])
-                        .map(t -> t.getId())
-                        .orElse(null);
+                return tenantLookupCache.findActiveTenantIdByCode(parts[0]);
             }
         }
 
@@ -92,10 +91,6 @@ public class TenantResolutionFilter implements Filter {
         }
 
         // 5. Fallback: single-tenant dev mode
-        return tenantRepository.findAll().stream()
-                .filter(t -> t.isActive())
-                .findFirst()
-                .map(t -> t.getId())
-                .orElse(null);
+        return tenantLookupCache.findFallbackTenantId();
     }
 }
@@ -12,4 +12,6 @@ public interface TenantRepository extends JpaRepository<Tenant, String> {
     Optional<Tenant> findByCode(String code);
 
     Optional<Tenant> findByCodeAndActiveTrue(String code);
+
+    Optional<Tenant> findFirstByActiveTrueOrderByCreatedAtAsc();
 }
@@ -0,0 +1,109 @@
+package fr.aplose.erp.tenant.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fr.aplose.erp.core.transaction.AfterCommit;
+import fr.aplose.erp.tenant.entity.Tenant;
+import fr.aplose.erp.tenant.repository.TenantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * In-process cache of tenant code -> tenant id used by the tenant resolution filter.
+ * Unknown or inactive codes are cached too (with a shorter TTL) so that bogus subdomains
+ * do not hit the database on every request. The single-tenant fallback is cached under a reserved key.
+ * Hit/miss statistics are published as the {@code tenant.lookup} cache metrics.
+ */
+@Slf4j
+@Component
+public class TenantLookupCache {
+
+    /** Reserved key for the "first active tenant" fallback; cannot collide with a tenant code (no spaces allowed). */
+    private static final String FALLBACK_KEY = " fallback";
+
+    private static final Duration POSITIVE_TTL = Duration.ofMinutes(10);
+    private static final Duration NEGATIVE_TTL = Duration.ofSeconds(30);
+    private static final long MAX_SIZE = 10_000;
+
+    private final TenantRepository tenantRepository;
+    private final Cache<String, Optional<String>> cache;
+
+    public TenantLookupCache(TenantRepository tenantRepository, MeterRegistry meterRegistry) {
+        this.tenantRepository = tenantRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_SIZE)
+                .expireAfter(new PositiveNegativeExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tenant.lookup");
+    }
+
+    /**
+     * Returns the id of the active tenant with the given code, or null if none.
+     */
+    public String findActiveTenantIdByCode(String code) {
+        if (code == null || code.isBlank()) return null;
+        return cache.get(code, c -> tenantRepository.findByCodeAndActiveTrue(c).map(Tenant::getId)).orElse(null);
+    }
+
+    /**
+     * Returns the id of the first active tenant (single-tenant dev mode fallback), or null if none.
+     */
+    public String findFallbackTenantId() {
+        return cache.get(FALLBACK_KEY, k -> tenantRepository.findFirstByActiveTrueOrderByCreatedAtAsc().map(Tenant::getId))
+                .orElse(null);
+    }
+
+    /**
+     * Drops the cached entry for a tenant code (e.g. after a tenant is registered, so a negative entry is not served).
+     * The fallback entry is dropped as well since the first active tenant may have changed.
+     */
+    public void invalidateCode(String code) {
+        AfterCommit.run(() -> {
+            if (code != null) cache.invalidate(code);
+            cache.invalidate(FALLBACK_KEY);
+        });
+    }
+
+    /**
+     * Drops every cached entry resolving to the given tenant (e.g. after the tenant settings were changed).
+     */
+    public void invalidateTenant(String tenantId) {
+        if (tenantId == null) return;
+        AfterCommit.run(() -> {
+            cache.asMap().entrySet().removeIf(e -> e.getValue().map(id -> Objects.equals(id, tenantId)).orElse(false));
+            cache.invalidate(FALLBACK_KEY);
+            log.debug("Tenant lookup cache invalidated for tenant {}", tenantId);
+        });
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /** Unknown codes expire faster than resolved ones. */
+    private static final class PositiveNegativeExpiry implements Expiry<String, Optional<String>> {
+
+        @Override
+        public long expireAfterCreate(String key, Optional<String> value, long currentTime) {
+            return (value.isPresent() ? POSITIVE_TTL : NEGATIVE_TTL).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<String> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<String> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package fr.aplose.erp.tenant.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.aplose.erp.core.transaction.AfterCommit;
 import fr.aplose.erp.modules.nocode.dto.NoCodeMenuEntry;
 import fr.aplose.erp.modules.nocode.entity.CustomEntityDefinition;
 import fr.aplose.erp.modules.nocode.entity.ModuleDefinition;
+import fr.aplose.erp.tenant.config.TenantProperties;
 import fr.aplose.erp.tenant.entity.TenantModule;
 import fr.aplose.erp.tenant.module.CoreModule;
 import fr.aplose.erp.tenant.repository.TenantModuleRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,37 +17,69 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-@RequiredArgsConstructor
 public class TenantModuleService {
 
     private final TenantModuleRepository tenantModuleRepository;
 
+    /** Per-tenant module snapshots, rebuilt lazily after {@link #invalidate(String)} or once expired. */
+    private final Cache<String, TenantModuleSnapshot> snapshots;
+    private final AtomicLong snapshotVersion = new AtomicLong();
+
+    public TenantModuleService(TenantModuleRepository tenantModuleRepository, TenantProperties properties) {
+        this.tenantModuleRepository = tenantModuleRepository;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(properties.getModuleCacheSize())
+                .expireAfterWrite(properties.getModuleCacheTtl())
+                .build();
+    }
+
     /**
      * Returns the set of module codes enabled for the tenant.
      * If no row exists for a core module, it is considered enabled (default).
      */
     public Set<String> getEnabledModuleCodes(String tenantId) {
         if (tenantId == null || tenantId.isBlank()) return Set.of();
-        List<TenantModule> all = tenantModuleRepository.findByTenantIdOrderByModuleCode(tenantId);
+        return getSnapshot(tenantId).enabledModuleCodes();
+    }
+
+    /**
+     * Returns the cached module snapshot for the tenant, building it on first access.
+     */
+    public TenantModuleSnapshot getSnapshot(String tenantId) {
+        return snapshots.get(tenantId, this::buildSnapshot);
+    }
+
+    /**
+     * Drops the tenant's snapshot once the current transaction commits; the next read rebuilds it.
+     */
+    public void invalidate(String tenantId) {
+        if (tenantId == null) return;
+        AfterCommit.run(() -> snapshots.invalidate(tenantId));
+    }
+
+    private TenantModuleSnapshot buildSnapshot(String tenantId) {
+        Set<String> disabled = new HashSet<>();
+        for (TenantModule tm : tenantModuleRepository.findByTenantIdOrderByModuleCode(tenantId)) {
+            if (!tm.isEnabled()) disabled.add(tm.getModuleCode());
+        }
         Set<String> enabled = new HashSet<>();
+        long enabledBits = 0L;
         for (CoreModule core : CoreModule.values()) {
-            boolean isEnabled = all.stream()
-                    .filter(tm -> tm.getModuleCode().equals(core.getCode()))
-                    .findFirst()
-                    .map(TenantModule::isEnabled)
-                    .orElse(true); // default enabled if no row
-            if (isEnabled) enabled.add(core.getCode());
+            if (!disabled.contains(core.getCode())) { // default enabled if no row
+                enabled.add(core.getCode());
+                enabledBits |= TenantModuleSnapshot.bit(core);
+            }
         }
-        return enabled;
+        return new TenantModuleSnapshot(tenantId, snapshotVersion.incrementAndGet(), enabled, disabled,
+                loadNoCodeMenuEntries(tenantId), enabledBits);
     }
 
     public boolean isModuleEnabled(String tenantId, String moduleCode) {
         if (tenantId == null || moduleCode == null) return false;
-        return tenantModuleRepository.findByTenantIdAndModuleCode(tenantId, moduleCode)
-                .map(TenantModule::isEnabled)
-                .orElse(true); // no row = enabled by default
+        return getSnapshot(tenantId).isEnabled(moduleCode); // no row = enabled by default
     }
 
     @Transactional
@@ -61,6 +96,7 @@ public class TenantModuleService {
                 });
         tm.setEnabled(enabled);
         tenantModuleRepository.save(tm);
+        invalidate(tenantId);
     }
 
     /**
@@ -70,6 +106,7 @@ public class TenantModuleService {
     @Transactional
     public void ensureTenantHasModuleRows(String tenantId) {
         if (tenantId == null || tenantId.isBlank()) return;
+        boolean changed = false;
         for (CoreModule core : CoreModule.values()) {
             if (!tenantModuleRepository.existsByTenantIdAndModuleCode(tenantId, core.getCode())) {
                 TenantModule tm = new TenantModule();
@@ -77,8 +114,10 @@ public class TenantModuleService {
                 tm.setModuleCode(core.getCode());
                 tm.setEnabled(true);
                 tenantModuleRepository.save(tm);
+                changed = true;
             }
         }
+        if (changed) invalidate(tenantId);
     }
 
     /**
@@ -93,6 +132,10 @@ public class TenantModuleService {
      */
     public List<NoCodeMenuEntry> getNoCodeMenuEntries(String tenantId) {
         if (tenantId == null || tenantId.isBlank()) return List.of();
+        return getSnapshot(tenantId).noCodeMenuEntries();
+    }
+
+    private List<NoCodeMenuEntry> loadNoCodeMenuEntries(String tenantId) {
         List<TenantModule> noCodeModules = tenantModuleRepository.findNoCodeEnabledByTenantId(tenantId);
         List<NoCodeMenuEntry> entries = new ArrayList<>();
         for (TenantModule tm : noCodeModules) {
@@ -0,0 +1,48 @@
+package fr.aplose.erp.tenant.service;
+
+import fr.aplose.erp.modules.nocode.dto.NoCodeMenuEntry;
+import fr.aplose.erp.tenant.module.CoreModule;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable view of a tenant's module state: enabled core modules and no-code menu entries.
+ * The version changes every time the snapshot is rebuilt, so derived data (e.g. the sidebar) can be memoized on it.
+ * Enabled core modules are also kept as a bitset over {@link CoreModule} ordinals for the per-request module gate.
+ */
+public record TenantModuleSnapshot(
+        String tenantId,
+        long version,
+        Set<String> enabledModuleCodes,
+        Set<String> disabledModuleCodes,
+        List<NoCodeMenuEntry> noCodeMenuEntries,
+        long enabledCoreModules) {
+
+    static {
+        if (CoreModule.values().length > Long.SIZE) {
+            throw new IllegalStateException("Core module bitset holds at most " + Long.SIZE + " modules");
+        }
+    }
+
+    public TenantModuleSnapshot {
+        enabledModuleCodes = Set.copyOf(enabledModuleCodes);
+        disabledModuleCodes = Set.copyOf(disabledModuleCodes);
+        noCodeMenuEntries = List.copyOf(noCodeMenuEntries);
+    }
+
+    public static long bit(CoreModule module) {
+        return 1L << module.ordinal();
+    }
+
+    public boolean isEnabled(CoreModule module) {
+        return (enabledCoreModules & bit(module)) != 0;
+    }
+
+    /**
+     * Core or no-code module code; a module without a tenant row is enabled by default.
+     */
+    public boolean isEnabled(String moduleCode) {
+        return moduleCode != null && !disabledModuleCodes.contains(moduleCode);
+    }
+}
@@ -40,6 +40,7 @@ public class TenantRegistrationService {
     private final MailService mailService;
     private final DictionaryService dictionaryService;
     private final TenantModuleService tenantModuleService;
+    private final TenantLookupCache tenantLookupCache;
 
     @Transactional
     public String register(SignupDto dto) {
@@ -68,6 +69,7 @@ public class TenantRegistrationService {
         tenant.setTimezone("Europe/Paris");
         tenant.setActive(true);
         tenantRepository.save(tenant);
+        tenantLookupCache.invalidateCode(code);
 
         List<Permission> allPermissions = permissionRepository.findAllByOrderByModuleAscActionAsc();
         Role adminRole = new Role();
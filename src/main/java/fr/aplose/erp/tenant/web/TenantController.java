@@ -3,6 +3,7 @@ package fr.aplose.erp.tenant.web;
 import fr.aplose.erp.tenant.context.TenantContext;
 import fr.aplose.erp.tenant.entity.Tenant;
 import fr.aplose.erp.tenant.repository.TenantRepository;
+import fr.aplose.erp.tenant.service.TenantLookupCache;
 import fr.aplose.erp.tenant.web.dto.TenantDto;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +22,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class TenantController {
 
     private final TenantRepository tenantRepository;
+    private final TenantLookupCache tenantLookupCache;
 
     @GetMapping
     @PreAuthorize("hasAuthority('TENANT_READ')")
@@ -48,6 +50,7 @@ public class TenantController {
         Tenant tenant = getCurrentTenant();
         fromDto(tenant, dto);
         tenantRepository.save(tenant);
+        tenantLookupCache.invalidateTenant(tenant.getId());
         ra.addFlashAttribute("successMessage", "Settings saved successfully");
         return "redirect:/admin/settings";
     }
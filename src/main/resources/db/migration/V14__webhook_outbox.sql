@@ -0,0 +1,32 @@
+-- ============================================================
+-- V14: Webhook outbox (livraisons durables, relances, lettres mortes)
+-- ============================================================
+
+CREATE TABLE webhook_deliveries (
+    id               BIGINT       NOT NULL AUTO_INCREMENT,
+    tenant_id        VARCHAR(36)  NOT NULL,
+    endpoint_id      BIGINT       NOT NULL,
+    event_type       VARCHAR(100) NOT NULL,
+    payload          TEXT         NOT NULL,
+    status           VARCHAR(20)  NOT NULL DEFAULT 'PENDING',
+    attempts         INT          NOT NULL DEFAULT 0,
+    next_attempt_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claim_token      VARCHAR(36)  NULL,
+    locked_until     TIMESTAMP    NULL,
+    last_status_code INT          NULL,
+    last_error       VARCHAR(500) NULL,
+    last_duration_ms BIGINT       NULL,
+    created_at       TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    delivered_at     TIMESTAMP    NULL,
+    version          BIGINT       NOT NULL DEFAULT 0,
+    CONSTRAINT pk_webhook_deliveries PRIMARY KEY (id),
+    CONSTRAINT fk_wd_tenant   FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE,
+    CONSTRAINT fk_wd_endpoint FOREIGN KEY (endpoint_id) REFERENCES webhook_endpoints(id) ON DELETE CASCADE
+);
+
+-- Dispatcher polls due rows by status and next attempt time
+CREATE INDEX idx_webhook_deliveries_due ON webhook_deliveries(status, next_attempt_at);
+CREATE INDEX idx_webhook_deliveries_claim ON webhook_deliveries(claim_token);
+CREATE INDEX idx_webhook_deliveries_tenant ON webhook_deliveries(tenant_id, created_at);
+-- WebhookDispatcher.purgeDelivered deletes delivered rows past the retention period
+CREATE INDEX idx_webhook_deliveries_delivered ON webhook_deliveries(status, delivered_at);
@@ -0,0 +1,40 @@
+-- ============================================================
+-- V15: Agrégats mensuels factures (CA émis, reste à encaisser / à payer)
+-- ============================================================
+
+-- One row per tenant, month (yyyymm), invoice type and currency.
+-- issued_*: validated/paid invoices by issue month (revenue).
+-- open_*:   remaining amount of validated/partially paid invoices by due month (AR/AP, treasury forecast).
+CREATE TABLE invoice_monthly_facts (
+    tenant_id      VARCHAR(36)   NOT NULL,
+    period_month   INT           NOT NULL,
+    invoice_type   VARCHAR(30)   NOT NULL,
+    currency_code  CHAR(3)       NOT NULL,
+    issued_amount  NUMERIC(19,4) NOT NULL DEFAULT 0,
+    issued_count   INT           NOT NULL DEFAULT 0,
+    open_amount    NUMERIC(19,4) NOT NULL DEFAULT 0,
+    open_count     INT           NOT NULL DEFAULT 0,
+    CONSTRAINT pk_invoice_monthly_facts PRIMARY KEY (tenant_id, period_month, invoice_type, currency_code),
+    CONSTRAINT fk_imf_tenant FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE
+);
+
+-- Backfill from existing invoices (same statement as InvoiceFactService.rebuild, for all tenants)
+INSERT INTO invoice_monthly_facts (tenant_id, period_month, invoice_type, currency_code,
+                                   issued_amount, issued_count, open_amount, open_count)
+SELECT tenant_id, period_month, invoice_type, currency_code,
+       SUM(issued_amount), SUM(issued_count), SUM(open_amount), SUM(open_count)
+FROM (
+    SELECT tenant_id, YEAR(date_issued) * 100 + MONTH(date_issued) AS period_month, type AS invoice_type, currency_code,
+           total_amount AS issued_amount, 1 AS issued_count, 0 AS open_amount, 0 AS open_count
+    FROM invoices
+    WHERE status IN ('VALIDATED', 'PARTIALLY_PAID', 'PAID')
+    UNION ALL
+    SELECT tenant_id, YEAR(date_due) * 100 + MONTH(date_due), type, currency_code,
+           0, 0, amount_remaining, 1
+    FROM invoices
+    WHERE status IN ('VALIDATED', 'PARTIALLY_PAID') AND amount_remaining > 0
+) f
+GROUP BY tenant_id, period_month, invoice_type, currency_code;
+
+-- Partial-month corrections of the revenue report scan invoices by issue date
+CREATE INDEX idx_invoices_issued ON invoices(tenant_id, type, date_issued);
@@ -0,0 +1,33 @@
+-- ============================================================
+-- V16: Numérotation des documents (référence des tickets, remise à zéro annuelle)
+-- ============================================================
+
+ALTER TABLE tickets ADD COLUMN reference VARCHAR(50) NULL;
+
+-- Existing tickets keep their id as number; the TICKET sequence is seeded above the highest one
+UPDATE tickets SET reference = CONCAT('TCK-', LPAD(CAST(id AS CHAR), 5, '0')) WHERE reference IS NULL;
+
+CREATE UNIQUE INDEX uq_tickets_ref ON tickets(tenant_id, reference);
+
+-- Sequences whose format includes the year get one row per year; the others keep one row with seq_year 0.
+-- The unique key changes, so the table is rebuilt; existing yearly counters are carried over to the current year.
+CREATE TABLE number_sequences_by_year (
+    id          BIGINT      NOT NULL AUTO_INCREMENT,
+    tenant_id   VARCHAR(36) NOT NULL,
+    module      VARCHAR(50) NOT NULL,
+    seq_year    SMALLINT    NOT NULL DEFAULT 0,
+    prefix      VARCHAR(20),
+    year_in_seq BOOLEAN     NOT NULL DEFAULT TRUE,
+    last_number BIGINT      NOT NULL DEFAULT 0,
+    padding     SMALLINT    NOT NULL DEFAULT 4,
+    CONSTRAINT pk_number_sequences_by_year PRIMARY KEY (id),
+    CONSTRAINT fk_number_sequences_by_year_tenant FOREIGN KEY (tenant_id) REFERENCES tenants(id),
+    CONSTRAINT uq_number_sequences_by_year UNIQUE (tenant_id, module, seq_year)
+);
+
+INSERT INTO number_sequences_by_year (tenant_id, module, seq_year, prefix, year_in_seq, last_number, padding)
+SELECT tenant_id, module, CASE WHEN year_in_seq THEN YEAR(CURRENT_DATE) ELSE 0 END, prefix, year_in_seq, last_number, padding
+FROM number_sequences;
+
+DROP TABLE number_sequences;
+ALTER TABLE number_sequences_by_year RENAME TO number_sequences;
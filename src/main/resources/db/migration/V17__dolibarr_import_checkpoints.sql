@@ -0,0 +1,15 @@
+-- ============================================================
+-- V17: Import Dolibarr paginé et reprenable
+-- ============================================================
+
+-- Next page to import per run and step (one row per step and Dolibarr resource),
+-- written in the same transaction as the page itself
+CREATE TABLE dolibarr_import_checkpoint (
+    import_run_id  BIGINT       NOT NULL,
+    step           VARCHAR(120) NOT NULL,
+    next_page      INT          NOT NULL DEFAULT 0,
+    completed      BOOLEAN      NOT NULL DEFAULT FALSE,
+    updated_at     TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_dolibarr_import_checkpoint PRIMARY KEY (import_run_id, step),
+    CONSTRAINT fk_dicp_run FOREIGN KEY (import_run_id) REFERENCES dolibarr_import_run(id) ON DELETE CASCADE
+);
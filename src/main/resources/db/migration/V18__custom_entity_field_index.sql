@@ -0,0 +1,39 @@
+-- ============================================================
+-- V18: Index typé des champs des objets no-code
+-- ============================================================
+
+-- One row per record, index version and field of the definition's fields_schema, typed by the field's type,
+-- so that lists can filter and sort on any field without parsing payloads. A schema change builds a new
+-- version in the background while lists keep reading the active one.
+CREATE TABLE custom_entity_field_index (
+    data_id               BIGINT        NOT NULL,
+    index_version         INT           NOT NULL,
+    field_code            VARCHAR(80)   NOT NULL,
+    tenant_id             VARCHAR(36)   NOT NULL,
+    entity_definition_id  BIGINT        NOT NULL,
+    value_string          VARCHAR(255),
+    value_number          NUMERIC(19,4),
+    value_date            DATE,
+    CONSTRAINT pk_custom_entity_field_index PRIMARY KEY (data_id, index_version, field_code),
+    CONSTRAINT fk_cefi_data FOREIGN KEY (data_id) REFERENCES custom_entity_data(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_cefi_string ON custom_entity_field_index(tenant_id, entity_definition_id, index_version, field_code, value_string, data_id);
+CREATE INDEX idx_cefi_number ON custom_entity_field_index(tenant_id, entity_definition_id, index_version, field_code, value_number, data_id);
+CREATE INDEX idx_cefi_date   ON custom_entity_field_index(tenant_id, entity_definition_id, index_version, field_code, value_date, data_id);
+-- Purge of the rows of a replaced version
+CREATE INDEX idx_cefi_version ON custom_entity_field_index(entity_definition_id, index_version, data_id);
+
+-- Default list order (most recently updated first)
+CREATE INDEX idx_custom_entity_data_list ON custom_entity_data(tenant_id, entity_definition_id, updated_at);
+-- Records written while a version was being built are re-read from their update time
+CREATE INDEX idx_custom_entity_data_updated ON custom_entity_data(entity_definition_id, updated_at);
+
+-- Active version, the schema it was built from and its hash; version being built, its schema and its last
+-- heartbeat (a build that stopped beating is taken over). Existing records are indexed at startup.
+ALTER TABLE custom_entity_definitions ADD COLUMN indexed_schema_hash VARCHAR(64) NULL;
+ALTER TABLE custom_entity_definitions ADD COLUMN index_version INT NULL;
+ALTER TABLE custom_entity_definitions ADD COLUMN indexed_fields_schema TEXT NULL;
+ALTER TABLE custom_entity_definitions ADD COLUMN building_index_version INT NULL;
+ALTER TABLE custom_entity_definitions ADD COLUMN building_fields_schema TEXT NULL;
+ALTER TABLE custom_entity_definitions ADD COLUMN building_heartbeat_at TIMESTAMP NULL;
@@ -0,0 +1,17 @@
+-- ============================================================
+-- V19: Compteurs KPI du tableau de bord
+-- ============================================================
+
+-- Maintained by KpiCounterListener on every JPA insert/update/delete of the counted entities,
+-- instead of counting rows on each dashboard view; rows are (re)computed when missing and every night.
+-- Each write adjusts one of a few shard rows picked at random and reads sum them, so concurrent writes of one
+-- tenant do not queue on a single row lock.
+CREATE TABLE kpi_counters (
+    tenant_id      VARCHAR(36)  NOT NULL,
+    counter_code   VARCHAR(40)  NOT NULL,
+    shard          SMALLINT     NOT NULL,
+    counter_value  BIGINT       NOT NULL DEFAULT 0,
+    updated_at     TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_kpi_counters PRIMARY KEY (tenant_id, counter_code, shard),
+    CONSTRAINT fk_kpi_counters_tenant FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE
+);
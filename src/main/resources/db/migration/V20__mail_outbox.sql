@@ -0,0 +1,31 @@
+-- ============================================================
+-- V20: File d'envoi des e-mails (outbox, relances, lettres mortes)
+-- ============================================================
+
+-- Written in the caller's transaction by MailService, sent in batches by MailOutboxDispatcher.
+-- tenant_id is null for platform mails (e.g. during tenant registration)
+CREATE TABLE mail_outbox (
+    id               BIGINT        NOT NULL AUTO_INCREMENT,
+    tenant_id        VARCHAR(36)   NULL,
+    recipient        VARCHAR(320)  NOT NULL,
+    subject          VARCHAR(1000) NOT NULL,
+    body_text        TEXT          NULL,
+    body_html        TEXT          NULL,
+    template_key     VARCHAR(50)   NULL,
+    status           VARCHAR(20)   NOT NULL DEFAULT 'PENDING',
+    attempts         INT           NOT NULL DEFAULT 0,
+    next_attempt_at  TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claim_token      VARCHAR(36)   NULL,
+    locked_until     TIMESTAMP     NULL,
+    last_error       VARCHAR(500)  NULL,
+    created_at       TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at          TIMESTAMP     NULL,
+    version          BIGINT        NOT NULL DEFAULT 0,
+    CONSTRAINT pk_mail_outbox PRIMARY KEY (id)
+);
+
+-- Dispatcher polls due rows by status and next attempt time
+CREATE INDEX idx_mail_outbox_due ON mail_outbox(status, next_attempt_at);
+CREATE INDEX idx_mail_outbox_claim ON mail_outbox(claim_token);
+-- MailOutboxDispatcher.purgeSent deletes sent rows past the retention period
+CREATE INDEX idx_mail_outbox_sent ON mail_outbox(status, sent_at);
@@ -0,0 +1,24 @@
+-- ============================================================
+-- V21: Stockage GED adressé par contenu (SHA-256, déduplication)
+-- ============================================================
+
+-- One row per stored file content and tenant; ref_count is the number of documents pointing to it.
+-- Unreferenced contents are purged after a grace period by GedBlobStore
+CREATE TABLE ged_blobs (
+    tenant_id     VARCHAR(36)  NOT NULL,
+    content_hash  CHAR(64)     NOT NULL,
+    size_bytes    BIGINT       NOT NULL,
+    ref_count     INT          NOT NULL DEFAULT 0,
+    created_at    TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at    TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_ged_blobs PRIMARY KEY (tenant_id, content_hash),
+    CONSTRAINT fk_ged_blobs_tenant FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_ged_blobs_orphans ON ged_blobs(ref_count, updated_at);
+
+-- Null for documents still in the former flat layout (moved by GedStorageMigrator)
+ALTER TABLE ged_documents ADD COLUMN content_hash CHAR(64) NULL;
+
+-- Mapped by BaseEntity but missing since V2, which made every upload fail
+ALTER TABLE ged_documents ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
@@ -0,0 +1,19 @@
+-- ============================================================
+-- V22: Texte extrait des documents GED (recherche plein texte)
+-- ============================================================
+
+-- Text extracted from a stored content, shared by every document pointing to it; indexed with the document
+-- by the global search. Contents without a row are still to be extracted (GedTextExtractionService)
+CREATE TABLE ged_texts (
+    tenant_id     VARCHAR(36)  NOT NULL,
+    content_hash  CHAR(64)     NOT NULL,
+    status        VARCHAR(20)  NOT NULL,
+    content       MEDIUMTEXT   NULL,
+    error         VARCHAR(500) NULL,
+    extracted_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_ged_texts PRIMARY KEY (tenant_id, content_hash),
+    CONSTRAINT fk_ged_texts_blob FOREIGN KEY (tenant_id, content_hash)
+        REFERENCES ged_blobs(tenant_id, content_hash) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_ged_documents_hash ON ged_documents(tenant_id, content_hash);
@@ -0,0 +1,21 @@
+-- ============================================================
+-- V23: Facturation récurrente des contrats
+-- ============================================================
+
+-- billing_frequency null: the contract is not invoiced automatically.
+-- next_billing_date is the start of the next period to invoice (null once the contract is over)
+ALTER TABLE business_contracts ADD COLUMN billing_frequency VARCHAR(20) NULL;
+ALTER TABLE business_contracts ADD COLUMN billing_amount NUMERIC(19,4) NULL;
+ALTER TABLE business_contracts ADD COLUMN billing_vat_rate NUMERIC(6,4) NOT NULL DEFAULT 0;
+ALTER TABLE business_contracts ADD COLUMN billing_label VARCHAR(500) NULL;
+ALTER TABLE business_contracts ADD COLUMN currency_code CHAR(3) NULL;
+ALTER TABLE business_contracts ADD COLUMN next_billing_date DATE NULL;
+
+-- Billing run: due contracts are found by date, then paged per tenant
+CREATE INDEX idx_bc_next_billing ON business_contracts(next_billing_date, tenant_id);
+
+-- One invoice per contract and billing period, whatever the number of runs
+ALTER TABLE invoices ADD COLUMN contract_id BIGINT NULL;
+ALTER TABLE invoices ADD COLUMN billing_period_start DATE NULL;
+ALTER TABLE invoices ADD CONSTRAINT fk_inv_contract FOREIGN KEY (contract_id) REFERENCES business_contracts(id) ON DELETE SET NULL;
+ALTER TABLE invoices ADD CONSTRAINT uq_invoices_contract_period UNIQUE (contract_id, billing_period_start);
@@ -0,0 +1,36 @@
+-- ============================================================
+-- V24: Relances automatiques des factures impayées
+-- ============================================================
+
+-- Reminder levels of a tenant: level n is sent once an invoice is days_after_due days overdue.
+-- A tenant without levels sends no automatic reminder
+CREATE TABLE dunning_levels (
+    id              BIGINT       NOT NULL AUTO_INCREMENT,
+    tenant_id       VARCHAR(36)  NOT NULL,
+    level_no        SMALLINT     NOT NULL,
+    days_after_due  INT          NOT NULL,
+    template_key    VARCHAR(50)  NOT NULL DEFAULT 'invoice.reminder',
+    created_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_dunning_levels PRIMARY KEY (id),
+    CONSTRAINT uq_dunning_levels_tenant_level UNIQUE (tenant_id, level_no),
+    CONSTRAINT fk_dunning_levels_tenant FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE
+);
+
+-- Highest reminder level already sent for the invoice (0: none), set with last_reminder_at by DunningService
+ALTER TABLE invoices ADD COLUMN reminder_level SMALLINT NOT NULL DEFAULT 0;
+
+-- Dunning run: a tenant's invoices are paged by (third party, id) so that each customer gets a single e-mail
+CREATE INDEX idx_invoices_dunning ON invoices(tenant_id, third_party_id, id);
+
+INSERT INTO email_templates (template_key, subject, body_html, body_text, locale) VALUES
+('invoice.reminder',
+ 'Relance n°{{level}} - {{invoiceCount}} facture(s) impayée(s) - {{companyName}}',
+ '<p>Bonjour {{thirdPartyName}},</p><p>Sauf erreur de notre part, les factures suivantes restent impayées à ce jour :</p>{{invoicesHtml}}<p>Montant total dû : <strong>{{totalDue}}</strong></p><p>Merci de procéder à leur règlement dans les meilleurs délais. Si le paiement a déjà été effectué, veuillez ne pas tenir compte de ce message.</p><p>Cordialement,<br/>{{companyName}}</p>',
+ 'Bonjour {{thirdPartyName}}, Sauf erreur de notre part, les factures suivantes restent impayées à ce jour : {{invoicesText}} Montant total dû : {{totalDue}}. Merci de procéder à leur règlement dans les meilleurs délais. Si le paiement a déjà été effectué, veuillez ne pas tenir compte de ce message. Cordialement, {{companyName}}',
+ 'fr'),
+('invoice.reminder',
+ 'Reminder #{{level}} - {{invoiceCount}} unpaid invoice(s) - {{companyName}}',
+ '<p>Hello {{thirdPartyName}},</p><p>According to our records, the following invoices are still unpaid:</p>{{invoicesHtml}}<p>Total amount due: <strong>{{totalDue}}</strong></p><p>Please arrange payment at your earliest convenience. If you have already paid, please disregard this message.</p><p>Kind regards,<br/>{{companyName}}</p>',
+ 'Hello {{thirdPartyName}}, According to our records, the following invoices are still unpaid: {{invoicesText}} Total amount due: {{totalDue}}. Please arrange payment at your earliest convenience. If you have already paid, please disregard this message. Kind regards, {{companyName}}',
+ 'en');
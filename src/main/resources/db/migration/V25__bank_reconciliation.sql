@@ -0,0 +1,20 @@
+-- ============================================================
+-- V25: Rapprochement bancaire automatique
+-- ============================================================
+
+-- Counterparty of a movement, when the bank statement gives it; matched against third_parties.iban / name
+ALTER TABLE bank_movements ADD COLUMN counterparty_name VARCHAR(255) NULL;
+ALTER TABLE bank_movements ADD COLUMN counterparty_iban VARCHAR(34) NULL;
+-- Set once the movement is matched; match_confidence is the matcher's score (0..1), 1 when reconciled by hand
+ALTER TABLE bank_movements ADD COLUMN reconciled_at TIMESTAMP NULL;
+ALTER TABLE bank_movements ADD COLUMN match_confidence NUMERIC(4,3) NULL;
+
+-- Movements still to reconcile are read per tenant
+CREATE INDEX idx_bank_movements_unreconciled ON bank_movements(tenant_id, reconciled_at);
+
+ALTER TABLE third_parties ADD COLUMN iban VARCHAR(34) NULL;
+
+-- Payments created by the reconciliation, one per invoice settled by the movement
+ALTER TABLE payments ADD COLUMN bank_movement_id BIGINT NULL;
+ALTER TABLE payments ADD CONSTRAINT fk_pay_bank_movement FOREIGN KEY (bank_movement_id) REFERENCES bank_movements(id) ON DELETE SET NULL;
+CREATE INDEX idx_payments_bank_movement ON payments(bank_movement_id);
@@ -0,0 +1,26 @@
+-- ============================================================
+-- V26: Import de relevés bancaires et soldes journaliers
+-- ============================================================
+
+-- Hash of (account, date, amount, label) set on every new movement; statement imports skip lines already recorded.
+-- Movements entered before V26 have none and are hashed when an import loads the account's hashes
+ALTER TABLE bank_movements ADD COLUMN import_hash BIGINT;
+
+-- Running balance of an account at the end of each day with movements, kept up to date by BankBalanceService
+-- from the earliest date a write touches: the current balance is the latest row
+CREATE TABLE bank_daily_balances (
+    tenant_id        VARCHAR(36)   NOT NULL,
+    account_id       BIGINT        NOT NULL,
+    balance_date     DATE          NOT NULL,
+    movements_total  NUMERIC(19,4) NOT NULL,
+    closing_balance  NUMERIC(19,4) NOT NULL,
+    CONSTRAINT pk_bank_daily_balances PRIMARY KEY (account_id, balance_date),
+    CONSTRAINT fk_bdb_tenant  FOREIGN KEY (tenant_id)  REFERENCES tenants(id),
+    CONSTRAINT fk_bdb_account FOREIGN KEY (account_id) REFERENCES bank_accounts(id) ON DELETE CASCADE
+);
+
+INSERT INTO bank_daily_balances (tenant_id, account_id, balance_date, movements_total, closing_balance)
+SELECT d.tenant_id, d.account_id, d.movement_date, d.total,
+       (SELECT SUM(m.amount) FROM bank_movements m WHERE m.account_id = d.account_id AND m.movement_date <= d.movement_date)
+FROM (SELECT tenant_id, account_id, movement_date, SUM(amount) AS total
+      FROM bank_movements GROUP BY tenant_id, account_id, movement_date) d;
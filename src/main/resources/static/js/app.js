@@ -20,3 +20,36 @@ document.querySelectorAll('[data-confirm]').forEach(el => {
         }
     });
 });
+
+// Streams an AI suggestion (server-sent events answered to a POST): onToken receives each fragment as the model
+// produces it; resolves with the final {available, suggestion}
+async function aiStream(url, body, onToken) {
+    const headers = { 'Content-Type': 'application/json', 'Accept': 'text/event-stream' };
+    if (csrfToken) headers[csrfHeader || 'X-CSRF-TOKEN'] = csrfToken;
+    const response = await fetch(url, { method: 'POST', headers: headers, body: JSON.stringify(body) });
+    if (!response.ok || !response.body) throw new Error('HTTP ' + response.status);
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    let result = null;
+    for (;;) {
+        const { value, done } = await reader.read();
+        if (done) break;
+        buffer += value;
+        let end;
+        while ((end = buffer.indexOf('\n\n')) >= 0) {
+            const block = buffer.slice(0, end);
+            buffer = buffer.slice(end + 2);
+            let event = 'message';
+            let data = '';
+            block.split('\n').forEach(line => {
+                if (line.startsWith('event:')) event = line.slice(6).trim();
+                else if (line.startsWith('data:')) data += line.slice(5);
+            });
+            if (!data) continue;
+            const payload = JSON.parse(data);
+            if (event === 'token') onToken(payload.text);
+            else if (event === 'done') result = payload;
+        }
+    }
+    return result;
+}
@@ -0,0 +1,136 @@
+package fr.aplose.erp.ai.provider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for Ollama's OpenAI-compatible {@code /v1/chat/completions}: answers {@code "echo: <user message>"},
+ * streamed word by word when the request has {@code stream: true}.
+ * Responses can be held back with {@link #hold()} to have requests overlap, fail with {@link #failNext()}, or
+ * have their stream cut short with {@link #truncateNext()}.
+ */
+public class OllamaStub implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger truncations = new AtomicInteger();
+    private final AtomicInteger streamed = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    public volatile long tokenDelayMs = 5;
+
+    public OllamaStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v1/chat/completions", this::complete);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    /** Streams sent up to {@code [DONE]}. */
+    public int streamed() {
+        return streamed.get();
+    }
+
+    /** Streams the client disconnected from before the end. */
+    public int aborted() {
+        return aborted.get();
+    }
+
+    void hold() {
+        gate = new CountDownLatch(1);
+    }
+
+    void release() {
+        gate.countDown();
+    }
+
+    /** The next request gets a 500. */
+    void failNext() {
+        failures.incrementAndGet();
+    }
+
+    /** The next stream stops after its first word, without {@code [DONE]}. */
+    void truncateNext() {
+        truncations.incrementAndGet();
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        JsonNode request = JSON.readTree(exchange.getRequestBody());
+        JsonNode messages = request.path("messages");
+        String user = messages.get(messages.size() - 1).path("content").asText();
+        if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            gate.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (request.path("stream").asBoolean()) {
+            stream(exchange, "echo: " + user);
+            return;
+        }
+        byte[] body = JSON.writeValueAsBytes(Map.of("model", request.path("model").asText(),
+                "choices", new Object[]{Map.of("index", 0, "message", Map.of("role", "assistant", "content", "echo: " + user))}));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** Sends the answer word by word as {@code chat.completion.chunk} events, {@link #tokenDelayMs} apart. */
+    private void stream(HttpExchange exchange, String answer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        boolean truncate = truncations.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String word : answer.split("(?<= )")) {
+                Map<String, Object> chunk = Map.of("object", "chat.completion.chunk",
+                        "choices", new Object[]{Map.of("index", 0, "delta", Map.of("content", word))});
+                out.write(("data: " + JSON.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(tokenDelayMs);
+                if (truncate) return;
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            streamed.incrementAndGet();
+        } catch (IOException e) {
+            aborted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+        server.stop(0);
+    }
+}
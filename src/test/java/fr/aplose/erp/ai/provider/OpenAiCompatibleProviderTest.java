@@ -0,0 +1,126 @@
+package fr.aplose.erp.ai.provider;
+
+import fr.aplose.erp.ai.config.AiProperties;
+import fr.aplose.erp.ai.config.EffectiveAiConfig;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenAiCompatibleProviderTest {
+
+    private OllamaStub ollama;
+    private OpenAiCompatibleProvider provider;
+    private EffectiveAiConfig config;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ollama = new OllamaStub();
+        provider = new OpenAiCompatibleProvider(new AiProperties());
+        config = new EffectiveAiConfig(ollama.baseUrl(), null, "llama3");
+        TenantContext.setCurrentTenantId("tenant-a");
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.shutdown();
+        ollama.close();
+        TenantContext.clear();
+    }
+
+    @Test
+    void identicalPromptsOfATenantAreAnsweredFromCache() {
+        assertThat(provider.completeWithConfig(config, "system", "Hello {{name}}", Map.of("name", "Ada"))).isEqualTo("echo: Hello Ada");
+        assertThat(provider.completeWithConfig(config, "system", "Hello Ada", Map.of())).isEqualTo("echo: Hello Ada");
+        assertThat(ollama.requests()).isEqualTo(1);
+
+        provider.completeWithConfig(config, "other system", "Hello Ada", Map.of());
+        provider.completeWithConfig(new EffectiveAiConfig(ollama.baseUrl(), null, "mistral"), "system", "Hello Ada", Map.of());
+        TenantContext.setCurrentTenantId("tenant-b");
+        provider.completeWithConfig(config, "system", "Hello Ada", Map.of());
+        assertThat(ollama.requests()).isEqualTo(4);
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneCall() throws Exception {
+        ollama.hold();
+        List<Future<String>> answers;
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            answers = IntStream.range(0, 8).mapToObj(i -> users.submit(() -> {
+                TenantContext.setCurrentTenantId("tenant-a");
+                return provider.completeWithConfig(config, "system", "Score this proposal", Map.of());
+            })).toList();
+            while (ollama.requests() == 0) Thread.sleep(10);
+            Thread.sleep(100);
+            ollama.release();
+        }
+        for (Future<String> answer : answers) {
+            assertThat(answer.get()).isEqualTo("echo: Score this proposal");
+        }
+        assertThat(ollama.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCompletionsAreNotCached() {
+        ollama.failNext();
+
+        assertThat(provider.completeWithConfig(config, null, "Hello", Map.of())).isNull();
+        assertThat(provider.completeWithConfig(config, null, "Hello", Map.of())).isEqualTo("echo: Hello");
+        assertThat(provider.completeWithConfig(config, null, "Hello", Map.of())).isEqualTo("echo: Hello");
+        assertThat(ollama.requests()).isEqualTo(2);
+    }
+
+    @Test
+    void streamedTokensArriveInOrderAndTheResultIsCached() throws Exception {
+        List<String> tokens = new CopyOnWriteArrayList<>();
+
+        String text = provider.streamWithConfig(config, "system", "Draft a reply", Map.of(), tokens::add).get(10, TimeUnit.SECONDS);
+
+        assertThat(text).isEqualTo("echo: Draft a reply");
+        assertThat(tokens).containsExactly("echo: ", "Draft ", "a ", "reply");
+        assertThat(provider.completeWithConfig(config, "system", "Draft a reply", Map.of())).isEqualTo(text);
+        assertThat(ollama.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void aStreamCutShortIsNotCached() throws Exception {
+        ollama.truncateNext();
+        List<String> tokens = new CopyOnWriteArrayList<>();
+
+        String text = provider.streamWithConfig(config, null, "Draft a reply", Map.of(), tokens::add).get(10, TimeUnit.SECONDS);
+
+        assertThat(text).isNull();
+        assertThat(tokens).containsExactly("echo: ");
+        assertThat(provider.completeWithConfig(config, null, "Draft a reply", Map.of())).isEqualTo("echo: Draft a reply");
+        assertThat(ollama.requests()).isEqualTo(2);
+    }
+
+    @Test
+    void cancellingAStreamAbortsTheRequest() throws Exception {
+        ollama.tokenDelayMs = 200;
+        List<String> tokens = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<String> stream = provider.streamWithConfig(config, null,
+                "one two three four five six seven eight nine ten", Map.of(), tokens::add);
+        while (tokens.isEmpty()) Thread.sleep(10);
+        stream.cancel(true);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ollama.aborted() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertThat(ollama.aborted()).isEqualTo(1);
+        assertThat(ollama.streamed()).isZero();
+        assertThat(tokens.size()).isLessThan(5);
+    }
+}
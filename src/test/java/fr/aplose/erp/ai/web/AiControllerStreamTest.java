@@ -0,0 +1,95 @@
+package fr.aplose.erp.ai.web;
+
+import fr.aplose.erp.ai.provider.OllamaStub;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AiControllerStreamTest {
+
+    private static final OllamaStub OLLAMA = startStub();
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mvc;
+
+    @DynamicPropertySource
+    static void aiProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.ai.enabled", () -> "true");
+        registry.add("app.ai.base-url", OLLAMA::baseUrl);
+        registry.add("app.ai.model", () -> "llama3");
+    }
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        OLLAMA.close();
+    }
+
+    @Test
+    void lineSuggestionIsRelayedTokenByToken() throws Exception {
+        MvcResult started = mvc.perform(post("/ai/suggest-line/stream")
+                        .with(user("ai-user").authorities(() -> "AI_USE")).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\": \"audit\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(10_000);
+
+        String events = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(events).startsWith("event:token\ndata:{\"text\":\"echo: \"}\n\n");
+        assertThat(events.split("event:token").length - 1).isGreaterThan(5);
+        assertThat(events).contains("event:done\ndata:").contains("\"available\":true")
+                .contains("\"suggestion\":\"echo: Propose un libellé");
+    }
+
+    @Test
+    void streamingRequiresTheAiAuthority() throws Exception {
+        mvc.perform(post("/ai/suggest-line/stream")
+                        .with(user("no-ai").authorities(() -> "THIRD_PARTY_READ")).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\": \"audit\"}"))
+                .andExpect(status().isForbidden());
+    }
+
+    private static OllamaStub startStub() {
+        try {
+            return new OllamaStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
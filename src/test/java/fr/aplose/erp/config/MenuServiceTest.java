@@ -0,0 +1,60 @@
+package fr.aplose.erp.config;
+
+import fr.aplose.erp.config.dto.SidebarMenuEntry;
+import fr.aplose.erp.config.dto.SidebarMenuSection;
+import fr.aplose.erp.tenant.module.CoreModule;
+import fr.aplose.erp.tenant.service.TenantModuleSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MenuServiceTest {
+
+    private final MenuService menuService = new MenuService();
+
+    @Test
+    void memoizedSidebarGetsTheActiveFlagsOfEachRequest() {
+        TenantModuleSnapshot snapshot = snapshot(1, Set.of(CoreModule.CRM_CONTACT.getCode(), CoreModule.COMMERCE_INVOICE.getCode()));
+        Set<String> authorities = Set.of("CONTACT_READ", "INVOICE_READ");
+
+        List<SidebarMenuSection> contacts = menuService.getSidebarSections("/contacts/12", snapshot, authorities);
+        List<SidebarMenuSection> invoices = menuService.getSidebarSections("/invoices", snapshot, authorities);
+
+        assertThat(activePaths(contacts)).containsExactly("/contacts");
+        assertThat(activePaths(invoices)).containsExactly("/invoices");
+        // Entries handed out are copies: changing them does not leak into the next request
+        contacts.getFirst().getEntries().getFirst().setActive(true);
+        assertThat(activePaths(menuService.getSidebarSections("/dashboard", snapshot, authorities))).isEmpty();
+    }
+
+    @Test
+    void newSnapshotVersionOrAuthoritiesBuildAnotherSidebar() {
+        Set<String> authorities = Set.of("CONTACT_READ", "INVOICE_READ");
+        menuService.getSidebarSections("/", snapshot(1, Set.of(CoreModule.CRM_CONTACT.getCode(), CoreModule.COMMERCE_INVOICE.getCode())), authorities);
+
+        assertThat(paths(menuService.getSidebarSections("/", snapshot(2, Set.of(CoreModule.CRM_CONTACT.getCode())), authorities)))
+                .contains("/contacts").doesNotContain("/invoices");
+        assertThat(paths(menuService.getSidebarSections("/", snapshot(2, Set.of(CoreModule.CRM_CONTACT.getCode())), Set.of())))
+                .doesNotContain("/contacts");
+    }
+
+    private static TenantModuleSnapshot snapshot(long version, Set<String> enabled) {
+        long bits = 0;
+        for (CoreModule core : CoreModule.values()) {
+            if (enabled.contains(core.getCode())) bits |= TenantModuleSnapshot.bit(core);
+        }
+        return new TenantModuleSnapshot("00000000-0000-0000-0000-000000000001", version, enabled, Set.of(), List.of(), bits);
+    }
+
+    private static List<String> paths(List<SidebarMenuSection> sections) {
+        return sections.stream().flatMap(s -> s.getEntries().stream()).map(SidebarMenuEntry::getPath).toList();
+    }
+
+    private static List<String> activePaths(List<SidebarMenuSection> sections) {
+        return sections.stream().flatMap(s -> s.getEntries().stream()).filter(SidebarMenuEntry::isActive)
+                .map(SidebarMenuEntry::getPath).toList();
+    }
+}
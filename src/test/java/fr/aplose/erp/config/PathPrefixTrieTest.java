@@ -0,0 +1,57 @@
+package fr.aplose.erp.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PathPrefixTrieTest {
+
+    private final PathPrefixTrie<String> trie = PathPrefixTrie.of(Map.of(
+            "/crm", "crm",
+            "/crm/activities", "activities",
+            "/bank", "bank",
+            "/hr/leave/", "leave"));
+
+    @Test
+    void longestRegisteredPrefixWins() {
+        assertThat(trie.find("/crm")).isEqualTo("crm");
+        assertThat(trie.find("/crm/contacts/12")).isEqualTo("crm");
+        assertThat(trie.find("/crm/activities")).isEqualTo("activities");
+        assertThat(trie.find("/crm/activities/3/edit")).isEqualTo("activities");
+    }
+
+    @Test
+    void matchesWholeSegmentsOnly() {
+        assertThat(trie.find("/bank/1")).isEqualTo("bank");
+        assertThat(trie.find("/banking")).isNull();
+        assertThat(trie.find("/crm-old/activities")).isNull();
+        assertThat(trie.find("/hr")).isNull();
+    }
+
+    @Test
+    void ignoresEmptySegmentsAndTrailingSlashes() {
+        assertThat(trie.find("/hr/leave")).isEqualTo("leave");
+        assertThat(trie.find("/hr//leave/")).isEqualTo("leave");
+        assertThat(trie.find("crm/activities")).isEqualTo("activities");
+        assertThat(trie.find("/")).isNull();
+        assertThat(trie.find(null)).isNull();
+    }
+
+    @Test
+    void rootPrefixMatchesEveryPath() {
+        PathPrefixTrie<String> withRoot = PathPrefixTrie.of(Map.of("/", "root", "/bank", "bank"));
+
+        assertThat(withRoot.find("/dashboard")).isEqualTo("root");
+        assertThat(withRoot.find("/bank/statements")).isEqualTo("bank");
+    }
+
+    @Test
+    void rejectsPrefixesNotStartingWithASlash() {
+        assertThatThrownBy(() -> PathPrefixTrie.of(Map.of("crm", "crm")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("crm");
+    }
+}
@@ -0,0 +1,89 @@
+package fr.aplose.erp.core.dashboard;
+
+import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
+import fr.aplose.erp.modules.thirdparty.service.ThirdPartyService;
+import fr.aplose.erp.modules.thirdparty.web.dto.ThirdPartyDto;
+import fr.aplose.erp.tenant.context.TenantContext;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class KpiCounterTest {
+
+    private static final String TENANT_ID = CommerceTestData.DEMO_TENANT_ID;
+
+    @Autowired
+    private KpiCounterService counterService;
+
+    @Autowired
+    private ThirdPartyService thirdPartyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CommerceTestData data;
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "KPI-");
+    }
+
+    @AfterEach
+    void tearDown() {
+        data.deleteAll();
+        counterService.recount(TENANT_ID, KpiCounter.THIRD_PARTIES);
+        TenantContext.clear();
+    }
+
+    @Test
+    void thirdPartyCounterFollowsWritesWithoutRecounting() {
+        long before = thirdParties();
+
+        ThirdParty tp = thirdPartyService.create(thirdParty("KPI-1"), null);
+        assertThat(thirdParties()).isEqualTo(before + 1);
+
+        ThirdPartyDto renamed = thirdParty("KPI-1");
+        renamed.setName("Renamed");
+        thirdPartyService.update(tp.getId(), renamed);
+        assertThat(thirdParties()).isEqualTo(before + 1);
+
+        thirdPartyService.delete(tp.getId());
+        assertThat(thirdParties()).isEqualTo(before);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM kpi_counters WHERE tenant_id = ? AND counter_code = ?",
+                Integer.class, TENANT_ID, KpiCounter.THIRD_PARTIES.name())).isEqualTo(KpiCounterService.SHARDS);
+        assertThat(counterService.recount(TENANT_ID, KpiCounter.THIRD_PARTIES)).isEqualTo(before);
+    }
+
+    @Test
+    void recountAbsorbsRowsWrittenWithoutJpa() {
+        long before = thirdParties();
+        data.thirdParty("KPI-2", "Imported");
+        assertThat(thirdParties()).isEqualTo(before);
+
+        counterService.recountAll();
+
+        assertThat(thirdParties()).isEqualTo(before + 1);
+    }
+
+    private long thirdParties() {
+        return counterService.counters(TENANT_ID).get(KpiCounter.THIRD_PARTIES);
+    }
+
+    private static ThirdPartyDto thirdParty(String code) {
+        ThirdPartyDto dto = new ThirdPartyDto();
+        dto.setCode(code);
+        dto.setName("KPI test " + code);
+        dto.setCustomer(true);
+        return dto;
+    }
+}
@@ -0,0 +1,32 @@
+package fr.aplose.erp.core.metrics;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MockMvc expectations on the Hibernate statements of a request, e.g.
+ * {@code mvc.perform(get("/api/v1/invoices")).andExpect(QueryCount.atMost(4))}.
+ * Requires {@code app.query-metrics.enabled} (the default).
+ */
+public final class QueryCount {
+
+    private QueryCount() {
+    }
+
+    public static ResultMatcher atMost(int max) {
+        return result -> assertThat(stats(result.getRequest().getAttribute(RequestQueryStats.REQUEST_ATTRIBUTE)).getQueries())
+                .as("statements prepared by %s", result.getHandler())
+                .isLessThanOrEqualTo(max);
+    }
+
+    public static ResultMatcher noRepeatedStatements(int threshold) {
+        return result -> assertThat(stats(result.getRequest().getAttribute(RequestQueryStats.REQUEST_ATTRIBUTE))
+                .repeatedStatements(threshold)).isEmpty();
+    }
+
+    private static RequestQueryStats stats(Object attribute) {
+        assertThat(attribute).as("query statistics of the request").isInstanceOf(RequestQueryStats.class);
+        return (RequestQueryStats) attribute;
+    }
+}
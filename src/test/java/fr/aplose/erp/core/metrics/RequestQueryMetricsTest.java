@@ -0,0 +1,104 @@
+package fr.aplose.erp.core.metrics;
+
+import fr.aplose.erp.tenant.context.TenantContext;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestQueryMetricsTest {
+
+    private static final String TENANT_ID = CommerceTestData.DEMO_TENANT_ID;
+    private static final int INVOICES = 12;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private MockMvc mvc;
+    private CommerceTestData data;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "QM-");
+        long thirdPartyId = data.thirdParty("QM-TP", "Query metrics customer");
+        for (int i = 0; i < INVOICES; i++) {
+            long invoiceId = data.invoice("QM-INV-" + i, "STANDARD", thirdPartyId, "DRAFT", LocalDate.now(),
+                    new BigDecimal("200"), new BigDecimal("200"));
+            for (int line = 0; line < 2; line++) {
+                data.invoiceLine(invoiceId, line, "Consulting", new BigDecimal("100"));
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        data.deleteAll();
+        TenantContext.clear();
+    }
+
+    @Test
+    void invoiceListLoadsLinesInBatchesAndIsMeasured() throws Exception {
+        mvc.perform(get("/api/v1/invoices").param("q", "QM-INV-").param("size", "50")
+                        .with(user("api").authorities(() -> "INVOICE_READ")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(INVOICES))
+                .andExpect(jsonPath("$.content[0].lines.length()").value(2))
+                .andExpect(QueryCount.atMost(4))
+                .andExpect(QueryCount.noRepeatedStatements(1));
+
+        assertThat(meterRegistry.find("request.queries")
+                .tags("tenant", TENANT_ID, "handler", "InvoiceApiController#list").summary())
+                .isNotNull()
+                .satisfies(summary -> assertThat(summary.count()).isPositive());
+        assertThat(meterRegistry.find("request.entities")
+                .tags("handler", "InvoiceApiController#list").summary().max()).isGreaterThanOrEqualTo(INVOICES * 3);
+    }
+
+    @Test
+    void statementShapesIgnoreInListLengthAndLayout() {
+        assertThat(RequestQueryStats.shape("select * from invoice_lines  where invoice_id in (?, ?,?)\n order by sort_order"))
+                .isEqualTo("select * from invoice_lines where invoice_id in (?) order by sort_order");
+
+        RequestQueryStats.begin("Test#shapes");
+        try {
+            for (int i = 0; i < 5; i++) RequestQueryStats.statementPrepared("select * from contacts where id = ?");
+            RequestQueryStats.statementPrepared("select * from invoices where id in (?,?)");
+            RequestQueryStats.statementPrepared("select * from invoices where id in (?,?,?)");
+        } finally {
+            RequestQueryStats stats = RequestQueryStats.end();
+            assertThat(stats.getQueries()).isEqualTo(7);
+            assertThat(stats.repeatedStatements(1)).containsExactly(
+                    java.util.Map.entry("select * from contacts where id = ?", 5),
+                    java.util.Map.entry("select * from invoices where id in (?)", 2));
+            assertThat(stats.repeatedStatements(5)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package fr.aplose.erp.core.search;
+
+import fr.aplose.erp.modules.thirdparty.entity.ThirdParty;
+import fr.aplose.erp.modules.thirdparty.service.ThirdPartyService;
+import fr.aplose.erp.modules.thirdparty.web.dto.ThirdPartyDto;
+import fr.aplose.erp.tenant.context.TenantContext;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SearchIndexTest {
+
+    private static final String TENANT_ID = CommerceTestData.DEMO_TENANT_ID;
+    private static final Set<SearchDocumentType> ALL = EnumSet.allOf(SearchDocumentType.class);
+
+    @Autowired
+    private ThirdPartyService thirdPartyService;
+
+    @Autowired
+    private SearchIndexer indexer;
+
+    @Autowired
+    private SearchIndexService indexService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CommerceTestData data;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "SRCH-");
+        // The index of the demo tenant is built in the background at startup
+        for (int i = 0; i < 100 && indexer.isRebuilding(TENANT_ID); i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        data.deleteAll();
+        TenantContext.clear();
+    }
+
+    @Test
+    void entityWritesAreIndexedAfterCommit() {
+        ThirdParty tp = thirdPartyService.create(thirdParty("SRCH-1", "Société Générale des Eaux"), null);
+        indexer.flush();
+
+        List<SearchHit> hits = indexService.search(TENANT_ID, "generale eau", ALL, 10);
+        assertThat(hits).extracting(SearchHit::id).contains(tp.getId());
+        assertThat(hits.getFirst().url()).isEqualTo("/third-parties/" + tp.getId());
+        assertThat(indexService.search(TENANT_ID, "generale", EnumSet.of(SearchDocumentType.INVOICE), 10)).isEmpty();
+
+        thirdPartyService.delete(tp.getId());
+        indexer.flush();
+
+        assertThat(indexService.search(TENANT_ID, "generale eau", ALL, 10)).extracting(SearchHit::id).doesNotContain(tp.getId());
+    }
+
+    @Test
+    void rebuildIndexesRowsWrittenWithoutJpa() {
+        data.thirdParty("SRCH-2", "Brasserie Quimperoise");
+        assertThat(indexService.search(TENANT_ID, "quimper", ALL, 10)).isEmpty();
+
+        indexer.rebuild(TENANT_ID);
+
+        assertThat(indexService.search(TENANT_ID, "quimper", ALL, 10)).extracting(SearchHit::title)
+                .containsExactly("Brasserie Quimperoise");
+        assertThat(indexService.isBuilt(TENANT_ID)).isTrue();
+    }
+
+    @Test
+    void rebuildDropsDocumentsOfDeletedRowsOnlyAtTheEnd() {
+        indexService.update(TENANT_ID, List.of(new SearchDocument(SearchDocumentType.THIRD_PARTY, -42L, "Tonnellerie Disparue", null, null)), List.of());
+        data.thirdParty("SRCH-3", "Tonnellerie Bordelaise");
+        assertThat(indexService.search(TENANT_ID, "tonnellerie", ALL, 10)).hasSize(1);
+
+        indexer.rebuild(TENANT_ID);
+
+        assertThat(indexService.search(TENANT_ID, "tonnellerie", ALL, 10)).extracting(SearchHit::title)
+                .containsExactly("Tonnellerie Bordelaise");
+    }
+
+    private static ThirdPartyDto thirdParty(String code, String name) {
+        ThirdPartyDto dto = new ThirdPartyDto();
+        dto.setCode(code);
+        dto.setName(name);
+        dto.setCustomer(true);
+        return dto;
+    }
+}
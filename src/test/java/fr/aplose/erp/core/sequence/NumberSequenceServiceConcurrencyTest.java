@@ -0,0 +1,96 @@
+package fr.aplose.erp.core.sequence;
+
+import fr.aplose.erp.modules.ticketing.entity.Ticket;
+import fr.aplose.erp.modules.ticketing.service.TicketService;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NumberSequenceServiceConcurrencyTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    private static final int CREATES = 200;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private NumberSequenceService numberSequenceService;
+
+    @Autowired
+    private TicketService ticketService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void parallelTicketCreates_getDistinctReferences() throws Exception {
+        List<String> references = runInParallel(() -> {
+            Ticket ticket = new Ticket();
+            ticket.setSubject("Concurrency test");
+            return ticketService.save(ticket, null).getReference();
+        });
+
+        assertThat(references).hasSize(CREATES).doesNotContainNull();
+        assertThat(new HashSet<>(references)).hasSize(CREATES);
+        Integer distinctInDb = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT reference) FROM tickets WHERE tenant_id = ? AND subject = 'Concurrency test'",
+                Integer.class, TENANT_ID);
+        assertThat(distinctInDb).isEqualTo(CREATES);
+    }
+
+    @Test
+    void parallelNext_onAGapFreeSequence_hasNoDuplicatesOrGaps() throws Exception {
+        List<String> references = runInParallel(() -> numberSequenceService.next(DocumentType.INVOICE_PURCHASE));
+
+        Set<Long> numbers = new HashSet<>();
+        for (String ref : references) {
+            assertThat(ref).startsWith("BIL-");
+            numbers.add(NumberSequenceService.trailingNumber(ref));
+        }
+        assertThat(numbers).hasSize(CREATES);
+        long min = numbers.stream().mapToLong(Long::longValue).min().orElseThrow();
+        long max = numbers.stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertThat(max - min + 1).isEqualTo(CREATES);
+    }
+
+    private List<String> runInParallel(Callable<String> create) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < CREATES; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    TenantContext.setCurrentTenantId(TENANT_ID);
+                    try {
+                        return create.call();
+                    } finally {
+                        TenantContext.clear();
+                    }
+                }));
+            }
+            start.countDown();
+            List<String> references = new ArrayList<>();
+            for (Future<String> f : futures) references.add(f.get());
+            return references;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
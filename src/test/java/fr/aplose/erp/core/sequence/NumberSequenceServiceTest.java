@@ -0,0 +1,78 @@
+package fr.aplose.erp.core.sequence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NumberSequenceServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-0000000000a8";
+
+    @Autowired
+    private NumberSequenceService numberSequenceService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO tenants (id, code, name) VALUES (?, 'numbering-test', 'Numbering test')", TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        numberSequenceService.evict(TENANT_ID);
+        jdbcTemplate.update("DELETE FROM number_sequences WHERE tenant_id = ?", TENANT_ID);
+        jdbcTemplate.update("DELETE FROM tenants WHERE id = ?", TENANT_ID);
+    }
+
+    @Test
+    void yearlySequenceRestartsInANewYearWithTheSameFormat() {
+        int year = Year.now().getValue();
+        jdbcTemplate.update("INSERT INTO number_sequences (tenant_id, module, seq_year, prefix, year_in_seq, last_number, padding) " +
+                "VALUES (?, 'PROPOSAL', ?, 'DEV', TRUE, 418, 3)", TENANT_ID, year - 1);
+
+        assertThat(numberSequenceService.next(TENANT_ID, DocumentType.PROPOSAL)).isEqualTo("DEV" + year + "-001");
+        assertThat(numberSequenceService.next(TENANT_ID, DocumentType.PROPOSAL)).isEqualTo("DEV" + year + "-002");
+        assertThat(jdbcTemplate.queryForObject("SELECT last_number FROM number_sequences WHERE tenant_id = ? AND seq_year = ?",
+                Long.class, TENANT_ID, year - 1)).isEqualTo(418L);
+    }
+
+    @Test
+    void sequenceWithoutTheYearKeepsCounting() {
+        jdbcTemplate.update("INSERT INTO number_sequences (tenant_id, module, seq_year, prefix, year_in_seq, last_number, padding) " +
+                "VALUES (?, 'TICKET', 0, 'T-', FALSE, 41, 4)", TENANT_ID);
+
+        assertThat(numberSequenceService.next(TENANT_ID, DocumentType.TICKET, 2)).containsExactly("T-0042", "T-0043");
+    }
+
+    @Test
+    void gapFreeNumberTakenByARolledBackTransactionIsReused() {
+        jdbcTemplate.update("INSERT INTO number_sequences (tenant_id, module, seq_year, prefix, year_in_seq, last_number, padding) " +
+                "VALUES (?, 'INVOICE_SALES', 0, 'INV-', FALSE, 41, 5)", TENANT_ID);
+
+        String rolledBack = new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            return numberSequenceService.next(TENANT_ID, DocumentType.INVOICE_SALES);
+        });
+
+        assertThat(rolledBack).isEqualTo("INV-00042");
+        assertThat(numberSequenceService.next(TENANT_ID, DocumentType.INVOICE_SALES)).isEqualTo("INV-00042");
+        assertThat(numberSequenceService.next(TENANT_ID, DocumentType.INVOICE_SALES, 2)).containsExactly("INV-00043", "INV-00044");
+    }
+}
@@ -0,0 +1,78 @@
+package fr.aplose.erp.dolibarr.service;
+
+import fr.aplose.erp.dolibarr.client.DolibarrApiClient;
+import fr.aplose.erp.dolibarr.client.DolibarrApiException;
+import fr.aplose.erp.dolibarr.client.DolibarrConnection;
+import fr.aplose.erp.dolibarr.entity.DolibarrImportRun;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "app.dolibarr-import.page-size=2")
+@ActiveProfiles("test")
+class DolibarrImportResumeTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    private static final int THIRD_PARTIES = 5;
+    private static final long FIRST_ID = 910_001L;
+
+    @MockitoBean
+    private DolibarrApiClient client;
+
+    @Autowired
+    private DolibarrImportOrchestrator orchestrator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void interruptedRunResumesFromLastCommittedPage() {
+        AtomicBoolean failOnPageTwo = new AtomicBoolean(true);
+        when(client.getPage(any(), eq("thirdparties"), any(), anyInt(), anyInt())).thenAnswer(inv -> {
+            DolibarrConnection connection = inv.getArgument(0);
+            assertThat(connection.baseUrl()).isEqualTo("https://dolibarr.test");
+            int page = inv.getArgument(3);
+            int limit = inv.getArgument(4);
+            if (page == 2 && failOnPageTwo.get()) throw new DolibarrApiException("connection reset");
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int i = page * limit; i < Math.min(THIRD_PARTIES, (page + 1) * limit); i++) {
+                rows.add(Map.of("id", String.valueOf(FIRST_ID + i), "name", "Resume test " + i));
+            }
+            return rows;
+        });
+
+        DolibarrImportRun run = orchestrator.runImport(TENANT_ID, "https://dolibarr.test", "key", null, null);
+
+        assertThat(run.getStatus()).isEqualTo(DolibarrImportRun.STATUS_PARTIAL);
+        assertThat(importedThirdParties()).isEqualTo(4);
+        assertThat(jdbcTemplate.queryForObject("SELECT next_page FROM dolibarr_import_checkpoint " +
+                "WHERE import_run_id = ? AND step = 'THIRD_PARTIES:thirdparties'", Integer.class, run.getId())).isEqualTo(2);
+
+        failOnPageTwo.set(false);
+        DolibarrImportRun resumed = orchestrator.resumeImport(TENANT_ID, run.getId(), "https://dolibarr.test/", "key");
+
+        assertThat(resumed.getStatus()).isEqualTo(DolibarrImportRun.STATUS_SUCCESS);
+        assertThat(importedThirdParties()).isEqualTo(THIRD_PARTIES);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dolibarr_import_mapping " +
+                "WHERE import_run_id = ? AND dolibarr_entity = 'thirdparties'", Integer.class, run.getId())).isEqualTo(THIRD_PARTIES);
+    }
+
+    private int importedThirdParties() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM third_parties WHERE tenant_id = ? AND code LIKE 'DOLI-9100%'",
+                Integer.class, TENANT_ID);
+    }
+}
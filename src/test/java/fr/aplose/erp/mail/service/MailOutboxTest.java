@@ -0,0 +1,123 @@
+package fr.aplose.erp.mail.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import fr.aplose.erp.mail.entity.MailOutboxMessage;
+import fr.aplose.erp.mail.repository.MailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "app.mail.poll-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+class MailOutboxTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    private MailService mailService;
+
+    @Autowired
+    private MailOutboxDispatcher dispatcher;
+
+    @Autowired
+    private MailOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void queuedMailsAreSentInOneBatchAfterCommit() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            mailService.sendLeaveRequestSubmittedToValidator("validator@example.com", "Val", "Alice",
+                    "Congés payés", "01/08", "15/08", "http://localhost/leave-requests/1");
+            mailService.sendSimple("ops@example.com", "Form received", "Hello");
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            mailService.sendSimple("nobody@example.com", "Rolled back", "Never sent");
+            status.setRollbackOnly();
+        });
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+
+        dispatcher.dispatch();
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 2)).isTrue();
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).extracting(MimeMessage::getSubject)
+                .containsExactlyInAnyOrder("Demande de congés à valider - Alice", "Form received");
+        assertThat(GreenMailUtil.getBody(received[0]) + GreenMailUtil.getBody(received[1])).doesNotContain("{{");
+        assertThat(outboxRepository.findAll()).extracting(MailOutboxMessage::getStatus)
+                .containsOnly(MailOutboxMessage.STATUS_SENT);
+    }
+
+    @Test
+    void aMailThatCannotBeQueuedDoesNotRollBackTheCaller() {
+        transactionTemplate.executeWithoutResult(status -> {
+            mailService.sendSimple("ops@example.com", "Kept", "Hello");
+            mailService.sendSimple("x".repeat(400) + "@example.com", "Recipient too long", "Hello");
+        });
+
+        assertThat(outboxRepository.findAll()).extracting(MailOutboxMessage::getSubject).containsExactly("Kept");
+    }
+
+    @Test
+    void sentMailsArePurgedAfterTheRetentionPeriod() {
+        MailOutboxMessage old = sent("Old", LocalDateTime.now().minusDays(31));
+        MailOutboxMessage recent = sent("Recent", LocalDateTime.now().minusDays(1));
+        MailOutboxMessage dead = sent("Dead", LocalDateTime.now().minusDays(31));
+        dead.setStatus(MailOutboxMessage.STATUS_DEAD);
+        outboxRepository.saveAll(List.of(old, recent, dead));
+
+        dispatcher.purgeSent();
+
+        assertThat(outboxRepository.findAll()).extracting(MailOutboxMessage::getSubject)
+                .containsExactlyInAnyOrder("Recent", "Dead");
+    }
+
+    @Test
+    void failedSendsAreRetriedLater() {
+        mailService.sendSimple("ops@example.com", "Retry me", "Hello");
+        greenMail.stop();
+
+        dispatcher.dispatch();
+
+        List<MailOutboxMessage> queued = outboxRepository.findAll();
+        assertThat(queued).singleElement().satisfies(m -> {
+            assertThat(m.getStatus()).isEqualTo(MailOutboxMessage.STATUS_PENDING);
+            assertThat(m.getAttempts()).isEqualTo(1);
+            assertThat(m.getLastError()).isNotBlank();
+            assertThat(m.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        });
+    }
+
+    private static MailOutboxMessage sent(String subject, LocalDateTime sentAt) {
+        MailOutboxMessage message = new MailOutboxMessage();
+        message.setRecipient("ops@example.com");
+        message.setSubject(subject);
+        message.setStatus(MailOutboxMessage.STATUS_SENT);
+        message.setAttempts(1);
+        message.setSentAt(sentAt);
+        return message;
+    }
+}
@@ -0,0 +1,92 @@
+package fr.aplose.erp.modules.automation.service;
+
+import fr.aplose.erp.modules.automation.config.AutomationProperties;
+import fr.aplose.erp.modules.automation.entity.AutomationRule;
+import fr.aplose.erp.modules.automation.repository.AutomationRuleRepository;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AutomationRuleCacheTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Mock
+    private AutomationRuleRepository repository;
+
+    @Mock
+    private AutomationActionExecutor actionExecutor;
+
+    private AutomationRuleService ruleService;
+
+    @BeforeEach
+    void setUp() {
+        ruleService = new AutomationRuleService(repository, actionExecutor, new AutomationProperties());
+        TenantContext.setCurrentTenantId(TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void rulesAreCompiledOncePerTriggerUntilARuleChanges() {
+        AutomationRule rule = rule(1L);
+        when(repository.findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(TENANT_ID, "INVOICE", "VALIDATED"))
+                .thenReturn(List.of(rule));
+        when(repository.save(rule)).thenReturn(rule);
+
+        ruleService.runRules("INVOICE", "VALIDATED", Map.of());
+        ruleService.runRules("INVOICE", "VALIDATED", Map.of());
+        verify(repository, times(1)).findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(any(), any(), any());
+
+        ruleService.save(rule);
+        ruleService.runRules("INVOICE", "VALIDATED", Map.of());
+        verify(repository, times(2)).findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(any(), any(), any());
+        verify(actionExecutor, times(3)).submit(eq(TENANT_ID), any(), anyMap());
+    }
+
+    @Test
+    void rulesLoadedBeforeAConcurrentChangeCommittedAreNotKept() {
+        AutomationRule disabled = rule(2L);
+        when(repository.save(disabled)).thenReturn(disabled);
+        when(repository.findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(TENANT_ID, "INVOICE", "VALIDATED"))
+                .thenAnswer(inv -> {
+                    // The rule is disabled, and its eviction runs, after this call read it
+                    ruleService.save(disabled);
+                    return List.of(disabled);
+                })
+                .thenReturn(List.of());
+
+        ruleService.runRules("INVOICE", "VALIDATED", Map.of());
+        ruleService.runRules("INVOICE", "VALIDATED", Map.of());
+
+        verify(repository, times(2)).findByTenantIdAndTriggerEntityAndTriggerEventAndEnabledTrue(anyString(), anyString(), anyString());
+        verify(actionExecutor, times(1)).submit(eq(TENANT_ID), any(), anyMap());
+    }
+
+    private static AutomationRule rule(Long id) {
+        AutomationRule rule = new AutomationRule();
+        rule.setId(id);
+        rule.setTenantId(TENANT_ID);
+        rule.setName("Rule " + id);
+        rule.setTriggerEntity("INVOICE");
+        rule.setTriggerEvent("VALIDATED");
+        rule.setActionType("SEND_EMAIL");
+        return rule;
+    }
+}
@@ -0,0 +1,116 @@
+package fr.aplose.erp.modules.automation.service;
+
+import fr.aplose.erp.mail.service.MailService;
+import fr.aplose.erp.modules.automation.entity.AutomationRule;
+import fr.aplose.erp.tenant.context.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AutomationRuleServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @MockitoBean
+    private MailService mailService;
+
+    @Autowired
+    private AutomationRuleService ruleService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM automation_rules WHERE name LIKE 'Test rule%'");
+        TenantContext.clear();
+    }
+
+    @Test
+    void sendEmailRunsAfterCommitForMatchingContextOnly() throws InterruptedException {
+        AutomationRule rule = ruleService.save(rule("{\"to\": \"{{thirdPartyEmail}}\", \"subject\": \"Invoice {{reference}}\", \"body\": \"Validated\"}"));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ruleService.runRules("INVOICE", "VALIDATED", context("INV-1", "500.00"));
+            ruleService.runRules("INVOICE", "VALIDATED", context("INV-2", "50.00"));
+            verify(mailService, after(200).never()).sendSimple(anyString(), anyString(), anyString());
+        });
+
+        verify(mailService, timeout(2000)).sendSimple("client@example.com", "Invoice INV-1", "Validated");
+        verify(mailService, after(200).never()).sendSimple("client@example.com", "Invoice INV-2", "Validated");
+        assertThat(successfulExecutions(rule)).isEqualTo(1);
+    }
+
+    @Test
+    void actionsOfRolledBackTransactionsAndDisabledRulesDoNotRun() {
+        AutomationRule rule = ruleService.save(rule("{\"to\": \"ops@example.com\", \"subject\": \"s\", \"body\": \"b\"}"));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ruleService.runRules("INVOICE", "VALIDATED", context("INV-3", "500.00"));
+            status.setRollbackOnly();
+        });
+        rule.setEnabled(false);
+        ruleService.save(rule);
+        ruleService.runRules("INVOICE", "VALIDATED", context("INV-4", "500.00"));
+
+        verify(mailService, after(300).never()).sendSimple(anyString(), anyString(), anyString());
+    }
+
+    /** The timer is recorded just after the action returns, so wait for it briefly. */
+    private long successfulExecutions(AutomationRule rule) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            Timer timer = meterRegistry.find("automation.rule.executions")
+                    .tags("rule", rule.getId().toString(), "outcome", "success").timer();
+            if (timer != null && timer.count() > 0) return timer.count();
+            Thread.sleep(20);
+        }
+        return 0;
+    }
+
+    private static AutomationRule rule(String params) {
+        AutomationRule rule = new AutomationRule();
+        rule.setName("Test rule " + System.nanoTime());
+        rule.setTriggerEntity("INVOICE");
+        rule.setTriggerEvent("VALIDATED");
+        rule.setConditionAmountMin(new BigDecimal("100"));
+        rule.setActionType("SEND_EMAIL");
+        rule.setActionParams(params);
+        return rule;
+    }
+
+    private static Map<String, Object> context(String reference, String amount) {
+        return Map.of("status", "VALIDATED", "amount", new BigDecimal(amount), "reference", reference,
+                "thirdPartyEmail", "client@example.com");
+    }
+}
@@ -0,0 +1,138 @@
+package fr.aplose.erp.modules.bank.service;
+
+import fr.aplose.erp.tenant.context.TenantContext;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BankReconciliationServiceTest {
+
+    private static final String TENANT_ID = CommerceTestData.DEMO_TENANT_ID;
+    private static final String ACME_IBAN = "FR7630001007941234567890185";
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    @Autowired
+    private BankReconciliationService reconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CommerceTestData data;
+    private long accountId;
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "REC-");
+        jdbcTemplate.update("INSERT INTO bank_accounts (tenant_id, name, currency_code) VALUES (?, 'REC account', 'EUR')", TENANT_ID);
+        accountId = jdbcTemplate.queryForObject("SELECT id FROM bank_accounts WHERE name = 'REC account'", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM payments WHERE bank_movement_id IN (SELECT id FROM bank_movements WHERE account_id = ?)", accountId);
+        jdbcTemplate.update("DELETE FROM bank_accounts WHERE id = ?", accountId);
+        data.deleteAll();
+        TenantContext.clear();
+    }
+
+    @Test
+    void matchesAboveThresholdBecomePaymentsAndOthersStayToReconcile() {
+        long acme = thirdParty("REC-A", "Acme Industries", ACME_IBAN);
+        long dupont = thirdParty("REC-B", "Papeterie Dupont SARL", null);
+        long zeta = thirdParty("REC-C", "Zeta", null);
+        long single = invoice("REC-1", "SALES", acme, "100.00");
+        long firstOfBatch = invoice("REC-2", "SALES", acme, "50.00");
+        long secondOfBatch = invoice("REC-3", "SALES", acme, "30.00");
+        long byIban = invoice("REC-4", "SALES", acme, "40.00");
+        long supplier = invoice("REC-5", "PURCHASE", dupont, "25.00");
+        long partial = invoice("REC-6", "SALES", zeta, "200.00");
+        long amountOnly = invoice("REC-7", "SALES", zeta, "77.77");
+
+        long exactLine = movement("100.00", "VIR ACME REC-1", null, null);
+        long batchLine = movement("80.00", "VIR ACME FACT REC-2 REC/3", null, null);
+        long ibanLine = movement("40.00", "VIREMENT RECU", "ACME INDUSTRIES", "FR76 3000 1007 9412 3456 7890 185");
+        long nameLine = movement("-25.00", "PRLV SEPA PAPETERIE DUPONT", null, null);
+        long partialLine = movement("120.00", "Acompte REC-6", null, null);
+        long amountLine = movement("77.77", "VIR INST 884512", null, null);
+
+        BankReconciliationService.ReconciliationRun preview = reconciliationService.preview(accountId);
+        assertThat(preview.lines()).isEqualTo(6);
+        assertThat(preview.matches()).hasSize(6);
+        assertThat(preview.applied()).isZero();
+        assertThat(status(single)).isEqualTo("VALIDATED");
+
+        BankReconciliationService.ReconciliationRun run = reconciliationService.reconcile(accountId, 0.8, null);
+
+        assertThat(run.applied()).isEqualTo(5);
+        assertThat(run.payments()).isEqualTo(6);
+        assertThat(run.skipped()).isZero();
+        assertThat(status(single)).isEqualTo("PAID");
+        assertThat(status(firstOfBatch)).isEqualTo("PAID");
+        assertThat(status(secondOfBatch)).isEqualTo("PAID");
+        assertThat(status(byIban)).isEqualTo("PAID");
+        assertThat(status(supplier)).isEqualTo("PAID");
+        assertThat(status(partial)).isEqualTo("PARTIALLY_PAID");
+        assertThat(jdbcTemplate.queryForObject("SELECT amount_remaining FROM invoices WHERE id = ?", BigDecimal.class, partial))
+                .isEqualByComparingTo("80.00");
+        assertThat(status(amountOnly)).isEqualTo("VALIDATED");
+
+        Map<String, Object> exact = line(exactLine);
+        assertThat(exact.get("RECONCILED_AT")).isNotNull();
+        assertThat(((Number) exact.get("INVOICE_ID")).longValue()).isEqualTo(single);
+        assertThat(exact.get("PAYMENT_ID")).isNotNull();
+        Map<String, Object> batch = line(batchLine);
+        assertThat(batch.get("INVOICE_ID")).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments WHERE bank_movement_id = ? AND payment_method = 'BANK'",
+                Integer.class, batchLine)).isEqualTo(2);
+        assertThat(((Number) line(ibanLine).get("INVOICE_ID")).longValue()).isEqualTo(byIban);
+        assertThat(((Number) line(nameLine).get("INVOICE_ID")).longValue()).isEqualTo(supplier);
+        assertThat(jdbcTemplate.queryForObject("SELECT amount FROM payments WHERE bank_movement_id = ?", BigDecimal.class, nameLine))
+                .isEqualByComparingTo("25.00");
+        assertThat(line(partialLine).get("RECONCILED_AT")).isNotNull();
+        assertThat(line(amountLine).get("RECONCILED_AT")).isNull();
+
+        // Reconciled lines are not read again
+        BankReconciliationService.ReconciliationRun again = reconciliationService.reconcile(accountId, 0.8, null);
+        assertThat(again.lines()).isEqualTo(1);
+        assertThat(again.applied()).isZero();
+        assertThat(again.matches()).singleElement()
+                .satisfies(m -> assertThat(m.basis()).isEqualTo(ReconciliationMatcher.Basis.AMOUNT));
+    }
+
+    private long thirdParty(String code, String name, String iban) {
+        return data.thirdParty(code, name, null, iban);
+    }
+
+    private long invoice(String reference, String type, long thirdPartyId, String total) {
+        return data.invoice(reference, type, thirdPartyId, "VALIDATED", TODAY, new BigDecimal(total), new BigDecimal(total));
+    }
+
+    private long movement(String amount, String description, String counterpartyName, String counterpartyIban) {
+        jdbcTemplate.update("INSERT INTO bank_movements (tenant_id, account_id, movement_date, amount, currency_code, description, " +
+                        "counterparty_name, counterparty_iban) VALUES (?, ?, ?, ?, 'EUR', ?, ?, ?)",
+                TENANT_ID, accountId, TODAY, new BigDecimal(amount), description, counterpartyName, counterpartyIban);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM bank_movements WHERE account_id = ?", Long.class, accountId);
+    }
+
+    private String status(long invoiceId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM invoices WHERE id = ?", String.class, invoiceId);
+    }
+
+    private Map<String, Object> line(long movementId) {
+        return jdbcTemplate.queryForMap("SELECT reconciled_at, invoice_id, payment_id FROM bank_movements WHERE id = ?", movementId);
+    }
+}
@@ -0,0 +1,224 @@
+package fr.aplose.erp.modules.bank.service;
+
+import fr.aplose.erp.modules.bank.entity.BankMovement;
+import fr.aplose.erp.modules.bank.service.BankStatementImportService.ImportResult;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BankStatementImportServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    private static final String CSV = """
+            Date;Date de valeur;Libellé;Débit;Crédit;Référence
+            15/03/2026;16/03/2026;VIR ACME;;1 234,56;FA2026-0001
+            15/03/2026;15/03/2026;CB CAFE;3,50;;
+            15/03/2026;15/03/2026;CB  cafe;3,50;;
+            17/03/2026;17/03/2026;"Loyer; mars";800,00;;
+            """;
+
+    private static final String CAMT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Document xmlns="urn:iso:std:iso:20022:tech:xsd:camt.053.001.02">
+              <BkToCstmrStmt>
+                <Stmt>
+                  <Acct><Id><IBAN>FR7611111111111111111111111</IBAN></Id><Ccy>EUR</Ccy></Acct>
+                  <Bal><Amt Ccy="EUR">1000.00</Amt><CdtDbtInd>CRDT</CdtDbtInd></Bal>
+                  <Ntry>
+                    <Amt Ccy="EUR">250.00</Amt>
+                    <CdtDbtInd>CRDT</CdtDbtInd>
+                    <BookgDt><Dt>2026-03-20</Dt></BookgDt>
+                    <ValDt><Dt>2026-03-21</Dt></ValDt>
+                    <AcctSvcrRef>BANKREF1</AcctSvcrRef>
+                    <NtryDtls><TxDtls>
+                      <Refs><EndToEndId>FA2026-0042</EndToEndId></Refs>
+                      <AmtDtls><TxAmt><Amt Ccy="EUR">250.00</Amt></TxAmt></AmtDtls>
+                      <RltdPties>
+                        <Dbtr><Nm>Acme Industries</Nm></Dbtr>
+                        <DbtrAcct><Id><IBAN>FR7630001007941234567890185</IBAN></Id></DbtrAcct>
+                        <Cdtr><Nm>Our Company</Nm></Cdtr>
+                      </RltdPties>
+                      <RmtInf><Ustrd>Invoice FA2026-0042</Ustrd><Ustrd>thank you</Ustrd></RmtInf>
+                    </TxDtls></NtryDtls>
+                  </Ntry>
+                  <Ntry>
+                    <Amt Ccy="EUR">99.90</Amt>
+                    <CdtDbtInd>DBIT</CdtDbtInd>
+                    <BookgDt><DtTm>2026-03-22T08:00:00</DtTm></BookgDt>
+                    <AcctSvcrRef>BANKREF2</AcctSvcrRef>
+                    <NtryDtls><TxDtls>
+                      <RltdPties>
+                        <Dbtr><Pty><Nm>Our Company</Nm></Pty></Dbtr>
+                        <Cdtr><Pty><Nm>Papeterie Dupont</Nm></Pty></Cdtr>
+                        <CdtrAcct><Id><IBAN>FR76 1234 5000 0100 0000 0000 123</IBAN></Id></CdtrAcct>
+                      </RltdPties>
+                    </TxDtls></NtryDtls>
+                    <AddtlNtryInf>PRLV SEPA PAPETERIE DUPONT</AddtlNtryInf>
+                  </Ntry>
+                </Stmt>
+              </BkToCstmrStmt>
+            </Document>
+            """;
+
+    private static final String OFX = """
+            OFXHEADER:100
+            DATA:OFXSGML
+            VERSION:102
+            CHARSET:1252
+
+            <OFX>
+            <BANKMSGSRSV1><STMTTRNRS><STMTRS>
+            <CURDEF>EUR
+            <BANKTRANLIST>
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <DTPOSTED>20260325120000[+1:CET]
+            <TRNAMT>-42.10
+            <FITID>0001
+            <NAME>EDF
+            <MEMO>FACTURE 2026-03
+            </STMTTRN>
+            <STMTTRN>
+            <TRNTYPE>CREDIT
+            <DTPOSTED>20260326
+            <TRNAMT>15,00
+            <FITID>0002
+            <NAME>REMBOURSEMENT
+            </STMTTRN>
+            </BANKTRANLIST>
+            </STMTRS></STMTTRNRS></BANKMSGSRSV1>
+            </OFX>
+            """;
+
+    @Autowired
+    private BankStatementImportService importService;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long accountId;
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        jdbcTemplate.update("INSERT INTO bank_accounts (tenant_id, name, currency_code) VALUES (?, 'STMT account', 'EUR')", TENANT_ID);
+        accountId = jdbcTemplate.queryForObject("SELECT id FROM bank_accounts WHERE name = 'STMT account'", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM bank_accounts WHERE id = ?", accountId);
+        TenantContext.clear();
+    }
+
+    @Test
+    void csvLinesAlreadyRecordedAreSkippedAndBalancesFollow() throws IOException {
+        // Entered by hand before the statement arrived
+        BankMovement rent = new BankMovement();
+        rent.setAccount(bankAccountService.findAccountById(accountId));
+        rent.setMovementDate(LocalDate.of(2026, 3, 17));
+        rent.setAmount(new BigDecimal("-800.00"));
+        rent.setCurrencyCode("EUR");
+        rent.setDescription("loyer; MARS");
+        bankAccountService.saveMovement(rent, null);
+        assertThat(bankAccountService.getAccountBalance(accountId)).isEqualByComparingTo("-800.00");
+
+        ImportResult result = importStatement(CSV, null);
+
+        assertThat(result.lines()).isEqualTo(4);
+        assertThat(result.imported()).isEqualTo(3);
+        assertThat(result.duplicates()).isEqualTo(1);
+        assertThat(bankAccountService.getAccountBalance(accountId)).isEqualByComparingTo("427.56");
+        Map<String, Object> transfer = jdbcTemplate.queryForMap(
+                "SELECT movement_date, amount, reference FROM bank_movements WHERE account_id = ? AND description = 'VIR ACME'", accountId);
+        assertThat(transfer.get("MOVEMENT_DATE").toString()).isEqualTo("2026-03-15");
+        assertThat((BigDecimal) transfer.get("AMOUNT")).isEqualByComparingTo("1234.56");
+        assertThat(transfer.get("REFERENCE")).isEqualTo("FA2026-0001");
+        List<Map<String, Object>> days = jdbcTemplate.queryForList(
+                "SELECT balance_date, movements_total, closing_balance FROM bank_daily_balances WHERE account_id = ? ORDER BY balance_date",
+                accountId);
+        assertThat(days).hasSize(2);
+        assertThat((BigDecimal) days.get(0).get("CLOSING_BALANCE")).isEqualByComparingTo("1227.56");
+        assertThat((BigDecimal) days.get(1).get("MOVEMENTS_TOTAL")).isEqualByComparingTo("-800.00");
+
+        // Same statement again: the two identical card payments are both recognized
+        ImportResult again = importStatement(CSV, BankStatementParser.Format.CSV);
+        assertThat(again.imported()).isZero();
+        assertThat(again.duplicates()).isEqualTo(4);
+        assertThat(bankAccountService.getAccountBalance(accountId)).isEqualByComparingTo("427.56");
+    }
+
+    @Test
+    void camtEntriesCarryCounterpartyAndReference() throws IOException {
+        jdbcTemplate.update("UPDATE bank_accounts SET iban = 'FR76 1111 1111 1111 1111 1111 111' WHERE id = ?", accountId);
+        ImportResult result = importStatement(CAMT, null);
+
+        assertThat(result.imported()).isEqualTo(2);
+        List<Map<String, Object>> movements = jdbcTemplate.queryForList("SELECT movement_date, amount, description, reference, " +
+                "counterparty_name, counterparty_iban FROM bank_movements WHERE account_id = ? ORDER BY movement_date", accountId);
+        Map<String, Object> credit = movements.get(0);
+        assertThat(credit.get("MOVEMENT_DATE").toString()).isEqualTo("2026-03-20");
+        assertThat((BigDecimal) credit.get("AMOUNT")).isEqualByComparingTo("250.00");
+        assertThat(credit.get("DESCRIPTION")).isEqualTo("Invoice FA2026-0042 thank you");
+        assertThat(credit.get("REFERENCE")).isEqualTo("FA2026-0042");
+        assertThat(credit.get("COUNTERPARTY_NAME")).isEqualTo("Acme Industries");
+        assertThat(credit.get("COUNTERPARTY_IBAN")).isEqualTo("FR7630001007941234567890185");
+        Map<String, Object> debit = movements.get(1);
+        assertThat((BigDecimal) debit.get("AMOUNT")).isEqualByComparingTo("-99.90");
+        assertThat(debit.get("DESCRIPTION")).isEqualTo("PRLV SEPA PAPETERIE DUPONT");
+        assertThat(debit.get("REFERENCE")).isEqualTo("BANKREF2");
+        assertThat(debit.get("COUNTERPARTY_NAME")).isEqualTo("Papeterie Dupont");
+        assertThat(debit.get("COUNTERPARTY_IBAN")).isEqualTo("FR7612345000010000000000123");
+        assertThat(bankAccountService.getAccountBalance(accountId)).isEqualByComparingTo("150.10");
+
+        jdbcTemplate.update("UPDATE bank_accounts SET iban = 'FR7630006000011234567890189' WHERE id = ?", accountId);
+        assertThatThrownBy(() -> importStatement(CAMT, null)).hasMessageContaining("not FR7630006000011234567890189");
+    }
+
+    @Test
+    void ofxTransactionsAreImportedAndMalformedStatementsRejected() throws IOException {
+        ImportResult result = importStatement(OFX, null);
+
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT description FROM bank_movements WHERE account_id = ? AND amount < 0",
+                String.class, accountId)).isEqualTo("EDF FACTURE 2026-03");
+        assertThat(bankAccountService.getAccountBalance(accountId)).isEqualByComparingTo("-27.10");
+
+        String malformed = "date,amount,label\n2026-03-27,10.00,OK\n2026-03-28,ten,KO\n";
+        assertThatThrownBy(() -> importStatement(malformed, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Line 3");
+        String otherCurrency = "date,amount,currency\n2026-03-27,10.00,USD\n";
+        assertThatThrownBy(() -> importStatement(otherCurrency, null))
+                .hasMessageContaining("USD");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bank_movements WHERE account_id = ?", Integer.class, accountId))
+                .isEqualTo(2);
+    }
+
+    private ImportResult importStatement(String content, BankStatementParser.Format format) throws IOException {
+        return importService.importStatement(accountId, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                format, null);
+    }
+}
@@ -0,0 +1,118 @@
+package fr.aplose.erp.modules.bank.service;
+
+import fr.aplose.erp.modules.bank.service.BankStatementParser.StatementLine;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BankStatementParserTest {
+
+    private static final String CAMT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Document xmlns="urn:iso:std:iso:20022:tech:xsd:camt.053.001.08">
+              <BkToCstmrStmt>
+                <Stmt>
+                  <Acct><Id><IBAN>FR76 1111 1111 1111 1111 1111 111</IBAN></Id><Ccy>EUR</Ccy></Acct>
+                  <Ntry>
+                    <Amt Ccy="EUR">10.00</Amt><CdtDbtInd>CRDT</CdtDbtInd><Sts><Cd>BOOK</Cd></Sts>
+                    <BookgDt><Dt>2026-04-01</Dt></BookgDt><AddtlNtryInf>BOOKED</AddtlNtryInf>
+                  </Ntry>
+                  <Ntry>
+                    <Amt Ccy="EUR">20.00</Amt><CdtDbtInd>DBIT</CdtDbtInd><Sts><Cd>PDNG</Cd></Sts>
+                    <BookgDt><Dt>2026-04-02</Dt></BookgDt><AddtlNtryInf>PENDING</AddtlNtryInf>
+                  </Ntry>
+                  <Ntry>
+                    <Amt Ccy="EUR">30.00</Amt><CdtDbtInd>DBIT</CdtDbtInd><Sts>INFO</Sts>
+                    <BookgDt><Dt>2026-04-03</Dt></BookgDt><AddtlNtryInf>INFORMATION</AddtlNtryInf>
+                  </Ntry>
+                  <Ntry>
+                    <Amt Ccy="EUR">40.00</Amt><CdtDbtInd>CRDT</CdtDbtInd><Sts>BOOK</Sts>
+                    <BookgDt><Dt>2026-04-04</Dt></BookgDt><AddtlNtryInf>BOOKED TOO</AddtlNtryInf>
+                  </Ntry>
+                </Stmt>
+              </BkToCstmrStmt>
+            </Document>
+            """;
+
+    private static final String CSV = "Date;Libellé;Montant\n05/04/2026;Café crème;-3,10\n06/04/2026;Virement reçu;12,00\n";
+
+    @Test
+    void windows1252ExportIsDecodedWithoutReplacementCharacters() throws IOException {
+        List<StatementLine> lines;
+        try (InputStream in = getClass().getResourceAsStream("/bank/statement-windows-1252.csv")) {
+            lines = parse(in);
+        }
+
+        assertThat(lines).extracting(StatementLine::description)
+                .containsExactly("Café de la Gare", "Remboursement Société Générale", "Prélèvement EDF – avril");
+        assertThat(lines.get(1).amount()).isEqualByComparingTo("1250.00");
+        assertThat(lines.get(1).reference()).isEqualTo("FA2026-0101");
+    }
+
+    @Test
+    void utf8IsReadWithOrWithoutByteOrderMark() throws IOException {
+        byte[] utf8 = CSV.getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[utf8.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+
+        assertThat(parse(new ByteArrayInputStream(utf8))).extracting(StatementLine::description)
+                .containsExactly("Café crème", "Virement reçu");
+        assertThat(parse(new ByteArrayInputStream(withBom))).extracting(StatementLine::description)
+                .containsExactly("Café crème", "Virement reçu");
+    }
+
+    @Test
+    void utf16ByteOrderMarkIsHonoured() throws IOException {
+        byte[] utf16 = ("\uFEFF" + CSV).getBytes(StandardCharsets.UTF_16LE);
+
+        assertThat(parse(new ByteArrayInputStream(utf16))).extracting(StatementLine::description)
+                .containsExactly("Café crème", "Virement reçu");
+    }
+
+    @Test
+    void windows1252AfterUtf8LookingLinesSwitchesTheRestOfTheFile() throws IOException {
+        String csv = "date;label;amount\n2026-04-05;ACME;10.00\n2026-04-06;Crédit agricole;20.00\n2026-04-07;Où;1.00\n";
+
+        assertThat(parse(new ByteArrayInputStream(csv.getBytes(Charset.forName("windows-1252")))))
+                .extracting(StatementLine::description)
+                .containsExactly("ACME", "Crédit agricole", "Où");
+    }
+
+    @Test
+    void camtKeepsOnlyBookedEntriesOfTheExpectedAccount() throws IOException {
+        List<StatementLine> lines = new ArrayList<>();
+        BankStatementParser.parse(camt(), BankStatementParser.Format.CAMT053, "fr7611111111111111111111111", lines::add);
+
+        assertThat(lines).extracting(StatementLine::description).containsExactly("BOOKED", "BOOKED TOO");
+    }
+
+    @Test
+    void camtOfAnotherAccountIsRejected() {
+        assertThatThrownBy(() -> BankStatementParser.parse(camt(), BankStatementParser.Format.CAMT053,
+                "FR76 3000 6000 0112 3456 7890 189", line -> { }))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("FR7611111111111111111111111");
+    }
+
+    private static InputStream camt() {
+        return new ByteArrayInputStream(CAMT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<StatementLine> parse(InputStream in) throws IOException {
+        List<StatementLine> lines = new ArrayList<>();
+        BankStatementParser.parse(in, BankStatementParser.Format.CSV, lines::add);
+        return lines;
+    }
+}
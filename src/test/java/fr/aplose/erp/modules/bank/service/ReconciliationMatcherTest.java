@@ -0,0 +1,63 @@
+package fr.aplose.erp.modules.bank.service;
+
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.BankLine;
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.Match;
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.OpenItem;
+import fr.aplose.erp.modules.bank.service.ReconciliationMatcher.Party;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReconciliationMatcherTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+    private static final String ACME_IBAN = "FR7630001007941234567890185";
+
+    @Test
+    void counterpartyMatchWinsOverAnEarlierAmountOnlyLine() {
+        ReconciliationMatcher matcher = new ReconciliationMatcher();
+        matcher.addItem(new OpenItem(1, 10, "FA-1", "EUR", new BigDecimal("120.00"), TODAY));
+        matcher.addParty(new Party(10, "Acme Industries", ACME_IBAN));
+
+        // Same amount, no counterparty: read first, it must not take the invoice from the IBAN line
+        BankLine anonymous = new BankLine(100, TODAY, new BigDecimal("120.00"), "EUR", "VIR INST 884512", null, null);
+        BankLine fromAcme = new BankLine(101, TODAY.plusDays(1), new BigDecimal("120.00"), "EUR", "VIREMENT RECU",
+                null, ACME_IBAN);
+
+        List<Match> matches = matcher.match(List.of(anonymous, fromAcme));
+
+        assertThat(matches).singleElement().satisfies(m -> {
+            assertThat(m.line().id()).isEqualTo(101);
+            assertThat(m.basis()).isEqualTo(ReconciliationMatcher.Basis.IBAN);
+            assertThat(m.confidence()).isEqualTo(ReconciliationMatcher.IBAN_EXACT);
+            assertThat(m.allocations()).singleElement().satisfies(a -> assertThat(a.invoiceId()).isEqualTo(1));
+        });
+        assertThat(matcher.getOpenItems()).isZero();
+    }
+
+    @Test
+    void amountOnlyLinesTakeWhatCounterpartiesLeft() {
+        ReconciliationMatcher matcher = new ReconciliationMatcher();
+        matcher.addItem(new OpenItem(1, 10, "FA-1", "EUR", new BigDecimal("120.00"), TODAY.minusDays(10)));
+        matcher.addItem(new OpenItem(2, 20, "FA-2", "EUR", new BigDecimal("120.00"), TODAY));
+        matcher.addParty(new Party(10, "Acme Industries", ACME_IBAN));
+        matcher.addParty(new Party(20, "Zeta", null));
+
+        BankLine anonymous = new BankLine(100, TODAY, new BigDecimal("120.00"), "EUR", "VIR INST 884512", null, null);
+        BankLine fromAcme = new BankLine(101, TODAY, new BigDecimal("120.00"), "EUR", "VIREMENT", null, ACME_IBAN);
+
+        List<Match> matches = matcher.match(List.of(anonymous, fromAcme));
+
+        assertThat(matches).hasSize(2);
+        assertThat(matches.get(0).line().id()).isEqualTo(101);
+        assertThat(matches.get(0).allocations().get(0).invoiceId()).isEqualTo(1);
+        assertThat(matches.get(1).line().id()).isEqualTo(100);
+        assertThat(matches.get(1).basis()).isEqualTo(ReconciliationMatcher.Basis.AMOUNT);
+        assertThat(matches.get(1).confidence()).isEqualTo(ReconciliationMatcher.AMOUNT_UNIQUE);
+        assertThat(matches.get(1).allocations().get(0).invoiceId()).isEqualTo(2);
+    }
+}
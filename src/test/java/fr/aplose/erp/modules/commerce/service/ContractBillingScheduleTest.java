@@ -0,0 +1,42 @@
+package fr.aplose.erp.modules.commerce.service;
+
+import fr.aplose.erp.modules.commerce.entity.BusinessContract;
+import fr.aplose.erp.modules.commerce.entity.ContractBillingFrequency;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContractBillingScheduleTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    @Test
+    void schedulingFollowsTheContractStartDate() {
+        LocalDate endOfJanuary = LocalDate.of(2026, 1, 31);
+        assertThat(ContractBillingFrequency.MONTHLY.periodStartAfter(endOfJanuary, endOfJanuary)).isEqualTo(LocalDate.of(2026, 2, 28));
+        assertThat(ContractBillingFrequency.MONTHLY.periodStartAfter(endOfJanuary, LocalDate.of(2026, 2, 28))).isEqualTo(LocalDate.of(2026, 3, 31));
+        assertThat(ContractBillingFrequency.QUARTERLY.periodStartFrom(endOfJanuary, LocalDate.of(2026, 5, 1))).isEqualTo(LocalDate.of(2026, 7, 31));
+
+        BusinessContract contract = new BusinessContract();
+        contract.setStartDate(endOfJanuary);
+        contract.setBillingFrequency("MONTHLY");
+        contract.setBillingAmount(new BigDecimal("50"));
+        assertThat(ContractBillingService.nextBillingDate(contract, TODAY)).isEqualTo(LocalDate.of(2026, 3, 31));
+
+        contract.setNextBillingDate(LocalDate.of(2026, 2, 28));
+        assertThat(ContractBillingService.nextBillingDate(contract, TODAY)).isEqualTo(LocalDate.of(2026, 2, 28));
+
+        contract.setBillingFrequency("QUARTERLY");
+        assertThat(ContractBillingService.nextBillingDate(contract, TODAY)).isEqualTo(LocalDate.of(2026, 4, 30));
+
+        contract.setEndDate(LocalDate.of(2026, 4, 1));
+        assertThat(ContractBillingService.nextBillingDate(contract, TODAY)).isNull();
+
+        contract.setEndDate(null);
+        contract.setStatus("TERMINATED");
+        assertThat(ContractBillingService.nextBillingDate(contract, TODAY)).isNull();
+    }
+}
@@ -0,0 +1,115 @@
+package fr.aplose.erp.modules.commerce.service;
+
+import fr.aplose.erp.modules.commerce.config.ContractBillingProperties;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ContractBillingServiceTest {
+
+    private static final String TENANT_ID = CommerceTestData.DEMO_TENANT_ID;
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    @Autowired
+    private ContractBillingService billingService;
+
+    @Autowired
+    private ContractBillingProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CommerceTestData data;
+    private long thirdPartyId;
+    private int chunkSize;
+
+    @BeforeEach
+    void setUp() {
+        chunkSize = properties.getChunkSize();
+        properties.setChunkSize(2);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "CB-");
+        thirdPartyId = data.thirdParty("CB-TP", "Billing customer");
+    }
+
+    @AfterEach
+    void tearDown() {
+        properties.setChunkSize(chunkSize);
+        jdbcTemplate.update("DELETE FROM invoice_lines WHERE invoice_id IN (SELECT id FROM invoices WHERE third_party_id = ?)", thirdPartyId);
+        jdbcTemplate.update("DELETE FROM invoices WHERE third_party_id = ?", thirdPartyId);
+        jdbcTemplate.update("DELETE FROM business_contracts WHERE third_party_id = ?", thirdPartyId);
+        data.deleteAll();
+    }
+
+    @Test
+    void dueContractsAreInvoicedOncePerPeriod() {
+        long monthly = contract("CB-M", "MONTHLY", "2026-01-10", null, "ACTIVE", "2026-01-10");
+        long quarterlyEnded = contract("CB-Q", "QUARTERLY", "2025-12-01", "2026-02-28", "ACTIVE", "2025-12-01");
+        long yearly = contract("CB-Y", "YEARLY", "2025-06-01", null, "ACTIVE", "2026-06-01");
+        long terminated = contract("CB-T", "MONTHLY", "2026-01-01", null, "TERMINATED", "2026-01-01");
+
+        ContractBillingService.BillingRun run = billingService.run(TODAY);
+
+        assertThat(run.invoices()).isEqualTo(4);
+        assertThat(run.failedChunks()).isZero();
+        assertThat(periods(monthly)).containsExactly(LocalDate.of(2026, 1, 10), LocalDate.of(2026, 2, 10), LocalDate.of(2026, 3, 10));
+        assertThat(periods(quarterlyEnded)).containsExactly(LocalDate.of(2025, 12, 1));
+        assertThat(periods(yearly)).isEmpty();
+        assertThat(periods(terminated)).isEmpty();
+        assertThat(nextBillingDate(monthly)).isEqualTo(LocalDate.of(2026, 4, 10));
+        assertThat(nextBillingDate(quarterlyEnded)).isNull();
+        assertThat(nextBillingDate(yearly)).isEqualTo(LocalDate.of(2026, 6, 1));
+
+        Map<String, Object> invoice = jdbcTemplate.queryForMap("SELECT i.status, i.type, i.currency_code, i.total_amount, " +
+                "i.amount_remaining, i.date_due, l.description, l.line_total FROM invoices i JOIN invoice_lines l ON l.invoice_id = i.id " +
+                "WHERE i.contract_id = ? AND i.billing_period_start = ?", monthly, LocalDate.of(2026, 1, 10));
+        assertThat(invoice.get("STATUS")).isEqualTo("DRAFT");
+        assertThat(invoice.get("TYPE")).isEqualTo("SALES");
+        assertThat(invoice.get("CURRENCY_CODE")).isNotNull();
+        assertThat((BigDecimal) invoice.get("TOTAL_AMOUNT")).isEqualByComparingTo("120");
+        assertThat((BigDecimal) invoice.get("AMOUNT_REMAINING")).isEqualByComparingTo("120");
+        assertThat((BigDecimal) invoice.get("LINE_TOTAL")).isEqualByComparingTo("100");
+        assertThat(invoice.get("DESCRIPTION")).isEqualTo("Maintenance CB-M (10/01/2026 - 09/02/2026)");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT reference) FROM invoices WHERE third_party_id = ?",
+                Integer.class, thirdPartyId)).isEqualTo(4);
+
+        assertThat(billingService.run(TODAY).invoices()).isZero();
+
+        // A schedule moved back (e.g. restored by hand) does not bill the same periods again
+        jdbcTemplate.update("UPDATE business_contracts SET next_billing_date = ? WHERE id = ?", LocalDate.of(2026, 1, 10), monthly);
+        assertThat(billingService.run(TODAY).invoices()).isZero();
+        assertThat(periods(monthly)).hasSize(3);
+        assertThat(nextBillingDate(monthly)).isEqualTo(LocalDate.of(2026, 4, 10));
+    }
+
+    private long contract(String reference, String frequency, String start, String end, String status, String next) {
+        jdbcTemplate.update("INSERT INTO business_contracts (tenant_id, third_party_id, contract_type, reference, start_date, " +
+                        "end_date, status, billing_frequency, billing_amount, billing_vat_rate, next_billing_date) " +
+                        "VALUES (?, ?, 'Maintenance', ?, ?, ?, ?, ?, 100, 0.2, ?)",
+                TENANT_ID, thirdPartyId, reference, LocalDate.parse(start), end != null ? LocalDate.parse(end) : null,
+                status, frequency, LocalDate.parse(next));
+        return jdbcTemplate.queryForObject("SELECT id FROM business_contracts WHERE reference = ?", Long.class, reference);
+    }
+
+    private List<LocalDate> periods(long contractId) {
+        return jdbcTemplate.queryForList("SELECT billing_period_start FROM invoices WHERE contract_id = ? ORDER BY billing_period_start",
+                LocalDate.class, contractId);
+    }
+
+    private LocalDate nextBillingDate(long contractId) {
+        return jdbcTemplate.queryForObject("SELECT next_billing_date FROM business_contracts WHERE id = ?", LocalDate.class, contractId);
+    }
+}
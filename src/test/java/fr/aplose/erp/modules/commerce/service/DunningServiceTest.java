@@ -0,0 +1,153 @@
+package fr.aplose.erp.modules.commerce.service;
+
+import fr.aplose.erp.mail.service.MailService;
+import fr.aplose.erp.modules.commerce.config.DunningProperties;
+import fr.aplose.erp.modules.commerce.repository.DunningLevelRepository;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "app.mail.poll-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+class DunningServiceTest {
+
+    private static final String TENANT_ID = CommerceTestData.DEMO_TENANT_ID;
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    @Autowired
+    private DunningService dunningService;
+
+    @Autowired
+    private DunningProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MailService mailService;
+
+    @Autowired
+    private DunningLevelRepository levelRepository;
+
+    private CommerceTestData data;
+    private int pageSize;
+
+    @BeforeEach
+    void setUp() {
+        pageSize = properties.getPageSize();
+        // Smaller than a customer's invoices: groups span pages
+        properties.setPageSize(2);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "DUN-");
+        jdbcTemplate.update("INSERT INTO dunning_levels (tenant_id, level_no, days_after_due) VALUES (?, 1, 7), (?, 2, 30)",
+                TENANT_ID, TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        properties.setPageSize(pageSize);
+        jdbcTemplate.update("DELETE FROM mail_outbox WHERE template_key = 'invoice.reminder'");
+        data.deleteAll();
+        jdbcTemplate.update("DELETE FROM dunning_levels WHERE tenant_id = ?", TENANT_ID);
+    }
+
+    @Test
+    void overdueInvoicesAreRemindedOncePerLevelInOneEmailPerCustomer() {
+        long customer = thirdParty("DUN-A", "Acme & <Sons>", "billing@acme.example");
+        long noEmail = thirdParty("DUN-B", "No Mail", null);
+        long reminded = thirdParty("DUN-C", "Already", "ap@already.example");
+        long veryLate = invoice("DUN-1", customer, TODAY.minusDays(40), "VALIDATED", "120.00", 0);
+        long late = invoice("DUN-2", customer, TODAY.minusDays(10), "PARTIALLY_PAID", "30.50", 0);
+        long notYet = invoice("DUN-3", customer, TODAY.minusDays(2), "SENT", "10.00", 0);
+        long draft = invoice("DUN-4", customer, TODAY.minusDays(40), "DRAFT", "99.00", 0);
+        long withoutEmail = invoice("DUN-5", noEmail, TODAY.minusDays(40), "VALIDATED", "50.00", 0);
+        long sameLevel = invoice("DUN-6", reminded, TODAY.minusDays(15), "VALIDATED", "70.00", 1);
+
+        DunningService.DunningRun run = dunningService.run(TODAY);
+
+        assertThat(run.emails()).isEqualTo(1);
+        assertThat(run.invoices()).isEqualTo(2);
+        assertThat(run.customersWithoutEmail()).isEqualTo(1);
+        assertThat(run.failedTenants()).isZero();
+        assertThat(reminderLevel(veryLate)).isEqualTo(2);
+        assertThat(reminderLevel(late)).isEqualTo(1);
+        assertThat(reminderLevel(notYet)).isZero();
+        assertThat(reminderLevel(draft)).isZero();
+        assertThat(reminderLevel(withoutEmail)).isZero();
+        assertThat(reminderLevel(sameLevel)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT last_reminder_at FROM invoices WHERE id = ?", Object.class, late)).isNotNull();
+
+        List<Map<String, Object>> mails = jdbcTemplate.queryForList(
+                "SELECT tenant_id, recipient, subject, body_text, body_html FROM mail_outbox WHERE template_key = 'invoice.reminder'");
+        assertThat(mails).hasSize(1);
+        Map<String, Object> mail = mails.get(0);
+        assertThat(mail.get("TENANT_ID")).isEqualTo(TENANT_ID);
+        assertThat(mail.get("RECIPIENT")).isEqualTo("billing@acme.example");
+        assertThat((String) mail.get("SUBJECT")).contains("#2").contains("2 unpaid invoice(s)").doesNotContain("{{");
+        assertThat((String) mail.get("BODY_TEXT")).contains("Acme & <Sons>").contains("DUN-1").contains("DUN-2")
+                .doesNotContain("DUN-3").doesNotContain("DUN-4");
+        assertThat((String) mail.get("BODY_HTML")).contains("<td>DUN-1</td>").contains("Acme &amp; &lt;Sons&gt;")
+                .doesNotContain("<Sons>").doesNotContain("{{");
+
+        // Nothing new to send until the next level is reached
+        assertThat(dunningService.run(TODAY).emails()).isZero();
+        assertThat(dunningService.run(TODAY.plusDays(20)).invoices()).isEqualTo(3);
+        assertThat(reminderLevel(late)).isEqualTo(2);
+        assertThat(reminderLevel(notYet)).isEqualTo(1);
+        assertThat(reminderLevel(sameLevel)).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentInstancesRemindEachLevelOnce() {
+        long customer = thirdParty("DUN-D", "Concurrent", "ap@concurrent.example");
+        for (int i = 0; i < 6; i++) {
+            invoice("DUN-1" + i, customer, TODAY.minusDays(10), "VALIDATED", "10.00", 0);
+        }
+        // A second application instance sharing the database
+        DunningService other = new DunningService(jdbcTemplate, transactionManager, mailService, levelRepository,
+                properties, new SimpleMeterRegistry());
+
+        CompletableFuture<DunningService.DunningRun> first = CompletableFuture.supplyAsync(() -> dunningService.run(TODAY));
+        CompletableFuture<DunningService.DunningRun> second = CompletableFuture.supplyAsync(() -> other.run(TODAY));
+
+        assertThat(first.join().invoices() + second.join().invoices()).isEqualTo(6);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mail_outbox WHERE template_key = 'invoice.reminder' " +
+                "AND body_text LIKE ?", Integer.class, "%DUN-10%")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM invoices WHERE reference LIKE 'DUN-1_' AND reminder_level = 1",
+                Integer.class)).isEqualTo(6);
+    }
+
+    private long thirdParty(String code, String name, String email) {
+        return data.thirdParty(code, name, email);
+    }
+
+    private long invoice(String reference, long thirdPartyId, LocalDate dateDue, String status, String remaining, int level) {
+        long id = data.invoice(reference, "SALES", thirdPartyId, status, dateDue, new BigDecimal(remaining), new BigDecimal(remaining));
+        jdbcTemplate.update("UPDATE invoices SET reminder_level = ? WHERE id = ?", level, id);
+        return id;
+    }
+
+    private int reminderLevel(long invoiceId) {
+        return jdbcTemplate.queryForObject("SELECT reminder_level FROM invoices WHERE id = ?", Integer.class, invoiceId);
+    }
+}
@@ -0,0 +1,84 @@
+package fr.aplose.erp.modules.extrafield.service;
+
+import fr.aplose.erp.modules.extrafield.entity.ExtraFieldDefinition;
+import fr.aplose.erp.modules.extrafield.web.dto.ExtraFieldDefinitionDto;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExtraFieldServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    private static final String ENTITY_TYPE = "EXTRAFIELD_TEST";
+
+    @Autowired
+    private ExtraFieldService extraFieldService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        extraFieldService.getDefinitions(ENTITY_TYPE).forEach(d -> extraFieldService.deleteDefinition(d.id()));
+        jdbcTemplate.update("DELETE FROM extrafield_values WHERE entity_type = ?", ENTITY_TYPE);
+        TenantContext.clear();
+    }
+
+    @Test
+    void savesUpsertAndListLoadReturnsColumns() {
+        extraFieldService.saveValues(ENTITY_TYPE, 1L, Map.of("color", "red", "size", "L"));
+        extraFieldService.saveValues(ENTITY_TYPE, 2L, Map.of("color", "blue"));
+        extraFieldService.saveValues(ENTITY_TYPE, 1L, Map.of("color", "green"));
+
+        Map<String, Map<Long, String>> columns = extraFieldService.getValues(ENTITY_TYPE, List.of(1L, 2L, 3L));
+
+        assertThat(columns.get("color")).containsExactlyInAnyOrderEntriesOf(Map.of(1L, "green", 2L, "blue"));
+        assertThat(columns.get("size")).containsExactlyInAnyOrderEntriesOf(Map.of(1L, "L"));
+        assertThat(extraFieldService.getValues(ENTITY_TYPE, 1L)).containsEntry("color", "green").containsEntry("size", "L");
+    }
+
+    @Test
+    void cachedDefinitionsAreRefreshedWhenADefinitionChanges() {
+        assertThat(extraFieldService.getActiveDefinitions(ENTITY_TYPE)).isEmpty();
+
+        ExtraFieldDefinition created = extraFieldService.createDefinition(ENTITY_TYPE, dto("color", true));
+        assertThat(extraFieldService.getActiveDefinitions(ENTITY_TYPE)).extracting(ExtraFieldDefinitionView::fieldCode)
+                .containsExactly("color");
+        assertThat(extraFieldService.getListDefinitions(ENTITY_TYPE)).hasSize(1);
+        // The cache holds copies: changing an entity without saving it does not leak into other requests
+        created.setLabel("Unsaved");
+        assertThat(extraFieldService.getDefinitions(ENTITY_TYPE)).extracting(ExtraFieldDefinitionView::label)
+                .containsExactly("color");
+
+        extraFieldService.updateDefinition(created.getId(), dto("color", false));
+        assertThat(extraFieldService.getListDefinitions(ENTITY_TYPE)).isEmpty();
+
+        extraFieldService.deleteDefinition(created.getId());
+        assertThat(extraFieldService.getDefinitions(ENTITY_TYPE)).isEmpty();
+    }
+
+    private static ExtraFieldDefinitionDto dto(String code, boolean visibleOnList) {
+        ExtraFieldDefinitionDto dto = new ExtraFieldDefinitionDto();
+        dto.setFieldCode(code);
+        dto.setLabel(code);
+        dto.setVisibleOnList(visibleOnList);
+        return dto;
+    }
+}
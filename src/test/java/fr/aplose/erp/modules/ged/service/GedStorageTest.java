@@ -0,0 +1,179 @@
+package fr.aplose.erp.modules.ged.service;
+
+import fr.aplose.erp.modules.ged.config.GedProperties;
+import fr.aplose.erp.modules.ged.entity.GedDocument;
+import fr.aplose.erp.modules.ged.web.GedDownloadResponder;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GedStorageTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private GedService gedService;
+
+    @Autowired
+    private GedBlobStore blobStore;
+
+    @Autowired
+    private GedStorageMigrator migrator;
+
+    @Autowired
+    private GedDownloadResponder downloadResponder;
+
+    @Autowired
+    private GedProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM ged_documents WHERE entity_type = 'OTHER' AND entity_id = 4242");
+        TenantContext.clear();
+    }
+
+    @Test
+    void identicalUploadsShareOneFileUntilTheLastReferenceIsPurged() throws Exception {
+        GedDocument first = gedService.upload("OTHER", 4242L, file("a.txt"), null);
+        GedDocument second = gedService.upload("OTHER", 4242L, file("copy of a.txt"), null);
+
+        assertThat(second.getContentHash()).isEqualTo(first.getContentHash()).hasSize(64);
+        Path stored = blobStore.path(TENANT_ID, first.getContentHash());
+        assertThat(stored.getParent().getFileName().toString()).isEqualTo(first.getContentHash().substring(2, 4));
+        assertThat(Files.readAllBytes(stored)).isEqualTo(CONTENT);
+        assertThat(refCount(first.getContentHash())).isEqualTo(2);
+
+        gedService.delete(first.getId());
+        Duration grace = properties.getOrphanGrace();
+        properties.setOrphanGrace(Duration.ofSeconds(-1));
+        try {
+            blobStore.purgeOrphans();
+            assertThat(Files.exists(stored)).isTrue();
+
+            gedService.delete(second.getId());
+            blobStore.purgeOrphans();
+            assertThat(Files.exists(stored)).isFalse();
+            assertThat(refCount(first.getContentHash())).isNull();
+        } finally {
+            properties.setOrphanGrace(grace);
+        }
+    }
+
+    @Test
+    void contentOfARolledBackUploadIsPurged() throws Exception {
+        byte[] content = "rolled back upload".getBytes(StandardCharsets.UTF_8);
+        GedBlobStore.StoredBlob blob = new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            try {
+                return blobStore.store(TENANT_ID, new ByteArrayInputStream(content));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Path stored = blobStore.path(TENANT_ID, blob.hash());
+        assertThat(Files.exists(stored)).isTrue();
+        assertThat(refCount(blob.hash())).isZero();
+
+        Duration grace = properties.getOrphanGrace();
+        properties.setOrphanGrace(Duration.ofSeconds(-1));
+        try {
+            blobStore.purgeOrphans();
+        } finally {
+            properties.setOrphanGrace(grace);
+        }
+        assertThat(Files.exists(stored)).isFalse();
+        assertThat(refCount(blob.hash())).isNull();
+    }
+
+    @Test
+    void downloadsHonourEtagAndRange() throws Exception {
+        GedDocument doc = gedService.upload("OTHER", 4242L, file("a.txt"), null);
+        String etag = "\"" + doc.getContentHash() + "\"";
+
+        MockHttpServletResponse full = download(doc, null, null);
+        assertThat(full.getStatus()).isEqualTo(200);
+        assertThat(full.getHeader("ETag")).isEqualTo(etag);
+        assertThat(full.getContentAsByteArray()).isEqualTo(CONTENT);
+
+        assertThat(download(doc, etag, null).getStatus()).isEqualTo(304);
+
+        MockHttpServletResponse partial = download(doc, null, "bytes=10-14");
+        assertThat(partial.getStatus()).isEqualTo(206);
+        assertThat(partial.getHeader("Content-Range")).isEqualTo("bytes 10-14/20");
+        assertThat(partial.getContentAsString()).isEqualTo("abcde");
+
+        assertThat(download(doc, null, "bytes=-3").getContentAsString()).isEqualTo("hij");
+        assertThat(download(doc, null, "bytes=20-").getStatus()).isEqualTo(416);
+        assertThat(download(doc, null, "bytes=99999999999999999999-").getStatus()).isEqualTo(416);
+        assertThat(download(doc, null, "bytes=15-99999999999999999999").getContentAsString()).isEqualTo("fghij");
+    }
+
+    @Test
+    void legacyFilesAreMovedIntoTheContentStore() throws Exception {
+        Path legacyDir = Files.createDirectories(Paths.get(properties.getStorageDir(), TENANT_ID));
+        Path legacyFile = Files.write(legacyDir.resolve("0f1e_legacy.txt"), CONTENT);
+        jdbcTemplate.update("INSERT INTO ged_documents (tenant_id, entity_type, entity_id, file_name, file_path, file_size) " +
+                "VALUES (?, 'OTHER', 4242, 'legacy.txt', ?, 20)", TENANT_ID, legacyFile.toAbsolutePath().toString());
+
+        GedStorageMigrator.Result result = migrator.migrate();
+
+        assertThat(result.migrated()).isEqualTo(1);
+        String hash = jdbcTemplate.queryForObject("SELECT content_hash FROM ged_documents WHERE file_name = 'legacy.txt'", String.class);
+        assertThat(Files.readAllBytes(blobStore.path(TENANT_ID, hash))).isEqualTo(CONTENT);
+        assertThat(Files.exists(legacyFile)).isFalse();
+        assertThat(migrator.migrate().migrated()).isZero();
+    }
+
+    private MockHttpServletResponse download(GedDocument doc, String ifNoneMatch, String range) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ged/" + doc.getId() + "/download");
+        if (ifNoneMatch != null) request.addHeader("If-None-Match", ifNoneMatch);
+        if (range != null) request.addHeader("Range", range);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadResponder.send(doc, request, response);
+        return response;
+    }
+
+    private Integer refCount(String hash) {
+        return jdbcTemplate.query("SELECT ref_count FROM ged_blobs WHERE tenant_id = ? AND content_hash = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, TENANT_ID, hash);
+    }
+
+    private static MockMultipartFile file(String name) {
+        return new MockMultipartFile("file", name, "text/plain", CONTENT);
+    }
+}
@@ -0,0 +1,140 @@
+package fr.aplose.erp.modules.ged.service;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import fr.aplose.erp.core.search.SearchIndexer;
+import fr.aplose.erp.modules.ged.entity.GedDocument;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GedTextSearchTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Autowired
+    private GedService gedService;
+
+    @Autowired
+    private SearchIndexer searchIndexer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<GedDocument> uploaded = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        // The index of the demo tenant is built in the background at startup, from rows read before these uploads
+        for (int i = 0; i < 100 && searchIndexer.isRebuilding(TENANT_ID); i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploaded.forEach(doc -> gedService.delete(doc.getId()));
+        searchIndexer.flush();
+        TenantContext.clear();
+    }
+
+    @Test
+    void searchMatchesExtractedTextOfEachFormat() throws Exception {
+        upload("notes.txt", "text/plain", "Meeting notes about the zanzibar shipment".getBytes(StandardCharsets.UTF_8));
+        upload("contract.docx", null, docx("Clause covering the quetzal warehouse"));
+        upload("prices.xlsx", null, xlsx("Marmoset unit price"));
+        upload("scan.pdf", "application/pdf", pdf("Delivery note for the xylophone order"));
+        upload("archive.bin", "application/octet-stream", new byte[]{1, 2, 3, 4});
+
+        awaitExtraction();
+        assertThat(awaitSearch("zanzibar")).containsExactly("notes.txt");
+        assertThat(awaitSearch("quetzal warehouse")).containsExactly("contract.docx");
+        assertThat(awaitSearch("marmoset")).containsExactly("prices.xlsx");
+        assertThat(awaitSearch("xylophone")).containsExactly("scan.pdf");
+        assertThat(awaitSearch("archive")).containsExactly("archive.bin");
+        assertThat(status(uploaded.getLast())).isEqualTo(GedTextExtractionService.STATUS_UNSUPPORTED);
+    }
+
+    private void upload(String name, String mimeType, byte[] content) throws Exception {
+        uploaded.add(gedService.upload("OTHER", 4343L, new MockMultipartFile("file", name, mimeType, content), null));
+    }
+
+    private List<String> search(String q) {
+        return gedService.search(q, PageRequest.of(0, 25)).map(GedDocument::getFileName).getContent();
+    }
+
+    private String status(GedDocument doc) {
+        return jdbcTemplate.queryForObject("SELECT status FROM ged_texts WHERE tenant_id = ? AND content_hash = ?",
+                String.class, TENANT_ID, doc.getContentHash());
+    }
+
+    private void awaitExtraction() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean done = uploaded.stream().allMatch(doc -> jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM ged_texts WHERE tenant_id = ? AND content_hash = ?",
+                    Integer.class, TENANT_ID, doc.getContentHash()) > 0);
+            if (done) return;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Text extraction did not complete");
+    }
+
+    /** Searches until the query matches: the text is indexed after its ged_texts row is written, not with it. */
+    private List<String> awaitSearch(String q) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            searchIndexer.flush();
+            List<String> found = search(q);
+            if (!found.isEmpty()) return found;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("No document indexed for " + q);
+    }
+
+    private static byte[] docx(String text) throws Exception {
+        try (XWPFDocument doc = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            doc.createParagraph().createRun().setText(text);
+            doc.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] xlsx(String text) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            workbook.createSheet("Prices").createRow(0).createCell(0).setCellValue(text);
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] pdf(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfWriter.getInstance(document, out);
+        document.open();
+        document.add(new Paragraph(text));
+        document.close();
+        return out.toByteArray();
+    }
+}
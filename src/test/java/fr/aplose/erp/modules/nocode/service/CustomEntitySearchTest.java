@@ -0,0 +1,149 @@
+package fr.aplose.erp.modules.nocode.service;
+
+import fr.aplose.erp.modules.nocode.entity.CustomEntityData;
+import fr.aplose.erp.modules.nocode.entity.CustomEntityDefinition;
+import fr.aplose.erp.tenant.context.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CustomEntitySearchTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Autowired
+    private CustomEntityService customEntityService;
+
+    @Autowired
+    private CustomEntityIndexService indexService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CustomEntityDefinition animal;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        TenantContext.setCurrentTenantId(TENANT_ID);
+        animal = customEntityService.findDefinitionByModuleAndObjectCode("farm", "ANIMAL").orElseThrow();
+        awaitIndexed();
+        customEntityService.create(TENANT_ID, animal.getId(), Map.of("name", "Search Bella", "species", "Cow", "birthDate", "2020-03-01"));
+        customEntityService.create(TENANT_ID, animal.getId(), Map.of("name", "Search Daisy", "species", "Cow", "birthDate", "2018-06-15"));
+        customEntityService.create(TENANT_ID, animal.getId(), Map.of("name", "Search Rex", "species", "Dog", "birthDate", "2021-01-20"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        customEntityService.search(TENANT_ID, animal, prefix("name", "Search "), null, 100).content()
+                .forEach(d -> customEntityService.delete(d.getId(), TENANT_ID));
+        TenantContext.clear();
+    }
+
+    @Test
+    void filtersSortsAndPagesThroughTheFieldIndex() {
+        CustomEntityQuery cowsByBirthDate = new CustomEntityQuery(List.of(
+                new CustomEntityQuery.Filter("name", CustomEntityQuery.Op.PREFIX, "Search "),
+                new CustomEntityQuery.Filter("species", CustomEntityQuery.Op.EQ, "Cow")), "birthDate", true);
+
+        CustomEntityPage first = customEntityService.search(TENANT_ID, animal, cowsByBirthDate, null, 1);
+        CustomEntityPage second = customEntityService.search(TENANT_ID, animal, cowsByBirthDate, first.next(), 1);
+
+        assertThat(first.total()).isEqualTo(2);
+        assertThat(names(first)).containsExactly("Search Daisy");
+        assertThat(names(second)).containsExactly("Search Bella");
+        assertThat(second.hasNext()).isFalse();
+
+        CustomEntityQuery bornSince2020 = new CustomEntityQuery(List.of(
+                new CustomEntityQuery.Filter("name", CustomEntityQuery.Op.PREFIX, "Search "),
+                new CustomEntityQuery.Filter("birthDate", CustomEntityQuery.Op.GTE, "2020-01-01")), "name", false);
+        assertThat(names(customEntityService.search(TENANT_ID, animal, bornSince2020, null, 10)))
+                .containsExactly("Search Rex", "Search Bella");
+    }
+
+    @Test
+    void keysetPagesFollowTheDefaultOrderAndRecordsWithoutValue() {
+        customEntityService.create(TENANT_ID, animal.getId(), Map.of("name", "Search Nameless"));
+        CustomEntityQuery bySpecies = new CustomEntityQuery(List.of(
+                new CustomEntityQuery.Filter("name", CustomEntityQuery.Op.PREFIX, "Search ")), "species", false);
+
+        assertThat(names(allPages(bySpecies))).containsExactly("Search Rex", "Search Daisy", "Search Bella", "Search Nameless");
+        assertThat(names(allPages(prefix("name", "Search "))))
+                .containsExactly("Search Nameless", "Search Rex", "Search Daisy", "Search Bella");
+    }
+
+    @Test
+    void updateReindexesChangedFields() {
+        CustomEntityData rex = customEntityService.search(TENANT_ID, animal, prefix("name", "Search Rex"), null, 1).content().getFirst();
+        customEntityService.update(rex.getId(), TENANT_ID, Map.of("name", "Search Rex", "species", "Wolf", "birthDate", "2021-01-20"));
+
+        assertThat(customEntityService.search(TENANT_ID, animal, prefix("species", "Dog"), null, 10).total()).isZero();
+        assertThat(names(customEntityService.search(TENANT_ID, animal, prefix("species", "Wo"), null, 10)))
+                .contains("Search Rex");
+    }
+
+    @Test
+    void aSchemaChangeIsIndexedInTheBackgroundWhileListsReadTheActiveVersion() throws InterruptedException {
+        String schema = animal.getFieldsSchema();
+        customEntityService.create(TENANT_ID, animal.getId(), Map.of("name", "Search Heavy", "species", "Cow", "weight", "650"));
+        jdbcTemplate.update("UPDATE custom_entity_definitions SET fields_schema = ? WHERE id = ?",
+                schema.substring(0, schema.length() - 1) + ",{\"name\":\"weight\",\"type\":\"number\"}]", animal.getId());
+        try {
+            assertThat(customEntityService.search(TENANT_ID, animal, prefix("name", "Search "), null, 10).total()).isEqualTo(4);
+
+            awaitIndexed();
+            CustomEntityQuery heavy = new CustomEntityQuery(List.of(
+                    new CustomEntityQuery.Filter("weight", CustomEntityQuery.Op.GTE, "600")), null, false);
+            assertThat(customEntityService.fieldTypes(animal)).containsEntry("weight", CustomEntityIndexService.FieldType.NUMBER);
+            assertThat(names(customEntityService.search(TENANT_ID, animal, heavy, null, 10))).containsExactly("Search Heavy");
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT index_version) FROM custom_entity_field_index " +
+                    "WHERE entity_definition_id = ?", Integer.class, animal.getId())).isEqualTo(1);
+        } finally {
+            jdbcTemplate.update("UPDATE custom_entity_definitions SET fields_schema = ? WHERE id = ?", schema, animal.getId());
+            awaitIndexed();
+        }
+    }
+
+    /** Waits for the background build of the definition's current schema (started at startup or by a search). */
+    private void awaitIndexed() throws InterruptedException {
+        for (int i = 0; i < 300 && !(indexService.isIndexed(animal.getId()) && !indexService.isRebuilding(animal.getId())); i++) {
+            if (!indexService.isRebuilding(animal.getId())) indexService.rebuildAsync(animal.getId());
+            Thread.sleep(100);
+        }
+        assertThat(indexService.isIndexed(animal.getId())).isTrue();
+    }
+
+    private CustomEntityPage allPages(CustomEntityQuery query) {
+        List<CustomEntityData> content = new ArrayList<>();
+        String after = null;
+        long total = 0;
+        do {
+            CustomEntityPage page = customEntityService.search(TENANT_ID, animal, query, after, 1);
+            content.addAll(page.content());
+            total = page.total();
+            after = page.next();
+        } while (after != null);
+        return new CustomEntityPage(content, total, null);
+    }
+
+    private static CustomEntityQuery prefix(String field, String value) {
+        return new CustomEntityQuery(List.of(new CustomEntityQuery.Filter(field, CustomEntityQuery.Op.PREFIX, value)), null, false);
+    }
+
+    private List<String> names(CustomEntityPage page) {
+        return page.content().stream()
+                .map(d -> String.valueOf(customEntityService.parsePayload(d.getPayload()).get("name")))
+                .toList();
+    }
+}
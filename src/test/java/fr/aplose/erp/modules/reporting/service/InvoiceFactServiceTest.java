@@ -0,0 +1,112 @@
+package fr.aplose.erp.modules.reporting.service;
+
+import fr.aplose.erp.modules.commerce.repository.InvoiceRepository;
+import fr.aplose.erp.modules.reporting.service.InvoiceFactService.Contribution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InvoiceFactServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    private InvoiceFactService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new InvoiceFactService(jdbcTemplate, invoiceRepository);
+    }
+
+    @Test
+    void contributionOf_countsValidatedTotalsByIssueMonthAndOpenAmountsByDueMonth() {
+        Contribution draft = contribution("DRAFT", "100.00", "100.00");
+        Contribution validated = contribution("VALIDATED", "100.00", "100.00");
+        Contribution paid = contribution("PAID", "100.00", "0.00");
+
+        assertThat(draft.issuedMonth()).isZero();
+        assertThat(draft.openMonth()).isZero();
+        assertThat(validated.issuedMonth()).isEqualTo(202603);
+        assertThat(validated.issuedAmount()).isEqualByComparingTo("100.00");
+        assertThat(validated.openMonth()).isEqualTo(202604);
+        assertThat(validated.openAmount()).isEqualByComparingTo("100.00");
+        assertThat(paid.issuedMonth()).isEqualTo(202603);
+        assertThat(paid.openMonth()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordChange_upsertsOnlyTheNetDifference() {
+        // Validation: issued and open appear
+        service.recordChange(TENANT_ID, contribution("DRAFT", "100.00", "100.00"), contribution("VALIDATED", "100.00", "100.00"));
+        // Partial payment: only the open amount moves
+        service.recordChange(TENANT_ID, contribution("VALIDATED", "100.00", "100.00"), contribution("PARTIALLY_PAID", "100.00", "40.00"));
+
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batches.capture());
+        List<Object[]> validation = batches.getAllValues().get(0);
+        assertThat(validation).hasSize(2);
+        assertThat(validation.get(0)).startsWith(TENANT_ID, 202603, "SALES", "EUR", new BigDecimal("100.00"), 1, BigDecimal.ZERO, 0);
+        assertThat(validation.get(1)).startsWith(TENANT_ID, 202604, "SALES", "EUR", BigDecimal.ZERO, 0, new BigDecimal("100.00"), 1);
+        List<Object[]> payment = batches.getAllValues().get(1);
+        assertThat(payment).hasSize(1);
+        assertThat(payment.get(0)).startsWith(TENANT_ID, 202604, "SALES", "EUR", BigDecimal.ZERO, 0, new BigDecimal("-60.00"), 0);
+    }
+
+    @Test
+    void recordChange_writesNothingWhenTheContributionIsUnchanged() {
+        service.recordChange(TENANT_ID, contribution("VALIDATED", "100.00", "100.00"), contribution("VALIDATED", "100.00", "100.00"));
+        service.recordChange(TENANT_ID, contribution("DRAFT", "10.00", "10.00"), contribution("CANCELLED", "10.00", "10.00"));
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void sumIssued_correctsPartialMonthsFromTheInvoices() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(BigDecimal.class), eq(TENANT_ID), eq("SALES"), eq(202603), eq(202604)))
+                .thenReturn(new BigDecimal("1000.00"));
+        when(invoiceRepository.sumTotalAmountByTenantAndTypeAndDateRange(TENANT_ID, "SALES", LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 9)))
+                .thenReturn(new BigDecimal("150.00"));
+        when(invoiceRepository.sumTotalAmountByTenantAndTypeAndDateRange(TENANT_ID, "SALES", LocalDate.of(2026, 4, 21), LocalDate.of(2026, 4, 30)))
+                .thenReturn(null);
+
+        assertThat(service.sumIssued(TENANT_ID, "SALES", LocalDate.of(2026, 3, 10), LocalDate.of(2026, 4, 20)))
+                .isEqualByComparingTo("850.00");
+        assertThat(service.sumIssued(TENANT_ID, "SALES", LocalDate.of(2026, 4, 20), LocalDate.of(2026, 3, 10))).isZero();
+    }
+
+    @Test
+    void sumIssued_readsWholeMonthsFromTheFactsOnly() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(BigDecimal.class), eq(TENANT_ID), eq("SALES"), eq(202601), eq(202603)))
+                .thenReturn(new BigDecimal("300.00"));
+
+        assertThat(service.sumIssued(TENANT_ID, "SALES", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31)))
+                .isEqualByComparingTo("300.00");
+        verifyNoInteractions(invoiceRepository);
+    }
+
+    private static Contribution contribution(String status, String total, String remaining) {
+        return InvoiceFactService.contributionOf("SALES", status, "EUR", LocalDate.of(2026, 3, 15), LocalDate.of(2026, 4, 14),
+                new BigDecimal(total), new BigDecimal(remaining));
+    }
+}
@@ -0,0 +1,105 @@
+package fr.aplose.erp.modules.reporting.service;
+
+import fr.aplose.erp.tenant.context.TenantContext;
+import fr.aplose.erp.testsupport.CommerceTestData;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReportingExportServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-0000000000a6";
+    /** More than the rows read between two persistence context clears and than a PDF chunk. */
+    private static final int OVERDUE = 501;
+
+    @Autowired
+    private ReportingExportService exportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CommerceTestData data;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO tenants (id, code, name) VALUES (?, 'export-test', 'Export test')", TENANT_ID);
+        data = new CommerceTestData(jdbcTemplate, TENANT_ID, "EXP-");
+        long customer = data.thirdParty("EXP-A", "Acme, \"Sons\"");
+        LocalDate overdue = LocalDate.now().minusDays(30);
+        for (int i = 0; i < OVERDUE; i++) {
+            data.invoice("EXP-%04d".formatted(i), "SALES", customer, "VALIDATED", overdue, new BigDecimal("12.50"), new BigDecimal("12.50"));
+        }
+        // Not overdue: paid, or not due yet
+        data.invoice("EXP-PAID", "SALES", customer, "PAID", overdue, BigDecimal.TEN, BigDecimal.ZERO);
+        data.invoice("EXP-LATER", "SALES", customer, "VALIDATED", LocalDate.now().plusDays(30), BigDecimal.TEN, BigDecimal.TEN);
+        TenantContext.setCurrentTenantId(TENANT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+        data.deleteAll();
+        jdbcTemplate.update("DELETE FROM tenants WHERE id = ?", TENANT_ID);
+    }
+
+    @Test
+    void overdueInvoicesCsvHasOneEscapedLinePerInvoice() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportOverdueInvoicesCsv(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(OVERDUE + 1);
+        assertThat(lines[0]).startsWith("reference,third_party,");
+        assertThat(lines[1]).startsWith("EXP-").contains(",\"Acme, \"\"Sons\"\"\",").endsWith(",12.5000,12.5000,VALIDATED");
+        assertThat(out.toString(StandardCharsets.UTF_8)).doesNotContain("EXP-PAID").doesNotContain("EXP-LATER");
+    }
+
+    @Test
+    void overdueInvoicesExcelHasEveryRowAndLeavesNoTempFile() throws Exception {
+        int tempFiles = sxssfTempFiles();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportOverdueInvoicesExcel(out);
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = wb.getSheet("Overdue invoices");
+            assertThat(sheet.getLastRowNum()).isEqualTo(OVERDUE);
+            assertThat(sheet.getRow(1).getCell(1).getStringCellValue()).isEqualTo("Acme, \"Sons\"");
+            assertThat(sheet.getRow(OVERDUE).getCell(5).getNumericCellValue()).isEqualTo(12.5);
+        }
+        assertThat(sxssfTempFiles()).isEqualTo(tempFiles);
+    }
+
+    @Test
+    void overdueInvoicesPdfIsWrittenInChunks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportOverdueInvoicesPdf(out);
+
+        String pdf = out.toString(StandardCharsets.ISO_8859_1);
+        assertThat(pdf).startsWith("%PDF-").contains("%%EOF");
+        // 501 rows with a repeated header do not fit on one landscape page
+        assertThat(pdf.split("/Type\\s*/Page\\b").length - 1).isGreaterThan(1);
+    }
+
+    private static int sxssfTempFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"), "poifiles")
+                .listFiles((dir, name) -> name.startsWith("poi-sxssf-sheet"));
+        return files != null ? files.length : 0;
+    }
+}
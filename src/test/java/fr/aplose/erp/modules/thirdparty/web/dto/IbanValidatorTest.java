@@ -0,0 +1,41 @@
+package fr.aplose.erp.modules.thirdparty.web.dto;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IbanValidatorTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    void checksumIsVerified() {
+        assertThat(IbanValidator.isValid("GB82WEST12345698765432")).isTrue();
+        assertThat(IbanValidator.isValid("DE89370400440532013000")).isTrue();
+        assertThat(IbanValidator.isValid("FR7630006000011234567890189")).isTrue();
+        assertThat(IbanValidator.isValid("GB82WEST12345698765433")).isFalse();
+        assertThat(IbanValidator.isValid("FR76")).isFalse();
+    }
+
+    @Test
+    void formInputIsCompactedBeforeValidation() {
+        ThirdPartyDto dto = new ThirdPartyDto();
+        dto.setCode("C1");
+        dto.setName("Acme");
+
+        dto.setIban(" fr76 3000 6000 0112 3456 7890 189 ");
+        assertThat(dto.getIban()).isEqualTo("FR7630006000011234567890189");
+        assertThat(validator.validate(dto)).isEmpty();
+
+        // 35 characters once spaces are removed: longer than any IBAN (and the column)
+        dto.setIban("FR76 3000 6000 0112 3456 7890 1891 2345 678");
+        assertThat(validator.validate(dto)).singleElement()
+                .satisfies(v -> assertThat(v.getPropertyPath().toString()).isEqualTo("iban"));
+
+        dto.setIban("   ");
+        assertThat(dto.getIban()).isNull();
+        assertThat(validator.validate(dto)).isEmpty();
+    }
+}
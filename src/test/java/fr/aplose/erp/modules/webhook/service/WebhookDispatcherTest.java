@@ -0,0 +1,197 @@
+package fr.aplose.erp.modules.webhook.service;
+
+import fr.aplose.erp.modules.webhook.config.WebhookProperties;
+import fr.aplose.erp.modules.webhook.entity.WebhookDelivery;
+import fr.aplose.erp.modules.webhook.entity.WebhookEndpoint;
+import fr.aplose.erp.modules.webhook.repository.WebhookDeliveryRepository;
+import fr.aplose.erp.modules.webhook.repository.WebhookEndpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookDispatcherTest {
+
+    @Mock
+    private WebhookDeliveryRepository deliveryRepository;
+
+    @Mock
+    private WebhookEndpointRepository endpointRepository;
+
+    @Mock
+    private WebhookSender sender;
+
+    private final WebhookProperties properties = new WebhookProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WebhookDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new WebhookDispatcher(deliveryRepository, endpointRepository, sender, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void claimBatchSize_fitsOneEndpointWithinHalfTheClaimTimeout() {
+        // 5 min claim, 15 s per call at most: 10 rounds of 4 concurrent calls
+        assertThat(dispatcher.claimBatchSize()).isEqualTo(40);
+
+        properties.setBatchSize(20);
+        assertThat(dispatcher.claimBatchSize()).isEqualTo(20);
+
+        properties.setBatchSize(100);
+        properties.setClaimTimeout(Duration.ofSeconds(10));
+        properties.setMaxConcurrencyPerEndpoint(2);
+        assertThat(dispatcher.claimBatchSize()).isEqualTo(2);
+    }
+
+    @Test
+    void dispatch_marksDeliveredAndReschedulesFailures() {
+        WebhookEndpoint endpoint = endpoint();
+        WebhookDelivery ok = delivery(1L, "{\"ok\":true}", 0);
+        WebhookDelivery failing = delivery(2L, "{\"ok\":false}", 0);
+        claim(List.of(ok, failing));
+        when(endpointRepository.findAllById(any())).thenReturn(List.of(endpoint));
+        when(sender.send(endpoint.getUrl(), endpoint.getSecret(), ok.getPayload()))
+                .thenReturn(new WebhookSender.DeliveryResult(true, 204, null, 12));
+        when(sender.send(endpoint.getUrl(), endpoint.getSecret(), failing.getPayload()))
+                .thenReturn(new WebhookSender.DeliveryResult(false, 503, "HTTP 503", 30));
+
+        dispatcher.dispatch();
+
+        assertThat(ok.getStatus()).isEqualTo(WebhookDelivery.STATUS_DELIVERED);
+        assertThat(ok.getDeliveredAt()).isNotNull();
+        assertThat(ok.getClaimToken()).isNull();
+        assertThat(failing.getStatus()).isEqualTo(WebhookDelivery.STATUS_PENDING);
+        assertThat(failing.getAttempts()).isEqualTo(1);
+        assertThat(failing.getLastError()).isEqualTo("HTTP 503");
+        assertThat(failing.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(29));
+        verify(deliveryRepository).save(ok);
+        verify(deliveryRepository).save(failing);
+    }
+
+    @Test
+    void dispatch_deadLettersAfterTheLastAttempt() {
+        WebhookEndpoint endpoint = endpoint();
+        WebhookDelivery last = delivery(3L, "{}", properties.getMaxAttempts() - 1);
+        claim(List.of(last));
+        when(endpointRepository.findAllById(any())).thenReturn(List.of(endpoint));
+        when(sender.send(anyString(), any(), anyString())).thenReturn(new WebhookSender.DeliveryResult(false, null, "timeout", 10_000));
+
+        dispatcher.dispatch();
+
+        assertThat(last.getStatus()).isEqualTo(WebhookDelivery.STATUS_DEAD);
+        assertThat(last.getAttempts()).isEqualTo(properties.getMaxAttempts());
+    }
+
+    @Test
+    void dispatch_doesNotSendADeliveryWhoseClaimExpired() {
+        // Claimed already expired, as when the endpoint's earlier deliveries outlasted the claim
+        properties.setClaimTimeout(Duration.ofSeconds(-1));
+        WebhookDelivery expired = delivery(4L, "{}", 0);
+        claim(List.of(expired));
+        when(endpointRepository.findAllById(any())).thenReturn(List.of(endpoint()));
+
+        dispatcher.dispatch();
+
+        verifyNoInteractions(sender);
+        verify(deliveryRepository, never()).save(any());
+        assertThat(expired.getStatus()).isEqualTo(WebhookDelivery.STATUS_IN_PROGRESS);
+    }
+
+    @Test
+    void dispatch_dropsTheOutcomeOfADeliveryRequeuedMeanwhile() {
+        WebhookEndpoint endpoint = endpoint();
+        WebhookDelivery lost = delivery(5L, "{}", 0);
+        claim(List.of(lost));
+        when(endpointRepository.findAllById(any())).thenReturn(List.of(endpoint));
+        when(sender.send(anyString(), any(), anyString())).thenReturn(new WebhookSender.DeliveryResult(true, 200, null, 5));
+        when(deliveryRepository.save(lost)).thenThrow(new ObjectOptimisticLockingFailureException(WebhookDelivery.class, 5L));
+
+        dispatcher.dispatch();
+
+        verify(deliveryRepository).save(lost);
+    }
+
+    @Test
+    void purgeDelivered_deletesPastRetentionPageByPage() {
+        List<Long> fullPage = LongStream.rangeClosed(1, 1_000).boxed().toList();
+        when(deliveryRepository.findDeliveredBefore(any(), any(Pageable.class))).thenReturn(fullPage)
+                .thenReturn(List.of(1_001L));
+        when(deliveryRepository.deleteByIdIn(anyCollection())).thenReturn(1_000, 1);
+
+        dispatcher.purgeDelivered();
+
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(deliveryRepository, times(2)).findDeliveredBefore(before.capture(), any(Pageable.class));
+        assertThat(before.getValue()).isBefore(LocalDateTime.now().minusDays(29));
+        verify(deliveryRepository).deleteByIdIn(List.of(1_001L));
+    }
+
+    @Test
+    void queueDepthGauge_isNotCountedOnEveryScrape() {
+        when(deliveryRepository.countByStatus(WebhookDelivery.STATUS_PENDING)).thenReturn(7L);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(meterRegistry.get("webhook.queue.depth").gauge().value()).isEqualTo(7.0);
+        }
+
+        verify(deliveryRepository, times(1)).countByStatus(WebhookDelivery.STATUS_PENDING);
+    }
+
+    /** Makes the dispatcher run claim these deliveries (fewer than a batch, so it stops after them). */
+    private void claim(List<WebhookDelivery> deliveries) {
+        List<Long> ids = deliveries.stream().map(WebhookDelivery::getId).toList();
+        when(deliveryRepository.findDueIds(any(), any(Pageable.class))).thenReturn(ids);
+        when(deliveryRepository.claim(eq(ids), anyString(), any())).thenAnswer(inv -> {
+            for (WebhookDelivery d : deliveries) {
+                d.setStatus(WebhookDelivery.STATUS_IN_PROGRESS);
+                d.setClaimToken(inv.getArgument(1));
+                d.setLockedUntil(inv.getArgument(2));
+            }
+            return deliveries.size();
+        });
+        when(deliveryRepository.findByClaimToken(anyString())).thenReturn(deliveries);
+    }
+
+    private static WebhookEndpoint endpoint() {
+        WebhookEndpoint endpoint = new WebhookEndpoint();
+        endpoint.setId(10L);
+        endpoint.setUrl("https://hooks.example/erp");
+        endpoint.setSecret("s3cret");
+        endpoint.setEnabled(true);
+        return endpoint;
+    }
+
+    private static WebhookDelivery delivery(long id, String payload, int attempts) {
+        WebhookDelivery delivery = new WebhookDelivery();
+        delivery.setId(id);
+        delivery.setEndpointId(10L);
+        delivery.setEventType("invoice.validated");
+        delivery.setPayload(payload);
+        delivery.setAttempts(attempts);
+        return delivery;
+    }
+}
@@ -0,0 +1,76 @@
+package fr.aplose.erp.modules.webhook.service;
+
+import fr.aplose.erp.modules.webhook.config.WebhookProperties;
+import fr.aplose.erp.modules.webhook.entity.WebhookDelivery;
+import fr.aplose.erp.modules.webhook.entity.WebhookEndpoint;
+import fr.aplose.erp.modules.webhook.repository.WebhookDeliveryRepository;
+import fr.aplose.erp.modules.webhook.repository.WebhookEndpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Mock
+    private WebhookEndpointRepository repository;
+
+    @Mock
+    private WebhookDeliveryRepository deliveryRepository;
+
+    private WebhookService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new WebhookService(repository, deliveryRepository, new WebhookProperties());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void triggerAll_queuesEveryEventForTheSubscribedEndpointsInOneSave() {
+        when(repository.findByTenantIdAndEnabledTrue(TENANT_ID)).thenReturn(List.of(
+                endpoint(1L, "INVOICE.CREATED"), endpoint(2L, "*"), endpoint(3L, "INVOICE.PAID")));
+
+        service.triggerAll(TENANT_ID, "INVOICE.CREATED", List.of(Map.of("id", 10), Map.of("id", 11), Map.of("id", 12)));
+        service.trigger(TENANT_ID, "INVOICE.CREATED", Map.of("id", 13));
+
+        ArgumentCaptor<List<WebhookDelivery>> saved = ArgumentCaptor.forClass(List.class);
+        verify(deliveryRepository, times(2)).saveAll(saved.capture());
+        assertThat(saved.getAllValues().getFirst()).hasSize(6)
+                .extracting(WebhookDelivery::getEndpointId).containsOnly(1L, 2L);
+        assertThat(saved.getAllValues().getFirst()).extracting(WebhookDelivery::getPayload)
+                .filteredOn(payload -> payload.contains("\"id\":11")).hasSize(2);
+        assertThat(saved.getAllValues().getLast()).hasSize(2);
+        verify(repository, times(1)).findByTenantIdAndEnabledTrue(TENANT_ID);
+    }
+
+    @Test
+    void triggerAll_savesNothingWithoutASubscribedEndpoint() {
+        when(repository.findByTenantIdAndEnabledTrue(TENANT_ID)).thenReturn(List.of(endpoint(3L, "INVOICE.PAID")));
+
+        service.triggerAll(TENANT_ID, "INVOICE.CREATED", List.of(Map.of("id", 10)));
+        service.triggerAll(TENANT_ID, "INVOICE.PAID", List.of());
+
+        verifyNoInteractions(deliveryRepository);
+    }
+
+    private static WebhookEndpoint endpoint(long id, String eventTypes) {
+        WebhookEndpoint endpoint = new WebhookEndpoint();
+        endpoint.setId(id);
+        endpoint.setTenantId(TENANT_ID);
+        endpoint.setUrl("https://hooks.example/" + id);
+        endpoint.setEventTypes(eventTypes);
+        return endpoint;
+    }
+}
@@ -0,0 +1,112 @@
+package fr.aplose.erp.security.service;
+
+import fr.aplose.erp.security.entity.ApiKey;
+import fr.aplose.erp.security.repository.ApiKeyRepository;
+import fr.aplose.erp.security.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+    private static final String RAW_KEY = "ak_0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Mock
+    private ApiKeyRepository repository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ApiKeyUsageTracker usageTracker;
+
+    private ApiKeyAuthCache authCache;
+    private ApiKeyService service;
+
+    @BeforeEach
+    void setUp() {
+        authCache = new ApiKeyAuthCache(new SimpleMeterRegistry());
+        service = new ApiKeyService(repository, userRepository, authCache, usageTracker);
+        lenient().when(userRepository.findWithAuthoritiesByIdAndTenantId(anyLong(), any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void validate_servesRepeatedCallsFromTheCache() {
+        ApiKey key = storedKey(null);
+        when(repository.findByKeyPrefix("ak_01234")).thenReturn(List.of(key));
+
+        assertThat(service.validate(RAW_KEY)).map(ApiKeyService.ApiKeyAuthResult::keyId).contains(7L);
+        assertThat(service.validate(RAW_KEY)).isPresent();
+
+        verify(repository, times(1)).findByKeyPrefix("ak_01234");
+        verify(usageTracker, times(2)).touch(7L);
+    }
+
+    @Test
+    void validate_doesNotCacheAKeyRevokedWhileItWasLoaded() {
+        ApiKey key = storedKey(null);
+        when(repository.findByKeyPrefix("ak_01234"))
+                .thenAnswer(inv -> {
+                    // The revocation commits (and evicts) after this request read the key
+                    authCache.evictKey(7L);
+                    return List.of(key);
+                })
+                .thenReturn(List.of());
+
+        assertThat(service.validate(RAW_KEY)).isPresent();
+        assertThat(service.validate(RAW_KEY)).isEmpty();
+
+        verify(repository, times(2)).findByKeyPrefix("ak_01234");
+    }
+
+    @Test
+    void validate_rejectsExpiredKeysAndMalformedInput() {
+        when(repository.findByKeyPrefix("ak_01234")).thenReturn(List.of(storedKey(LocalDateTime.now().minusMinutes(1))));
+
+        assertThat(service.validate(RAW_KEY)).isEmpty();
+        assertThat(service.validate("not-a-key")).isEmpty();
+        assertThat(service.validate(null)).isEmpty();
+        verifyNoInteractions(usageTracker);
+    }
+
+    @Test
+    void evictUser_dropsOnlyThatUsersKeys() {
+        ApiKey key = storedKey(null);
+        when(repository.findByKeyPrefix("ak_01234")).thenReturn(List.of(key));
+        service.validate(RAW_KEY);
+
+        authCache.evictUser(TENANT_ID, 99L);
+        service.validate(RAW_KEY);
+        verify(repository, times(1)).findByKeyPrefix("ak_01234");
+
+        authCache.evictUser(TENANT_ID, 3L);
+        service.validate(RAW_KEY);
+        verify(repository, times(2)).findByKeyPrefix("ak_01234");
+    }
+
+    private static ApiKey storedKey(LocalDateTime expiresAt) {
+        ApiKey key = new ApiKey();
+        key.setId(7L);
+        key.setTenantId(TENANT_ID);
+        key.setUserId(3L);
+        key.setName("CI");
+        key.setKeyPrefix("ak_01234");
+        key.setKeyHash("c028db03b8a22e2e4265ffaf6ed5dd8870198396d5bad3ccc69c6856c3683841");
+        key.setExpiresAt(expiresAt);
+        return key;
+    }
+}
@@ -0,0 +1,86 @@
+package fr.aplose.erp.tenant.service;
+
+import fr.aplose.erp.tenant.entity.Tenant;
+import fr.aplose.erp.tenant.repository.TenantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TenantLookupCacheTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Mock
+    private TenantRepository tenantRepository;
+
+    private TenantLookupCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new TenantLookupCache(tenantRepository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void findActiveTenantIdByCode_cachesKnownAndUnknownCodes() {
+        when(tenantRepository.findByCodeAndActiveTrue("acme")).thenReturn(Optional.of(tenant()));
+        when(tenantRepository.findByCodeAndActiveTrue("bogus")).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.findActiveTenantIdByCode("acme")).isEqualTo(TENANT_ID);
+            assertThat(cache.findActiveTenantIdByCode("bogus")).isNull();
+        }
+
+        verify(tenantRepository, times(1)).findByCodeAndActiveTrue("acme");
+        verify(tenantRepository, times(1)).findByCodeAndActiveTrue("bogus");
+        assertThat(cache.findActiveTenantIdByCode(" ")).isNull();
+        verifyNoMoreInteractions(tenantRepository);
+    }
+
+    @Test
+    void invalidateCode_dropsANegativeEntryAndTheFallback() {
+        when(tenantRepository.findByCodeAndActiveTrue("acme")).thenReturn(Optional.empty()).thenReturn(Optional.of(tenant()));
+        when(tenantRepository.findFirstByActiveTrueOrderByCreatedAtAsc()).thenReturn(Optional.empty()).thenReturn(Optional.of(tenant()));
+        assertThat(cache.findActiveTenantIdByCode("acme")).isNull();
+        assertThat(cache.findFallbackTenantId()).isNull();
+
+        // The tenant was registered
+        cache.invalidateCode("acme");
+
+        assertThat(cache.findActiveTenantIdByCode("acme")).isEqualTo(TENANT_ID);
+        assertThat(cache.findFallbackTenantId()).isEqualTo(TENANT_ID);
+    }
+
+    @Test
+    void invalidateTenant_dropsOnlyTheCodesResolvingToIt() {
+        Tenant other = tenant();
+        other.setId("00000000-0000-0000-0000-000000000002");
+        when(tenantRepository.findByCodeAndActiveTrue("acme")).thenReturn(Optional.of(tenant())).thenReturn(Optional.empty());
+        when(tenantRepository.findByCodeAndActiveTrue("globex")).thenReturn(Optional.of(other));
+        cache.findActiveTenantIdByCode("acme");
+        cache.findActiveTenantIdByCode("globex");
+
+        // The tenant was deactivated
+        cache.invalidateTenant(TENANT_ID);
+
+        assertThat(cache.findActiveTenantIdByCode("acme")).isNull();
+        assertThat(cache.findActiveTenantIdByCode("globex")).isEqualTo(other.getId());
+        verify(tenantRepository, times(2)).findByCodeAndActiveTrue("acme");
+        verify(tenantRepository, times(1)).findByCodeAndActiveTrue("globex");
+    }
+
+    private static Tenant tenant() {
+        Tenant tenant = new Tenant();
+        tenant.setId(TENANT_ID);
+        tenant.setCode("acme");
+        return tenant;
+    }
+}
@@ -0,0 +1,90 @@
+package fr.aplose.erp.tenant.service;
+
+import fr.aplose.erp.tenant.config.TenantProperties;
+import fr.aplose.erp.tenant.entity.TenantModule;
+import fr.aplose.erp.tenant.module.CoreModule;
+import fr.aplose.erp.tenant.repository.TenantModuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TenantModuleServiceTest {
+
+    private static final String TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Mock
+    private TenantModuleRepository tenantModuleRepository;
+
+    private TenantModuleService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TenantModuleService(tenantModuleRepository, new TenantProperties());
+        lenient().when(tenantModuleRepository.findNoCodeEnabledByTenantId(TENANT_ID)).thenReturn(List.of());
+    }
+
+    @Test
+    void snapshot_isBuiltOnceAndServesEveryModuleCheck() {
+        when(tenantModuleRepository.findByTenantIdOrderByModuleCode(TENANT_ID))
+                .thenReturn(List.of(row(CoreModule.PIPELINE, false), row(CoreModule.CRM_CONTACT, true)));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.isModuleEnabled(TENANT_ID, CoreModule.CRM_CONTACT.getCode())).isTrue();
+            assertThat(service.isModuleEnabled(TENANT_ID, CoreModule.PIPELINE.getCode())).isFalse();
+            // No row: enabled by default
+            assertThat(service.isModuleEnabled(TENANT_ID, CoreModule.COMMERCE_INVOICE.getCode())).isTrue();
+        }
+        TenantModuleSnapshot snapshot = service.getSnapshot(TENANT_ID);
+        assertThat(snapshot.isEnabled(CoreModule.PIPELINE)).isFalse();
+        assertThat(snapshot.isEnabled(CoreModule.COMMERCE_INVOICE)).isTrue();
+        assertThat(service.getEnabledModuleCodes(TENANT_ID)).doesNotContain(CoreModule.PIPELINE.getCode())
+                .contains(CoreModule.CRM_CONTACT.getCode());
+
+        verify(tenantModuleRepository, times(1)).findByTenantIdOrderByModuleCode(TENANT_ID);
+        verify(tenantModuleRepository, times(1)).findNoCodeEnabledByTenantId(TENANT_ID);
+    }
+
+    @Test
+    void updateModuleEnabled_rebuildsTheSnapshotWithANewVersion() {
+        TenantModule pipeline = row(CoreModule.PIPELINE, true);
+        when(tenantModuleRepository.findByTenantIdOrderByModuleCode(TENANT_ID)).thenAnswer(inv -> List.of(pipeline));
+        when(tenantModuleRepository.findByTenantIdAndModuleCode(TENANT_ID, CoreModule.PIPELINE.getCode()))
+                .thenReturn(Optional.of(pipeline));
+        TenantModuleSnapshot before = service.getSnapshot(TENANT_ID);
+
+        service.updateModuleEnabled(TENANT_ID, CoreModule.PIPELINE.getCode(), false);
+
+        TenantModuleSnapshot after = service.getSnapshot(TENANT_ID);
+        assertThat(before.isEnabled(CoreModule.PIPELINE)).isTrue();
+        assertThat(after.isEnabled(CoreModule.PIPELINE)).isFalse();
+        assertThat(after.version()).isGreaterThan(before.version());
+        verify(tenantModuleRepository).save(pipeline);
+    }
+
+    @Test
+    void unknownModulesAndTenantsAreIgnored() {
+        service.updateModuleEnabled(TENANT_ID, "NOT_A_MODULE", false);
+
+        assertThat(service.getEnabledModuleCodes(null)).isEmpty();
+        assertThat(service.isModuleEnabled(null, CoreModule.PIPELINE.getCode())).isFalse();
+        verify(tenantModuleRepository, never()).save(any());
+        verify(tenantModuleRepository, never()).findByTenantIdOrderByModuleCode(any());
+    }
+
+    private static TenantModule row(CoreModule module, boolean enabled) {
+        TenantModule tm = new TenantModule();
+        tm.setTenantId(TENANT_ID);
+        tm.setModuleCode(module.getCode());
+        tm.setEnabled(enabled);
+        return tm;
+    }
+}
@@ -0,0 +1,72 @@
+package fr.aplose.erp.testsupport;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Third parties and invoices written with plain JDBC by database tests. Every code and reference starts with the
+ * test's prefix, so {@link #deleteAll()} removes what the test created: its third parties, their invoices (whatever
+ * their reference, e.g. numbered by a sequence) and invoice lines, and the invoices carrying the prefix.
+ */
+public final class CommerceTestData {
+
+    public static final String DEMO_TENANT_ID = "00000000-0000-0000-0000-000000000001";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tenantId;
+    private final String prefix;
+
+    public CommerceTestData(JdbcTemplate jdbcTemplate, String tenantId, String prefix) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tenantId = tenantId;
+        this.prefix = prefix;
+    }
+
+    public long thirdParty(String code, String name) {
+        return thirdParty(code, name, null, null);
+    }
+
+    public long thirdParty(String code, String name, String email) {
+        return thirdParty(code, name, email, null);
+    }
+
+    /** Active company, with an optional email and IBAN. */
+    public long thirdParty(String code, String name, String email, String iban) {
+        jdbcTemplate.update("INSERT INTO third_parties (tenant_id, code, name, type, status, email, iban) " +
+                "VALUES (?, ?, ?, 'COMPANY', 'ACTIVE', ?, ?)", tenantId, prefixed(code), name, email, iban);
+        return jdbcTemplate.queryForObject("SELECT id FROM third_parties WHERE tenant_id = ? AND code = ?", Long.class, tenantId, code);
+    }
+
+    /** Invoice in EUR issued 30 days before it is due. */
+    public long invoice(String reference, String type, long thirdPartyId, String status, LocalDate dateDue,
+                        BigDecimal total, BigDecimal remaining) {
+        jdbcTemplate.update("INSERT INTO invoices (tenant_id, reference, type, third_party_id, status, date_issued, date_due, " +
+                        "currency_code, total_amount, amount_remaining) VALUES (?, ?, ?, ?, ?, ?, ?, 'EUR', ?, ?)",
+                tenantId, prefixed(reference), type, thirdPartyId, status, dateDue.minusDays(30), dateDue, total, remaining);
+        return jdbcTemplate.queryForObject("SELECT id FROM invoices WHERE tenant_id = ? AND reference = ?", Long.class, tenantId, reference);
+    }
+
+    public void invoiceLine(long invoiceId, int sortOrder, String description, BigDecimal amount) {
+        jdbcTemplate.update("INSERT INTO invoice_lines (tenant_id, invoice_id, sort_order, description, quantity, unit_price, line_total) " +
+                "VALUES (?, ?, ?, ?, 1, ?, ?)", tenantId, invoiceId, sortOrder, description, amount, amount);
+    }
+
+    public void deleteAll() {
+        String like = prefix + "%";
+        String ofTest = "tenant_id = ? AND (reference LIKE ? OR third_party_id IN " +
+                "(SELECT id FROM third_parties WHERE tenant_id = ? AND code LIKE ?))";
+        jdbcTemplate.update("DELETE FROM invoice_lines WHERE invoice_id IN (SELECT id FROM invoices WHERE " + ofTest + ")",
+                tenantId, like, tenantId, like);
+        jdbcTemplate.update("DELETE FROM invoices WHERE " + ofTest, tenantId, like, tenantId, like);
+        jdbcTemplate.update("DELETE FROM third_parties WHERE tenant_id = ? AND code LIKE ?", tenantId, like);
+    }
+
+    private String prefixed(String codeOrReference) {
+        if (!codeOrReference.startsWith(prefix)) {
+            throw new IllegalArgumentException(codeOrReference + " does not start with " + prefix + ", it would not be cleaned up");
+        }
+        return codeOrReference;
+    }
+}